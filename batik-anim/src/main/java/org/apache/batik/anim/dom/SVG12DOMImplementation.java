@@ -18,11 +18,11 @@
  */
 package org.apache.batik.anim.dom;
 
-import java.net.URL;
 import java.util.HashMap;
 
 import org.apache.batik.css.engine.CSSContext;
 import org.apache.batik.css.engine.CSSEngine;
+import org.apache.batik.css.engine.StyleSheetCache;
 import org.apache.batik.css.engine.SVG12CSSEngine;
 import org.apache.batik.css.engine.value.ShorthandManager;
 import org.apache.batik.css.engine.value.ValueManager;
@@ -41,7 +41,6 @@ import org.apache.batik.util.ParsedURL;
 import org.apache.batik.util.SVG12Constants;
 import org.apache.batik.util.XBLConstants;
 
-import org.w3c.css.sac.InputSource;
 import org.w3c.dom.Document;
 import org.w3c.dom.DocumentType;
 import org.w3c.dom.DOMImplementation;
@@ -74,17 +73,12 @@ public class SVG12DOMImplementation
                                      CSSContext               ctx,
                                      ExtendedParser      ep,
                                      ValueManager     [] vms,
-                                     ShorthandManager [] sms) {
+                                     ShorthandManager [] sms,
+                                     StyleSheetCache     cache) {
         ParsedURL durl = ((SVGOMDocument)doc).getParsedURL();
         CSSEngine result = new SVG12CSSEngine(doc, durl, ep, vms, sms, ctx);
-
-        URL url = getClass().getResource("resources/UserAgentStyleSheet.css");
-        if (url != null) {
-            ParsedURL purl = new ParsedURL(url);
-            InputSource is = new InputSource(purl.toString());
-            result.setUserAgentStyleSheet
-                (result.parseStyleSheet(is, purl, "all"));
-        }
+        result.setStyleSheetCache(cache);
+        setUserAgentStyleSheet(result);
 
         return result;
     }
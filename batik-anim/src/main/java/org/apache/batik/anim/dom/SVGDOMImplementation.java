@@ -25,6 +25,7 @@ import org.apache.batik.css.dom.CSSOMSVGViewCSS;
 import org.apache.batik.css.engine.CSSContext;
 import org.apache.batik.css.engine.CSSEngine;
 import org.apache.batik.css.engine.SVGCSSEngine;
+import org.apache.batik.css.engine.StyleSheetCache;
 import org.apache.batik.css.engine.value.ShorthandManager;
 import org.apache.batik.css.engine.value.ValueManager;
 import org.apache.batik.css.parser.ExtendedParser;
@@ -107,19 +108,47 @@ public class SVGDOMImplementation
                                      ExtendedParser           ep,
                                      ValueManager     []      vms,
                                      ShorthandManager []      sms) {
+        return createCSSEngine(doc, ctx, ep, vms, sms, null);
+    }
+
+    public CSSEngine createCSSEngine(AbstractStylableDocument doc,
+                                     CSSContext               ctx,
+                                     ExtendedParser           ep,
+                                     ValueManager     []      vms,
+                                     ShorthandManager []      sms,
+                                     StyleSheetCache          cache) {
 
         ParsedURL durl = ((SVGOMDocument)doc).getParsedURL();
         CSSEngine result = new SVGCSSEngine(doc, durl, ep, vms, sms, ctx);
+        result.setStyleSheetCache(cache);
+        setUserAgentStyleSheet(result);
 
+        return result;
+    }
+
+    /**
+     * Sets the user agent style sheet of the given engine.  The sheet
+     * is looked up in and added to the style sheet cache of the engine,
+     * if it has one.
+     */
+    protected void setUserAgentStyleSheet(CSSEngine eng) {
         URL url = getClass().getResource("resources/UserAgentStyleSheet.css");
         if (url != null) {
             ParsedURL purl = new ParsedURL(url);
-            InputSource is = new InputSource(purl.toString());
-            result.setUserAgentStyleSheet
-                (result.parseStyleSheet(is, purl, "all"));
+            StyleSheetCache cache = eng.getStyleSheetCache();
+            org.apache.batik.css.engine.StyleSheet ss = null;
+            if (cache != null) {
+                ss = cache.getStyleSheet(purl, eng);
+            }
+            if (ss == null) {
+                InputSource is = new InputSource(purl.toString());
+                ss = eng.parseStyleSheet(is, purl, "all");
+                if (cache != null) {
+                    cache.putStyleSheet(purl, eng, ss);
+                }
+            }
+            eng.setUserAgentStyleSheet(ss);
         }
-
-        return result;
     }
 
     /**
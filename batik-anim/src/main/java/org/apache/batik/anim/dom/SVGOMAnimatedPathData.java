@@ -41,6 +41,8 @@ import org.apache.batik.dom.svg.SVGPathSegItem;
 
 import org.apache.batik.parser.ParseException;
 import org.apache.batik.parser.PathArrayProducer;
+import org.apache.batik.parser.PathHandler;
+import org.apache.batik.parser.PathParser;
 
 import org.w3c.dom.Attr;
 import org.w3c.dom.DOMException;
@@ -192,6 +194,45 @@ public class SVGOMAnimatedPathData
         }
     }
 
+    /**
+     * Sends the segments of the animated path to the given handler.
+     * Unless the path is animated or its base segment list is already
+     * in use, the attribute is parsed straight into the handler, so the
+     * segment list is only built if it is accessed through the DOM.
+     * @throws LiveAttributeException if the attribute is missing or
+     *         malformed; the handler has then received the path up to
+     *         the error
+     */
+    public void handleAnimatedPathData(PathHandler h) {
+        if (!hasAnimVal && pathSegs != null) {
+            pathSegs.revalidate();
+        }
+        // A malformed base list is empty, so the attribute is parsed
+        // again to get the segments before the error.
+        if (hasAnimVal || (pathSegs != null && !pathSegs.malformed)) {
+            check();
+            SVGAnimatedPathDataSupport.handlePathSegList
+                (getAnimatedPathSegList(), h);
+            return;
+        }
+        Attr attr = element.getAttributeNodeNS(namespaceURI, localName);
+        String s = attr == null ? defaultValue : attr.getValue();
+        if (s == null) {
+            throw new LiveAttributeException
+                (element, localName,
+                 LiveAttributeException.ERR_ATTRIBUTE_MISSING, null);
+        }
+        PathParser pp = new PathParser();
+        pp.setPathHandler(h);
+        try {
+            pp.parse(s);
+        } catch (ParseException e) {
+            throw new LiveAttributeException
+                (element, localName,
+                 LiveAttributeException.ERR_ATTRIBUTE_MALFORMED, s);
+        }
+    }
+
     /**
      * Returns the base value of the attribute as an {@link AnimatableValue}.
      */
@@ -34,6 +34,9 @@ import java.awt.image.Raster;
 import java.awt.image.SinglePixelPackedSampleModel;
 import java.awt.image.WritableRaster;
 import java.lang.ref.WeakReference;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
 
 import org.apache.batik.ext.awt.image.GraphicsUtil;
 
@@ -84,11 +87,11 @@ abstract class MultipleGradientPaintContext implements PaintContext {
          32, 0xff0000, 0xFF00, 0xFF, 0xFF000000,
          false, DataBuffer.TYPE_INT);
 
-     /** The cached colorModel */
-    protected static ColorModel cachedModel;
-
-    /** The cached raster, which is reusable among instances */
-    protected static WeakReference cached;
+    /**
+     * The raster cached for each thread, which is reusable among the
+     * instances used by the thread.
+     */
+    protected static final ThreadLocal cachedRasters = new ThreadLocal();
 
     /** Raster is reused whenever possible */
     protected WritableRaster saved;
@@ -183,6 +186,33 @@ abstract class MultipleGradientPaintContext implements PaintContext {
      */
     private static final int MAX_GRADIENT_ARRAY_SIZE = 5000;
 
+    /**
+     * The maximum number of lookup tables kept in the cache.
+     */
+    protected static final int LOOKUP_CACHE_SIZE = 64;
+
+    /**
+     * The lookup tables computed for the recently used gradients, in
+     * access order.  The tables are never modified once computed, so
+     * they are shared by the contexts of equal gradients.
+     */
+    protected static final Map lookupCache =
+        new LinkedHashMap(16, 0.75f, true) {
+            protected boolean removeEldestEntry(Map.Entry e) {
+                return size() > LOOKUP_CACHE_SIZE;
+            }
+        };
+
+    /**
+     * The number of contexts which found their tables in the cache.
+     */
+    protected static long lookupHitCount;
+
+    /**
+     * The number of contexts which computed their tables.
+     */
+    protected static long lookupMissCount;
+
    /** Constructor for superclass. Does some initialization, but leaves most
     * of the heavy-duty math for calculateGradient(), so the subclass may do
     * some other manipulation beforehand if necessary.  This is not possible
@@ -202,6 +232,41 @@ abstract class MultipleGradientPaintContext implements PaintContext {
                                         colorSpace)
         throws NoninvertibleTransformException
     {
+        // The inverse transform is needed to from device to user space.
+        // Get all the components of the inverse transform matrix.
+        AffineTransform tInv = t.createInverse();
+
+        double[] m = new double[6];
+        tInv.getMatrix(m);
+        a00 = (float)m[0];
+        a10 = (float)m[1];
+        a01 = (float)m[2];
+        a11 = (float)m[3];
+        a02 = (float)m[4];
+        a12 = (float)m[5];
+
+        //copy some flags
+        this.cycleMethod = cycleMethod;
+        this.colorSpace = colorSpace;
+
+        LookupKey key = new LookupKey(fractions, colors, cycleMethod,
+                                      colorSpace, cm.getColorSpace());
+        LookupData data;
+        synchronized (lookupCache) {
+            data = (LookupData)lookupCache.get(key);
+            if (data != null) {
+                lookupHitCount++;
+            } else {
+                lookupMissCount++;
+            }
+        }
+        if (data != null) {
+            data.copyTo(this);
+            model = GraphicsUtil.coerceColorModel(dataModel,
+                                                  cm.isAlphaPremultiplied());
+            return;
+        }
+
         //We have to deal with the cases where the 1st gradient stop is not
         //equal to 0 and/or the last gradient stop is not equal to 1.
         //In both cases, create a new point and replicate the previous
@@ -268,23 +333,6 @@ abstract class MultipleGradientPaintContext implements PaintContext {
             this.fractions[idx] = 1;
         }
 
-        // The inverse transform is needed to from device to user space.
-        // Get all the components of the inverse transform matrix.
-        AffineTransform tInv = t.createInverse();
-
-        double[] m = new double[6];
-        tInv.getMatrix(m);
-        a00 = (float)m[0];
-        a10 = (float)m[1];
-        a01 = (float)m[2];
-        a11 = (float)m[3];
-        a02 = (float)m[4];
-        a12 = (float)m[5];
-
-        //copy some flags
-        this.cycleMethod = cycleMethod;
-        this.colorSpace = colorSpace;
-
         // Setup an example Model, we may refine it later.
         if (cm.getColorSpace() == lrgbmodel_A.getColorSpace())
             dataModel = lrgbmodel_A;
@@ -298,6 +346,112 @@ abstract class MultipleGradientPaintContext implements PaintContext {
 
         model = GraphicsUtil.coerceColorModel(dataModel,
                                               cm.isAlphaPremultiplied());
+
+        synchronized (lookupCache) {
+            lookupCache.put(key, new LookupData(this));
+        }
+    }
+
+    /**
+     * The key of the lookup tables of a gradient.
+     */
+    protected static class LookupKey {
+        protected float[] fractions;
+        protected int[] colors;
+        protected Object cycleMethod;
+        protected Object colorSpace;
+        protected ColorSpace modelColorSpace;
+        protected int hashCode;
+
+        public LookupKey(float[] fractions, Color[] colors,
+                         Object cycleMethod, Object colorSpace,
+                         ColorSpace modelColorSpace) {
+            this.fractions = (float[])fractions.clone();
+            this.colors = new int[colors.length];
+            for (int i = 0; i < colors.length; i++) {
+                this.colors[i] = colors[i].getRGB();
+            }
+            this.cycleMethod = cycleMethod;
+            this.colorSpace = colorSpace;
+            this.modelColorSpace = modelColorSpace;
+            hashCode = Arrays.hashCode(this.fractions) * 31
+                + Arrays.hashCode(this.colors);
+            hashCode = hashCode * 31 + cycleMethod.hashCode();
+            hashCode = hashCode * 31 + colorSpace.hashCode();
+            hashCode = hashCode * 31 + modelColorSpace.hashCode();
+        }
+
+        public int hashCode() {
+            return hashCode;
+        }
+
+        public boolean equals(Object o) {
+            if (!(o instanceof LookupKey)) {
+                return false;
+            }
+            LookupKey k = (LookupKey)o;
+            return hashCode == k.hashCode
+                && cycleMethod == k.cycleMethod
+                && colorSpace == k.colorSpace
+                && modelColorSpace == k.modelColorSpace
+                && Arrays.equals(fractions, k.fractions)
+                && Arrays.equals(colors, k.colors);
+        }
+    }
+
+    /**
+     * The lookup tables of a gradient and the values computed with
+     * them.  The arrays are shared, never copied.
+     */
+    protected static class LookupData {
+        protected ColorModel dataModel;
+        protected boolean isSimpleLookup;
+        protected boolean hasDiscontinuity;
+        protected int fastGradientArraySize;
+        protected int[] gradient;
+        protected int[][] gradients;
+        protected int gradientAverage;
+        protected int gradientUnderflow;
+        protected int gradientOverflow;
+        protected int gradientsLength;
+        protected float[] normalizedIntervals;
+        protected float[] fractions;
+        protected int transparencyTest;
+
+        public LookupData(MultipleGradientPaintContext c) {
+            dataModel = c.dataModel;
+            isSimpleLookup = c.isSimpleLookup;
+            hasDiscontinuity = c.hasDiscontinuity;
+            fastGradientArraySize = c.fastGradientArraySize;
+            gradient = c.gradient;
+            gradients = c.gradients;
+            gradientAverage = c.gradientAverage;
+            gradientUnderflow = c.gradientUnderflow;
+            gradientOverflow = c.gradientOverflow;
+            gradientsLength = c.gradientsLength;
+            normalizedIntervals = c.normalizedIntervals;
+            fractions = c.fractions;
+            transparencyTest = c.transparencyTest;
+        }
+
+        /**
+         * Sets the tables of the given context.
+         */
+        public void copyTo(MultipleGradientPaintContext c) {
+            c.dataModel = dataModel;
+            c.isSimpleLookup = isSimpleLookup;
+            c.hasDiscontinuity = hasDiscontinuity;
+            c.fastGradientArraySize = fastGradientArraySize;
+            c.gradient = gradient;
+            c.gradients = gradients;
+            c.gradientAverage = gradientAverage;
+            c.gradientUnderflow = gradientUnderflow;
+            c.gradientOverflow = gradientOverflow;
+            c.gradientsLength = gradientsLength;
+            c.normalizedIntervals = normalizedIntervals;
+            c.fractions = fractions;
+            c.transparencyTest = transparencyTest;
+        }
     }
 
 
@@ -1406,22 +1560,22 @@ abstract class MultipleGradientPaintContext implements PaintContext {
 
     /** Took this cacheRaster code from GradientPaint. It appears to recycle
      * rasters for use by any other instance, as long as they are sufficiently
-     * large.
+     * large.  Each thread has its own raster, so that the threads painting
+     * gradients do not take the raster of each other.
      */
     protected static final
-    synchronized WritableRaster getCachedRaster
+    WritableRaster getCachedRaster
         (ColorModel cm, int w, int h) {
-        if (cm == cachedModel) {
-            if (cached != null) {
-                WritableRaster ras = (WritableRaster) cached.get();
-                if (ras != null &&
-                    ras.getWidth() >= w &&
-                    ras.getHeight() >= h)
-                    {
-                        cached = null;
-                        return ras;
-                    }
-            }
+        CachedRaster cr = (CachedRaster)cachedRasters.get();
+        if (cr != null && cm == cr.model) {
+            WritableRaster ras = (WritableRaster) cr.raster.get();
+            if (ras != null &&
+                ras.getWidth() >= w &&
+                ras.getHeight() >= h)
+                {
+                    cachedRasters.set(null);
+                    return ras;
+                }
         }
         // Don't create rediculously small rasters...
         if (w<32) w=32;
@@ -1434,10 +1588,10 @@ abstract class MultipleGradientPaintContext implements PaintContext {
      * large.
      */
     protected static final
-    synchronized void putCachedRaster(ColorModel cm,
-                                             WritableRaster ras) {
-        if (cached != null) {
-            WritableRaster cras = (WritableRaster) cached.get();
+    void putCachedRaster(ColorModel cm, WritableRaster ras) {
+        CachedRaster cr = (CachedRaster)cachedRasters.get();
+        if (cr != null) {
+            WritableRaster cras = (WritableRaster) cr.raster.get();
             if (cras != null) {
                 int cw = cras.getWidth();
                 int ch = cras.getHeight();
@@ -1451,8 +1605,20 @@ abstract class MultipleGradientPaintContext implements PaintContext {
                 }
             }
         }
-        cachedModel = cm;
-        cached = new WeakReference(ras);
+        cachedRasters.set(new CachedRaster(cm, ras));
+    }
+
+    /**
+     * A raster kept for reuse, with the color model it was created for.
+     */
+    protected static class CachedRaster {
+        protected ColorModel model;
+        protected WeakReference raster;
+
+        public CachedRaster(ColorModel model, WritableRaster raster) {
+            this.model = model;
+            this.raster = new WeakReference(raster);
+        }
     }
 
     /**
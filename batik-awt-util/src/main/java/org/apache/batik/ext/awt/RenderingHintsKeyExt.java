@@ -77,9 +77,49 @@ public final class RenderingHintsKeyExt {
     public static final Object VALUE_AVOID_TILE_PAINTING_OFF = new Object();
     public static final Object VALUE_AVOID_TILE_PAINTING_DEFAULT = new Object();
 
+    /**
+     * Hint for org.apache.batik.ext.awt.image.rendered.GaussianBlurRed8Bit
+     * selecting how large blurs, approximated by three box filters, are
+     * computed.  The planar engine splits the pixels into one array per
+     * channel and filters the columns a block at a time; it produces
+     * the same pixels as the default engine.
+     */
+    public static final RenderingHints.Key KEY_BLUR_ENGINE;
+
+    public static final Object VALUE_BLUR_ENGINE_DEFAULT = new Object();
+    public static final Object VALUE_BLUR_ENGINE_PLANAR = new Object();
+
+    /**
+     * Hint for the number of threads the planar blur engine may use to
+     * filter a tile, as an Integer.  Defaults to one.
+     */
+    public static final RenderingHints.Key KEY_BLUR_THREADS;
+
+    /**
+     * Hint for org.apache.batik.ext.awt.image.rendered.TurbulencePatternRed
+     * selecting how the noise is generated.  The row engines compute
+     * an octave for a whole row at a time.  The double one produces the
+     * same pixels as the default engine when a tile is generated as a
+     * single band, with one thread; the bands generated by several
+     * threads, and the float engine, differ by at most one code value
+     * per channel.
+     */
+    public static final RenderingHints.Key KEY_TURBULENCE_ENGINE;
+
+    public static final Object VALUE_TURBULENCE_ENGINE_DEFAULT = new Object();
+    public static final Object VALUE_TURBULENCE_ENGINE_ROWS = new Object();
+    public static final Object VALUE_TURBULENCE_ENGINE_ROWS_FLOAT = new Object();
+
+    /**
+     * Hint for the number of threads the turbulence row engines may use
+     * to generate a tile, as an Integer.  Defaults to one.
+     */
+    public static final RenderingHints.Key KEY_TURBULENCE_THREADS;
+
     static {
         int base = 10100;
         RenderingHints.Key trans=null, aoi=null, bi=null, cs=null, atp=null;
+        RenderingHints.Key be=null, bt=null, te=null, tt=null;
         while (true) {
             int val = base;
 
@@ -89,6 +129,10 @@ public final class RenderingHintsKeyExt {
                 bi    = new BufferedImageHintKey (val++);
                 cs    = new ColorSpaceHintKey    (val++);
                 atp   = new AvoidTilingHintKey   (val++);
+                be    = new BlurEngineHintKey    (val++);
+                bt    = new BlurThreadsHintKey   (val++);
+                te    = new TurbulenceEngineHintKey (val++);
+                tt    = new TurbulenceThreadsHintKey(val++);
             } catch (Exception e) {
                 System.err.println
                     ("You have loaded the Batik jar files more than once\n" +
@@ -106,6 +150,10 @@ public final class RenderingHintsKeyExt {
         KEY_BUFFERED_IMAGE      = bi;
         KEY_COLORSPACE          = cs;
         KEY_AVOID_TILE_PAINTING = atp;
+        KEY_BLUR_ENGINE         = be;
+        KEY_BLUR_THREADS        = bt;
+        KEY_TURBULENCE_ENGINE   = te;
+        KEY_TURBULENCE_THREADS  = tt;
     }
 
     /**
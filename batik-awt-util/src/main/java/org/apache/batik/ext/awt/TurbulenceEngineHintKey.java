@@ -0,0 +1,39 @@
+/*
+
+   Licensed to the Apache Software Foundation (ASF) under one or more
+   contributor license agreements.  See the NOTICE file distributed with
+   this work for additional information regarding copyright ownership.
+   The ASF licenses this file to You under the Apache License, Version 2.0
+   (the "License"); you may not use this file except in compliance with
+   the License.  You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+
+ */
+package org.apache.batik.ext.awt;
+
+import java.awt.RenderingHints;
+
+/**
+ * A Key whose values select the engine used to generate
+ * feTurbulence noise.
+ *
+ * @version $Id$
+ */
+public class TurbulenceEngineHintKey extends RenderingHints.Key {
+
+    TurbulenceEngineHintKey(int number) { super(number); }
+
+    public boolean isCompatibleValue(Object v) {
+        if (v == null) return false;
+        return ((v == RenderingHintsKeyExt.VALUE_TURBULENCE_ENGINE_DEFAULT) ||
+                (v == RenderingHintsKeyExt.VALUE_TURBULENCE_ENGINE_ROWS) ||
+                (v == RenderingHintsKeyExt.VALUE_TURBULENCE_ENGINE_ROWS_FLOAT));
+    }
+}
@@ -0,0 +1,652 @@
+/*
+
+   Licensed to the Apache Software Foundation (ASF) under one or more
+   contributor license agreements.  See the NOTICE file distributed with
+   this work for additional information regarding copyright ownership.
+   The ASF licenses this file to You under the Apache License, Version 2.0
+   (the "License"); you may not use this file except in compliance with
+   the License.  You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+
+ */
+package org.apache.batik.ext.awt.geom;
+
+import java.awt.Rectangle;
+import java.awt.Shape;
+import java.awt.geom.AffineTransform;
+import java.awt.geom.Arc2D;
+import java.awt.geom.FlatteningPathIterator;
+import java.awt.geom.GeneralPath;
+import java.awt.geom.Path2D;
+import java.awt.geom.PathIterator;
+import java.awt.geom.Point2D;
+import java.awt.geom.Rectangle2D;
+
+/**
+ * A compact version of {@link ExtendedGeneralPath}.  The segments are
+ * only stored once, as one byte per command and the float coordinates
+ * of the commands, elliptical arcs included.  The segments seen
+ * through {@link #getPathIterator} are computed while iterating, and
+ * are the ones of the <code>GeneralPath</code> an
+ * <code>ExtendedGeneralPath</code> built with the same calls would
+ * contain, so both paths render and hit-test identically.  Only the
+ * arcs cause allocations during an iteration.
+ *
+ * <p>A path is not meant to be modified once built, and is not
+ * synchronized: it can be read from several threads.
+ *
+ * @version $Id$
+ */
+public class PackedPath implements ExtendedShape, Cloneable {
+
+    /**
+     * The command stored for <code>ExtendedPathIterator.SEG_ARCTO</code>,
+     * which does not fit in a byte.
+     */
+    protected static final byte ARCTO = 5;
+
+    /**
+     * The commands: <code>PathIterator.SEG_*</code> or {@link #ARCTO}.
+     */
+    protected byte[] types;
+
+    /**
+     * The number of commands.
+     */
+    protected int numSeg;
+
+    /**
+     * The coordinates of the commands.  An arc has 7 values: the two
+     * radii, the angle, the two flags and the end point.
+     */
+    protected float[] values;
+
+    /**
+     * The number of values.
+     */
+    protected int numVals;
+
+    /**
+     * The winding rule.
+     */
+    protected int windingRule;
+
+    /**
+     * The last moveto point and the current point.
+     */
+    protected float mx, my, cx, cy;
+
+    /**
+     * The bounds of the path, or null if not computed yet.
+     */
+    protected Rectangle2D bounds;
+
+    /**
+     * Creates a new path using the non-zero winding rule.
+     */
+    public PackedPath() {
+        this(PathIterator.WIND_NON_ZERO, 10);
+    }
+
+    /**
+     * Creates a new path.
+     * @param rule the winding rule
+     * @param initialCapacity the expected number of commands
+     */
+    public PackedPath(int rule, int initialCapacity) {
+        setWindingRule(rule);
+        types = new byte[initialCapacity];
+        values = new float[initialCapacity * 2];
+    }
+
+    /**
+     * Starts a new subpath at the given point.
+     */
+    public void moveTo(float x, float y) {
+        makeRoom(2);
+        types [numSeg++]  = PathIterator.SEG_MOVETO;
+        cx = mx = values[numVals++] = x;
+        cy = my = values[numVals++] = y;
+    }
+
+    /**
+     * Adds a line to the given point.
+     */
+    public void lineTo(float x, float y) {
+        makeRoom(2);
+        types [numSeg++]  = PathIterator.SEG_LINETO;
+        cx = values[numVals++] = x;
+        cy = values[numVals++] = y;
+    }
+
+    /**
+     * Adds a quadratic Bezier curve.
+     */
+    public void quadTo(float x1, float y1, float x2, float y2) {
+        makeRoom(4);
+        types [numSeg++]  = PathIterator.SEG_QUADTO;
+        values[numVals++] = x1;
+        values[numVals++] = y1;
+        cx = values[numVals++] = x2;
+        cy = values[numVals++] = y2;
+    }
+
+    /**
+     * Adds a cubic Bezier curve.
+     */
+    public void curveTo(float x1, float y1,
+                        float x2, float y2,
+                        float x3, float y3) {
+        makeRoom(6);
+        types [numSeg++]  = PathIterator.SEG_CUBICTO;
+        values[numVals++] = x1;
+        values[numVals++] = y1;
+        values[numVals++] = x2;
+        values[numVals++] = y2;
+        cx = values[numVals++] = x3;
+        cy = values[numVals++] = y3;
+    }
+
+    /**
+     * Adds an elliptical arc, like {@link ExtendedGeneralPath#arcTo}.
+     */
+    public void arcTo(float rx, float ry,
+                      float angle,
+                      boolean largeArcFlag,
+                      boolean sweepFlag,
+                      float x, float y) {
+        if (rx == 0 || ry == 0) {
+            lineTo(x, y);
+            return;
+        }
+        if (cx == x && cy == y) {
+            return;
+        }
+        makeRoom(7);
+        types [numSeg++]  = ARCTO;
+        values[numVals++] = rx;
+        values[numVals++] = ry;
+        values[numVals++] = angle;
+        values[numVals++] = largeArcFlag ? 1 : 0;
+        values[numVals++] = sweepFlag ? 1 : 0;
+        cx = values[numVals++] = x;
+        cy = values[numVals++] = y;
+    }
+
+    /**
+     * Closes the current subpath.
+     */
+    public void closePath() {
+        // Don't double close path.
+        if (numSeg != 0 && types[numSeg - 1] == PathIterator.SEG_CLOSE) {
+            return;
+        }
+        makeRoom(0);
+        types[numSeg++] = PathIterator.SEG_CLOSE;
+        cx = mx;
+        cy = my;
+    }
+
+    /**
+     * Returns the current point or <code>null</code>.
+     */
+    public Point2D getCurrentPoint() {
+        if (numVals == 0) return null;
+        return new Point2D.Double(cx, cy);
+    }
+
+    /**
+     * Returns the number of commands of this path.
+     */
+    public int getNumberOfSegments() {
+        return numSeg;
+    }
+
+    /**
+     * Returns the winding rule.
+     */
+    public int getWindingRule() {
+        return windingRule;
+    }
+
+    /**
+     * Sets the winding rule.
+     */
+    public void setWindingRule(int rule) {
+        if (rule != PathIterator.WIND_EVEN_ODD &&
+            rule != PathIterator.WIND_NON_ZERO) {
+            throw new IllegalArgumentException("winding rule must be " +
+                                               "WIND_EVEN_ODD or " +
+                                               "WIND_NON_ZERO");
+        }
+        windingRule = rule;
+    }
+
+    /**
+     * Removes all the commands.
+     */
+    public void reset() {
+        numSeg = 0;
+        numVals = 0;
+        bounds = null;
+    }
+
+    /**
+     * Frees the unused room of the arrays, once the path is built.
+     */
+    public void trimToSize() {
+        if (types.length != numSeg) {
+            byte[] t = new byte[numSeg];
+            System.arraycopy(types, 0, t, 0, numSeg);
+            types = t;
+        }
+        if (values.length != numVals) {
+            float[] v = new float[numVals];
+            System.arraycopy(values, 0, v, 0, numVals);
+            values = v;
+        }
+    }
+
+    /**
+     * Returns a <code>GeneralPath</code> holding the segments of this
+     * path transformed by the given transform.
+     */
+    public Shape createTransformedShape(AffineTransform at) {
+        GeneralPath gp = new GeneralPath(windingRule);
+        gp.append(getPathIterator(at), false);
+        return gp;
+    }
+
+    public Rectangle getBounds() {
+        return getBounds2D().getBounds();
+    }
+
+    /**
+     * Returns the bounds of the control points, like
+     * <code>GeneralPath</code> does.
+     */
+    public Rectangle2D getBounds2D() {
+        Rectangle2D r = bounds;
+        if (r == null) {
+            float x1 = 0, y1 = 0, x2 = 0, y2 = 0;
+            boolean first = true;
+            float[] coords = new float[6];
+            PathIterator pi = getPathIterator(null);
+            while (!pi.isDone()) {
+                int n;
+                switch (pi.currentSegment(coords)) {
+                case PathIterator.SEG_QUADTO:  n = 4; break;
+                case PathIterator.SEG_CUBICTO: n = 6; break;
+                case PathIterator.SEG_CLOSE:   n = 0; break;
+                default:                       n = 2;
+                }
+                for (int i = 0; i < n; i += 2) {
+                    float x = coords[i];
+                    float y = coords[i + 1];
+                    if (first) {
+                        x1 = x2 = x;
+                        y1 = y2 = y;
+                        first = false;
+                    } else {
+                        if (x < x1) x1 = x;
+                        if (y < y1) y1 = y;
+                        if (x > x2) x2 = x;
+                        if (y > y2) y2 = y;
+                    }
+                }
+                pi.next();
+            }
+            r = new Rectangle2D.Float(x1, y1, x2 - x1, y2 - y1);
+            bounds = r;
+        }
+        return (Rectangle2D)r.clone();
+    }
+
+    public boolean contains(double x, double y) {
+        return Path2D.contains(getPathIterator(null), x, y);
+    }
+
+    public boolean contains(Point2D p) {
+        return contains(p.getX(), p.getY());
+    }
+
+    public boolean contains(double x, double y, double w, double h) {
+        return Path2D.contains(getPathIterator(null), x, y, w, h);
+    }
+
+    public boolean contains(Rectangle2D r) {
+        return contains(r.getX(), r.getY(), r.getWidth(), r.getHeight());
+    }
+
+    public boolean intersects(double x, double y, double w, double h) {
+        return Path2D.intersects(getPathIterator(null), x, y, w, h);
+    }
+
+    public boolean intersects(Rectangle2D r) {
+        return intersects(r.getX(), r.getY(), r.getWidth(), r.getHeight());
+    }
+
+    public PathIterator getPathIterator(AffineTransform at) {
+        return new PI(at);
+    }
+
+    public PathIterator getPathIterator(AffineTransform at, double flatness) {
+        return new FlatteningPathIterator(getPathIterator(at), flatness);
+    }
+
+    /**
+     * Returns an iterator over the commands of this path, arcs included.
+     */
+    public ExtendedPathIterator getExtendedPathIterator() {
+        return new EPI();
+    }
+
+    public Object clone() {
+        try {
+            PackedPath result = (PackedPath)super.clone();
+            result.types = (byte[])types.clone();
+            result.values = (float[])values.clone();
+            return result;
+        } catch (CloneNotSupportedException ex) {}
+        return null;
+    }
+
+    /**
+     * Makes sure the arrays have room for one more command with the
+     * given number of values.
+     */
+    protected void makeRoom(int numValues) {
+        bounds = null;
+        if (numSeg == types.length) {
+            byte[] t = new byte[types.length * 2 + 1];
+            System.arraycopy(types, 0, t, 0, numSeg);
+            types = t;
+        }
+        int newSize = numVals + numValues;
+        if (newSize > values.length) {
+            int nlen = values.length * 2;
+            if (nlen < newSize)
+                nlen = newSize;
+            float[] v = new float[nlen];
+            System.arraycopy(values, 0, v, 0, numVals);
+            values = v;
+        }
+    }
+
+    /**
+     * Returns the number of values of the given command.
+     */
+    protected static int getNumberOfValues(int type) {
+        switch (type) {
+        case PathIterator.SEG_MOVETO:
+        case PathIterator.SEG_LINETO:       return 2;
+        case PathIterator.SEG_QUADTO:       return 4;
+        case PathIterator.SEG_CUBICTO:      return 6;
+        case ARCTO:                         return 7;
+        default:                            return 0;
+        }
+    }
+
+    /**
+     * The iterator over the commands, arcs included.
+     */
+    protected class EPI implements ExtendedPathIterator {
+        protected int segNum;
+        protected int valsIdx;
+
+        public int currentSegment() {
+            int type = types[segNum];
+            return type == ARCTO ? SEG_ARCTO : type;
+        }
+
+        public int currentSegment(double[] coords) {
+            int type = types[segNum];
+            int n = getNumberOfValues(type);
+            for (int i = 0; i < n; i++) {
+                coords[i] = values[valsIdx + i];
+            }
+            return type == ARCTO ? SEG_ARCTO : type;
+        }
+
+        public int currentSegment(float[] coords) {
+            int type = types[segNum];
+            System.arraycopy(values, valsIdx, coords, 0,
+                             getNumberOfValues(type));
+            return type == ARCTO ? SEG_ARCTO : type;
+        }
+
+        public int getWindingRule() {
+            return windingRule;
+        }
+
+        public boolean isDone() {
+            return segNum == numSeg;
+        }
+
+        public void next() {
+            valsIdx += getNumberOfValues(types[segNum++]);
+        }
+    }
+
+    /**
+     * The iterator over the segments of the <code>GeneralPath</code> an
+     * <code>ExtendedGeneralPath</code> would build: a moveto is only
+     * issued before a drawing command, a subpath without drawing
+     * command is not closed and the arcs are converted to curves.
+     */
+    protected class PI implements PathIterator {
+
+        /**
+         * The transform to apply, or null.
+         */
+        protected AffineTransform transform;
+
+        /**
+         * The index of the next command to convert, and of its values.
+         */
+        protected int segNum;
+        protected int valsIdx;
+
+        /**
+         * The last moveto point and the current point of the commands.
+         */
+        protected float mx, my, cx, cy;
+
+        /**
+         * The type and the last point of the last segment issued, if any.
+         */
+        protected int lastType = -1;
+        protected float lastX, lastY;
+
+        /**
+         * The segments to issue: their types and, for each segment, 6
+         * coordinates.
+         */
+        protected int[] segTypes = new int[2];
+        protected float[] segCoords = new float[12];
+        protected int segCount;
+        protected int segIndex;
+
+        /**
+         * Scratch arrays to read the arcs and to issue the movetos.
+         */
+        protected double[] arcCoords;
+        protected float[] coords = new float[6];
+
+        public PI(AffineTransform at) {
+            if (at != null && !at.isIdentity()) {
+                transform = at;
+            }
+            fill();
+        }
+
+        public int getWindingRule() {
+            return windingRule;
+        }
+
+        public boolean isDone() {
+            return segIndex == segCount;
+        }
+
+        public void next() {
+            segIndex++;
+            if (segIndex == segCount) {
+                fill();
+            }
+        }
+
+        public int currentSegment(float[] coords) {
+            int type = segTypes[segIndex];
+            int n = getNumberOfValues(type) / 2;
+            if (transform == null) {
+                System.arraycopy(segCoords, segIndex * 6, coords, 0, n * 2);
+            } else {
+                transform.transform(segCoords, segIndex * 6, coords, 0, n);
+            }
+            return type;
+        }
+
+        public int currentSegment(double[] coords) {
+            int type = segTypes[segIndex];
+            int n = getNumberOfValues(type) / 2;
+            if (transform == null) {
+                for (int i = 0; i < n * 2; i++) {
+                    coords[i] = segCoords[segIndex * 6 + i];
+                }
+            } else {
+                transform.transform(segCoords, segIndex * 6, coords, 0, n);
+            }
+            return type;
+        }
+
+        /**
+         * Converts the next commands until at least one segment is to
+         * be issued, or until the end of the path.
+         */
+        protected void fill() {
+            segCount = 0;
+            segIndex = 0;
+            while (segCount == 0 && segNum < numSeg) {
+                int type = types[segNum];
+                int v = valsIdx;
+                switch (type) {
+                case SEG_MOVETO:
+                    cx = mx = values[v];
+                    cy = my = values[v + 1];
+                    break;
+                case SEG_LINETO:
+                case SEG_QUADTO:
+                case SEG_CUBICTO:
+                    checkMoveTo();
+                    int n = getNumberOfValues(type);
+                    add(type, values, v, n);
+                    cx = values[v + n - 2];
+                    cy = values[v + n - 1];
+                    break;
+                case ARCTO:
+                    checkMoveTo();
+                    addArc(v);
+                    cx = values[v + 5];
+                    cy = values[v + 6];
+                    break;
+                case SEG_CLOSE:
+                    if (segNum != 0 && types[segNum - 1] != SEG_MOVETO) {
+                        add(SEG_CLOSE, null, 0, 0);
+                    }
+                    cx = mx;
+                    cy = my;
+                }
+                valsIdx += getNumberOfValues(type);
+                segNum++;
+            }
+        }
+
+        /**
+         * Issues the pending moveto if the previous command was a moveto,
+         * possibly followed by a close command.
+         */
+        protected void checkMoveTo() {
+            if (segNum == 0) return;
+            switch (types[segNum - 1]) {
+            case SEG_MOVETO:
+                break;
+            case SEG_CLOSE:
+                if (segNum == 1 || types[segNum - 2] != SEG_MOVETO) return;
+                break;
+            default:
+                return;
+            }
+            coords[0] = mx;
+            coords[1] = my;
+            add(SEG_MOVETO, coords, 0, 2);
+        }
+
+        /**
+         * Issues the curves of the arc whose values start at the given
+         * index, connected to the previous segment.
+         */
+        protected void addArc(int v) {
+            float angle = values[v + 2];
+            Arc2D arc = ExtendedGeneralPath.computeArc
+                (cx, cy, values[v], values[v + 1], angle,
+                 values[v + 3] != 0, values[v + 4] != 0,
+                 values[v + 5], values[v + 6]);
+            AffineTransform t = AffineTransform.getRotateInstance
+                (Math.toRadians(angle), arc.getCenterX(), arc.getCenterY());
+            PathIterator pi = arc.getPathIterator(t);
+            if (arcCoords == null) {
+                arcCoords = new double[6];
+            }
+            // The arc is computed in double precision, then rounded,
+            // as when it is appended to a GeneralPath.
+            float[] c = coords;
+            boolean connect = true;
+            while (!pi.isDone()) {
+                int type = pi.currentSegment(arcCoords);
+                pi.next();
+                for (int i = 0; i < 6; i++) {
+                    c[i] = (float)arcCoords[i];
+                }
+                if (connect && type == SEG_MOVETO && lastType != -1) {
+                    connect = false;
+                    if (lastType != SEG_CLOSE
+                        && lastX == c[0] && lastY == c[1]) {
+                        continue;
+                    }
+                    type = SEG_LINETO;
+                }
+                connect = false;
+                add(type, c, 0, getNumberOfValues(type));
+            }
+        }
+
+        /**
+         * Adds a segment to issue.
+         */
+        protected void add(int type, float[] src, int off, int n) {
+            if (segCount == segTypes.length) {
+                int[] t = new int[segCount * 2];
+                System.arraycopy(segTypes, 0, t, 0, segCount);
+                segTypes = t;
+                float[] c = new float[segCount * 12];
+                System.arraycopy(segCoords, 0, c, 0, segCount * 6);
+                segCoords = c;
+            }
+            segTypes[segCount] = type;
+            if (n != 0) {
+                System.arraycopy(src, off, segCoords, segCount * 6, n);
+                lastX = src[off + n - 2];
+                lastY = src[off + n - 1];
+            }
+            lastType = type;
+            segCount++;
+        }
+    }
+}
@@ -181,7 +181,10 @@ public class AffineRed extends AbstractRed {
         // If the output buffer is not premultiplied in certain cases
         // it fails to properly divide out the Alpha (it always does
         // the affine on premultiplied data). We help it out by
-        // premultiplying for it.
+        // premultiplying for it.  The data may belong to one of
+        // src's cached tiles so premultiply a copy of it.
+        if (srcCM.hasAlpha() && !srcCM.isAlphaPremultiplied())
+            srcWR = GraphicsUtil.copyRaster(srcRas);
         srcCM = GraphicsUtil.coerceData(srcWR, srcCM, true);
         srcBI = new BufferedImage(srcCM,
                                   srcWR.createWritableTranslatedChild(0,0),
@@ -32,6 +32,7 @@ import java.awt.image.SampleModel;
 import java.awt.image.SinglePixelPackedSampleModel;
 import java.awt.image.WritableRaster;
 
+import org.apache.batik.ext.awt.RenderingHintsKeyExt;
 import org.apache.batik.ext.awt.image.GraphicsUtil;
 
 /**
@@ -48,6 +49,7 @@ public class GaussianBlurRed8Bit extends AbstractRed {
     RenderingHints hints;
     ConvolveOp [] convOp = new ConvolveOp [2];
     int dX, dY;
+    PlanarBoxBlur8Bit planarBlur;
 
     /**
      * Construct a blurred version of <code>src</code>, by blurring with a
@@ -119,6 +121,15 @@ public class GaussianBlurRed8Bit extends AbstractRed {
             convOp[1] = new ConvolveOp(makeQualityKernelY(yinset*2+1));
         else
             dY = (int)Math.floor(DSQRT2PI*stdDevY+0.5f);
+
+        if ((hints != null) &&
+            (hints.get(RenderingHintsKeyExt.KEY_BLUR_ENGINE) ==
+             RenderingHintsKeyExt.VALUE_BLUR_ENGINE_PLANAR)) {
+            Integer threads = (Integer)hints.get
+                (RenderingHintsKeyExt.KEY_BLUR_THREADS);
+            planarBlur = new PlanarBoxBlur8Bit
+                ((threads == null) ? 1 : threads.intValue());
+        }
     }
 
     /**
@@ -241,6 +252,7 @@ public class GaussianBlurRed8Bit extends AbstractRed {
         // this lets the Vertical conv know how much is junk, so it
         // doesn't bother to convolve the top and bottom edges
         int skipX;
+        int planarDX = 0;
         // long t1 = System.currentTimeMillis();
         if (xinset == 0) {
             skipX = 0;
@@ -254,6 +266,13 @@ public class GaussianBlurRed8Bit extends AbstractRed {
             WritableRaster tmp = tmpR1;
             tmpR1 = tmpR2;
             tmpR2 = tmp;
+        } else if (planarBlur != null) {
+            // Filtered together with the columns, below.
+            planarDX = dX;
+            if ((dX&0x01) == 0)
+                skipX = dX-1 + dX/2;
+            else
+                skipX = dX-2 + dX/2;
         } else {
             if ((dX&0x01) == 0){
                 tmpR1 = boxFilterH(tmpR1, tmpR1, 0,    0,   dX,   dX/2);
@@ -268,6 +287,10 @@ public class GaussianBlurRed8Bit extends AbstractRed {
             }
         }
 
+        if ((planarDX != 0) && ((yinset == 0) || (convOp[1] != null))) {
+            planarBlur.filter(tmpR1, planarDX, 0, 0);
+        }
+
         if (yinset == 0) {
             tmpR2 = tmpR1;
         } else if (convOp[1] != null) {
@@ -276,6 +299,9 @@ public class GaussianBlurRed8Bit extends AbstractRed {
                     (r.width, r.height);
             }
             tmpR2 = convOp[1].filter(tmpR1, tmpR2);
+        } else if (planarBlur != null) {
+            planarBlur.filter(tmpR1, planarDX, dY, skipX);
+            tmpR2 = tmpR1;
         } else {
             if ((dY&0x01) == 0){
                 tmpR1 = boxFilterV(tmpR1, tmpR1, skipX, 0,    dY,   dY/2);
@@ -21,10 +21,12 @@ package org.apache.batik.ext.awt.image.rendered;
 import org.apache.batik.util.DoublyLinkedList;
 
 /**
+ * A <code>TileMemoryCache</code> that holds a fixed number of tiles,
+ * all its operations are synchronized on the cache.
  *
  * @version $Id$
  */
-public class LRUCache {
+public class LRUCache implements TileMemoryCache {
 
     /**
      * Interface for object participating in the LRU Cache.  These
@@ -121,6 +123,14 @@ public class LRUCache {
                 free.add(nde);
         }
 
+        public void remove(TileLRUMember member) {
+                remove((LRUObj)member);
+        }
+
+        public void add(TileLRUMember member) {
+                add((LRUObj)member);
+        }
+
         public synchronized void touch(LRUObj obj) {
                 LRUNode nde = obj.lruGet();
                 if (nde == null) return;
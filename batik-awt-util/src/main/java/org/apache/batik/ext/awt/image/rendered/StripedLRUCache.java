@@ -0,0 +1,193 @@
+/*
+
+   Licensed to the Apache Software Foundation (ASF) under one or more
+   contributor license agreements.  See the NOTICE file distributed with
+   this work for additional information regarding copyright ownership.
+   The ASF licenses this file to You under the Apache License, Version 2.0
+   (the "License"); you may not use this file except in compliance with
+   the License.  You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+
+ */
+package org.apache.batik.ext.awt.image.rendered;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * A <code>TileMemoryCache</code> bounded by the number of bytes of
+ * Raster data it holds.  The members are spread over a number of
+ * stripes, each with its own lock and LRU list and an equal share of
+ * the memory, so threads working on different tiles rarely contend.
+ * The eviction order is therefore only an approximation of a global
+ * LRU order.
+ *
+ * @version $Id$
+ */
+public class StripedLRUCache implements TileMemoryCache {
+
+    /**
+     * The default number of stripes.
+     */
+    public static final int DEFAULT_STRIPES = 16;
+
+    protected Stripe[] stripes;
+    protected long     memorySize;
+
+    /**
+     * Creates a cache holding at most <code>memorySize</code> bytes of
+     * Raster data with the default number of stripes.
+     */
+    public StripedLRUCache(long memorySize) {
+        this(memorySize, DEFAULT_STRIPES);
+    }
+
+    /**
+     * Creates a cache holding at most <code>memorySize</code> bytes of
+     * Raster data.  The number of stripes is rounded up to a power of
+     * two.
+     */
+    public StripedLRUCache(long memorySize, int numStripes) {
+        int n = 1;
+        while (n < numStripes) n <<= 1;
+
+        stripes = new Stripe[n];
+        for (int i=0; i<n; i++)
+            stripes[i] = new Stripe();
+        setMemorySize(memorySize);
+    }
+
+    /**
+     * Sets the number of bytes of Raster data this cache may hold,
+     * evicting members if it now holds more.
+     */
+    public synchronized void setMemorySize(long memorySize) {
+        if (memorySize < 0) memorySize = 0;
+        this.memorySize = memorySize;
+
+        long stripeSize = memorySize / stripes.length;
+        for (int i=0; i<stripes.length; i++)
+            stripes[i].setMaxSize(stripeSize);
+    }
+
+    /**
+     * Returns the number of bytes of Raster data this cache may hold.
+     */
+    public synchronized long getMemorySize() {
+        return memorySize;
+    }
+
+    /**
+     * Returns the number of bytes of Raster data currently held.
+     */
+    public long getMemoryUsed() {
+        long used = 0;
+        for (int i=0; i<stripes.length; i++)
+            used += stripes[i].getSize();
+        return used;
+    }
+
+    /**
+     * Returns the number of members currently in the cache.
+     */
+    public int getUsed() {
+        int used = 0;
+        for (int i=0; i<stripes.length; i++)
+            used += stripes[i].getCount();
+        return used;
+    }
+
+    public void add(TileLRUMember member) {
+        long size = member.getRasterSize();
+        if (size == 0) {
+            // Dropped by another thread before it got here.
+            remove(member);
+            return;
+        }
+        getStripe(member).add(member, size);
+    }
+
+    public void remove(TileLRUMember member) {
+        if (getStripe(member).remove(member))
+            member.lruRemove();
+    }
+
+    public void flush() {
+        for (int i=0; i<stripes.length; i++)
+            stripes[i].flush();
+    }
+
+    protected Stripe getStripe(TileLRUMember member) {
+        int h = System.identityHashCode(member);
+        h ^= (h >>> 16);
+        return stripes[h & (stripes.length-1)];
+    }
+
+    /**
+     * One stripe of the cache: an access ordered map from members to
+     * their size in bytes.
+     */
+    protected static class Stripe {
+        private LinkedHashMap members = new LinkedHashMap(16, 0.75f, true);
+        private long size;
+        private long maxSize;
+
+        synchronized void setMaxSize(long maxSize) {
+            this.maxSize = maxSize;
+            evict();
+        }
+
+        synchronized long getSize()  { return size; }
+
+        synchronized int  getCount() { return members.size(); }
+
+        synchronized void add(TileLRUMember member, long memberSize) {
+            Long old = (Long)members.put(member, Long.valueOf(memberSize));
+            if (old != null)
+                size -= old.longValue();
+            size += memberSize;
+            evict();
+        }
+
+        synchronized boolean remove(TileLRUMember member) {
+            Long old = (Long)members.remove(member);
+            if (old == null)
+                return false;
+            size -= old.longValue();
+            return true;
+        }
+
+        synchronized void flush() {
+            Iterator i = members.keySet().iterator();
+            while (i.hasNext())
+                ((TileLRUMember)i.next()).lruRemove();
+            members.clear();
+            size = 0;
+        }
+
+        /**
+         * Drops the least recently used members until the stripe fits
+         * in its share of memory.  The most recently used member is
+         * always kept, even if it is larger than the whole share.
+         */
+        private void evict() {
+            Iterator i = members.entrySet().iterator();
+            while ((size > maxSize) && (members.size() > 1)) {
+                Map.Entry e = (Map.Entry)i.next();
+                TileLRUMember member = (TileLRUMember)e.getKey();
+                size -= ((Long)e.getValue()).longValue();
+                i.remove();
+                member.lruRemove();
+                TileCache.countEviction();
+            }
+        }
+    }
+}
@@ -19,15 +19,101 @@
 package org.apache.batik.ext.awt.image.rendered;
 
 import java.awt.image.RenderedImage;
+import java.util.concurrent.atomic.LongAdder;
 
 /**
+ * Creates the <code>TileStore</code>s used by the tiled renderables.
+ * All the stores share a single <code>TileMemoryCache</code> that
+ * decides which tiles are kept in memory.  By default this is a
+ * <code>StripedLRUCache</code> bounded by the number of bytes of
+ * Raster data it holds.
  *
  * @version $Id$
  */
 public class TileCache {
-        private static LRUCache cache = new LRUCache(50);
+        /**
+         * The default number of bytes of Raster data kept in memory.
+         */
+        public static final long DEFAULT_MEMORY_SIZE = 16L * 1024 * 1024;
 
-        public static void setSize(int sz) { cache.setSize(sz); }
+        private static volatile TileMemoryCache cache =
+            new StripedLRUCache(DEFAULT_MEMORY_SIZE);
+
+        private static final LongAdder hits      = new LongAdder();
+        private static final LongAdder misses    = new LongAdder();
+        private static final LongAdder evictions = new LongAdder();
+
+        /**
+         * Sets the size of the cache to <code>sz</code> tiles of the
+         * default tile size.
+         * @see AbstractTiledRed#getDefaultTileSize
+         */
+        public static void setSize(int sz) {
+                TileMemoryCache c = cache;
+                if (c instanceof LRUCache) {
+                        ((LRUCache)c).setSize(sz);
+                        return;
+                }
+                int tileSz = AbstractTiledRed.getDefaultTileSize();
+                setMemorySize(4L * tileSz * tileSz * sz);
+        }
+
+        /**
+         * Sets the number of bytes of Raster data the cache may hold.
+         * Only has an effect on a <code>StripedLRUCache</code>.
+         */
+        public static void setMemorySize(long bytes) {
+                TileMemoryCache c = cache;
+                if (c instanceof StripedLRUCache)
+                        ((StripedLRUCache)c).setMemorySize(bytes);
+        }
+
+        /**
+         * Replaces the cache used by the <code>TileStore</code>s
+         * created from now on.  Existing stores keep using the cache
+         * they were created with.
+         */
+        public static void setCache(TileMemoryCache c) {
+                if (c == null)
+                        throw new IllegalArgumentException();
+                cache = c;
+        }
+
+        /**
+         * Returns the cache used by newly created <code>TileStore</code>s.
+         */
+        public static TileMemoryCache getCache() { return cache; }
+
+        /**
+         * Returns the number of tile requests that were served from
+         * memory since the counts were last reset.
+         */
+        public static long getHitCount() { return hits.sum(); }
+
+        /**
+         * Returns the number of tile requests that required the tile
+         * to be generated since the counts were last reset.
+         */
+        public static long getMissCount() { return misses.sum(); }
+
+        /**
+         * Returns the number of tiles the cache dropped to stay within
+         * its size since the counts were last reset.
+         */
+        public static long getEvictionCount() { return evictions.sum(); }
+
+        /**
+         * Resets the hit, miss and eviction counts.
+         */
+        public static void resetCounts() {
+                hits.reset();
+                misses.reset();
+                evictions.reset();
+        }
+
+        static void countHit()      { hits.increment(); }
+        static void countMiss()     { misses.increment(); }
+        static void countEviction() { evictions.increment(); }
 
         public static TileStore getTileGrid(int minTileX, int minTileY,
                                        int xSz, int ySz, TileGenerator src) {
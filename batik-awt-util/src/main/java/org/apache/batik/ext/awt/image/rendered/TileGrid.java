@@ -31,18 +31,17 @@ import org.apache.batik.util.HaltingThread;
  */
 public class TileGrid implements TileStore {
     private static final boolean DEBUG = false;
-    private static final boolean COUNT = false;
 
     private int xSz, ySz;
     private int minTileX, minTileY;
     private TileLRUMember   [][] rasters=null;
     private TileGenerator source = null;
-    private LRUCache      cache = null;
+    private TileMemoryCache cache = null;
 
     public TileGrid(int minTileX, int minTileY,
                     int xSz, int ySz,
                     TileGenerator source,
-                    LRUCache cache) {
+                    TileMemoryCache cache) {
         this.cache    = cache;
         this.source   = source;
         this.minTileX = minTileX;
@@ -59,31 +58,22 @@ public class TileGrid implements TileStore {
         if ((x<0) || (x>=xSz)) return;
         if ((y<0) || (y>=ySz)) return;
 
-        TileLRUMember [] row = rasters[y];
         TileLRUMember item;
         if (ras == null) {
             // Clearing entry.
-            if (row == null) return;
-            item = row[x];
-            if (item == null) return;
+            synchronized (this) {
+                TileLRUMember [] row = rasters[y];
+                if (row == null) return;
+                item = row[x];
+                if (item == null) return;
 
-            row[x] = null;
+                row[x] = null;
+            }
             cache.remove(item);
             return;
         }
 
-        if (row != null) {
-            item = row[x];
-            if (item == null) {
-                item = new TileLRUMember();
-                row[x] = item;
-            }
-        } else {
-            row = new TileLRUMember[xSz];
-            item = new TileLRUMember();
-            row[x] = item;
-            rasters[y] = row;
-        }
+        item = getItem(x, y);
         item.setRaster(ras);
 
         cache.add(item);
@@ -100,10 +90,13 @@ public class TileGrid implements TileStore {
         if ((x<0) || (x>=xSz)) return null;
         if ((y<0) || (y>=ySz)) return null;
 
-        TileLRUMember [] row = rasters[y];
-        if (row == null)
-            return null;
-        TileLRUMember item = row[x];
+        TileLRUMember item;
+        synchronized (this) {
+            TileLRUMember [] row = rasters[y];
+            if (row == null)
+                return null;
+            item = row[x];
+        }
         if (item == null)
             return null;
         Raster ret = item.retrieveRaster();
@@ -120,30 +113,16 @@ public class TileGrid implements TileStore {
 
         if (DEBUG) System.out.println("Fetching: (" + (x+minTileX) + ", " +
                                       (y+minTileY) + ")");
-        if (COUNT) synchronized (TileGrid.class) { requests++; }
 
-        Raster       ras  = null;
-        TileLRUMember [] row  = rasters[y];
-        TileLRUMember    item = null;
-        if (row != null) {
-            item = row[x];
-            if (item != null)
-                ras = item.retrieveRaster();
-            else {
-                item = new TileLRUMember();
-                row[x] = item;
-            }
-        } else {
-            row = new TileLRUMember[xSz];
-            rasters[y] = row;
-            item = new TileLRUMember();
-            row[x] = item;
-        }
+        TileLRUMember item = getItem(x, y);
+        Raster        ras  = item.retrieveRaster();
 
         if (ras == null) {
             if (DEBUG) System.out.println("Generating: ("+(x+minTileX)+", "+
                                           (y+minTileY) + ")");
-            if (COUNT) synchronized (TileGrid.class) { misses++; }
+            TileCache.countMiss();
+            // Generated outside of the lock, two threads may
+            // occasionally compute the same tile.
             ras = source.genTile(x+minTileX, y+minTileY);
 
             // In all likelyhood the contents of this tile is junk!
@@ -153,6 +132,8 @@ public class TileGrid implements TileStore {
                 return ras;
 
             item.setRaster(ras);
+        } else {
+            TileCache.countHit();
         }
 
         // Update the item's position in the cache..
@@ -161,6 +142,22 @@ public class TileGrid implements TileStore {
         return ras;
     }
 
-    static int requests;
-    static int misses;
+    /**
+     * Returns the cache member for the given tile, relative to the
+     * grid origin, creating it if needed.
+     */
+    private synchronized TileLRUMember getItem(int x, int y) {
+        TileLRUMember [] row = rasters[y];
+        if (row == null) {
+            row = new TileLRUMember[xSz];
+            rasters[y] = row;
+        }
+        TileLRUMember item = row[x];
+        if (item == null) {
+            item = new TileLRUMember();
+            row[x] = item;
+        }
+        return item;
+    }
+
 }
@@ -18,7 +18,9 @@
  */
 package org.apache.batik.ext.awt.image.rendered;
 
+import  java.awt.image.DataBuffer;
 import  java.awt.image.Raster;
+import  java.awt.image.SampleModel;
 import  java.lang.ref.Reference;
 import  java.lang.ref.SoftReference;
 
@@ -27,7 +29,11 @@ import  java.lang.ref.SoftReference;
  * an LRU Cache.  When this object drops out of the LRU cache it
  * removes it's hard reference to the tile, but retains it's soft
  * reference allowing for the recovery of the tile when the JVM is
- * not under memory pressure
+ * not under memory pressure.
+ *
+ * The raster references are guarded by this object's lock since
+ * the LRU cache may drop a member while another thread is
+ * retrieving its tile.
  *
  * @version $Id$
  */
@@ -44,12 +50,12 @@ public class TileLRUMember implements LRUCache.LRUObj {
             setRaster(ras);
         }
 
-        public void setRaster(Raster ras) {
+        public synchronized void setRaster(Raster ras) {
             hRaster = ras;
             wRaster = new SoftReference(ras);
         }
 
-        public boolean checkRaster() {
+        public synchronized boolean checkRaster() {
             if (hRaster != null) return true;
 
             if ((wRaster       != null) &&
@@ -58,7 +64,7 @@ public class TileLRUMember implements LRUCache.LRUObj {
             return false;
         }
 
-        public Raster retrieveRaster() {
+        public synchronized Raster retrieveRaster() {
             if (hRaster != null) return hRaster;
             if (wRaster == null) return null;
 
@@ -70,9 +76,23 @@ public class TileLRUMember implements LRUCache.LRUObj {
             return hRaster;
         }
 
+        /**
+         * Returns the number of bytes of Raster data this member
+         * holds a hard reference to.
+         */
+        public synchronized long getRasterSize() {
+            if (hRaster == null) return 0;
+
+            SampleModel sm = hRaster.getSampleModel();
+            long bits = DataBuffer.getDataTypeSize(sm.getTransferType());
+            bits *= sm.getNumDataElements();
+            bits *= (long)hRaster.getWidth()*hRaster.getHeight();
+            return (bits+7)/8;
+        }
+
         public LRUCache.LRUNode lruGet()         { return myNode; }
         public void lruSet(LRUCache.LRUNode nde) { myNode = nde; }
-        public void lruRemove()                  {
+        public synchronized void lruRemove()     {
             myNode  = null;
             hRaster = null;
             if (DEBUG) System.out.println("Removing");
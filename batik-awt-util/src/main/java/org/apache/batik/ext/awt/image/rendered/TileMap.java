@@ -32,7 +32,6 @@ import org.apache.batik.util.HaltingThread;
  */
 public class TileMap implements TileStore {
     private static final boolean DEBUG = false;
-    private static final boolean COUNT = false;
 
     private HashMap rasters=new HashMap();
 
@@ -46,7 +45,9 @@ public class TileMap implements TileStore {
                 if (DEBUG) System.err.println("Cleaned: " + this);
                 TileMap tm = (TileMap)parent.get();
                 if (tm != null)
-                    tm.rasters.remove(pt);
+                    synchronized (tm) {
+                        tm.rasters.remove(pt);
+                    }
             }
         }
 
@@ -56,17 +57,17 @@ public class TileMap implements TileStore {
             this.pt     = pt;
         }
 
-        public void setRaster(Raster ras) {
+        public synchronized void setRaster(Raster ras) {
             hRaster = ras;
             wRaster = new RasterSoftRef(ras);
         }
     }
 
     private TileGenerator source = null;
-    private LRUCache      cache = null;
+    private TileMemoryCache cache = null;
 
     public TileMap(TileGenerator source,
-                   LRUCache cache) {
+                   TileMemoryCache cache) {
         this.cache    = cache;
         this.source   = source;
     }
@@ -76,20 +77,25 @@ public class TileMap implements TileStore {
 
         if (ras == null) {
             // Clearing entry...
-            Object o = rasters.remove(pt);
+            Object o;
+            synchronized (this) {
+                o = rasters.remove(pt);
+            }
             if (o != null)
                 cache.remove((TileMapLRUMember)o);
             return;
         }
 
-        Object o = rasters.get(pt);
         TileMapLRUMember item;
-        if (o == null) {
-            item = new TileMapLRUMember(this, pt, ras);
-            rasters.put(pt, item);
-        } else {
-            item = (TileMapLRUMember)o;
-            item.setRaster(ras);
+        synchronized (this) {
+            Object o = rasters.get(pt);
+            if (o == null) {
+                item = new TileMapLRUMember(this, pt, ras);
+                rasters.put(pt, item);
+            } else {
+                item = (TileMapLRUMember)o;
+                item.setRaster(ras);
+            }
         }
 
         cache.add(item);
@@ -100,7 +106,10 @@ public class TileMap implements TileStore {
     // If it is not currently in the cache it returns null.
     public Raster getTileNoCompute(int x, int y) {
         Point pt = new Point(x, y);
-        Object o = rasters.get(pt);
+        Object o;
+        synchronized (this) {
+            o = rasters.get(pt);
+        }
         if (o == null)
             return null;
 
@@ -114,11 +123,13 @@ public class TileMap implements TileStore {
     public Raster getTile(int x, int y) {
         if (DEBUG) System.out.println("Fetching: (" + (x) + ", " +
                                       (y) + ')' );
-        if (COUNT) synchronized (TileMap.class) { requests++; }
 
         Raster       ras  = null;
         Point pt = new Point(x, y);
-        Object o = rasters.get(pt);
+        Object o;
+        synchronized (this) {
+            o = rasters.get(pt);
+        }
         TileMapLRUMember item = null;
         if (o != null) {
             item = (TileMapLRUMember)o;
@@ -128,7 +139,9 @@ public class TileMap implements TileStore {
         if (ras == null) {
             if (DEBUG) System.out.println("Generating: ("+(x)+", "+
                                           (y) + ")");
-            if (COUNT) synchronized (TileMap.class) { misses++; }
+            TileCache.countMiss();
+            // Generated outside of the lock, two threads may
+            // occasionally compute the same tile.
             ras = source.genTile(x, y);
 
             // In all likelyhood the contents of this tile is junk!
@@ -140,9 +153,19 @@ public class TileMap implements TileStore {
             if (item != null)
                 item.setRaster(ras);
             else  {
-                item = new TileMapLRUMember(this, pt, ras);
-                rasters.put(pt, item);
+                synchronized (this) {
+                    o = rasters.get(pt);
+                    if (o != null) {
+                        item = (TileMapLRUMember)o;
+                        item.setRaster(ras);
+                    } else {
+                        item = new TileMapLRUMember(this, pt, ras);
+                        rasters.put(pt, item);
+                    }
+                }
             }
+        } else {
+            TileCache.countHit();
         }
 
         // Update the item's position in the cache..
@@ -151,6 +174,4 @@ public class TileMap implements TileStore {
         return ras;
     }
 
-    static int requests;
-    static int misses;
 }
@@ -0,0 +1,50 @@
+/*
+
+   Licensed to the Apache Software Foundation (ASF) under one or more
+   contributor license agreements.  See the NOTICE file distributed with
+   this work for additional information regarding copyright ownership.
+   The ASF licenses this file to You under the Apache License, Version 2.0
+   (the "License"); you may not use this file except in compliance with
+   the License.  You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+
+ */
+package org.apache.batik.ext.awt.image.rendered;
+
+/**
+ * The cache that keeps tiles of the <code>TileStore</code>s in
+ * memory.  A <code>TileLRUMember</code> holds a hard reference to
+ * its Raster as long as it is in the cache, once it is evicted
+ * (through <code>lruRemove</code>) only a soft reference remains.
+ *
+ * Implementations must be safe to use from several threads.
+ *
+ * @see TileCache#setCache
+ * @version $Id$
+ */
+public interface TileMemoryCache {
+
+    /**
+     * Adds a member to the cache, or marks it as the most recently
+     * used member if it is already cached.  The member's Raster
+     * must have been set before calling this method.
+     */
+    void add(TileLRUMember member);
+
+    /**
+     * Removes a member from the cache.
+     */
+    void remove(TileLRUMember member);
+
+    /**
+     * Removes all the members from the cache.
+     */
+    void flush();
+}
@@ -0,0 +1,536 @@
+/*
+
+   Licensed to the Apache Software Foundation (ASF) under one or more
+   contributor license agreements.  See the NOTICE file distributed with
+   this work for additional information regarding copyright ownership.
+   The ASF licenses this file to You under the Apache License, Version 2.0
+   (the "License"); you may not use this file except in compliance with
+   the License.  You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+
+ */
+
+package org.apache.batik.ext.awt.image.rendered;
+
+/**
+ * Generates the noise of a <code>TurbulencePatternRed</code> a row of
+ * pixels at a time.
+ *
+ * Instead of computing all the octaves of a pixel before moving to
+ * the next one, the engine computes one octave for the whole row and
+ * accumulates it in per channel sums.  This way the values which only
+ * depend on the octave (the ratio, the stitching bounds) are computed
+ * once per octave, the lattice lookups of the y axis are done once per
+ * row and octave when the rows are aligned with the x axis, and the
+ * inner loop has no calls and no switch on the number of channels.
+ *
+ * In double precision the results are the same as the ones of the per
+ * pixel generator of <code>TurbulencePatternRed</code>.  In float
+ * precision the lattice coordinates are still computed in double
+ * precision but the interpolation of the gradients and the sums are
+ * done in float.  The sums then differ from the double ones by less
+ * than 0.001 code value (a float has 24 bits of mantissa, the noise
+ * values are less than 1 and the sums less than 510), so that the
+ * channels of the pixels differ by at most one code value.
+ *
+ * An engine only reads its tables, and the buffers of a row are given
+ * by the caller, so that several threads can fill rows at the same
+ * time.
+ *
+ * @version $Id$
+ */
+public final class TurbulenceEngine {
+
+    private static final int BM = 0xff;
+    private static final double PerlinN = 0x1000;
+
+    /**
+     * The maximum difference, in code values, between the channels
+     * generated in float and in double precision.
+     */
+    public static final int FLOAT_ERROR_BOUND = 1;
+
+    /**
+     * The lattice selector (shared with the pattern).
+     */
+    private final int[] latticeSelector;
+
+    /**
+     * The gradients, with the lattice selector applied (shared with
+     * the pattern).
+     */
+    private final double[] gradient;
+
+    /**
+     * The gradients, in float.
+     */
+    private final float[] gradientF;
+
+    private final double baseFrequencyX;
+    private final double baseFrequencyY;
+    private final int numOctaves;
+    private final boolean isFractalNoise;
+    private final int numChannels;
+
+    /**
+     * The stitching bounds of each octave, or null when stitching is
+     * off.
+     */
+    private final int[] stitchWidth, stitchHeight, wrapX, wrapY;
+
+    /**
+     * The buffers used to fill a row.
+     */
+    public static final class RowBuffers {
+        double[] x, y, sums;
+        float[] sumsF;
+
+        /**
+         * Makes sure the buffers can hold a row of the given width.
+         */
+        void ensureCapacity(int w) {
+            if (x == null || x.length < w) {
+                x = new double[w];
+                y = new double[w];
+                sums = null;
+                sumsF = null;
+            }
+            if (sums == null) {
+                sums = new double[x.length * 4];
+                sumsF = new float[x.length * 4];
+            }
+        }
+    }
+
+    /**
+     * Creates a new engine.
+     * @param latticeSelector the lattice selector
+     * @param gradient the gradients, with the lattice selector applied
+     * @param baseFrequencyX the x-axis base frequency
+     * @param baseFrequencyY the y-axis base frequency
+     * @param numOctaves the number of octaves
+     * @param isFractalNoise whether the noise is fractal noise or
+     *        turbulence
+     * @param numChannels the number of channels, from 1 to 4
+     * @param stitchInfo the stitching information of the first octave,
+     *        or null when stitching is off
+     */
+    TurbulenceEngine(int[] latticeSelector,
+                     double[] gradient,
+                     double baseFrequencyX,
+                     double baseFrequencyY,
+                     int numOctaves,
+                     boolean isFractalNoise,
+                     int numChannels,
+                     TurbulencePatternRed.StitchInfo stitchInfo) {
+        this.latticeSelector = latticeSelector;
+        this.gradient = gradient;
+        this.baseFrequencyX = baseFrequencyX;
+        this.baseFrequencyY = baseFrequencyY;
+        this.numOctaves = numOctaves;
+        this.isFractalNoise = isFractalNoise;
+        this.numChannels = numChannels;
+
+        gradientF = new float[gradient.length];
+        for (int i = 0; i < gradient.length; i++) {
+            gradientF[i] = (float)gradient[i];
+        }
+
+        if (stitchInfo == null) {
+            stitchWidth = stitchHeight = wrapX = wrapY = null;
+        } else {
+            int n = Math.max(numOctaves, 0);
+            stitchWidth = new int[n];
+            stitchHeight = new int[n];
+            wrapX = new int[n];
+            wrapY = new int[n];
+            TurbulencePatternRed.StitchInfo si =
+                new TurbulencePatternRed.StitchInfo(stitchInfo);
+            for (int k = 0; k < n; k++) {
+                stitchWidth[k] = si.width;
+                stitchHeight[k] = si.height;
+                wrapX[k] = si.wrapX;
+                wrapY[k] = si.wrapY;
+                si.doubleFrequency();
+            }
+        }
+    }
+
+    /**
+     * Returns the number of channels generated by this engine.
+     */
+    public int getNumChannels() {
+        return numChannels;
+    }
+
+    /**
+     * Fills a row of pixels.  The filter space coordinates of the
+     * pixels are the ones of the first pixel plus i times the step.
+     * @param pixels the destination pixels, in ARGB
+     * @param off the offset of the first pixel of the row
+     * @param w the number of pixels of the row
+     * @param x the x coordinate of the first pixel, in filter space
+     * @param y the y coordinate of the first pixel, in filter space
+     * @param dx the x step between two pixels, in filter space
+     * @param dy the y step between two pixels, in filter space
+     * @param floatPrecision whether to compute the noise in float
+     * @param buffers the buffers to use
+     */
+    public void fillRow(int[] pixels, int off, int w,
+                        double x, double y, double dx, double dy,
+                        boolean floatPrecision, RowBuffers buffers) {
+        buffers.ensureCapacity(w);
+        double[] xs = buffers.x;
+        double[] ys = buffers.y;
+        // Accumulate the coordinates like the per pixel generator does,
+        // so that the results are the same.
+        for (int i = 0; i < w; i++) {
+            xs[i] = x * baseFrequencyX;
+            ys[i] = y * baseFrequencyY;
+            x += dx;
+            y += dy;
+        }
+        boolean constantY = dy == 0;
+        if (floatPrecision) {
+            fillRowFloat(pixels, off, w, xs, ys, constantY, buffers.sumsF);
+        } else {
+            fillRowDouble(pixels, off, w, xs, ys, constantY, buffers.sums);
+        }
+    }
+
+    /**
+     * Fills a row of pixels in double precision.
+     */
+    private void fillRowDouble(int[] pixels, int off, int w,
+                               double[] xs, double[] ys, boolean constantY,
+                               double[] sums) {
+        final int nc = numChannels;
+        final int len = w * 4;
+        final boolean fractal = isFractalNoise;
+        final boolean stitch = wrapX != null;
+        final double[] g = gradient;
+        final int[] ls = latticeSelector;
+
+        double ratio;
+        double init;
+        if (fractal) {
+            ratio = 127.5;
+            init = 127.5;
+        } else {
+            ratio = stitch ? 1 : 255;
+            init = 0;
+        }
+        for (int i = 0; i < len; i++) {
+            sums[i] = init;
+        }
+
+        for (int k = 0; k < numOctaves; k++) {
+            final int sw = stitch ? stitchWidth[k] : 0;
+            final int sh = stitch ? stitchHeight[k] : 0;
+            final int wx = stitch ? wrapX[k] : 0;
+            final int wy = stitch ? wrapY[k] : 0;
+
+            // The y part of the lattice, when it is the same for the
+            // whole row.
+            int by0 = 0, by1 = 0;
+            double ry0 = 0, ry1 = 0, sy = 0;
+            if (constantY) {
+                double t = ys[0] + PerlinN;
+                by0 = (int)t;
+                by1 = by0 + 1;
+                if (stitch && by1 >= wy) {
+                    if (by0 >= wy) {
+                        by0 -= sh;
+                        by1 -= sh;
+                    } else {
+                        by1 -= sh;
+                    }
+                }
+                ry0 = t - (int)t;
+                ry1 = ry0 - 1.0;
+                sy = ry0 * ry0 * (3 - 2 * ry0);
+            }
+
+            for (int p = 0, s = 0; p < w; p++, s += 4) {
+                double t = xs[p] + PerlinN;
+                int bx0 = (int)t;
+                int bx1 = bx0 + 1;
+                if (stitch && bx1 >= wx) {
+                    if (bx0 >= wx) {
+                        bx0 -= sw;
+                        bx1 -= sw;
+                    } else {
+                        bx1 -= sw;
+                    }
+                }
+                final int i = ls[bx0 & BM];
+                final int j = ls[bx1 & BM];
+                final double rx0 = t - (int)t;
+                final double rx1 = rx0 - 1.0;
+                final double sx = rx0 * rx0 * (3 - 2 * rx0);
+
+                if (!constantY) {
+                    t = ys[p] + PerlinN;
+                    by0 = (int)t;
+                    by1 = by0 + 1;
+                    if (stitch && by1 >= wy) {
+                        if (by0 >= wy) {
+                            by0 -= sh;
+                            by1 -= sh;
+                        } else {
+                            by1 -= sh;
+                        }
+                    }
+                    ry0 = t - (int)t;
+                    ry1 = ry0 - 1.0;
+                    sy = ry0 * ry0 * (3 - 2 * ry0);
+                }
+
+                final int b00 = ((i + by0) & BM) << 3;
+                final int b10 = ((j + by0) & BM) << 3;
+                final int b01, b11;
+                if (stitch) {
+                    b01 = ((i + by1) & BM) << 3;
+                    b11 = ((j + by1) & BM) << 3;
+                } else {
+                    // The gradient array has an extra entry, so the
+                    // next row of the lattice is the next entry.
+                    b01 = b00 + 8;
+                    b11 = b10 + 8;
+                }
+
+                // The gradients always have four channels, computing
+                // all of them keeps the loop free of branches.
+                double a, b, u, v, n;
+                u = rx0 * g[b00] + ry0 * g[b00 + 1];
+                v = rx1 * g[b10] + ry0 * g[b10 + 1];
+                a = u + sx * (v - u);
+                u = rx0 * g[b01] + ry1 * g[b01 + 1];
+                v = rx1 * g[b11] + ry1 * g[b11 + 1];
+                b = u + sx * (v - u);
+                n = a + sy * (b - a);
+                sums[s] += (fractal || n >= 0) ? n * ratio : -(n * ratio);
+
+                u = rx0 * g[b00 + 2] + ry0 * g[b00 + 3];
+                v = rx1 * g[b10 + 2] + ry0 * g[b10 + 3];
+                a = u + sx * (v - u);
+                u = rx0 * g[b01 + 2] + ry1 * g[b01 + 3];
+                v = rx1 * g[b11 + 2] + ry1 * g[b11 + 3];
+                b = u + sx * (v - u);
+                n = a + sy * (b - a);
+                sums[s + 1] += (fractal || n >= 0) ? n * ratio : -(n * ratio);
+
+                u = rx0 * g[b00 + 4] + ry0 * g[b00 + 5];
+                v = rx1 * g[b10 + 4] + ry0 * g[b10 + 5];
+                a = u + sx * (v - u);
+                u = rx0 * g[b01 + 4] + ry1 * g[b01 + 5];
+                v = rx1 * g[b11 + 4] + ry1 * g[b11 + 5];
+                b = u + sx * (v - u);
+                n = a + sy * (b - a);
+                sums[s + 2] += (fractal || n >= 0) ? n * ratio : -(n * ratio);
+
+                u = rx0 * g[b00 + 6] + ry0 * g[b00 + 7];
+                v = rx1 * g[b10 + 6] + ry0 * g[b10 + 7];
+                a = u + sx * (v - u);
+                u = rx0 * g[b01 + 6] + ry1 * g[b01 + 7];
+                v = rx1 * g[b11 + 6] + ry1 * g[b11 + 7];
+                b = u + sx * (v - u);
+                n = a + sy * (b - a);
+                sums[s + 3] += (fractal || n >= 0) ? n * ratio : -(n * ratio);
+            }
+
+            ratio *= .5;
+            for (int p = 0; p < w; p++) {
+                xs[p] *= 2;
+                ys[p] *= 2;
+            }
+        }
+
+        final double scale = (!fractal && stitch) ? 255 : 1;
+        for (int p = 0, s = 0; p < w; p++, s += 4) {
+            int rgb = 0;
+            for (int c = 0; c < nc; c++) {
+                double f = sums[s + c];
+                rgb |= clamp((int)((scale == 1) ? f : f * scale))
+                    << SHIFTS[c];
+            }
+            pixels[off + p] = rgb;
+        }
+    }
+
+    /**
+     * Fills a row of pixels in float precision.  This is the same as
+     * fillRowDouble, with float interpolations and sums.
+     */
+    private void fillRowFloat(int[] pixels, int off, int w,
+                              double[] xs, double[] ys, boolean constantY,
+                              float[] sums) {
+        final int nc = numChannels;
+        final int len = w * 4;
+        final boolean fractal = isFractalNoise;
+        final boolean stitch = wrapX != null;
+        final float[] g = gradientF;
+        final int[] ls = latticeSelector;
+
+        float ratio;
+        float init;
+        if (fractal) {
+            ratio = 127.5f;
+            init = 127.5f;
+        } else {
+            ratio = 255;
+            init = 0;
+        }
+        for (int i = 0; i < len; i++) {
+            sums[i] = init;
+        }
+
+        for (int k = 0; k < numOctaves; k++) {
+            final int sw = stitch ? stitchWidth[k] : 0;
+            final int sh = stitch ? stitchHeight[k] : 0;
+            final int wx = stitch ? wrapX[k] : 0;
+            final int wy = stitch ? wrapY[k] : 0;
+
+            int by0 = 0, by1 = 0;
+            float ry0 = 0, ry1 = 0, sy = 0;
+            if (constantY) {
+                double t = ys[0] + PerlinN;
+                by0 = (int)t;
+                by1 = by0 + 1;
+                if (stitch && by1 >= wy) {
+                    if (by0 >= wy) {
+                        by0 -= sh;
+                        by1 -= sh;
+                    } else {
+                        by1 -= sh;
+                    }
+                }
+                ry0 = (float)(t - (int)t);
+                ry1 = ry0 - 1f;
+                sy = ry0 * ry0 * (3 - 2 * ry0);
+            }
+
+            for (int p = 0, s = 0; p < w; p++, s += 4) {
+                double t = xs[p] + PerlinN;
+                int bx0 = (int)t;
+                int bx1 = bx0 + 1;
+                if (stitch && bx1 >= wx) {
+                    if (bx0 >= wx) {
+                        bx0 -= sw;
+                        bx1 -= sw;
+                    } else {
+                        bx1 -= sw;
+                    }
+                }
+                final int i = ls[bx0 & BM];
+                final int j = ls[bx1 & BM];
+                final float rx0 = (float)(t - (int)t);
+                final float rx1 = rx0 - 1f;
+                final float sx = rx0 * rx0 * (3 - 2 * rx0);
+
+                if (!constantY) {
+                    t = ys[p] + PerlinN;
+                    by0 = (int)t;
+                    by1 = by0 + 1;
+                    if (stitch && by1 >= wy) {
+                        if (by0 >= wy) {
+                            by0 -= sh;
+                            by1 -= sh;
+                        } else {
+                            by1 -= sh;
+                        }
+                    }
+                    ry0 = (float)(t - (int)t);
+                    ry1 = ry0 - 1f;
+                    sy = ry0 * ry0 * (3 - 2 * ry0);
+                }
+
+                final int b00 = ((i + by0) & BM) << 3;
+                final int b10 = ((j + by0) & BM) << 3;
+                final int b01, b11;
+                if (stitch) {
+                    b01 = ((i + by1) & BM) << 3;
+                    b11 = ((j + by1) & BM) << 3;
+                } else {
+                    b01 = b00 + 8;
+                    b11 = b10 + 8;
+                }
+
+                // The gradients always have four channels, computing
+                // all of them keeps the loop free of branches.
+                float a, b, u, v, n;
+                u = rx0 * g[b00] + ry0 * g[b00 + 1];
+                v = rx1 * g[b10] + ry0 * g[b10 + 1];
+                a = u + sx * (v - u);
+                u = rx0 * g[b01] + ry1 * g[b01 + 1];
+                v = rx1 * g[b11] + ry1 * g[b11 + 1];
+                b = u + sx * (v - u);
+                n = a + sy * (b - a);
+                sums[s] += (fractal || n >= 0) ? n * ratio : -(n * ratio);
+
+                u = rx0 * g[b00 + 2] + ry0 * g[b00 + 3];
+                v = rx1 * g[b10 + 2] + ry0 * g[b10 + 3];
+                a = u + sx * (v - u);
+                u = rx0 * g[b01 + 2] + ry1 * g[b01 + 3];
+                v = rx1 * g[b11 + 2] + ry1 * g[b11 + 3];
+                b = u + sx * (v - u);
+                n = a + sy * (b - a);
+                sums[s + 1] += (fractal || n >= 0) ? n * ratio : -(n * ratio);
+
+                u = rx0 * g[b00 + 4] + ry0 * g[b00 + 5];
+                v = rx1 * g[b10 + 4] + ry0 * g[b10 + 5];
+                a = u + sx * (v - u);
+                u = rx0 * g[b01 + 4] + ry1 * g[b01 + 5];
+                v = rx1 * g[b11 + 4] + ry1 * g[b11 + 5];
+                b = u + sx * (v - u);
+                n = a + sy * (b - a);
+                sums[s + 2] += (fractal || n >= 0) ? n * ratio : -(n * ratio);
+
+                u = rx0 * g[b00 + 6] + ry0 * g[b00 + 7];
+                v = rx1 * g[b10 + 6] + ry0 * g[b10 + 7];
+                a = u + sx * (v - u);
+                u = rx0 * g[b01 + 6] + ry1 * g[b01 + 7];
+                v = rx1 * g[b11 + 6] + ry1 * g[b11 + 7];
+                b = u + sx * (v - u);
+                n = a + sy * (b - a);
+                sums[s + 3] += (fractal || n >= 0) ? n * ratio : -(n * ratio);
+            }
+
+            ratio *= .5f;
+            for (int p = 0; p < w; p++) {
+                xs[p] *= 2;
+                ys[p] *= 2;
+            }
+        }
+
+        for (int p = 0, s = 0; p < w; p++, s += 4) {
+            int rgb = 0;
+            for (int c = 0; c < nc; c++) {
+                rgb |= clamp((int)sums[s + c]) << SHIFTS[c];
+            }
+            pixels[off + p] = rgb;
+        }
+    }
+
+    /**
+     * The shifts of the channels in an ARGB pixel.
+     */
+    private static final int[] SHIFTS = { 16, 8, 0, 24 };
+
+    /**
+     * Clamps a channel value to [0, 255].
+     */
+    private static int clamp(int i) {
+        if ((i & 0xFFFFFF00) == 0) {
+            return i;
+        }
+        return ((i & 0x80000000) != 0) ? 0 : 255;
+    }
+}
@@ -20,6 +20,7 @@
 package org.apache.batik.ext.awt.image.rendered;
 
 import java.awt.Rectangle;
+import java.awt.RenderingHints;
 import java.awt.color.ColorSpace;
 import java.awt.geom.AffineTransform;
 import java.awt.geom.Rectangle2D;
@@ -29,6 +30,12 @@ import java.awt.image.DataBufferInt;
 import java.awt.image.DirectColorModel;
 import java.awt.image.SinglePixelPackedSampleModel;
 import java.awt.image.WritableRaster;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.apache.batik.ext.awt.RenderingHintsKeyExt;
+import org.apache.batik.util.TaskPool;
+
 /**
  * This class creates a RenderedImage in conformance to the one
  * defined for the feTurbulence filter of the SVG specification.  What
@@ -213,6 +220,27 @@ public final class TurbulencePatternRed extends AbstractRed {
     private final int[] latticeSelector = new int[BSize + 1];
     private final double[] gradient = new double[(BSize+1)*8];
 
+    /**
+     * The minimum number of rows of the bands generated concurrently.
+     */
+    private static final int MIN_BAND_HEIGHT = 16;
+
+    /**
+     * The row engine, or null when the pattern is generated one pixel
+     * at a time.
+     */
+    private TurbulenceEngine engine;
+
+    /**
+     * Whether the row engine computes the noise in float.
+     */
+    private boolean floatPrecision;
+
+    /**
+     * The number of threads the row engine may use.
+     */
+    private int threads = 1;
+
     public double getBaseFrequencyX(){
         return baseFrequencyX;
     }
@@ -1043,6 +1071,98 @@ public final class TurbulencePatternRed extends AbstractRed {
      * @param dest Raster to fill with the pattern.
      */
     public WritableRaster copyData(WritableRaster dest) {
+        if (engine == null)
+            return copyDataPerPixel(dest);
+
+        if(dest==null)
+            throw new IllegalArgumentException
+                ("Cannot generate a noise pattern into a null raster");
+
+        int h = dest.getHeight();
+        int bands = Math.min(threads,
+                             (h + MIN_BAND_HEIGHT - 1) / MIN_BAND_HEIGHT);
+        if (bands <= 1) {
+            fillRows(dest);
+            return dest;
+        }
+
+        // Split the raster into bands generated concurrently.
+        int minX = dest.getMinX();
+        int minY = dest.getMinY();
+        int w = dest.getWidth();
+        List tasks = new ArrayList(bands);
+        for (int b = 0; b < bands; b++) {
+            int y0 = h * b / bands;
+            int y1 = h * (b + 1) / bands;
+            final WritableRaster band = dest.createWritableChild
+                (minX, minY + y0, w, y1 - y0, minX, minY + y0, null);
+            tasks.add(new Runnable() {
+                    public void run() {
+                        fillRows(band);
+                    }
+                });
+        }
+        // The bands the pool did not generate, because this thread was
+        // interrupted or halted, are generated here: the raster may be
+        // cached, so it is never returned partly filled.
+        for (int b = TaskPool.run(tasks, threads); b < bands; b++) {
+            ((Runnable) tasks.get(b)).run();
+        }
+        return dest;
+    }
+
+    /**
+     * Generates the pattern into the given raster with the row engine.
+     */
+    protected void fillRows(WritableRaster dest) {
+        int w = dest.getWidth();
+        int h = dest.getHeight();
+
+        DataBufferInt dstDB = (DataBufferInt)dest.getDataBuffer();
+        SinglePixelPackedSampleModel sppsm;
+        int minX = dest.getMinX();
+        int minY = dest.getMinY();
+        sppsm = (SinglePixelPackedSampleModel)dest.getSampleModel();
+        int dp = dstDB.getOffset() +
+            sppsm.getOffset(minX - dest.getSampleModelTranslateX(),
+                            minY - dest.getSampleModelTranslateY());
+        final int[] destPixels = dstDB.getBankData()[0];
+        int stride = sppsm.getScanlineStride();
+
+        final double tx0, tx1, ty0, ty1;
+        tx0 = tx[0];
+        tx1 = tx[1];
+        ty0 = ty[0]-(w*tx0);
+        ty1 = ty[1]-(w*tx1);
+
+        double[] p = {minX, minY};
+        txf.transform(p, 0, p, 0, 1);
+        double point_0 = p[0];
+        double point_1 = p[1];
+
+        TurbulenceEngine.RowBuffers buffers =
+            new TurbulenceEngine.RowBuffers();
+        for (int i=0; i<h; i++) {
+            engine.fillRow(destPixels, dp, w, point_0, point_1, tx0, tx1,
+                           floatPrecision, buffers);
+            // Step to the next row like copyDataPerPixel does, so that
+            // the pixels are the same.
+            for (int k=0; k<w; k++) {
+                point_0 += tx0;
+                point_1 += tx1;
+            }
+            point_0 += ty0;
+            point_1 += ty1;
+            dp += stride;
+        }
+    }
+
+    /**
+     * Generates a Perlin noise pattern into dest Raster, one pixel at
+     * a time.  This is the default engine.
+     * @param dest Raster to fill with the pattern.
+     */
+    public WritableRaster copyDataPerPixel(WritableRaster dest) {
         //
         // First, check input arguments
         //
@@ -1227,6 +1347,38 @@ public final class TurbulencePatternRed extends AbstractRed {
                                 Rectangle       devRect,
                                 ColorSpace      cs,
                                 boolean         alpha) {
+        this(baseFrequencyX, baseFrequencyY, numOctaves, seed,
+             isFractalNoise, tile, txf, devRect, cs, alpha, null);
+    }
+
+    /**
+     * @param baseFrequencyX x-axis base frequency for the noise
+     * function along the x-axis
+     * @param baseFrequencyY y-axis base frequency for the noise
+     *        function along the x-axis
+     * @param numOctaves number of octaves in the noise
+     *        function. Positive integral value.
+     * @param seed starting number for the pseudo random number generator
+     * @param isFractalNoise defines whether the filter performs a
+     *        fractal noise or a turbulence function.
+     * @param tile defines the tile size. May be null if stitchTiles
+     *        is false. Otherwise, should not be null.
+     * @param txf The affine transform from device to user space.
+     * @param cs The Colorspace to output.
+     * @param alpha True if the data should have an alpha channel.
+     * @param rh The rendering hints selecting the engine, may be null.
+     */
+    public TurbulencePatternRed(double baseFrequencyX,
+                                double baseFrequencyY,
+                                int     numOctaves,
+                                int     seed,
+                                boolean isFractalNoise,
+                                Rectangle2D tile,
+                                AffineTransform txf,
+                                Rectangle       devRect,
+                                ColorSpace      cs,
+                                boolean         alpha,
+                                RenderingHints  rh) {
         this.baseFrequencyX = baseFrequencyX;
         this.baseFrequencyY = baseFrequencyY;
         this.seed = seed;
@@ -1328,6 +1480,21 @@ public final class TurbulencePatternRed extends AbstractRed {
 
         initLattice(seed);
 
+        Object e = (rh == null) ? null
+            : rh.get(RenderingHintsKeyExt.KEY_TURBULENCE_ENGINE);
+        if ((e == RenderingHintsKeyExt.VALUE_TURBULENCE_ENGINE_ROWS) ||
+            (e == RenderingHintsKeyExt.VALUE_TURBULENCE_ENGINE_ROWS_FLOAT)) {
+            engine = new TurbulenceEngine
+                (latticeSelector, gradient, this.baseFrequencyX,
+                 this.baseFrequencyY, this.numOctaves, isFractalNoise,
+                 channels.length, stitchInfo);
+            floatPrecision =
+                (e == RenderingHintsKeyExt.VALUE_TURBULENCE_ENGINE_ROWS_FLOAT);
+            Integer t = (Integer)rh.get
+                (RenderingHintsKeyExt.KEY_TURBULENCE_THREADS);
+            threads = (t == null) ? 1 : t.intValue();
+        }
+
         ColorModel cm;
         if (alpha)
             cm = new DirectColorModel
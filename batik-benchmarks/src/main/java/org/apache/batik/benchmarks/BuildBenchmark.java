@@ -0,0 +1,61 @@
+/*
+
+   Licensed to the Apache Software Foundation (ASF) under one or more
+   contributor license agreements.  See the NOTICE file distributed with
+   this work for additional information regarding copyright ownership.
+   The ASF licenses this file to You under the Apache License, Version 2.0
+   (the "License"); you may not use this file except in compliance with
+   the License.  You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+
+ */
+package org.apache.batik.benchmarks;
+
+import java.io.IOException;
+
+import org.apache.batik.anim.dom.SVGOMDocument;
+import org.apache.batik.bridge.BridgeContext;
+import org.apache.batik.gvt.GraphicsNode;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.TearDown;
+
+/**
+ * Measures the building of the GVT tree of a sample with
+ * <code>GVTBuilder</code>, style cascade included.  Each build uses a
+ * freshly parsed document.
+ *
+ * @version $Id$
+ */
+public class BuildBenchmark extends SampleBenchmark {
+
+    protected SVGOMDocument document;
+    protected BridgeContext context;
+
+    @Setup(Level.Invocation)
+    public void parseSample() throws IOException {
+        document = parse();
+        context = createBridgeContext();
+    }
+
+    @TearDown(Level.Invocation)
+    public void dispose() {
+        context.dispose();
+        context = null;
+        document = null;
+    }
+
+    @Benchmark
+    public GraphicsNode buildSample() {
+        return build(context, document);
+    }
+}
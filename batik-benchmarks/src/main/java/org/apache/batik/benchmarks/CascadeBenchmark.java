@@ -0,0 +1,93 @@
+/*
+
+   Licensed to the Apache Software Foundation (ASF) under one or more
+   contributor license agreements.  See the NOTICE file distributed with
+   this work for additional information regarding copyright ownership.
+   The ASF licenses this file to You under the Apache License, Version 2.0
+   (the "License"); you may not use this file except in compliance with
+   the License.  You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+
+ */
+package org.apache.batik.benchmarks;
+
+import java.io.IOException;
+
+import org.apache.batik.anim.dom.SVGOMDocument;
+import org.apache.batik.bridge.BridgeContext;
+import org.apache.batik.bridge.UserAgentAdapter;
+import org.apache.batik.css.engine.CSSEngine;
+import org.apache.batik.css.engine.CSSStylableElement;
+import org.w3c.dom.Node;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Measures the computation by the <code>CSSEngine</code> of all the
+ * properties of all the elements of a sample, without building the
+ * GVT tree.  Each run uses a freshly parsed document.
+ *
+ * @version $Id$
+ */
+public class CascadeBenchmark extends SampleBenchmark {
+
+    protected SVGOMDocument document;
+    protected BridgeContext context;
+
+    @Setup(Level.Invocation)
+    public void parseSample() throws IOException {
+        document = parse();
+        context = new CascadeBridgeContext(document);
+    }
+
+    @TearDown(Level.Invocation)
+    public void dispose() {
+        context.dispose();
+        context = null;
+        document = null;
+    }
+
+    @Benchmark
+    public void cascadeSample(Blackhole bh) {
+        CSSEngine eng = document.getCSSEngine();
+        cascade(eng, document.getDocumentElement(), bh);
+    }
+
+    protected void cascade(CSSEngine eng, Node n, Blackhole bh) {
+        if (n instanceof CSSStylableElement) {
+            CSSStylableElement elt = (CSSStylableElement)n;
+            int len = eng.getNumberOfProperties();
+            for (int i = 0; i < len; i++) {
+                bh.consume(eng.getComputedStyle(elt, null, i));
+            }
+        }
+        for (Node c = n.getFirstChild(); c != null; c = c.getNextSibling()) {
+            if (c.getNodeType() == Node.ELEMENT_NODE) {
+                cascade(eng, c, bh);
+            }
+        }
+    }
+
+    /**
+     * A bridge context that sets up the CSS engine of a document
+     * without building it.
+     */
+    protected static class CascadeBridgeContext extends BridgeContext {
+        public CascadeBridgeContext(SVGOMDocument doc) {
+            super(new UserAgentAdapter());
+            setDocument(doc);
+            initializeDocument(doc);
+        }
+    }
+}
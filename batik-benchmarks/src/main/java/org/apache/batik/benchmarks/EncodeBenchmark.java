@@ -0,0 +1,73 @@
+/*
+
+   Licensed to the Apache Software Foundation (ASF) under one or more
+   contributor license agreements.  See the NOTICE file distributed with
+   this work for additional information regarding copyright ownership.
+   The ASF licenses this file to You under the Apache License, Version 2.0
+   (the "License"); you may not use this file except in compliance with
+   the License.  You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+
+ */
+package org.apache.batik.benchmarks;
+
+import java.awt.Rectangle;
+import java.awt.geom.AffineTransform;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+
+import org.apache.batik.bridge.BridgeContext;
+import org.apache.batik.ext.awt.image.codec.png.PNGEncodeParam;
+import org.apache.batik.ext.awt.image.codec.png.PNGImageEncoder;
+import org.apache.batik.gvt.renderer.StaticRenderer;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Setup;
+
+/**
+ * Measures the PNG encoding of the rendering of a sample with
+ * <code>PNGImageEncoder</code>.
+ *
+ * @version $Id$
+ */
+public class EncodeBenchmark extends SampleBenchmark {
+
+    protected BufferedImage image;
+    protected ByteArrayOutputStream output;
+
+    @Setup(Level.Trial)
+    public void renderSample() throws IOException {
+        BridgeContext ctx = createBridgeContext();
+        StaticRenderer renderer = new StaticRenderer();
+        try {
+            renderer.setTree(build(ctx, parse()));
+            int[] size = getImageSize(ctx);
+            renderer.updateOffScreen(size[0], size[1]);
+            renderer.setTransform(new AffineTransform());
+            renderer.repaint(new Rectangle(0, 0, size[0], size[1]));
+            image = renderer.getOffScreen();
+        } finally {
+            renderer.dispose();
+            ctx.dispose();
+        }
+        output = new ByteArrayOutputStream
+            (image.getWidth() * image.getHeight());
+    }
+
+    @Benchmark
+    public int encodeSample() throws IOException {
+        output.reset();
+        PNGEncodeParam params = PNGEncodeParam.getDefaultEncodeParam(image);
+        new PNGImageEncoder(output, params).encode(image);
+        return output.size();
+    }
+}
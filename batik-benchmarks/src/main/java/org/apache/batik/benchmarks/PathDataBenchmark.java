@@ -0,0 +1,127 @@
+/*
+
+   Licensed to the Apache Software Foundation (ASF) under one or more
+   contributor license agreements.  See the NOTICE file distributed with
+   this work for additional information regarding copyright ownership.
+   The ASF licenses this file to You under the Apache License, Version 2.0
+   (the "License"); you may not use this file except in compliance with
+   the License.  You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+
+ */
+package org.apache.batik.benchmarks;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.apache.batik.parser.DefaultPathHandler;
+import org.apache.batik.parser.ParseException;
+import org.apache.batik.parser.PathParser;
+import org.apache.batik.util.SVGConstants;
+import org.w3c.dom.Element;
+import org.w3c.dom.NodeList;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Setup;
+
+/**
+ * Measures the parsing of the path data of a sample with
+ * <code>PathParser</code>, from the attribute strings and through a
+ * reader.
+ *
+ * @version $Id$
+ */
+public class PathDataBenchmark extends SampleBenchmark {
+
+    /**
+     * The values of the d attributes of the path elements of the sample.
+     */
+    protected String[] pathData;
+
+    protected PathParser parser;
+    protected SumHandler handler;
+
+    @Setup(Level.Trial)
+    public void readPathData() throws IOException {
+        NodeList nl = parse().getElementsByTagNameNS
+            (SVGConstants.SVG_NAMESPACE_URI, SVGConstants.SVG_PATH_TAG);
+        List l = new ArrayList();
+        for (int i = 0; i < nl.getLength(); i++) {
+            l.add(((Element)nl.item(i)).getAttributeNS
+                  (null, SVGConstants.SVG_D_ATTRIBUTE));
+        }
+        pathData = (String[])l.toArray(new String[l.size()]);
+        parser = new PathParser();
+        handler = new SumHandler();
+        parser.setPathHandler(handler);
+    }
+
+    @Benchmark
+    public double parseStrings() {
+        handler.sum = 0;
+        for (int i = 0; i < pathData.length; i++) {
+            parser.parse(pathData[i]);
+        }
+        return handler.sum;
+    }
+
+    @Benchmark
+    public double parseReaders() {
+        handler.sum = 0;
+        for (int i = 0; i < pathData.length; i++) {
+            parser.parse(new StringReader(pathData[i]));
+        }
+        return handler.sum;
+    }
+
+    /**
+     * A path handler summing the coordinates of the straight segments
+     * and curves, so that the parsing is not optimized away.
+     */
+    protected static class SumHandler extends DefaultPathHandler {
+        public double sum;
+
+        public void movetoRel(float x, float y) throws ParseException {
+            sum += x + y;
+        }
+        public void movetoAbs(float x, float y) throws ParseException {
+            sum += x + y;
+        }
+        public void linetoRel(float x, float y) throws ParseException {
+            sum += x + y;
+        }
+        public void linetoAbs(float x, float y) throws ParseException {
+            sum += x + y;
+        }
+        public void linetoHorizontalRel(float x) throws ParseException {
+            sum += x;
+        }
+        public void linetoHorizontalAbs(float x) throws ParseException {
+            sum += x;
+        }
+        public void linetoVerticalRel(float y) throws ParseException {
+            sum += y;
+        }
+        public void linetoVerticalAbs(float y) throws ParseException {
+            sum += y;
+        }
+        public void curvetoCubicRel(float x1, float y1, float x2, float y2,
+                                    float x, float y) throws ParseException {
+            sum += x1 + y1 + x2 + y2 + x + y;
+        }
+        public void curvetoCubicAbs(float x1, float y1, float x2, float y2,
+                                    float x, float y) throws ParseException {
+            sum += x1 + y1 + x2 + y2 + x + y;
+        }
+    }
+}
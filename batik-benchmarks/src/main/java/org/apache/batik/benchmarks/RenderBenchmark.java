@@ -0,0 +1,81 @@
+/*
+
+   Licensed to the Apache Software Foundation (ASF) under one or more
+   contributor license agreements.  See the NOTICE file distributed with
+   this work for additional information regarding copyright ownership.
+   The ASF licenses this file to You under the Apache License, Version 2.0
+   (the "License"); you may not use this file except in compliance with
+   the License.  You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+
+ */
+package org.apache.batik.benchmarks;
+
+import java.awt.Rectangle;
+import java.awt.geom.AffineTransform;
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+
+import org.apache.batik.bridge.BridgeContext;
+import org.apache.batik.gvt.GraphicsNode;
+import org.apache.batik.gvt.renderer.StaticRenderer;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.TearDown;
+
+/**
+ * Measures the rendering of the GVT tree of a sample with a new
+ * <code>StaticRenderer</code>, as done by the image transcoders.
+ *
+ * @version $Id$
+ */
+public class RenderBenchmark extends SampleBenchmark {
+
+    /**
+     * The number of threads the renderer uses.
+     */
+    @Param({ "1" })
+    public int renderThreads;
+
+    protected BridgeContext context;
+    protected GraphicsNode root;
+    protected int width;
+    protected int height;
+
+    @Setup(Level.Trial)
+    public void buildSample() throws IOException {
+        context = createBridgeContext();
+        root = build(context, parse());
+        int[] size = getImageSize(context);
+        width = size[0];
+        height = size[1];
+    }
+
+    @TearDown(Level.Trial)
+    public void dispose() {
+        context.dispose();
+    }
+
+    @Benchmark
+    public BufferedImage renderSample() {
+        StaticRenderer renderer = new StaticRenderer();
+        renderer.setRenderThreads(renderThreads);
+        renderer.updateOffScreen(width, height);
+        renderer.setTransform(new AffineTransform());
+        renderer.setTree(root);
+        renderer.repaint(new Rectangle(0, 0, width, height));
+        BufferedImage img = renderer.getOffScreen();
+        renderer.dispose();
+        return img;
+    }
+}
@@ -0,0 +1,132 @@
+/*
+
+   Licensed to the Apache Software Foundation (ASF) under one or more
+   contributor license agreements.  See the NOTICE file distributed with
+   this work for additional information regarding copyright ownership.
+   The ASF licenses this file to You under the Apache License, Version 2.0
+   (the "License"); you may not use this file except in compliance with
+   the License.  You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+
+ */
+package org.apache.batik.benchmarks;
+
+import java.awt.geom.Dimension2D;
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.batik.anim.dom.SAXSVGDocumentFactory;
+import org.apache.batik.anim.dom.SVGOMDocument;
+import org.apache.batik.bridge.BridgeContext;
+import org.apache.batik.bridge.GVTBuilder;
+import org.apache.batik.bridge.UserAgentAdapter;
+import org.apache.batik.gvt.GraphicsNode;
+import org.apache.batik.util.XMLResourceDescriptor;
+
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Base class of the benchmarks run on the files of the samples
+ * directory.  The directory is given by the <code>batik.samples</code>
+ * system property and defaults to <code>samples</code>, so the
+ * benchmarks are meant to be run from the root of the source tree:
+ * <pre>
+ *   mvn -P benchmarks package -DskipTests
+ *   java -jar batik-benchmarks/target/benchmarks.jar
+ * </pre>
+ * The usual JMH options apply, for instance
+ * <code>-p sample=mapSpain.svg</code> to only use one sample.
+ *
+ * @version $Id$
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public abstract class SampleBenchmark {
+
+    /**
+     * The name of the sample file.
+     */
+    @Param({ "anne.svg", "barChart.svg", "batikFX.svg", "mapSpain.svg",
+             "textRotate.svg" })
+    public String sample;
+
+    /**
+     * The URI of the sample file.
+     */
+    protected String uri;
+
+    /**
+     * The content of the sample file.
+     */
+    protected byte[] content;
+
+    /**
+     * Reads the sample file, so the benchmarks do not measure I/O.
+     */
+    @Setup(Level.Trial)
+    public void readSample() throws IOException {
+        String dir = System.getProperty("batik.samples", "samples");
+        File f = new File(dir, sample);
+        uri = f.toURI().toString();
+        content = Files.readAllBytes(f.toPath());
+    }
+
+    /**
+     * Parses the sample.
+     */
+    protected SVGOMDocument parse() throws IOException {
+        String parser = XMLResourceDescriptor.getXMLParserClassName();
+        SAXSVGDocumentFactory f = new SAXSVGDocumentFactory(parser);
+        return (SVGOMDocument)f.createDocument
+            (uri, new ByteArrayInputStream(content));
+    }
+
+    /**
+     * Returns a bridge context for a static rendering of a document.
+     */
+    protected BridgeContext createBridgeContext() {
+        return new BridgeContext(new UserAgentAdapter());
+    }
+
+    /**
+     * Builds the GVT tree of the given document.
+     */
+    protected GraphicsNode build(BridgeContext ctx, SVGOMDocument doc) {
+        return new GVTBuilder().build(ctx, doc);
+    }
+
+    /**
+     * Returns the size of the image of the document of the given
+     * context, once built.
+     */
+    protected static int[] getImageSize(BridgeContext ctx) {
+        Dimension2D d = ctx.getDocumentSize();
+        int w = (int)Math.ceil(d.getWidth());
+        int h = (int)Math.ceil(d.getHeight());
+        return new int[] { (w > 0) ? w : 400, (h > 0) ? h : 400 };
+    }
+}
@@ -0,0 +1,303 @@
+/*
+
+   Licensed to the Apache Software Foundation (ASF) under one or more
+   contributor license agreements.  See the NOTICE file distributed with
+   this work for additional information regarding copyright ownership.
+   The ASF licenses this file to You under the Apache License, Version 2.0
+   (the "License"); you may not use this file except in compliance with
+   the License.  You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+
+ */
+package org.apache.batik.bridge;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+
+import org.w3c.dom.Document;
+import org.w3c.dom.Node;
+
+/**
+ * A <code>DocumentCache</code> bounded by a number of documents and
+ * by a number of DOM nodes, whose entries can also expire after a
+ * given time.  The least recently used documents are evicted first.
+ * The cache keeps statistics about its use.
+ *
+ * @version $Id$
+ */
+public class BoundedDocumentCache implements DocumentCache {
+
+    /**
+     * The default maximum number of documents.
+     */
+    public static final int DEFAULT_MAX_DOCUMENTS = 64;
+
+    /**
+     * The default maximum number of nodes.
+     */
+    public static final int DEFAULT_MAX_NODES = 1000000;
+
+    /**
+     * The entries, in access order.
+     */
+    protected LinkedHashMap entries = new LinkedHashMap(16, 0.75f, true);
+
+    /**
+     * The maximum number of documents.
+     */
+    protected int maxDocuments;
+
+    /**
+     * The maximum number of nodes of all the documents.
+     */
+    protected int maxNodes;
+
+    /**
+     * The time after which an entry expires, in milliseconds, or 0.
+     */
+    protected long timeToLive;
+
+    /**
+     * The number of nodes of the cached documents.
+     */
+    protected int nodes;
+
+    protected long hitCount;
+    protected long missCount;
+    protected long loadCount;
+    protected long loadTime;
+    protected long evictionCount;
+
+    /**
+     * Creates a cache with the default limits and no expiration.
+     */
+    public BoundedDocumentCache() {
+        this(DEFAULT_MAX_DOCUMENTS, DEFAULT_MAX_NODES, 0);
+    }
+
+    /**
+     * Creates a new cache.
+     * @param maxDocuments the maximum number of documents
+     * @param maxNodes the maximum number of nodes of all the documents;
+     *        a larger document is not cached
+     * @param timeToLive the time after which a document is dropped, in
+     *        milliseconds, or 0 to keep documents until they are evicted
+     */
+    public BoundedDocumentCache(int maxDocuments, int maxNodes,
+                                long timeToLive) {
+        if (maxDocuments < 0 || maxNodes < 0 || timeToLive < 0) {
+            throw new IllegalArgumentException();
+        }
+        this.maxDocuments = maxDocuments;
+        this.maxNodes = maxNodes;
+        this.timeToLive = timeToLive;
+    }
+
+    /**
+     * Implements {@link DocumentCache#getDocument(String)}.
+     */
+    public Document getDocument(String uri) {
+        Entry e;
+        synchronized (this) {
+            e = (Entry)entries.get(uri);
+            if (e != null && isExpired(e)) {
+                remove(uri);
+                evictionCount++;
+                e = null;
+            }
+            if (e == null) {
+                missCount++;
+                return null;
+            }
+            hitCount++;
+        }
+        return e.copyDocument();
+    }
+
+    /**
+     * Implements {@link DocumentCache#putDocument(String,Document,long)}.
+     */
+    public void putDocument(String uri, Document doc, long loadTime) {
+        Document copy = (Document)doc.cloneNode(true);
+        int size = countNodes(copy);
+        synchronized (this) {
+            loadCount++;
+            this.loadTime += loadTime;
+            remove(uri);
+            if (size > maxNodes || maxDocuments == 0) {
+                return;
+            }
+            entries.put(uri, new Entry(copy, size));
+            nodes += size;
+            evict();
+        }
+    }
+
+    /**
+     * Implements {@link DocumentCache#removeDocument(String)}.
+     */
+    public synchronized void removeDocument(String uri) {
+        remove(uri);
+    }
+
+    /**
+     * Implements {@link DocumentCache#clear()}.
+     */
+    public synchronized void clear() {
+        entries.clear();
+        nodes = 0;
+    }
+
+    /**
+     * Returns the number of documents in the cache.
+     */
+    public synchronized int getDocumentCount() {
+        return entries.size();
+    }
+
+    /**
+     * Returns the number of nodes of the documents in the cache.
+     */
+    public synchronized int getNodeCount() {
+        return nodes;
+    }
+
+    /**
+     * Returns the number of lookups that found a document.
+     */
+    public synchronized long getHitCount() {
+        return hitCount;
+    }
+
+    /**
+     * Returns the number of lookups that did not find a document.
+     * A loader may look a document up more than once before loading it.
+     */
+    public synchronized long getMissCount() {
+        return missCount;
+    }
+
+    /**
+     * Returns the number of documents put in the cache.
+     */
+    public synchronized long getLoadCount() {
+        return loadCount;
+    }
+
+    /**
+     * Returns the time spent loading the documents put in the cache,
+     * in nanoseconds.
+     */
+    public synchronized long getTotalLoadTime() {
+        return loadTime;
+    }
+
+    /**
+     * Returns the number of documents evicted to honour the limits
+     * or because they expired.
+     */
+    public synchronized long getEvictionCount() {
+        return evictionCount;
+    }
+
+    /**
+     * Resets the statistics of this cache.
+     */
+    public synchronized void resetStatistics() {
+        hitCount = 0;
+        missCount = 0;
+        loadCount = 0;
+        loadTime = 0;
+        evictionCount = 0;
+    }
+
+    /**
+     * Removes the entry of the given uri.  Must be called while holding
+     * the lock of this cache.
+     */
+    protected void remove(String uri) {
+        Entry e = (Entry)entries.remove(uri);
+        if (e != null) {
+            nodes -= e.size;
+        }
+    }
+
+    /**
+     * Drops the expired entries and the least recently used ones until
+     * the cache honours its limits.  Must be called while holding the
+     * lock of this cache.
+     */
+    protected void evict() {
+        Iterator it = entries.values().iterator();
+        while (it.hasNext()) {
+            Entry e = (Entry)it.next();
+            if (entries.size() <= maxDocuments && nodes <= maxNodes
+                && !isExpired(e)) {
+                break;
+            }
+            it.remove();
+            nodes -= e.size;
+            evictionCount++;
+        }
+    }
+
+    /**
+     * Whether the given entry has expired.
+     */
+    protected boolean isExpired(Entry e) {
+        return timeToLive != 0
+            && System.currentTimeMillis() - e.time > timeToLive;
+    }
+
+    /**
+     * Returns the number of nodes of the given document.
+     */
+    protected static int countNodes(Node n) {
+        int count = 1;
+        for (Node c = n.getFirstChild(); c != null; c = c.getNextSibling()) {
+            count += countNodes(c);
+        }
+        return count;
+    }
+
+    /**
+     * A cached document.
+     */
+    protected static class Entry {
+
+        /**
+         * The pristine document.  It is only read, with the lock of the
+         * entry held.
+         */
+        protected Document document;
+
+        /**
+         * The number of nodes of the document.
+         */
+        protected int size;
+
+        /**
+         * The time the document was put in the cache.
+         */
+        protected long time = System.currentTimeMillis();
+
+        public Entry(Document document, int size) {
+            this.document = document;
+            this.size = size;
+        }
+
+        /**
+         * Returns a new copy of the document.
+         */
+        public synchronized Document copyDocument() {
+            return (Document)document.cloneNode(true);
+        }
+    }
+}
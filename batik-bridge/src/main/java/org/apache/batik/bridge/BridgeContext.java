@@ -49,6 +49,7 @@ import org.apache.batik.css.engine.CSSEngineEvent;
 import org.apache.batik.css.engine.CSSEngineListener;
 import org.apache.batik.css.engine.CSSEngineUserAgent;
 import org.apache.batik.css.engine.SVGCSSEngine;
+import org.apache.batik.css.engine.StyleSheetCache;
 import org.apache.batik.css.engine.SystemColorSupport;
 import org.apache.batik.css.engine.value.Value;
 import org.apache.batik.dom.AbstractNode;
@@ -207,6 +208,12 @@ public class BridgeContext implements ErrorConstants, CSSContext {
      */
     protected TextPainter textPainter;
 
+    /**
+     * The cache of the style sheets the CSS engines parse from a URL,
+     * or null.
+     */
+    protected StyleSheetCache styleSheetCache;
+
     /**
      * Indicates that no DOM listeners should be registered.  In this
      * case the generated GVT tree should be totally independent of
@@ -350,6 +357,7 @@ public class BridgeContext implements ErrorConstants, CSSContext {
         subCtx.dynamicStatus = dynamicStatus;
         subCtx.setGVTBuilder(getGVTBuilder());
         subCtx.setTextPainter(getTextPainter());
+        subCtx.setStyleSheetCache(getStyleSheetCache());
         subCtx.setDocument(newDoc);
         subCtx.initializeDocument(newDoc);
         if (isInteractive())
@@ -378,7 +386,7 @@ public class BridgeContext implements ErrorConstants, CSSContext {
         if (eng == null) {
             SVGDOMImplementation impl;
             impl = (SVGDOMImplementation)doc.getImplementation();
-            eng = impl.createCSSEngine(doc, this);
+            eng = impl.createCSSEngine(doc, this, styleSheetCache);
             eng.setCSSEngineUserAgent(new CSSEngineUserAgentWrapper(userAgent));
             doc.setCSSEngine(eng);
             eng.setMedia(userAgent.getMedia());
@@ -424,6 +432,23 @@ public class BridgeContext implements ErrorConstants, CSSContext {
         return textPainter;
     }
 
+    /**
+     * Sets the cache of the style sheets parsed from a URL by the CSS
+     * engines of the documents this context initializes, so they can
+     * be shared with other contexts.
+     * @param cache the cache, or null
+     */
+    public void setStyleSheetCache(StyleSheetCache cache) {
+        this.styleSheetCache = cache;
+    }
+
+    /**
+     * Returns the cache of the style sheets parsed from a URL, or null.
+     */
+    public StyleSheetCache getStyleSheetCache() {
+        return styleSheetCache;
+    }
+
     /**
      * Returns the document this bridge context is dedicated to.
      */
@@ -469,7 +494,7 @@ public class BridgeContext implements ErrorConstants, CSSContext {
      * This is primarily used for caching the graphics node generated from
      * a 'pattern' element.  A soft reference to the data object is used.
      */
-    public void setElementData(Node n, Object data) {
+    public synchronized void setElementData(Node n, Object data) {
         if (elementDataMap == null) {
             elementDataMap = new WeakHashMap();
         }
@@ -479,7 +504,7 @@ public class BridgeContext implements ErrorConstants, CSSContext {
     /**
      * Retrieves a data object associated with the given node.
      */
-    public Object getElementData(Node n) {
+    public synchronized Object getElementData(Node n) {
         if (elementDataMap == null)
             return null;
         Object o = elementDataMap.get(n);
@@ -880,7 +905,7 @@ public class BridgeContext implements ErrorConstants, CSSContext {
      * @param node the DOM Node to bind to the specified graphics node
      * @param gn the graphics node to bind to the specified element
      */
-    public void bind(Node node, GraphicsNode gn) {
+    public synchronized void bind(Node node, GraphicsNode gn) {
         if (elementNodeMap == null) {
             elementNodeMap = new WeakHashMap();
             nodeElementMap = new WeakHashMap();
@@ -894,7 +919,7 @@ public class BridgeContext implements ErrorConstants, CSSContext {
      *
      * @param node the DOM Node to unbind
      */
-    public void unbind(Node node) {
+    public synchronized void unbind(Node node) {
         if (elementNodeMap == null) {
             return;
         }
@@ -913,7 +938,7 @@ public class BridgeContext implements ErrorConstants, CSSContext {
      *
      * @param node the DOM Node associated to the graphics node to return
      */
-    public GraphicsNode getGraphicsNode(Node node) {
+    public synchronized GraphicsNode getGraphicsNode(Node node) {
         if (elementNodeMap != null) {
             SoftReference sr = (SoftReference)elementNodeMap.get(node);
             if (sr != null)
@@ -928,7 +953,7 @@ public class BridgeContext implements ErrorConstants, CSSContext {
      *
      * @param gn the graphics node associated to the element to return
      */
-    public Element getElement(GraphicsNode gn) {
+    public synchronized Element getElement(GraphicsNode gn) {
         if (nodeElementMap != null) {
             SoftReference sr = (SoftReference)nodeElementMap.get(gn);
             if (sr != null) {
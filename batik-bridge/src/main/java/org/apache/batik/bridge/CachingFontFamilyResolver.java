@@ -0,0 +1,146 @@
+/*
+
+   Licensed to the Apache Software Foundation (ASF) under one or more
+   contributor license agreements.  See the NOTICE file distributed with
+   this work for additional information regarding copyright ownership.
+   The ASF licenses this file to You under the Apache License, Version 2.0
+   (the "License"); you may not use this file except in compliance with
+   the License.  You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+
+ */
+package org.apache.batik.bridge;
+
+import java.awt.Font;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.InputStream;
+import java.math.BigInteger;
+import java.security.MessageDigest;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import org.apache.batik.gvt.font.AWTFontFamily;
+import org.apache.batik.gvt.font.GVTFontFamily;
+
+/**
+ * A <code>FontFamilyResolver</code> that keeps the web fonts it loads,
+ * so a font referenced by several documents is only created once.
+ * Fonts are identified by their content, so the same font loaded from
+ * different URLs is shared too.  The other methods are delegated to
+ * another resolver.
+ *
+ * This class can be used from several threads.
+ *
+ * @version $Id$
+ */
+public class CachingFontFamilyResolver implements FontFamilyResolver {
+
+    /**
+     * The default maximum number of fonts.
+     */
+    public static final int DEFAULT_MAX_FONTS = 32;
+
+    /**
+     * The resolver the other methods are delegated to.
+     */
+    protected FontFamilyResolver resolver;
+
+    /**
+     * The loaded fonts, by digest of their content.
+     */
+    protected Map fonts;
+
+    /**
+     * Creates a resolver that delegates to the default resolver.
+     */
+    public CachingFontFamilyResolver() {
+        this(DefaultFontFamilyResolver.SINGLETON, DEFAULT_MAX_FONTS);
+    }
+
+    /**
+     * Creates a resolver keeping at most <code>maxFonts</code> fonts.
+     * @param resolver the resolver the other methods are delegated to
+     * @param maxFonts the maximum number of fonts
+     */
+    public CachingFontFamilyResolver(FontFamilyResolver resolver,
+                                     final int maxFonts) {
+        this.resolver = resolver;
+        fonts = new LinkedHashMap(16, 0.75f, true) {
+            protected boolean removeEldestEntry(Map.Entry e) {
+                return size() > maxFonts;
+            }
+        };
+    }
+
+    public GVTFontFamily resolve(String familyName) {
+        return resolver.resolve(familyName);
+    }
+
+    public GVTFontFamily resolve(String familyName, FontFace fontFace) {
+        return resolver.resolve(familyName, fontFace);
+    }
+
+    /**
+     * Loads a TrueType font, like {@link DefaultFontFamilyResolver}, or
+     * returns the font previously loaded from the same data.
+     */
+    public GVTFontFamily loadFont(InputStream in, FontFace fontFace)
+            throws Exception {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        byte[] buf = new byte[8192];
+        int n;
+        while ((n = in.read(buf)) != -1) {
+            out.write(buf, 0, n);
+        }
+        byte[] data = out.toByteArray();
+        MessageDigest md = MessageDigest.getInstance("SHA-256");
+        String key = new BigInteger(1, md.digest(data)).toString(16);
+
+        Font font;
+        synchronized (fonts) {
+            font = (Font)fonts.get(key);
+        }
+        if (font == null) {
+            font = Font.createFont(Font.TRUETYPE_FONT,
+                                   new ByteArrayInputStream(data));
+            synchronized (fonts) {
+                fonts.put(key, font);
+            }
+        }
+        return new AWTFontFamily(fontFace, font);
+    }
+
+    public GVTFontFamily getDefault() {
+        return resolver.getDefault();
+    }
+
+    public GVTFontFamily getFamilyThatCanDisplay(char c) {
+        return resolver.getFamilyThatCanDisplay(c);
+    }
+
+    /**
+     * Returns the number of fonts currently kept.
+     */
+    public int getFontCount() {
+        synchronized (fonts) {
+            return fonts.size();
+        }
+    }
+
+    /**
+     * Drops all the fonts kept.
+     */
+    public void clear() {
+        synchronized (fonts) {
+            fonts.clear();
+        }
+    }
+}
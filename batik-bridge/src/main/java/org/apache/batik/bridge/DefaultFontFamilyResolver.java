@@ -20,13 +20,25 @@ package org.apache.batik.bridge;
 
 import java.awt.Font;
 import java.awt.GraphicsEnvironment;
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
 import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.HashMap;
+import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
 import java.util.StringTokenizer;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 
 import org.apache.batik.gvt.font.AWTFontFamily;
 import org.apache.batik.gvt.font.AWTGVTFont;
@@ -54,29 +66,147 @@ public final class DefaultFontFamilyResolver implements FontFamilyResolver {
             new AWTFontFamily("SansSerif");
 
     /**
-     * List of all available fonts on the current system, plus a few common
-     * alternatives.
+     * The name of the system property giving the path of the font name
+     * index file.  When it is set, the names of the available fonts are
+     * read from this file instead of being enumerated, and the file is
+     * written the first time they are enumerated.  The file must be
+     * deleted when fonts are installed or removed.
      */
-    protected static final Map fonts = new HashMap();
+    public static final String FONT_INDEX_PROPERTY =
+        "org.apache.batik.font_index";
 
-    protected static final List awtFontFamilies = new ArrayList();
+    /**
+     * The first line of the font name index files.
+     */
+    protected static final String FONT_INDEX_HEADER = "batik-font-index 1 ";
 
-    protected static final List awtFonts = new ArrayList();
+    /**
+     * The available fonts of the current system found so far, by lower
+     * case name.  All of them are there once fontsEnumerated is true.
+     * It can be read by several threads.
+     */
+    protected static final ConcurrentMap fonts = new ConcurrentHashMap();
 
     /**
-     * This sets up the list of available fonts.
+     * A few common alternatives to the available fonts, used for the
+     * names which are not the ones of an available font.
      */
+    protected static final Map genericFonts = new HashMap();
+
+    /**
+     * Whether all the available fonts are in the fonts map.
+     */
+    protected static volatile boolean fontsEnumerated;
+
+    /**
+     * The families tried by getFamilyThatCanDisplay, and their fonts,
+     * built the first time they are needed.  They are null until then:
+     * read them after calling initFamiliesThatCanDisplay.
+     */
+    private static volatile List awtFontFamilies;
+
+    private static volatile List awtFonts;
+
     static {
-        fonts.put("sans-serif",      "SansSerif");
-        fonts.put("serif",           "Serif");
-        fonts.put("times",           "Serif");
-        fonts.put("times new roman", "Serif");
-        fonts.put("cursive",         "Dialog");
-        fonts.put("fantasy",         "Symbol");
-        fonts.put("monospace",       "Monospaced");
-        fonts.put("monospaced",      "Monospaced");
-        fonts.put("courier",         "Monospaced");
+        genericFonts.put("sans-serif",      "SansSerif");
+        genericFonts.put("serif",           "Serif");
+        genericFonts.put("times",           "Serif");
+        genericFonts.put("times new roman", "Serif");
+        genericFonts.put("cursive",         "Dialog");
+        genericFonts.put("fantasy",         "Symbol");
+        genericFonts.put("monospace",       "Monospaced");
+        genericFonts.put("monospaced",      "Monospaced");
+        genericFonts.put("courier",         "Monospaced");
+    }
 
+    /**
+     * Returns the name of the available font matching the given lower
+     * case name, or null.  The fonts are only all enumerated, or read
+     * from the font name index, when the name is neither the one of a
+     * font already found, nor the exact name of a font, nor a generic
+     * name.
+     */
+    protected static String getFontName(String name) {
+        String fontName = (String)fonts.get(name);
+        if (fontName != null) {
+            return fontName;
+        }
+        if (!fontsEnumerated) {
+            if (getFontIndexFile() != null) {
+                enumerateFonts();
+                fontName = (String)fonts.get(name);
+            } else {
+                fontName = lookupFont(name);
+                if (fontName != null) {
+                    fonts.put(name, fontName);
+                }
+            }
+            if (fontName != null) {
+                return fontName;
+            }
+        }
+        fontName = (String)genericFonts.get(name);
+        if (fontName != null || fontsEnumerated) {
+            return fontName;
+        }
+        enumerateFonts();
+        fontName = (String)fonts.get(name);
+        if (fontName == null) {
+            fontName = (String)genericFonts.get(name);
+        }
+        return fontName;
+    }
+
+    /**
+     * Returns the family or font name of the font with the given name,
+     * or null if there is no font with exactly this name.
+     */
+    protected static String lookupFont(String name) {
+        Font f = new Font(name, Font.PLAIN, 1);
+        if (f.getFamily().equalsIgnoreCase(name)) {
+            return f.getFamily();
+        }
+        if (f.getFontName().equalsIgnoreCase(name)) {
+            return f.getFontName();
+        }
+        return null;
+    }
+
+    /**
+     * Returns the font name index file, or null.
+     */
+    protected static File getFontIndexFile() {
+        try {
+            String s = System.getProperty(FONT_INDEX_PROPERTY);
+            return (s == null || s.length() == 0) ? null : new File(s);
+        } catch (SecurityException se) {
+            return null;
+        }
+    }
+
+    /**
+     * Puts all the available fonts in the fonts map, from the font name
+     * index if there is a valid one.
+     */
+    protected static synchronized void enumerateFonts() {
+        if (fontsEnumerated) {
+            return;
+        }
+        File index = getFontIndexFile();
+        if (index == null || !readFontIndex(index)) {
+            enumerateSystemFonts();
+            if (index != null) {
+                writeFontIndex(index);
+            }
+        }
+        fontsEnumerated = true;
+    }
+
+    /**
+     * Puts all the fonts of the local graphics environment in the fonts
+     * map.
+     */
+    protected static void enumerateSystemFonts() {
         //
         // Load all fonts. Work around
         //
@@ -111,30 +241,158 @@ public final class DefaultFontFamilyResolver implements FontFamilyResolver {
         for (Font f : allFonts) {
             fonts.put(f.getFontName().toLowerCase(), f.getFontName());
         }
+    }
+
+    /**
+     * Returns the version of the Java runtime written in the font name
+     * index files, the names depend on it.
+     */
+    protected static String getFontIndexVersion() {
+        try {
+            return System.getProperty("java.vendor") + ' '
+                + System.getProperty("java.version");
+        } catch (SecurityException se) {
+            return "";
+        }
+    }
+
+    /**
+     * Reads the font name index, returns whether it is valid.
+     */
+    protected static boolean readFontIndex(File file) {
+        if (!file.isFile()) {
+            return false;
+        }
+        Map m = new HashMap();
+        BufferedReader r = null;
+        try {
+            r = new BufferedReader(new InputStreamReader
+                                   (new FileInputStream(file), "UTF-8"));
+            String line = r.readLine();
+            if (!(FONT_INDEX_HEADER + getFontIndexVersion()).equals(line)) {
+                return false;
+            }
+            while ((line = r.readLine()) != null) {
+                int i = line.indexOf('\t');
+                if (i <= 0) {
+                    return false;
+                }
+                m.put(line.substring(0, i), line.substring(i + 1));
+            }
+        } catch (IOException e) {
+            return false;
+        } catch (SecurityException e) {
+            return false;
+        } finally {
+            if (r != null) {
+                try {
+                    r.close();
+                } catch (IOException e) {
+                }
+            }
+        }
+        fonts.putAll(m);
+        return true;
+    }
+
+    /**
+     * Writes the fonts map to the font name index.  The errors are
+     * ignored: the fonts will be enumerated again the next time.
+     */
+    protected static void writeFontIndex(File file) {
+        File tmp = null;
+        Writer w = null;
+        try {
+            // A file of its own, so that concurrent writers do not mix
+            // their lines, in the directory of the index so that it can
+            // be renamed to it.
+            tmp = File.createTempFile
+                ("fontindex", ".tmp", file.getAbsoluteFile().getParentFile());
+            w = new BufferedWriter(new OutputStreamWriter
+                                   (new FileOutputStream(tmp), "UTF-8"));
+            w.write(FONT_INDEX_HEADER + getFontIndexVersion());
+            w.write('\n');
+            Iterator it = fonts.entrySet().iterator();
+            while (it.hasNext()) {
+                Map.Entry e = (Map.Entry)it.next();
+                w.write((String)e.getKey());
+                w.write('\t');
+                w.write((String)e.getValue());
+                w.write('\n');
+            }
+            w.close();
+            w = null;
+            if (!tmp.renameTo(file)) {
+                file.delete();
+                tmp.renameTo(file);
+            }
+        } catch (IOException e) {
+        } catch (SecurityException e) {
+        } finally {
+            if (w != null) {
+                try {
+                    w.close();
+                } catch (IOException e) {
+                }
+            }
+            if (tmp != null && tmp.exists()) {
+                tmp.delete();
+            }
+        }
+    }
+
+    /**
+     * Builds the lists of the families tried by getFamilyThatCanDisplay,
+     * if not done yet.
+     */
+    protected static void initFamiliesThatCanDisplay() {
+        if (awtFonts == null) {
+            buildFamiliesThatCanDisplay();
+        }
+    }
+
+    private static synchronized void buildFamiliesThatCanDisplay() {
+        if (awtFonts != null) {
+            return;
+        }
+        enumerateFonts();
+        List families = new ArrayList();
+        List fontList = new ArrayList();
 
         // first add the default font
-        awtFontFamilies.add(DEFAULT_FONT_FAMILY);
-        awtFonts.add(new AWTGVTFont(DEFAULT_FONT_FAMILY.getFamilyName(), 0, 12));
+        families.add(DEFAULT_FONT_FAMILY);
+        fontList.add(new AWTGVTFont(DEFAULT_FONT_FAMILY.getFamilyName(), 0, 12));
 
-        Collection fontValues = fonts.values();
+        Collection fontValues = new ArrayList(fonts.values());
+        fontValues.addAll(genericFonts.values());
         for (Object fontValue : fontValues) {
             String fontFamily = (String) fontValue;
             AWTFontFamily awtFontFamily = new AWTFontFamily(fontFamily);
-            awtFontFamilies.add(awtFontFamily);
+            families.add(awtFontFamily);
             AWTGVTFont font = new AWTGVTFont(fontFamily, 0, 12);
-            awtFonts.add(font);
+            fontList.add(font);
         }
-
+        awtFontFamilies = families;
+        awtFonts = fontList;
     }
 
     /**
      * This keeps track of all the resolved font families. This is to hopefully
-     * reduce the number of font family objects used.
+     * reduce the number of font family objects used.  The names which
+     * could not be resolved are mapped to UNRESOLVED, since the map
+     * cannot hold null values.  It can be used by several threads.
+     */
+    protected static final ConcurrentMap resolvedFontFamilies =
+        new ConcurrentHashMap();
+
+    /**
+     * The value of resolvedFontFamilies for the names of the families
+     * which could not be resolved.
      */
-    protected static final Map resolvedFontFamilies = new HashMap();
+    protected static final Object UNRESOLVED = new Object();
 
     public AWTFontFamily resolve(String familyName, FontFace fontFace) {
-        String fontName = (String)fonts.get(fontFace.getFamilyName().toLowerCase());
+        String fontName = getFontName(fontFace.getFamilyName().toLowerCase());
         if (fontName == null) {
             return null;
         } else {
@@ -154,19 +412,25 @@ public final class DefaultFontFamilyResolver implements FontFamilyResolver {
         familyName = familyName.toLowerCase();
 
         // first see if this font family has already been resolved
-        GVTFontFamily resolvedFF =
-                (GVTFontFamily)resolvedFontFamilies.get(familyName);
+        Object ff = resolvedFontFamilies.get(familyName);
 
-        if (resolvedFF == null) { // hasn't been resolved yet
+        if (ff == null) { // hasn't been resolved yet
             // try to find a matching family name in the list of
             // available fonts
-            String awtFamilyName = (String)fonts.get(familyName);
+            String awtFamilyName = getFontName(familyName);
             if (awtFamilyName != null) {
-                resolvedFF = new AWTFontFamily(awtFamilyName);
+                ff = new AWTFontFamily(awtFamilyName);
+            } else {
+                ff = UNRESOLVED;
+            }
+            Object o = resolvedFontFamilies.putIfAbsent(familyName, ff);
+            if (o != null) {
+                // Resolved by another thread meanwhile.
+                ff = o;
             }
-
-            resolvedFontFamilies.put(familyName, resolvedFF);
         }
+        GVTFontFamily resolvedFF =
+            ff == UNRESOLVED ? null : (GVTFontFamily)ff;
 
         //  if (resolvedFF != null) {
         //      System.out.println("resolved " + fontFamily.getFamilyName() +
@@ -180,6 +444,9 @@ public final class DefaultFontFamilyResolver implements FontFamilyResolver {
 
     /** {@inheritDoc} */
     public GVTFontFamily getFamilyThatCanDisplay(char c) {
+        initFamiliesThatCanDisplay();
+        List awtFontFamilies = DefaultFontFamilyResolver.awtFontFamilies;
+        List awtFonts = DefaultFontFamilyResolver.awtFonts;
         for (int i = 0; i < awtFontFamilies.size(); i++) {
             AWTFontFamily fontFamily = (AWTFontFamily)awtFontFamilies.get(i);
             AWTGVTFont font = (AWTGVTFont)awtFonts.get(i);
@@ -0,0 +1,67 @@
+/*
+
+   Licensed to the Apache Software Foundation (ASF) under one or more
+   contributor license agreements.  See the NOTICE file distributed with
+   this work for additional information regarding copyright ownership.
+   The ASF licenses this file to You under the Apache License, Version 2.0
+   (the "License"); you may not use this file except in compliance with
+   the License.  You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+
+ */
+package org.apache.batik.bridge;
+
+import org.w3c.dom.Document;
+
+/**
+ * A cache of external documents that can be shared by several
+ * <code>DocumentLoader</code>s, and therefore by several
+ * <code>BridgeContext</code>s, possibly running in different threads.
+ *
+ * The bridge modifies the documents it uses (it attaches a CSS engine
+ * and bridge information to them), so a cache never hands out the
+ * documents it keeps: it stores a pristine copy of the documents it
+ * is given and returns a new copy to each loader.
+ *
+ * Implementations must be safe to use from several threads.
+ *
+ * @see DocumentLoader#setDefaultDocumentCache
+ * @version $Id$
+ */
+public interface DocumentCache {
+
+    /**
+     * Returns a private copy of the document loaded from the given uri,
+     * or null if the document is not in the cache.
+     * @param uri the uri of the document, without fragment identifier
+     */
+    Document getDocument(String uri);
+
+    /**
+     * Adds a document that has just been loaded to the cache.  The
+     * document must not have been modified yet: the cache keeps a
+     * copy of it, and the caller may go on using the given document.
+     * @param uri the uri of the document, without fragment identifier
+     * @param doc the document
+     * @param loadTime the time it took to load the document, in
+     *        nanoseconds
+     */
+    void putDocument(String uri, Document doc, long loadTime);
+
+    /**
+     * Removes the document loaded from the given uri from the cache.
+     */
+    void removeDocument(String uri);
+
+    /**
+     * Removes all the documents from the cache.
+     */
+    void clear();
+}
@@ -54,6 +54,16 @@ public class DocumentLoader {
      */
     protected HashMap cacheMap = new HashMap();
 
+    /**
+     * The cache shared with other document loaders, or null.
+     */
+    protected DocumentCache documentCache;
+
+    /**
+     * The cache used by the new document loaders, or null.
+     */
+    protected static DocumentCache defaultDocumentCache;
+
     /**
      * The user agent.
      */
@@ -66,15 +76,70 @@ public class DocumentLoader {
 
     /**
      * Constructs a new <code>DocumentLoader</code> with the specified XML parser.
+     * The loader uses the default document cache.
      * @param userAgent the user agent to use
      */
     public DocumentLoader(UserAgent userAgent) {
+        this(userAgent, getDefaultDocumentCache());
+    }
+
+    /**
+     * Constructs a new <code>DocumentLoader</code> with the specified XML
+     * parser that shares the documents it loads through the given cache.
+     * @param userAgent the user agent to use
+     * @param documentCache the shared document cache, or null
+     */
+    public DocumentLoader(UserAgent userAgent, DocumentCache documentCache) {
         this.userAgent = userAgent;
+        this.documentCache = documentCache;
         documentFactory = new SAXSVGDocumentFactory
             (userAgent.getXMLParserClassName(), true);
         documentFactory.setValidating(userAgent.isXMLParserValidating());
     }
 
+    /**
+     * Sets the document cache the new document loaders share.  By
+     * default there is none, and each loader only keeps the documents
+     * it loaded itself as long as memory permits.
+     * @param cache the shared document cache, or null
+     */
+    public static synchronized void setDefaultDocumentCache
+        (DocumentCache cache) {
+        defaultDocumentCache = cache;
+    }
+
+    /**
+     * Returns the document cache the new document loaders share, or null.
+     */
+    public static synchronized DocumentCache getDefaultDocumentCache() {
+        return defaultDocumentCache;
+    }
+
+    /**
+     * Sets the document cache this loader shares.  The documents this
+     * loader already holds are kept.
+     * @param documentCache the shared document cache, or null
+     */
+    public void setDocumentCache(DocumentCache documentCache) {
+        this.documentCache = documentCache;
+    }
+
+    /**
+     * Returns the document cache this loader shares, or null.
+     */
+    public DocumentCache getDocumentCache() {
+        return documentCache;
+    }
+
+    /**
+     * Returns the document loaded from the specified uri if it is in
+     * the cache of this loader or in the shared document cache, or null.
+     * The shared cache may hold documents loaded by other user agents,
+     * so the caller must have checked with the user agent that the
+     * document may be loaded (see {@link
+     * UserAgent#checkLoadExternalResource}).
+     * @param uri the uri of the document
+     */
     public Document checkCache(String uri) {
         int n = uri.lastIndexOf('/');
         if (n == -1) 
@@ -87,8 +152,23 @@ public class DocumentLoader {
         synchronized (cacheMap) {
             state = (DocumentState)cacheMap.get(uri);
         }
-        if (state != null)
-            return state.getDocument();
+        if (state != null) {
+            Document doc = state.getDocument();
+            if (doc != null)
+                return doc;
+        }
+        if (documentCache != null) {
+            Document doc = documentCache.getDocument(uri);
+            if (doc != null) {
+                // Keep the copy, so this loader always returns the same
+                // document for a uri.
+                state = new DocumentState(uri, doc, null);
+                synchronized (cacheMap) {
+                    cacheMap.put(uri, state);
+                }
+                return state.getDocument();
+            }
+        }
         return null;
     }
 
@@ -103,15 +183,11 @@ public class DocumentLoader {
         if (ret != null)
             return ret;
 
+        long t0 = System.nanoTime();
         SVGDocument document = documentFactory.createSVGDocument(uri);
 
         DocumentDescriptor desc = documentFactory.getDocumentDescriptor();
-        DocumentState state = new DocumentState(uri, document, desc);
-        synchronized (cacheMap) {
-            cacheMap.put(uri, state);
-        }
-
-        return state.getDocument();
+        return cacheDocument(uri, document, desc, System.nanoTime() - t0);
     }
 
     /**
@@ -126,9 +202,22 @@ public class DocumentLoader {
         if (ret != null)
             return ret;
 
+        long t0 = System.nanoTime();
         SVGDocument document = documentFactory.createSVGDocument(uri, is);
 
         DocumentDescriptor desc = documentFactory.getDocumentDescriptor();
+        return cacheDocument(uri, document, desc, System.nanoTime() - t0);
+    }
+
+    /**
+     * Puts a document that has just been loaded in the caches.
+     */
+    protected Document cacheDocument(String uri, Document document,
+                                     DocumentDescriptor desc,
+                                     long loadTime) {
+        if (documentCache != null) {
+            documentCache.putDocument(uri, document, loadTime);
+        }
         DocumentState state = new DocumentState(uri, document, desc);
         synchronized (cacheMap) {
             cacheMap.put(uri, state);
@@ -168,7 +257,7 @@ public class DocumentLoader {
         synchronized (cacheMap) {
             state = (DocumentState)cacheMap.get(uri);
         }
-        if (state == null) {
+        if (state == null || state.desc == null) {
             return -1;
         } else {
             return state.desc.getLocationLine(e);
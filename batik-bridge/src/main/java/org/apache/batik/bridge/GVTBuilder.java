@@ -18,6 +18,15 @@
  */
 package org.apache.batik.bridge;
 
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+import org.apache.batik.css.engine.SVGCSSEngine;
+import org.apache.batik.css.engine.value.Value;
 import org.apache.batik.gvt.CompositeGraphicsNode;
 import org.apache.batik.gvt.GraphicsNode;
 import org.apache.batik.gvt.RootGraphicsNode;
@@ -27,6 +36,8 @@ import org.apache.batik.util.SVGConstants;
 import org.w3c.dom.Document;
 import org.w3c.dom.Element;
 import org.w3c.dom.Node;
+import org.w3c.dom.css.CSSPrimitiveValue;
+import org.w3c.dom.css.CSSValue;
 
 /**
  * This class is responsible for creating a GVT tree using an SVG DOM tree.
@@ -36,11 +47,98 @@ import org.w3c.dom.Node;
  */
 public class GVTBuilder implements SVGConstants {
 
+    /**
+     * The SVG elements which can be built on any thread.
+     */
+    protected static final Set INDEPENDENT_ELEMENTS = new HashSet();
+    static {
+        String[] names = {
+            SVG_G_TAG, SVG_RECT_TAG, SVG_CIRCLE_TAG, SVG_ELLIPSE_TAG,
+            SVG_LINE_TAG, SVG_POLYLINE_TAG, SVG_POLYGON_TAG, SVG_PATH_TAG
+        };
+        for (String name : names) {
+            INDEPENDENT_ELEMENTS.add(name);
+        }
+    }
+
+    /**
+     * The properties which may reference other elements.
+     */
+    protected static final int[] REFERENCE_PROPERTIES = {
+        SVGCSSEngine.FILL_INDEX, SVGCSSEngine.STROKE_INDEX,
+        SVGCSSEngine.CLIP_PATH_INDEX, SVGCSSEngine.MASK_INDEX,
+        SVGCSSEngine.FILTER_INDEX, SVGCSSEngine.MARKER_START_INDEX,
+        SVGCSSEngine.MARKER_MID_INDEX, SVGCSSEngine.MARKER_END_INDEX
+    };
+
+    /**
+     * Whether the container elements of static documents are built
+     * on demand.
+     */
+    protected boolean lazy;
+
+    /**
+     * The pool used to build the independent subtrees of static
+     * documents, or null.
+     */
+    protected ForkJoinPool pool;
+
+    /**
+     * Whether each element is built by its own bridge instance, as
+     * while the independent subtrees are built in parallel: the shared
+     * bridges of static documents keep the element being built.
+     */
+    protected boolean bridgeInstances;
+
     /**
      * Constructs a new builder.
      */
     public GVTBuilder() { }
 
+    /**
+     * Returns whether the container elements of static documents are
+     * built on demand.
+     */
+    public boolean isLazy() {
+        return lazy;
+    }
+
+    /**
+     * Sets whether the container elements of static documents are
+     * built on demand.  In this mode, a container element is
+     * represented in the GVT tree by a {@link LazyGraphicsNode} which
+     * builds the graphics node of the element, through the bridges,
+     * the first time the subtree is painted, hit tested or queried for
+     * its bounds.  Large documents can then be built before their
+     * content is needed, and the subtrees never visited are not built.
+     * Dynamic documents are always built entirely.
+     */
+    public void setLazy(boolean lazy) {
+        this.lazy = lazy;
+    }
+
+    /**
+     * Returns the pool used to build the independent subtrees of
+     * static documents, or null.
+     */
+    public ForkJoinPool getForkJoinPool() {
+        return pool;
+    }
+
+    /**
+     * Sets the pool used to build the independent subtrees of static
+     * documents.  When set, the top-level 'g' elements whose subtree
+     * only contains groups and basic shapes referencing no other
+     * element are built on the pool, while the other children of the
+     * root element are built afterwards, on the calling thread.  This
+     * mode is not used for dynamic documents or in lazy mode.
+     *
+     * @param pool the pool, or null to build on the calling thread
+     */
+    public void setForkJoinPool(ForkJoinPool pool) {
+        this.pool = pool;
+    }
+
     /**
      * Builds using the specified bridge context the specified SVG document.
      *
@@ -79,7 +177,13 @@ public class GVTBuilder implements SVGConstants {
             }
             rootNode.getChildren().add(topNode);
 
-            buildComposite(ctx, svgElement, (CompositeGraphicsNode)topNode);
+            if (pool != null && !lazy && !ctx.isDynamic()) {
+                buildCompositeInParallel(ctx, svgElement,
+                                         (CompositeGraphicsNode)topNode);
+            } else {
+                buildComposite(ctx, svgElement,
+                               (CompositeGraphicsNode)topNode);
+            }
             gnBridge.buildGraphicsNode(ctx, svgElement, topNode);
 
             // finally, build the root node
@@ -173,6 +277,159 @@ public class GVTBuilder implements SVGConstants {
         }
     }
 
+    /**
+     * Builds a composite Element, building its independent children on
+     * the pool.  The other children are built once the independent
+     * ones are, so that they can reference them.
+     *
+     * @param ctx the bridge context
+     * @param e the element to build
+     * @param parentNode the composite graphics node, parent of the
+     *                   graphics node to build
+     * @exception BridgeException if an error occured while constructing
+     * the GVT tree
+     */
+    protected void buildCompositeInParallel(BridgeContext ctx,
+                                            Element e,
+                                            CompositeGraphicsNode parentNode) {
+        List elements = new ArrayList();
+        List tasks = new ArrayList();
+        Thread caller = Thread.currentThread();
+        bridgeInstances = true;
+        try {
+            for (Node n = e.getFirstChild(); n != null;
+                 n = n.getNextSibling()) {
+                if (n.getNodeType() == Node.ELEMENT_NODE) {
+                    Element child = (Element)n;
+                    SubtreeTask task = null;
+                    if (isIndependent(ctx, child)) {
+                        task = new SubtreeTask(ctx, child, caller);
+                        pool.execute(task);
+                    }
+                    elements.add(child);
+                    tasks.add(task);
+                }
+            }
+            for (Object t : tasks) {
+                if (t != null) {
+                    ((SubtreeTask)t).join();
+                }
+            }
+        } finally {
+            bridgeInstances = false;
+        }
+        if (HaltingThread.hasBeenHalted()) {
+            throw new InterruptedBridgeException();
+        }
+        for (int i = 0; i < elements.size(); i++) {
+            SubtreeTask task = (SubtreeTask)tasks.get(i);
+            if (task == null) {
+                buildGraphicsNode(ctx, (Element)elements.get(i), parentNode);
+                continue;
+            }
+            // move the node, or the node in error, to its parent
+            CompositeGraphicsNode holder = task.holder;
+            while (!holder.isEmpty()) {
+                parentNode.getChildren().add(holder.get(0));
+            }
+            if (task.exception != null) {
+                throw task.exception;
+            }
+        }
+    }
+
+    /**
+     * Tells whether the given child of the root element can be built
+     * concurrently with the other independent children: it must be a
+     * 'g' element whose descendants are groups or basic shapes which
+     * reference no other element.
+     */
+    protected boolean isIndependent(BridgeContext ctx, Element e) {
+        return SVG_NAMESPACE_URI.equals(e.getNamespaceURI())
+            && SVG_G_TAG.equals(e.getLocalName())
+            && isSelfContained(ctx, e);
+    }
+
+    /**
+     * Tells whether the given element and its descendants are groups or
+     * basic shapes which reference no other element.  The elements
+     * without bridge are ignored.
+     */
+    protected boolean isSelfContained(BridgeContext ctx, Element e) {
+        if (SVG_NAMESPACE_URI.equals(e.getNamespaceURI())) {
+            if (!INDEPENDENT_ELEMENTS.contains(e.getLocalName())) {
+                return false;
+            }
+            for (int prop : REFERENCE_PROPERTIES) {
+                Value v = CSSUtilities.getComputedStyle(e, prop);
+                if (v == null
+                    || v.getCssValueType() != CSSValue.CSS_PRIMITIVE_VALUE
+                    || v.getPrimitiveType() == CSSPrimitiveValue.CSS_URI) {
+                    return false;
+                }
+            }
+        } else if (ctx.getBridge(e) != null) {
+            return false;
+        }
+        for (Node n = e.getFirstChild(); n != null; n = n.getNextSibling()) {
+            if (n.getNodeType() == Node.ELEMENT_NODE
+                && !isSelfContained(ctx, (Element)n)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * A task building the graphics node of an independent element in a
+     * detached composite graphics node.  The exception thrown, if any,
+     * is kept to be rethrown on the calling thread.
+     */
+    protected class SubtreeTask extends RecursiveAction {
+
+        /**
+         * The bridge context.
+         */
+        protected BridgeContext ctx;
+
+        /**
+         * The element to build.
+         */
+        protected Element element;
+
+        /**
+         * The thread building the document.
+         */
+        protected Thread caller;
+
+        /**
+         * The composite graphics node receiving the graphics node.
+         */
+        protected CompositeGraphicsNode holder = new CompositeGraphicsNode();
+
+        /**
+         * The exception thrown while building the element, or null.
+         */
+        protected RuntimeException exception;
+
+        public SubtreeTask(BridgeContext ctx, Element element, Thread caller) {
+            this.ctx = ctx;
+            this.element = element;
+            this.caller = caller;
+        }
+
+        protected void compute() {
+            if (HaltingThread.hasBeenHalted(caller)) {
+                return;
+            }
+            try {
+                buildGraphicsNode(ctx, element, holder);
+            } catch (RuntimeException ex) {
+                exception = ex;
+            }
+        }
+    }
+
     /**
      * Builds a 'leaf' Element.
      *
@@ -192,6 +449,9 @@ public class GVTBuilder implements SVGConstants {
         }
         // get the appropriate bridge according to the specified element
         Bridge bridge = ctx.getBridge(e);
+        if (bridgeInstances && bridge != null) {
+            bridge = bridge.getInstance();
+        }
         if (bridge instanceof GenericBridge) {
             // If it is a GenericBridge just handle it and any GenericBridge
             // descendents and return.
@@ -208,6 +468,13 @@ public class GVTBuilder implements SVGConstants {
             return;
         }
         GraphicsNodeBridge gnBridge = (GraphicsNodeBridge)bridge;
+        if (lazy && gnBridge.isComposite() && !ctx.isDynamic()
+            && !(parentNode instanceof LazyGraphicsNode)) {
+            // build the container when needed, unless it is being built
+            parentNode.getChildren().add
+                (new LazyGraphicsNode(this, ctx, e));
+            return;
+        }
         try {
             // create the associated graphics node
             GraphicsNode gn = gnBridge.createGraphicsNode(ctx, e);
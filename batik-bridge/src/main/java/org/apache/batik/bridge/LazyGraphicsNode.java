@@ -0,0 +1,579 @@
+/*
+
+   Licensed to the Apache Software Foundation (ASF) under one or more
+   contributor license agreements.  See the NOTICE file distributed with
+   this work for additional information regarding copyright ownership.
+   The ASF licenses this file to You under the Apache License, Version 2.0
+   (the "License"); you may not use this file except in compliance with
+   the License.  You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+
+ */
+package org.apache.batik.bridge;
+
+import java.awt.Graphics2D;
+import java.awt.Shape;
+import java.awt.geom.AffineTransform;
+import java.awt.geom.GeneralPath;
+import java.awt.geom.Line2D;
+import java.awt.geom.Point2D;
+import java.awt.geom.Rectangle2D;
+import java.io.IOException;
+import java.io.StringReader;
+import java.util.Iterator;
+import java.util.List;
+import java.util.ListIterator;
+
+import org.apache.batik.anim.dom.SVGOMPathElement;
+import org.apache.batik.css.engine.SVGCSSEngine;
+import org.apache.batik.css.engine.value.Value;
+import org.apache.batik.dom.svg.LiveAttributeException;
+import org.apache.batik.gvt.CompositeGraphicsNode;
+import org.apache.batik.gvt.GraphicsNode;
+import org.apache.batik.parser.AWTPolylineProducer;
+import org.apache.batik.parser.PackedPathProducer;
+import org.apache.batik.parser.ParseException;
+import org.apache.batik.util.SVGConstants;
+import org.w3c.dom.Element;
+import org.w3c.dom.Node;
+import org.w3c.dom.css.CSSPrimitiveValue;
+import org.w3c.dom.css.CSSValue;
+
+/**
+ * A composite graphics node standing for a container element whose
+ * graphics node is not built yet.  The graphics node of the element is
+ * built, as the only child of this node, the first time this node is
+ * painted, hit tested, queried for its bounds or for its children.
+ * The container children of the element are in turn represented by
+ * <code>LazyGraphicsNode</code>s.
+ *
+ * When the element only contains groups, links and basic shapes,
+ * without filters or markers, the bounds of the area it paints are
+ * estimated from their geometry and transforms, and from the stroke
+ * widths and miter limits, without building it.  Until the node is
+ * built, its bounds are then these estimated bounds, which may be
+ * larger than the bounds of the built node: a paint whose clip does
+ * not intersect them does not build the node.  The geometry and
+ * sensitive bounds, and the hit testing, always build it.
+ *
+ * The nodes are built with the bridge context lock held, so the bridge
+ * context must not be disposed while the tree is in use.
+ *
+ * @see GVTBuilder#setLazy(boolean)
+ * @version $Id$
+ */
+public class LazyGraphicsNode extends CompositeGraphicsNode
+    implements SVGConstants, ErrorConstants {
+
+    /**
+     * The builder used to build the graphics node of the element.
+     */
+    protected GVTBuilder builder;
+
+    /**
+     * The bridge context.
+     */
+    protected BridgeContext ctx;
+
+    /**
+     * The element represented by this node.
+     */
+    protected Element element;
+
+    /**
+     * Whether the graphics node of the element has been built.
+     */
+    protected volatile boolean materialized;
+
+    /**
+     * Whether the graphics node of the element is being built.  Only
+     * read by the thread building it.
+     */
+    protected boolean building;
+
+    /**
+     * The value of estimatedBounds when the bounds cannot be estimated
+     * without building the element.
+     */
+    protected static final Rectangle2D UNKNOWN_BOUNDS =
+        new Rectangle2D.Double();
+
+    /**
+     * The estimated bounds of the area painted by the element, in the
+     * user space of this node, null if it paints nothing, or
+     * UNKNOWN_BOUNDS.  Only meaningful once boundsEstimated is true.
+     */
+    protected Rectangle2D estimatedBounds;
+
+    /**
+     * Whether the bounds of the element have been estimated.
+     */
+    protected volatile boolean boundsEstimated;
+
+    /**
+     * Whether the estimated bounds have been returned as the bounds of
+     * this node, so that the ancestors may have cached them.
+     */
+    protected volatile boolean estimateUsed;
+
+    /**
+     * Creates a node standing for the given element.
+     * @param builder the builder used to build the element
+     * @param ctx the bridge context
+     * @param e the element represented by this node
+     */
+    public LazyGraphicsNode(GVTBuilder builder, BridgeContext ctx, Element e) {
+        this.builder = builder;
+        this.ctx = ctx;
+        this.element = e;
+    }
+
+    /**
+     * Returns the element represented by this node.
+     */
+    public Element getElement() {
+        return element;
+    }
+
+    /**
+     * Tells whether the graphics node of the element has been built.
+     */
+    public boolean isMaterialized() {
+        return materialized;
+    }
+
+    /**
+     * Builds the graphics node of the element, if not already done.  A
+     * build interrupted by a halted thread is retried the next time the
+     * node is needed.
+     */
+    public void materialize() {
+        if (materialized) {
+            return;
+        }
+        synchronized (ctx) {
+            if (materialized || building) {
+                return;
+            }
+            building = true;
+            try {
+                builder.buildGraphicsNode(ctx, element, this);
+                materialized = true;
+            } catch (InterruptedBridgeException ex) {
+                clear();
+            } catch (BridgeException ex) {
+                materialized = true;
+                ctx.getUserAgent().displayError(ex);
+            } finally {
+                building = false;
+            }
+        }
+        if (materialized && estimateUsed) {
+            // The cached bounds were the estimated ones.
+            invalidateGeometryCache();
+        }
+    }
+
+    /**
+     * Returns the estimated bounds of the area painted by the element,
+     * in the user space of this node, null if it paints nothing, or
+     * UNKNOWN_BOUNDS if they cannot be estimated without building it.
+     */
+    protected Rectangle2D getEstimatedBounds() {
+        if (!boundsEstimated) {
+            synchronized (ctx) {
+                if (!boundsEstimated) {
+                    estimatedBounds =
+                        estimateBounds(element, new AffineTransform());
+                    boundsEstimated = true;
+                }
+            }
+        }
+        return estimatedBounds;
+    }
+
+    /**
+     * Estimates the bounds of the area painted by the given element.
+     * @param e the element
+     * @param at the transform from the user space of the parent of the
+     *           element to the space of the bounds
+     * @return the bounds, null if the element paints nothing, or
+     *         UNKNOWN_BOUNDS if they cannot be estimated
+     */
+    protected Rectangle2D estimateBounds(Element e, AffineTransform at) {
+        Bridge bridge = ctx.getBridge(e);
+        if (!(bridge instanceof GraphicsNodeBridge) ||
+            !CSSUtilities.convertDisplay(e)) {
+            return null;
+        }
+        Class c = bridge.getClass();
+        boolean group =
+            c == SVGGElementBridge.class || c == SVGAElementBridge.class;
+        if (!group && !(bridge instanceof SVGShapeElementBridge)) {
+            return UNKNOWN_BOUNDS;
+        }
+        Value v = CSSUtilities.getComputedStyle(e, SVGCSSEngine.FILTER_INDEX);
+        if (v.getPrimitiveType() != CSSPrimitiveValue.CSS_IDENT) {
+            return UNKNOWN_BOUNDS;
+        }
+        try {
+            String s = e.getAttributeNS(null, SVG_TRANSFORM_ATTRIBUTE);
+            if (s.length() != 0) {
+                at = new AffineTransform(at);
+                at.concatenate(SVGUtilities.convertTransform
+                               (e, SVG_TRANSFORM_ATTRIBUTE, s, ctx));
+            }
+            if (group) {
+                Rectangle2D r = null;
+                for (Node n = e.getFirstChild();
+                     n != null;
+                     n = n.getNextSibling()) {
+                    if (n.getNodeType() != Node.ELEMENT_NODE) {
+                        continue;
+                    }
+                    Rectangle2D b = estimateBounds((Element)n, at);
+                    if (b == UNKNOWN_BOUNDS) {
+                        return b;
+                    }
+                    if (b == null) {
+                        continue;
+                    }
+                    if (r == null) {
+                        r = b;
+                    } else {
+                        r.add(b);
+                    }
+                }
+                return r;
+            }
+            Rectangle2D r = estimateShapeBounds(e, c);
+            if (r == null || r == UNKNOWN_BOUNDS) {
+                return r;
+            }
+            return at.createTransformedShape(r).getBounds2D();
+        } catch (BridgeException ex) {
+            return UNKNOWN_BOUNDS;
+        } catch (ParseException ex) {
+            return UNKNOWN_BOUNDS;
+        } catch (LiveAttributeException ex) {
+            return UNKNOWN_BOUNDS;
+        }
+    }
+
+    /**
+     * Estimates the bounds of the area painted by the given basic shape,
+     * in its user space.
+     * @param e the element
+     * @param c the class of the bridge of the element
+     * @return the bounds, null if the element paints nothing, or
+     *         UNKNOWN_BOUNDS if they cannot be estimated
+     */
+    protected Rectangle2D estimateShapeBounds(Element e, Class c) {
+        if (hasMarker(e, SVGCSSEngine.MARKER_START_INDEX) ||
+            hasMarker(e, SVGCSSEngine.MARKER_MID_INDEX) ||
+            hasMarker(e, SVGCSSEngine.MARKER_END_INDEX)) {
+            return UNKNOWN_BOUNDS;
+        }
+        UnitProcessor.Context uctx = UnitProcessor.createContext(ctx, e);
+        Rectangle2D r;
+        if (c == SVGRectElementBridge.class) {
+            float w = UnitProcessor.svgHorizontalLengthToUserSpace
+                (getAttribute(e, SVG_WIDTH_ATTRIBUTE, null),
+                 SVG_WIDTH_ATTRIBUTE, uctx);
+            float h = UnitProcessor.svgVerticalLengthToUserSpace
+                (getAttribute(e, SVG_HEIGHT_ATTRIBUTE, null),
+                 SVG_HEIGHT_ATTRIBUTE, uctx);
+            if (w <= 0 || h <= 0) {
+                return null;
+            }
+            r = new Rectangle2D.Float
+                (UnitProcessor.svgHorizontalCoordinateToUserSpace
+                 (getAttribute(e, SVG_X_ATTRIBUTE, "0"),
+                  SVG_X_ATTRIBUTE, uctx),
+                 UnitProcessor.svgVerticalCoordinateToUserSpace
+                 (getAttribute(e, SVG_Y_ATTRIBUTE, "0"),
+                  SVG_Y_ATTRIBUTE, uctx),
+                 w, h);
+        } else if (c == SVGCircleElementBridge.class ||
+                   c == SVGEllipseElementBridge.class) {
+            float rx, ry;
+            if (c == SVGCircleElementBridge.class) {
+                rx = ry = UnitProcessor.svgOtherLengthToUserSpace
+                    (getAttribute(e, SVG_R_ATTRIBUTE, null),
+                     SVG_R_ATTRIBUTE, uctx);
+            } else {
+                rx = UnitProcessor.svgHorizontalLengthToUserSpace
+                    (getAttribute(e, SVG_RX_ATTRIBUTE, null),
+                     SVG_RX_ATTRIBUTE, uctx);
+                ry = UnitProcessor.svgVerticalLengthToUserSpace
+                    (getAttribute(e, SVG_RY_ATTRIBUTE, null),
+                     SVG_RY_ATTRIBUTE, uctx);
+            }
+            if (rx <= 0 || ry <= 0) {
+                return null;
+            }
+            float cx = UnitProcessor.svgHorizontalCoordinateToUserSpace
+                (getAttribute(e, SVG_CX_ATTRIBUTE, "0"),
+                 SVG_CX_ATTRIBUTE, uctx);
+            float cy = UnitProcessor.svgVerticalCoordinateToUserSpace
+                (getAttribute(e, SVG_CY_ATTRIBUTE, "0"),
+                 SVG_CY_ATTRIBUTE, uctx);
+            r = new Rectangle2D.Float(cx - rx, cy - ry, 2 * rx, 2 * ry);
+        } else if (c == SVGLineElementBridge.class) {
+            float x1 = UnitProcessor.svgHorizontalCoordinateToUserSpace
+                (getAttribute(e, SVG_X1_ATTRIBUTE, "0"),
+                 SVG_X1_ATTRIBUTE, uctx);
+            float y1 = UnitProcessor.svgVerticalCoordinateToUserSpace
+                (getAttribute(e, SVG_Y1_ATTRIBUTE, "0"),
+                 SVG_Y1_ATTRIBUTE, uctx);
+            float x2 = UnitProcessor.svgHorizontalCoordinateToUserSpace
+                (getAttribute(e, SVG_X2_ATTRIBUTE, "0"),
+                 SVG_X2_ATTRIBUTE, uctx);
+            float y2 = UnitProcessor.svgVerticalCoordinateToUserSpace
+                (getAttribute(e, SVG_Y2_ATTRIBUTE, "0"),
+                 SVG_Y2_ATTRIBUTE, uctx);
+            r = new Line2D.Float(x1, y1, x2, y2).getBounds2D();
+        } else if (c == SVGPathElementBridge.class) {
+            PackedPathProducer app = new PackedPathProducer();
+            ((SVGOMPathElement)e).getAnimatedPathData().
+                handleAnimatedPathData(app);
+            r = app.getShape().getBounds2D();
+        } else if (c == SVGPolylineElementBridge.class ||
+                   c == SVGPolygonElementBridge.class) {
+            String s = e.getAttributeNS(null, SVG_POINTS_ATTRIBUTE);
+            if (s.length() == 0) {
+                return null;
+            }
+            try {
+                r = AWTPolylineProducer.createShape
+                    (new StringReader(s), GeneralPath.WIND_NON_ZERO).
+                    getBounds2D();
+            } catch (IOException ex) {
+                return UNKNOWN_BOUNDS;
+            }
+        } else {
+            return UNKNOWN_BOUNDS;
+        }
+
+        Value v = CSSUtilities.getComputedStyle(e, SVGCSSEngine.STROKE_INDEX);
+        if (v.getCssValueType() == CSSValue.CSS_PRIMITIVE_VALUE &&
+            v.getPrimitiveType() == CSSPrimitiveValue.CSS_IDENT) {
+            return r; // stroke:none
+        }
+        float w = CSSUtilities.getComputedStyle
+            (e, SVGCSSEngine.STROKE_WIDTH_INDEX).getFloatValue();
+        float ml = PaintServer.convertStrokeMiterlimit
+            (CSSUtilities.getComputedStyle
+             (e, SVGCSSEngine.STROKE_MITERLIMIT_INDEX));
+        // A miter join reaches at most miterlimit half widths from the
+        // vertex, a square cap sqrt(2) half widths from the end point.
+        double d = w / 2 * Math.max(ml, Math.sqrt(2));
+        r.setRect(r.getX() - d, r.getY() - d,
+                  r.getWidth() + 2 * d, r.getHeight() + 2 * d);
+        return r;
+    }
+
+    /**
+     * Returns the value of the given attribute, or the given default
+     * value if it is not specified.
+     * @exception BridgeException if the attribute is required
+     */
+    protected String getAttribute(Element e, String name, String def) {
+        String s = e.getAttributeNS(null, name);
+        if (s.length() != 0) {
+            return s;
+        }
+        if (def == null) {
+            throw new BridgeException(ctx, e, ERR_ATTRIBUTE_MISSING,
+                                      new Object[] {name});
+        }
+        return def;
+    }
+
+    /**
+     * Tells whether the given marker property of an element references
+     * a marker.
+     */
+    protected boolean hasMarker(Element e, int index) {
+        Value v = CSSUtilities.getComputedStyle(e, index);
+        return v.getPrimitiveType() == CSSPrimitiveValue.CSS_URI;
+    }
+
+    /**
+     * Invalidates the cached geometric bounds.  The ancestors are not
+     * invalidated while the graphics node of the element is built: their
+     * cached values depend on the estimated bounds of this node, if any,
+     * which are only dropped once it is built.
+     */
+    protected void invalidateGeometryCache() {
+        if (!building) {
+            super.invalidateGeometryCache();
+        }
+    }
+
+    public void primitivePaint(Graphics2D g2d) {
+        materialize();
+        super.primitivePaint(g2d);
+    }
+
+    public Rectangle2D getPrimitiveBounds() {
+        if (!materialized) {
+            Rectangle2D r = getEstimatedBounds();
+            if (r != UNKNOWN_BOUNDS) {
+                estimateUsed = true;
+                return (r == null) ? null : (Rectangle2D)r.clone();
+            }
+        }
+        materialize();
+        return super.getPrimitiveBounds();
+    }
+
+    public Rectangle2D getTransformedPrimitiveBounds(AffineTransform txf) {
+        if (!materialized) {
+            Rectangle2D r = getEstimatedBounds();
+            if (r != UNKNOWN_BOUNDS) {
+                estimateUsed = true;
+                return (r == null)
+                    ? null : txf.createTransformedShape(r).getBounds2D();
+            }
+        }
+        materialize();
+        return super.getTransformedPrimitiveBounds(txf);
+    }
+
+    public Rectangle2D getGeometryBounds() {
+        materialize();
+        return super.getGeometryBounds();
+    }
+
+    public Rectangle2D getTransformedGeometryBounds(AffineTransform txf) {
+        materialize();
+        return super.getTransformedGeometryBounds(txf);
+    }
+
+    public Rectangle2D getSensitiveBounds() {
+        materialize();
+        return super.getSensitiveBounds();
+    }
+
+    public Rectangle2D getTransformedSensitiveBounds(AffineTransform txf) {
+        materialize();
+        return super.getTransformedSensitiveBounds(txf);
+    }
+
+    public boolean contains(Point2D p) {
+        materialize();
+        return super.contains(p);
+    }
+
+    public GraphicsNode nodeHitAt(Point2D p) {
+        materialize();
+        return super.nodeHitAt(p);
+    }
+
+    public Shape getOutline() {
+        materialize();
+        return super.getOutline();
+    }
+
+    //
+    // List implementation
+    //
+
+    public List getChildren() {
+        materialize();
+        return super.getChildren();
+    }
+
+    public int size() {
+        materialize();
+        return super.size();
+    }
+
+    public boolean isEmpty() {
+        materialize();
+        return super.isEmpty();
+    }
+
+    public boolean contains(Object node) {
+        materialize();
+        return super.contains(node);
+    }
+
+    public Iterator iterator() {
+        materialize();
+        return super.iterator();
+    }
+
+    public Object[] toArray() {
+        materialize();
+        return super.toArray();
+    }
+
+    public Object[] toArray(Object[] a) {
+        materialize();
+        return super.toArray(a);
+    }
+
+    public Object get(int index) {
+        materialize();
+        return super.get(index);
+    }
+
+    public Object set(int index, Object o) {
+        materialize();
+        return super.set(index, o);
+    }
+
+    public boolean add(Object o) {
+        materialize();
+        return super.add(o);
+    }
+
+    public void add(int index, Object o) {
+        materialize();
+        super.add(index, o);
+    }
+
+    public boolean remove(Object o) {
+        materialize();
+        return super.remove(o);
+    }
+
+    public Object remove(int index) {
+        materialize();
+        return super.remove(index);
+    }
+
+    public int indexOf(Object node) {
+        materialize();
+        return super.indexOf(node);
+    }
+
+    public int lastIndexOf(Object node) {
+        materialize();
+        return super.lastIndexOf(node);
+    }
+
+    public ListIterator listIterator() {
+        materialize();
+        return super.listIterator();
+    }
+
+    public ListIterator listIterator(int index) {
+        materialize();
+        return super.listIterator(index);
+    }
+
+    public List subList(int fromIndex, int toIndex) {
+        materialize();
+        return super.subList(fromIndex, toIndex);
+    }
+}
@@ -27,9 +27,11 @@ import java.security.AccessControlContext;
 import java.security.AccessController;
 import java.security.PrivilegedAction;
 import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Locale;
+import java.util.Map;
 import java.util.MissingResourceException;
 
 import org.apache.batik.script.Interpreter;
@@ -63,9 +65,9 @@ import org.w3c.dom.events.EventTarget;
 public class RhinoInterpreter implements Interpreter {
 
     /**
-     * The number of cached compiled scripts to store.
+     * The default number of compiled scripts kept in the script cache.
      */
-    private static final int MAX_CACHED_SCRIPTS = 32;
+    public static final int DEFAULT_SCRIPT_CACHE_SIZE = 256;
 
     /**
      * Constant used to describe an SVG source
@@ -94,9 +96,36 @@ public class RhinoInterpreter implements Interpreter {
     protected ScriptableObject globalObject = null;
 
     /**
-     * List of cached compiled scripts.
+     * The maximum number of compiled scripts in the script cache.
      */
-    protected LinkedList compiledScripts = new LinkedList();
+    protected static volatile int scriptCacheSize = DEFAULT_SCRIPT_CACHE_SIZE;
+
+    /**
+     * The compiled scripts shared by all the interpreters, from the
+     * least to the most recently used.  Accesses must be synchronized
+     * on the map.
+     */
+    protected static final Map scriptCache =
+        new LinkedHashMap(16, 0.75f, true) {
+            protected boolean removeEldestEntry(Map.Entry e) {
+                return size() > scriptCacheSize;
+            }
+        };
+
+    /**
+     * The number of scripts found in the script cache.
+     */
+    protected static long scriptCacheHitCount;
+
+    /**
+     * The number of scripts compiled by evaluate(String).
+     */
+    protected static long scriptCompileCount;
+
+    /**
+     * The time spent compiling these scripts, in nanoseconds.
+     */
+    protected static long scriptCompileTime;
 
     /**
      * Factory for Java wrapper objects.
@@ -324,7 +353,8 @@ public class RhinoInterpreter implements Interpreter {
      * This method evaluates a piece of ECMA script.
      * The first time a String is passed, it is compiled and evaluated.
      * At next call, the piece of script will only be evaluated to
-     * prevent from recompiling it.
+     * prevent from recompiling it.  The compiled scripts are shared by
+     * the interpreters of the documents with the same URL.
      * @param scriptStr the piece of script
      * @return if no exception is thrown during the call, should return the
      * value of the last expression evaluated in the script.
@@ -333,19 +363,13 @@ public class RhinoInterpreter implements Interpreter {
 
         ContextAction evalAction = new ContextAction() {
             public Object run(final Context cx) {
-                Script script = null;
-                Entry entry = null;
-                Iterator it = compiledScripts.iterator();
-                // between nlog(n) and log(n) because it is
-                // an AbstractSequentialList
-                while (it.hasNext()) {
-                    if ((entry = (Entry) it.next()).str.equals(scriptStr)) {
-                        // if it is not at the end, remove it because
-                        // it will change from place (it is faster
-                        // to remove it now)
-                        script = entry.script;
-                        it.remove();
-                        break;
+                ScriptKey key = new ScriptKey(scriptStr, rhinoClassLoader,
+                                              getClass().getClassLoader());
+                Script script;
+                synchronized (scriptCache) {
+                    script = (Script)scriptCache.get(key);
+                    if (script != null) {
+                        scriptCacheHitCount++;
                     }
                 }
 
@@ -366,20 +390,21 @@ public class RhinoInterpreter implements Interpreter {
                             }
                         }
                     };
+                    long t = System.nanoTime();
                     script = (Script)AccessController.doPrivileged(compile);
-
-                    if (compiledScripts.size() + 1 > MAX_CACHED_SCRIPTS) {
-                        // too many cached items - we should delete the
-                        // oldest entry.  all of this is very fast on
-                        // linkedlist
-                        compiledScripts.removeFirst();
+                    t = System.nanoTime() - t;
+
+                    synchronized (scriptCache) {
+                        scriptCompileCount++;
+                        scriptCompileTime += t;
+                        // Another thread may have compiled it meanwhile.
+                        Script s = (Script)scriptCache.get(key);
+                        if (s == null) {
+                            scriptCache.put(key, script);
+                        } else {
+                            script = s;
+                        }
                     }
-                    // storing is done here:
-                    compiledScripts.addLast(new Entry(scriptStr, script));
-                } else {
-                    // this script has been compiled before,
-                    // just update its index so it won't get deleted soon.
-                    compiledScripts.addLast(entry);
                 }
 
                 return script.exec(cx, globalObject);
@@ -561,26 +586,135 @@ public class RhinoInterpreter implements Interpreter {
     }
 
     /**
-     * Class to store cached compiled scripts.
+     * Returns the maximum number of compiled scripts kept by the
+     * interpreters.
+     */
+    public static int getScriptCacheSize() {
+        return scriptCacheSize;
+    }
+
+    /**
+     * Sets the maximum number of compiled scripts kept by the
+     * interpreters.  Zero disables the script cache.
+     */
+    public static void setScriptCacheSize(int size) {
+        synchronized (scriptCache) {
+            scriptCacheSize = Math.max(size, 0);
+            Iterator it = scriptCache.keySet().iterator();
+            while (scriptCache.size() > scriptCacheSize) {
+                it.next();
+                it.remove();
+            }
+        }
+    }
+
+    /**
+     * Removes all the compiled scripts from the script cache.
+     */
+    public static void clearScriptCache() {
+        synchronized (scriptCache) {
+            scriptCache.clear();
+        }
+    }
+
+    /**
+     * Returns the number of scripts evaluated from the script cache.
      */
-    protected static class Entry {
+    public static long getScriptCacheHitCount() {
+        synchronized (scriptCache) {
+            return scriptCacheHitCount;
+        }
+    }
+
+    /**
+     * Returns the number of scripts compiled by evaluate(String).
+     */
+    public static long getScriptCompileCount() {
+        synchronized (scriptCache) {
+            return scriptCompileCount;
+        }
+    }
+
+    /**
+     * Returns the time spent compiling these scripts, in nanoseconds.
+     */
+    public static long getScriptCompileTime() {
+        synchronized (scriptCache) {
+            return scriptCompileTime;
+        }
+    }
+
+    /**
+     * The key of a compiled script in the script cache.  Scripts are
+     * only shared by the interpreters with the same security context:
+     * the URL of the document, whether scripts are compiled to classes,
+     * and the class loader these classes are loaded from.
+     */
+    protected static class ScriptKey {
 
         /**
          * The script string.
          */
-        public String str;
+        protected String str;
 
         /**
-         * The compiled script.
+         * The URL of the document, or null.
          */
-        public Script script;
+        protected String documentURL;
 
         /**
-         * Creates a new script cache entry object.
+         * Whether the script is compiled to a class.
          */
-        public Entry(String str, Script script) {
+        protected boolean compiled;
+
+        /**
+         * The parent of the loader of the compiled classes.
+         */
+        protected ClassLoader loader;
+
+        /**
+         * The hash code of this key.
+         */
+        protected int hashCode;
+
+        /**
+         * Creates a new script cache key.
+         * @param str the script string
+         * @param rcl the security domain of the script, or null
+         * @param loader the parent of the security domain
+         */
+        public ScriptKey(String str, RhinoClassLoader rcl,
+                         ClassLoader loader) {
             this.str = str;
-            this.script = script;
+            this.compiled = rcl != null;
+            this.loader = loader;
+            URL[] urls = compiled ? rcl.getURLs() : new URL[0];
+            if (urls.length > 0) {
+                documentURL = urls[0].toExternalForm();
+            }
+            hashCode = str.hashCode();
+            if (documentURL != null) {
+                hashCode = hashCode * 31 + documentURL.hashCode();
+            }
+            hashCode = hashCode * 31 + (compiled ? 1 : 0);
+        }
+
+        public int hashCode() {
+            return hashCode;
+        }
+
+        public boolean equals(Object o) {
+            if (!(o instanceof ScriptKey)) {
+                return false;
+            }
+            ScriptKey k = (ScriptKey)o;
+            return hashCode == k.hashCode
+                && compiled == k.compiled
+                && loader == k.loader
+                && str.equals(k.str)
+                && (documentURL == null
+                    ? k.documentURL == null
+                    : documentURL.equals(k.documentURL));
         }
     }
 
@@ -175,6 +175,8 @@ public class SVGImageElementBridge extends AbstractGraphicsNodeBridge {
         } else {
             purl = new ParsedURL(baseURI, uriStr);
         }
+        // The caches may hold resources loaded under another policy,
+        // so the security check comes first.
         checkLoadExternalResource(ctx, e, purl);
         return createImageGraphicsNode(ctx, e, purl);
     }
@@ -194,6 +196,11 @@ public class SVGImageElementBridge extends AbstractGraphicsNodeBridge {
         }
     }
 
+    /**
+     * Creates the graphics node of the resource at the given URL.  The
+     * caller must have checked that the resource may be loaded, since
+     * it may be taken from the caches.
+     */
     protected GraphicsNode createImageGraphicsNode(BridgeContext ctx,
                                                    Element e,
                                                    ParsedURL purl) {
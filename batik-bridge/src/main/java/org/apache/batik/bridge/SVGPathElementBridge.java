@@ -27,14 +27,12 @@ import org.apache.batik.anim.dom.SVGOMAnimatedPathData;
 import org.apache.batik.anim.dom.SVGOMPathElement;
 import org.apache.batik.css.engine.SVGCSSEngine;
 import org.apache.batik.dom.svg.LiveAttributeException;
-import org.apache.batik.dom.svg.SVGAnimatedPathDataSupport;
 import org.apache.batik.dom.svg.SVGPathContext;
 import org.apache.batik.ext.awt.geom.PathLength;
 import org.apache.batik.gvt.ShapeNode;
-import org.apache.batik.parser.AWTPathProducer;
+import org.apache.batik.parser.PackedPathProducer;
 
 import org.w3c.dom.Element;
-import org.w3c.dom.svg.SVGPathSegList;
 
 /**
  * Bridge class for the &lt;path&gt; element.
@@ -82,17 +80,16 @@ public class SVGPathElementBridge extends SVGDecoratedShapeElementBridge
                               ShapeNode shapeNode) {
 
         SVGOMPathElement pe = (SVGOMPathElement) e;
-        AWTPathProducer app = new AWTPathProducer();
+        PackedPathProducer app = new PackedPathProducer();
         try {
             // 'd' attribute - required
             SVGOMAnimatedPathData _d = pe.getAnimatedPathData();
-            _d.check();
-            SVGPathSegList p = _d.getAnimatedPathSegList();
             app.setWindingRule(CSSUtilities.convertFillRule(e));
-            SVGAnimatedPathDataSupport.handlePathSegList(p, app);
+            _d.handleAnimatedPathData(app);
         } catch (LiveAttributeException ex) {
             throw new BridgeException(ctx, ex);
         } finally {
+            // A malformed path is rendered up to the error.
             shapeNode.setShape(app.getShape());
         }
     }
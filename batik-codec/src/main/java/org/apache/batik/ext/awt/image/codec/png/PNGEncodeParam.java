@@ -28,6 +28,7 @@ import java.awt.image.SampleModel;
 import java.util.Date;
 import java.util.List;
 import java.util.ArrayList;
+import java.util.zip.Deflater;
 
 /**
  * An instance of <code>ImageEncodeParam</code> for encoding images in
@@ -587,6 +588,76 @@ public abstract class PNGEncodeParam implements ImageEncodeParam {
         return useInterlacing;
     }
 
+    // IDAT compression
+
+    private int compressionLevel = Deflater.BEST_COMPRESSION;
+    private int compressionStrategy = Deflater.DEFAULT_STRATEGY;
+    private int compressionThreads = 1;
+
+    /**
+     * Sets the deflate compression level of the image data, from 0
+     * (no compression) to 9 (best compression), or -1 for the default
+     * level of the deflate library.  The level defaults to 9.
+     */
+    public void setCompressionLevel(int compressionLevel) {
+        if (compressionLevel < Deflater.DEFAULT_COMPRESSION ||
+            compressionLevel > Deflater.BEST_COMPRESSION) {
+            throw new IllegalArgumentException(PropertyUtil.getString("PNGEncodeParam25"));
+        }
+        this.compressionLevel = compressionLevel;
+    }
+
+    /**
+     * Returns the deflate compression level of the image data.
+     */
+    public int getCompressionLevel() {
+        return compressionLevel;
+    }
+
+    /**
+     * Sets the deflate compression strategy of the image data, one of
+     * <code>Deflater.DEFAULT_STRATEGY</code>,
+     * <code>Deflater.FILTERED</code> or
+     * <code>Deflater.HUFFMAN_ONLY</code>.
+     */
+    public void setCompressionStrategy(int compressionStrategy) {
+        if (compressionStrategy != Deflater.DEFAULT_STRATEGY &&
+            compressionStrategy != Deflater.FILTERED &&
+            compressionStrategy != Deflater.HUFFMAN_ONLY) {
+            throw new IllegalArgumentException(PropertyUtil.getString("PNGEncodeParam26"));
+        }
+        this.compressionStrategy = compressionStrategy;
+    }
+
+    /**
+     * Returns the deflate compression strategy of the image data.
+     */
+    public int getCompressionStrategy() {
+        return compressionStrategy;
+    }
+
+    /**
+     * Sets the number of threads compressing the image data.  With
+     * more than one thread, the rows of a non interlaced image are
+     * filtered and compressed in bands, each band primed with the end
+     * of the previous one, and <code>filterRow</code> is called
+     * concurrently.  The output is a little larger than with a single
+     * thread.  Defaults to 1.
+     */
+    public void setCompressionThreads(int compressionThreads) {
+        if (compressionThreads < 1) {
+            throw new IllegalArgumentException(PropertyUtil.getString("PNGEncodeParam27"));
+        }
+        this.compressionThreads = compressionThreads;
+    }
+
+    /**
+     * Returns the number of threads compressing the image data.
+     */
+    public int getCompressionThreads() {
+        return compressionThreads;
+    }
+
     // bKGD chunk - delegate to subclasses
 
     // In JAI 1.0, 'backgroundSet' was private.  The JDK 1.2 compiler
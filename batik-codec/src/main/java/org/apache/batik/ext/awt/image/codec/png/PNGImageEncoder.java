@@ -19,6 +19,7 @@
 package org.apache.batik.ext.awt.image.codec.png;
 
 import org.apache.batik.ext.awt.image.codec.util.ImageEncoderImpl;
+import org.apache.batik.util.TaskPool;
 
 import java.awt.Rectangle;
 import java.awt.image.ColorModel;
@@ -31,11 +32,15 @@ import java.io.DataOutput;
 import java.io.DataOutputStream;
 import java.io.FilterOutputStream;
 import java.io.IOException;
+import java.io.InterruptedIOException;
 import java.io.OutputStream;
+import java.util.ArrayList;
 import java.util.Calendar;
 import java.util.Date;
 import java.util.GregorianCalendar;
+import java.util.List;
 import java.util.TimeZone;
+import java.util.zip.Adler32;
 import java.util.zip.Deflater;
 import java.util.zip.DeflaterOutputStream;
 
@@ -328,52 +333,100 @@ public class PNGImageEncoder extends ImageEncoderImpl {
         cs.close();
     }
 
-    private byte[] prevRow = null;
-    private byte[] currRow = null;
-
-    private byte[][] filteredRows = null;
-
     private static int clamp(int val, int maxValue) {
         return (val > maxValue) ? maxValue : val;
     }
 
-    private void encodePass(OutputStream os, Raster ras,
-                            int xOffset,     int yOffset,
-                            int xSkip,       int ySkip)
-        throws IOException {
-        int minX   = ras.getMinX();
-        int minY   = ras.getMinY();
-        int width  = ras.getWidth();
-        int height = ras.getHeight();
+    /**
+     * Converts the rows of an interlacing pass to bytes and filters
+     * them.  Each encoder has its own row buffers, so different rows of
+     * a pass can be encoded concurrently.
+     */
+    private class PassEncoder {
+        private int minX;
+        private int width;
+        private int xOffset;
+        private int xSkip;
+        private int numSamples;
+        private int samplesPerByte;
+        private int maxValue;
+        private int bytesPerRow;
+
+        private int[] samples;
+        private byte[] prevRow;
+        private byte[] currRow;
+        private byte[][] filteredRows;
+
+        PassEncoder(Raster ras, int xOffset, int xSkip) {
+            minX  = ras.getMinX();
+            width = ras.getWidth();
+
+            this.xOffset = xOffset * numBands;
+            this.xSkip   = xSkip * numBands;
+
+            samplesPerByte = 8/bitDepth;
+            numSamples = width*numBands;
+            maxValue = (1 << bitDepth) - 1;
+
+            int pixels = (numSamples - this.xOffset + this.xSkip - 1)/this.xSkip;
+            bytesPerRow = pixels*numBands;
+            if (bitDepth < 8) {
+                bytesPerRow = (bytesPerRow + samplesPerByte - 1)/samplesPerByte;
+            } else if (bitDepth == 16) {
+                bytesPerRow *= 2;
+            }
+        }
 
-        xOffset *= numBands;
-        xSkip   *= numBands;
+        /**
+         * Returns the number of bytes of a row, without the filter type.
+         */
+        int getBytesPerRow() {
+            return bytesPerRow;
+        }
 
-        int samplesPerByte = 8/bitDepth;
+        /**
+         * Filters the given row and writes it, preceded by its filter
+         * type.  The previous row of the pass must have been given to
+         * this encoder before.
+         */
+        void encodeRow(OutputStream os, Raster ras, int row)
+            throws IOException {
+            convertRow(ras, row);
 
-        int numSamples = width*numBands;
-        int[] samples = new int[numSamples];
+            // Perform filtering
+            int filterType = param.filterRow(currRow, prevRow,
+                                             filteredRows,
+                                             bytesPerRow, bpp);
 
-        int pixels = (numSamples - xOffset + xSkip - 1)/xSkip;
-        int bytesPerRow = pixels*numBands;
-        if (bitDepth < 8) {
-            bytesPerRow = (bytesPerRow + samplesPerByte - 1)/samplesPerByte;
-        } else if (bitDepth == 16) {
-            bytesPerRow *= 2;
-        }
+            os.write(filterType);
+            os.write(filteredRows[filterType], bpp, bytesPerRow);
 
-        if (bytesPerRow == 0) {
-            return;
+            swapRows();
         }
 
-        currRow = new byte[bytesPerRow + bpp];
-        prevRow = new byte[bytesPerRow + bpp];
+        /**
+         * Makes the given row the previous row without writing it.
+         */
+        void skipRow(Raster ras, int row) {
+            convertRow(ras, row);
+            swapRows();
+        }
 
-        filteredRows = new byte[5][bytesPerRow + bpp];
+        private void swapRows() {
+            // Swap current and previous rows
+            byte[] swap = currRow;
+            currRow = prevRow;
+            prevRow = swap;
+        }
 
-        int maxValue = (1 << bitDepth) - 1;
+        private void convertRow(Raster ras, int row) {
+            if (samples == null) {
+                samples = new int[numSamples];
+                currRow = new byte[bytesPerRow + bpp];
+                prevRow = new byte[bytesPerRow + bpp];
+                filteredRows = new byte[5][bytesPerRow + bpp];
+            }
 
-        for (int row = minY + yOffset; row < minY + height; row += ySkip) {
             ras.getPixels(minX, row, width, 1, samples);
 
             if (compressGray) {
@@ -429,26 +482,28 @@ public class PNGImageEncoder extends ImageEncoderImpl {
                 }
                 break;
             }
+        }
+    }
 
-            // Perform filtering
-            int filterType = param.filterRow(currRow, prevRow,
-                                             filteredRows,
-                                             bytesPerRow, bpp);
+    private void encodePass(OutputStream os, Raster ras,
+                            int xOffset,     int yOffset,
+                            int xSkip,       int ySkip)
+        throws IOException {
+        int minY   = ras.getMinY();
+        int height = ras.getHeight();
 
-            os.write(filterType);
-            os.write(filteredRows[filterType], bpp, bytesPerRow);
+        PassEncoder pe = new PassEncoder(ras, xOffset, xSkip);
+        if (pe.getBytesPerRow() == 0) {
+            return;
+        }
 
-            // Swap current and previous rows
-            byte[] swap = currRow;
-            currRow = prevRow;
-            prevRow = swap;
+        for (int row = minY + yOffset; row < minY + height; row += ySkip) {
+            pe.encodeRow(os, ras, row);
         }
     }
 
     private void writeIDAT() throws IOException {
         IDATOutputStream ios = new IDATOutputStream(dataOutput, 8192);
-        DeflaterOutputStream dos =
-            new DeflaterOutputStream(ios, new Deflater(9));
 
         // Future work - don't convert entire image to a Raster It
         // might seem that you could just call image.getData() but
@@ -484,6 +539,17 @@ public class PNGImageEncoder extends ImageEncoderImpl {
                                   bandList);
         }
 
+        if (!interlace && param.getCompressionThreads() > 1) {
+            writeBands(ios, ras, param.getCompressionThreads());
+            ios.flush();
+            ios.close();
+            return;
+        }
+
+        Deflater deflater = new Deflater(param.getCompressionLevel());
+        deflater.setStrategy(param.getCompressionStrategy());
+        DeflaterOutputStream dos = new DeflaterOutputStream(ios, deflater);
+
         if (interlace) {
             // Interlacing pass 1
             encodePass(dos, ras, 0, 0, 8, 8);
@@ -505,10 +571,184 @@ public class PNGImageEncoder extends ImageEncoderImpl {
 
         dos.finish();
         dos.close();
+        deflater.end();
         ios.flush();
         ios.close();
     }
 
+    /**
+     * The number of bytes of filtered rows compressed as one band.
+     */
+    private static final int BAND_SIZE = 128 * 1024;
+
+    /**
+     * The size of the deflate window, that is of the dictionary given
+     * to the compression of a band.
+     */
+    private static final int WINDOW_SIZE = 32 * 1024;
+
+    /**
+     * The number of bands filtered and compressed ahead of the ones
+     * being written, for each compression thread.
+     */
+    private static final int BANDS_PER_THREAD = 2;
+
+    /**
+     * Writes the zlib stream of a non interlaced image, filtering and
+     * compressing bands of rows concurrently.  Each band is a raw
+     * deflate stream, ended by a sync flush but for the last one, whose
+     * dictionary is the end of the previous band, so the concatenation
+     * of the bands is a single deflate stream.  The bands are processed
+     * a window at a time and written in order, so only the bands of one
+     * window are kept in memory.
+     */
+    private void writeBands(OutputStream os, final Raster ras, int threads)
+        throws IOException {
+        final int minY = ras.getMinY();
+        final int height = ras.getHeight();
+        final int bytesPerRow =
+            new PassEncoder(ras, 0, 1).getBytesPerRow() + 1;
+        final int rowsPerBand = Math.max(1, BAND_SIZE / bytesPerRow);
+        final int dictRows = (WINDOW_SIZE + bytesPerRow - 1) / bytesPerRow;
+        final int numBands = (height + rowsPerBand - 1) / rowsPerBand;
+        final int level = param.getCompressionLevel();
+        final int strategy = param.getCompressionStrategy();
+
+        // zlib header, as written by a Deflater with the same level.
+        int flevel;
+        if (strategy == Deflater.HUFFMAN_ONLY ||
+            (level >= 0 && level < 2)) {
+            flevel = 0;
+        } else if (level >= 0 && level < 6) {
+            flevel = 1;
+        } else if (level == 6 || level == Deflater.DEFAULT_COMPRESSION) {
+            flevel = 2;
+        } else {
+            flevel = 3;
+        }
+        int cmf = 0x78;
+        int flg = flevel << 6;
+        flg += 31 - ((cmf << 8) + flg) % 31;
+        os.write(cmf);
+        os.write(flg);
+
+        int window = threads * BANDS_PER_THREAD;
+        final byte[][] data = new byte[window][];
+        final byte[][] compressed = new byte[window][];
+        final IOException[] error = new IOException[1];
+        Adler32 adler = new Adler32();
+        List tasks = new ArrayList(window);
+        for (int first = 0; first < numBands; first += window) {
+            int n = Math.min(window, numBands - first);
+            tasks.clear();
+            for (int i = 0; i < n; i++) {
+                final int slot = i;
+                final int band = first + i;
+                tasks.add(new Runnable() {
+                        public void run() {
+                            try {
+                                int y0 = minY + band * rowsPerBand;
+                                int y1 = Math.min(y0 + rowsPerBand,
+                                                  minY + height);
+                                // The end of the previous band is filtered
+                                // again as the dictionary of this one.
+                                int d0 = Math.max(minY, y0 - dictRows);
+                                PassEncoder pe = new PassEncoder(ras, 0, 1);
+                                if (d0 > minY) {
+                                    pe.skipRow(ras, d0 - 1);
+                                }
+                                byte[] dict = null;
+                                if (d0 < y0) {
+                                    ByteArrayOutputStream bos =
+                                        new ByteArrayOutputStream
+                                        ((y0 - d0) * bytesPerRow);
+                                    for (int row = d0; row < y0; row++) {
+                                        pe.encodeRow(bos, ras, row);
+                                    }
+                                    dict = bos.toByteArray();
+                                }
+                                ByteArrayOutputStream bos =
+                                    new ByteArrayOutputStream
+                                    ((y1 - y0) * bytesPerRow);
+                                for (int row = y0; row < y1; row++) {
+                                    pe.encodeRow(bos, ras, row);
+                                }
+                                data[slot] = bos.toByteArray();
+                                compressed[slot] = deflateBand
+                                    (data[slot], dict, band == numBands - 1,
+                                     level, strategy);
+                            } catch (IOException ioe) {
+                                synchronized (error) {
+                                    if (error[0] == null) {
+                                        error[0] = ioe;
+                                    }
+                                }
+                            }
+                        }
+                    });
+            }
+            if (!TaskPool.runAll(tasks, threads)) {
+                throw new InterruptedIOException();
+            }
+            if (error[0] != null) {
+                throw error[0];
+            }
+            for (int i = 0; i < n; i++) {
+                os.write(compressed[i]);
+                adler.update(data[i]);
+                compressed[i] = null;
+                data[i] = null;
+            }
+        }
+
+        int sum = (int)adler.getValue();
+        os.write(sum >>> 24);
+        os.write((sum >> 16) & 0xff);
+        os.write((sum >> 8) & 0xff);
+        os.write(sum & 0xff);
+    }
+
+    /**
+     * Compresses a band of filtered rows as raw deflate data.
+     * @param dict the data preceding the band, or null.
+     * @param last whether this is the last band of the image.
+     */
+    private static byte[] deflateBand(byte[] data, byte[] dict, boolean last,
+                                      int level, int strategy) {
+        Deflater deflater = new Deflater(level, true);
+        try {
+            deflater.setStrategy(strategy);
+            if (dict != null) {
+                int len = Math.min(dict.length, WINDOW_SIZE);
+                deflater.setDictionary(dict, dict.length - len, len);
+            }
+            deflater.setInput(data);
+
+            ByteArrayOutputStream bos =
+                new ByteArrayOutputStream(data.length / 2 + 64);
+            byte[] buf = new byte[8192];
+            if (last) {
+                deflater.finish();
+                while (!deflater.finished()) {
+                    int n = deflater.deflate(buf);
+                    bos.write(buf, 0, n);
+                }
+            } else {
+                // Ends the band on a byte boundary, without ending
+                // the deflate stream.
+                int n;
+                do {
+                    n = deflater.deflate(buf, 0, buf.length,
+                                         Deflater.SYNC_FLUSH);
+                    bos.write(buf, 0, n);
+                } while (n == buf.length);
+            }
+            return bos.toByteArray();
+        } finally {
+            deflater.end();
+        }
+    }
+
     private void writeIEND() throws IOException {
         ChunkStream cs = new ChunkStream("IEND");
         cs.writeToStream(dataOutput);
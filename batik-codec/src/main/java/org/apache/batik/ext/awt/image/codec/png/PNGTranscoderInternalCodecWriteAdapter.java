@@ -83,6 +83,19 @@ public class PNGTranscoderInternalCodecWriteAdapter implements
         int numPix      = (int)((1000/PixSzMM)+0.5);
         params.setPhysicalDimension(numPix, numPix, 1); // 1 means 'pix/meter'
 
+        if (hints.containsKey(PNGTranscoder.KEY_COMPRESSION_LEVEL)) {
+            params.setCompressionLevel
+                ((Integer) hints.get(PNGTranscoder.KEY_COMPRESSION_LEVEL));
+        }
+        if (hints.containsKey(PNGTranscoder.KEY_COMPRESSION_STRATEGY)) {
+            params.setCompressionStrategy
+                ((Integer) hints.get(PNGTranscoder.KEY_COMPRESSION_STRATEGY));
+        }
+        if (hints.containsKey(PNGTranscoder.KEY_COMPRESSION_THREADS)) {
+            params.setCompressionThreads
+                ((Integer) hints.get(PNGTranscoder.KEY_COMPRESSION_THREADS));
+        }
+
         try {
             OutputStream ostream = output.getOutputStream();
             PNGImageEncoder pngEncoder = new PNGImageEncoder(ostream, params);
@@ -21,10 +21,13 @@ package org.apache.batik.css.engine;
 import java.io.IOException;
 import java.io.StringReader;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collections;
 import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.LinkedList;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
 
 import org.apache.batik.css.engine.sac.CSSConditionFactory;
@@ -333,6 +336,33 @@ public abstract class CSSEngine {
      */
     protected Set selectorAttributes;
 
+    /**
+     * The maximum number of shared cascaded styles to remember.
+     */
+    protected static final int SHARED_STYLE_MAPS_SIZE = 1024;
+
+    /**
+     * Whether the elements may share their cascaded style.
+     */
+    protected boolean styleSharingEnabled = true;
+
+    /**
+     * The shared cascaded styles, by SharedStyleKey, or null if the
+     * style sheets do not allow sharing.
+     */
+    protected Map sharedStyleMaps;
+
+    /**
+     * The style sheet nodes the shared cascaded styles were computed
+     * with.
+     */
+    protected List sharedStyleSheetNodes;
+
+    /**
+     * The cache of the style sheets parsed from a URL, or null.
+     */
+    protected StyleSheetCache styleSheetCache;
+
     /**
      * Used to fire a change event for all the properties.
      */
@@ -510,6 +540,7 @@ public abstract class CSSEngine {
      */
     public void dispose() {
         setCSSEngineUserAgent(null);
+        clearSharedStyleMaps();
         disposeStyleMaps(document.getDocumentElement());
         if (document instanceof EventTarget) {
             // Detach the mutation events listeners.
@@ -609,6 +640,7 @@ public abstract class CSSEngine {
      */
     public void setUserAgentStyleSheet(StyleSheet ss) {
         userAgentStyleSheet = ss;
+        clearSharedStyleMaps();
     }
 
     /**
@@ -616,6 +648,7 @@ public abstract class CSSEngine {
      */
     public void setUserStyleSheet(StyleSheet ss) {
         userStyleSheet = ss;
+        clearSharedStyleMaps();
     }
 
     /**
@@ -646,6 +679,7 @@ public abstract class CSSEngine {
     public void setMedia(String str) {
         try {
             media = parser.parseMedia(str);
+            clearSharedStyleMaps();
         } catch (Exception e) {
             String m = e.getMessage();
             if (m == null) m = "";
@@ -660,6 +694,44 @@ public abstract class CSSEngine {
      */
     public void setAlternateStyleSheet(String str) {
         alternateStyleSheet = str;
+        clearSharedStyleMaps();
+    }
+
+    /**
+     * Sets whether elements with the same parent style, name and
+     * attributes may share a single cascaded style.  Sharing is only
+     * done when no style sheet uses sibling selectors or pseudo-classes,
+     * and is on by default.
+     */
+    public void setStyleSharingEnabled(boolean b) {
+        styleSharingEnabled = b;
+        clearSharedStyleMaps();
+    }
+
+    /**
+     * Returns whether elements may share their cascaded style.
+     */
+    public boolean isStyleSharingEnabled() {
+        return styleSharingEnabled;
+    }
+
+    /**
+     * Sets the cache the style sheets parsed from a URL by
+     * {@link #parseStyleSheet(ParsedURL,String)} are looked up in and
+     * added to.  A cached sheet is only loaded once, but its URL and
+     * the URLs of the sheets it imports are still checked against the
+     * CSS context of this engine.
+     * @param cache the cache, or null to always parse the sheets
+     */
+    public void setStyleSheetCache(StyleSheetCache cache) {
+        styleSheetCache = cache;
+    }
+
+    /**
+     * Returns the cache of the style sheets parsed from a URL, or null.
+     */
+    public StyleSheetCache getStyleSheetCache() {
+        return styleSheetCache;
     }
 
     /**
@@ -717,14 +789,14 @@ public abstract class CSSEngine {
 
         // Apply the user-agent style-sheet to the result.
         if (userAgentStyleSheet != null) {
-            ArrayList rules = new ArrayList();
+            ArrayList rules = new MatchingRuleList();
             addMatchingRules(rules, userAgentStyleSheet, elt, pseudo);
             addRules(elt, pseudo, result, rules, StyleMap.USER_AGENT_ORIGIN);
         }
 
         // Apply the user properties style-sheet to the result.
         if (userStyleSheet != null) {
-            ArrayList rules = new ArrayList();
+            ArrayList rules = new MatchingRuleList();
             addMatchingRules(rules, userStyleSheet, elt, pseudo);
             addRules(elt, pseudo, result, rules, StyleMap.USER_ORIGIN);
         }
@@ -785,7 +857,7 @@ public abstract class CSSEngine {
             List snodes = eng.getStyleSheetNodes();
             int slen = snodes.size();
             if (slen > 0) {
-                ArrayList rules = new ArrayList();
+                ArrayList rules = new MatchingRuleList();
                 for (Object snode : snodes) {
                     CSSStyleSheetNode ssn = (CSSStyleSheetNode) snode;
                     StyleSheet ss = ssn.getCSSStyleSheet();
@@ -857,17 +929,38 @@ public abstract class CSSEngine {
 
     /**
      * Returns the computed style of the given element/pseudo for the
-     * property corresponding to the given index.
+     * property corresponding to the given index.  The styles can be
+     * computed from several threads, as when the GVT subtrees of a
+     * static document are built in parallel: the engine is locked while
+     * the StyleMap of the element is found or cascaded, and the StyleMap
+     * while its value is computed.  Computing a value may lock the
+     * StyleMaps of the ancestors, never the ones of the descendants.
      */
     public Value getComputedStyle(CSSStylableElement elt,
                                   String pseudo,
                                   int propidx) {
-        StyleMap sm = elt.getComputedStyleMap(pseudo);
-        if (sm == null) {
-            sm = getCascadedStyleMap(elt, pseudo);
-            elt.setComputedStyleMap(pseudo, sm);
+        StyleMap sm;
+        synchronized (this) {
+            sm = elt.getComputedStyleMap(pseudo);
+            if (sm == null) {
+                sm = getSharedCascadedStyleMap(elt, pseudo);
+                elt.setComputedStyleMap(pseudo, sm);
+            }
+        }
+        synchronized (sm) {
+            return getComputedStyle(elt, pseudo, propidx, sm);
         }
+    }
 
+    /**
+     * Returns the computed style of the given element/pseudo for the
+     * property corresponding to the given index, completing the given
+     * StyleMap of the element, which must be locked.
+     */
+    protected Value getComputedStyle(CSSStylableElement elt,
+                                     String pseudo,
+                                     int propidx,
+                                     StyleMap sm) {
         Value value = sm.getValue(propidx);
         if (sm.isComputed(propidx))
             return value;
@@ -906,6 +999,171 @@ public abstract class CSSEngine {
         return result;
     }
 
+    /**
+     * Returns the cascaded style of the given element/pseudo-element,
+     * which may be shared with the elements that have the same parent
+     * style, name and attributes.  A shared StyleMap is only completed
+     * by computing its values, it must be copied before any other
+     * modification.
+     */
+    protected StyleMap getSharedCascadedStyleMap(CSSStylableElement elt,
+                                                 String pseudo) {
+        Map maps = (pseudo == null) ? getSharedStyleMaps() : null;
+        SharedStyleKey key = null;
+        if (maps != null) {
+            key = createSharedStyleKey(elt);
+        }
+        if (key == null) {
+            return getCascadedStyleMap(elt, pseudo);
+        }
+        StyleMap sm = (StyleMap)maps.get(key);
+        if (sm == null) {
+            sm = getCascadedStyleMap(elt, null);
+            sm.setShared(true);
+            maps.put(key, sm);
+        }
+        return sm;
+    }
+
+    /**
+     * Returns the shared cascaded styles, or null if they cannot be
+     * shared with the current style sheets.
+     */
+    protected Map getSharedStyleMaps() {
+        if (!styleSharingEnabled) {
+            return null;
+        }
+        List snodes = getStyleSheetNodes();
+        if (sharedStyleSheetNodes != snodes) {
+            sharedStyleSheetNodes = snodes;
+            sharedStyleMaps = null;
+            boolean b = !isPositionDependent(userAgentStyleSheet) &&
+                        !isPositionDependent(userStyleSheet);
+            for (int i = 0; b && i < snodes.size(); i++) {
+                CSSStyleSheetNode ssn = (CSSStyleSheetNode)snodes.get(i);
+                b = !isPositionDependent(ssn.getCSSStyleSheet());
+            }
+            if (b) {
+                sharedStyleMaps =
+                    new LinkedHashMap(16, 0.75f, true) {
+                        protected boolean removeEldestEntry(Map.Entry e) {
+                            return size() > SHARED_STYLE_MAPS_SIZE;
+                        }
+                    };
+            }
+        }
+        return sharedStyleMaps;
+    }
+
+    /**
+     * Whether the given style sheet can match an element differently
+     * depending on its siblings.
+     */
+    protected boolean isPositionDependent(StyleSheet ss) {
+        return ss != null && ss.getStyleRuleIndex().isPositionDependent();
+    }
+
+    /**
+     * Forgets the shared cascaded styles.  The elements keep the style
+     * they share.
+     */
+    protected void clearSharedStyleMaps() {
+        sharedStyleMaps = null;
+        sharedStyleSheetNodes = null;
+    }
+
+    /**
+     * Returns the key of the shared style of the given element, or null
+     * if the element must have a style of its own.
+     */
+    protected SharedStyleKey createSharedStyleKey(CSSStylableElement elt) {
+        CSSStylableElement p = getParentCSSStylableElement(elt);
+        if (p == null) {
+            return null;
+        }
+        StyleMap psm = p.getComputedStyleMap(null);
+        if (psm == null || cssContext.getCSSEngineForElement(elt) != this) {
+            return null;
+        }
+        StyleDeclarationProvider sdp =
+            elt.getOverrideStyleDeclarationProvider();
+        if (sdp != null) {
+            StyleDeclaration sd = sdp.getStyleDeclaration();
+            if (sd != null && sd.size() > 0) {
+                return null;
+            }
+        }
+        return new SharedStyleKey(psm, elt);
+    }
+
+    /**
+     * The key of a shared cascaded style.  Two elements have the same
+     * cascaded style if their parents have the same StyleMap and they
+     * have the same name and attributes, as long as no selector depends
+     * on the siblings of an element: the elements then have the same
+     * names and attributes up to a common ancestor.
+     */
+    protected static class SharedStyleKey {
+
+        /**
+         * The style of the parent, compared by identity.
+         */
+        protected StyleMap parentStyle;
+
+        /**
+         * The namespace URI and qualified name of the element.
+         */
+        protected String namespaceURI;
+        protected String name;
+
+        /**
+         * The namespace URI, qualified name and value of each attribute.
+         */
+        protected String[] attributes;
+
+        protected int hashCode;
+
+        public SharedStyleKey(StyleMap parentStyle, Element elt) {
+            this.parentStyle = parentStyle;
+            namespaceURI = elt.getNamespaceURI();
+            name = elt.getNodeName();
+            int h = System.identityHashCode(parentStyle) * 31
+                + name.hashCode();
+
+            NamedNodeMap attrs = elt.getAttributes();
+            int len = attrs.getLength();
+            attributes = new String[len * 3];
+            for (int i = 0; i < len; i++) {
+                Node attr = attrs.item(i);
+                String an = attr.getNodeName();
+                String av = attr.getNodeValue();
+                attributes[i * 3] = attr.getNamespaceURI();
+                attributes[i * 3 + 1] = an;
+                attributes[i * 3 + 2] = av;
+                h = (h * 31 + an.hashCode()) * 31 + av.hashCode();
+            }
+            hashCode = h;
+        }
+
+        public int hashCode() {
+            return hashCode;
+        }
+
+        public boolean equals(Object o) {
+            if (!(o instanceof SharedStyleKey)) {
+                return false;
+            }
+            SharedStyleKey k = (SharedStyleKey)o;
+            return hashCode == k.hashCode
+                && parentStyle == k.parentStyle
+                && name.equals(k.name)
+                && (namespaceURI == null
+                    ? k.namespaceURI == null
+                    : namespaceURI.equals(k.namespaceURI))
+                && Arrays.equals(attributes, k.attributes);
+        }
+    }
+
     /**
      * Returns the document CSSStyleSheetNodes in a list. This list is
      * updated as the document is modified.
@@ -1113,7 +1371,22 @@ public abstract class CSSEngine {
             userAgent.displayError(de);
             return ss;
         }
-        parseStyleSheet(ss, uri);
+        if (styleSheetCache == null || uri == null) {
+            parseStyleSheet(ss, uri);
+            return ss;
+        }
+
+        // Check that access to the uri is allowed, even for a cached sheet
+        cssContext.checkLoadExternalResource(uri, documentURI);
+        StyleSheet cached = styleSheetCache.getStyleSheet(uri, this);
+        if (cached != null) {
+            checkImports(cached);
+            cached.setMedia(ss.getMedia());
+            return cached;
+        }
+        if (loadStyleSheet(ss, uri)) {
+            styleSheetCache.putStyleSheet(uri, this, ss);
+        }
         return ss;
     }
 
@@ -1151,6 +1424,36 @@ public abstract class CSSEngine {
      */
     public void parseStyleSheet(StyleSheet ss, ParsedURL uri)
             throws DOMException {
+        loadStyleSheet(ss, uri);
+    }
+
+    /**
+     * Checks that access to the sheets imported by the given sheet, and
+     * by the sheets they import, is allowed, as it would be if the sheet
+     * was parsed again.
+     */
+    protected void checkImports(StyleSheet ss) {
+        int len = ss.getSize();
+        for (int i = 0; i < len; i++) {
+            Rule r = ss.getRule(i);
+            if (r.getType() != ImportRule.TYPE) {
+                // @import rules must be the first rules.
+                break;
+            }
+            ImportRule ir = (ImportRule)r;
+            cssContext.checkLoadExternalResource(ir.getURI(), documentURI);
+            checkImports(ir);
+        }
+    }
+
+    /**
+     * Parses and fills the given style-sheet.
+     * @param ss The stylesheet to fill.
+     * @param uri The base URI.
+     * @return false if an error was reported.
+     */
+    protected boolean loadStyleSheet(StyleSheet ss, ParsedURL uri)
+            throws DOMException {
         if (uri == null) {
             String s = Messages.formatMessage
                 ("syntax.error.at",
@@ -1158,13 +1461,14 @@ public abstract class CSSEngine {
             DOMException de = new DOMException(DOMException.SYNTAX_ERR, s);
             if (userAgent == null) throw de;
             userAgent.displayError(de);
-            return;
+            return false;
         }
 
         try {
             // Check that access to the uri is allowed
             cssContext.checkLoadExternalResource(uri, documentURI);
             parseStyleSheet(ss, new InputSource(uri.toString()), uri);
+            return true;
         } catch (SecurityException e) {
             throw e;
         } catch (Exception e) {
@@ -1175,6 +1479,7 @@ public abstract class CSSEngine {
             DOMException de = new DOMException(DOMException.SYNTAX_ERR, s);
             if (userAgent == null) throw de;
             userAgent.displayError(de);
+            return false;
         }
     }
 
@@ -1299,39 +1604,90 @@ public abstract class CSSEngine {
 
     /**
      * Adds the rules matching the element/pseudo-element of given style
-     * sheet to the list.
+     * sheet to the list.  Only the rules the style sheet's
+     * {@link StyleRuleIndex} returns as candidates are tested.  If the
+     * list is a {@link MatchingRuleList}, the specificity of the
+     * selectors that matched is recorded along with each rule.
      */
     protected void addMatchingRules(List rules,
                                     StyleSheet ss,
                                     Element elt,
                                     String pseudo) {
-        int len = ss.getSize();
-        for (int i = 0; i < len; i++) {
-            Rule r = ss.getRule(i);
-            switch (r.getType()) {
-            case StyleRule.TYPE:
-                StyleRule style = (StyleRule)r;
-                SelectorList sl = style.getSelectorList();
-                int slen = sl.getLength();
-                for (int j = 0; j < slen; j++) {
-                    ExtendedSelector s = (ExtendedSelector)sl.item(j);
-                    if (s.match(elt, pseudo)) {
-                        rules.add(style);
-                    }
-                }
-                break;
-
-            case MediaRule.TYPE:
-            case ImportRule.TYPE:
+        StyleRuleIndex.Entry[] entries =
+            ss.getStyleRuleIndex().getCandidates(elt);
+        MatchingRuleList mrl = null;
+        if (rules instanceof MatchingRuleList) {
+            mrl = (MatchingRuleList)rules;
+        }
+        Rule last = null;
+        for (StyleRuleIndex.Entry e : entries) {
+            Rule r = e.rule;
+            if (e.selector == null) {
                 MediaRule mr = (MediaRule)r;
                 if (mediaMatch(mr.getMediaList())) {
                     addMatchingRules(rules, mr, elt, pseudo);
                 }
-                break;
+                last = null;
+            } else if (e.selector.match(elt, pseudo)) {
+                int spec = e.selector.getSpecificity();
+                if (r == last) {
+                    // Another selector of the same rule matched.
+                    if (mrl != null) {
+                        int i = mrl.size() - 1;
+                        if (spec > mrl.getSpecificity(i)) {
+                            mrl.setSpecificity(i, spec);
+                        }
+                    }
+                } else if (mrl != null) {
+                    mrl.add((StyleRule)r, spec);
+                } else {
+                    rules.add(r);
+                }
+                last = r;
             }
         }
     }
 
+    /**
+     * A list of the rules matching an element that also records the
+     * highest specificity of the matching selectors of each rule.
+     */
+    protected static class MatchingRuleList extends ArrayList {
+
+        /**
+         * The specificities of the rules.
+         */
+        protected int[] specificities = new int[8];
+
+        /**
+         * Appends a rule and its specificity to the list.
+         */
+        public void add(StyleRule r, int spec) {
+            int i = size();
+            if (i == specificities.length) {
+                int[] t = new int[i * 2];
+                System.arraycopy(specificities, 0, t, 0, i);
+                specificities = t;
+            }
+            specificities[i] = spec;
+            add(r);
+        }
+
+        /**
+         * Returns the specificity of the rule at the given index.
+         */
+        public int getSpecificity(int i) {
+            return specificities[i];
+        }
+
+        /**
+         * Sets the specificity of the rule at the given index.
+         */
+        public void setSpecificity(int i, int spec) {
+            specificities[i] = spec;
+        }
+    }
+
     /**
      * Adds the rules contained in the given list to a stylemap.
      */
@@ -1373,38 +1729,56 @@ public abstract class CSSEngine {
 
     /**
      * Sorts the rules matching the element/pseudo-element of given style
-     * sheet to the list.
+     * sheet to the list.  The sort is stable: rules of equal specificity
+     * keep their style sheet order.
      */
     protected void sortRules(ArrayList rules, Element elt, String pseudo) {
         int len = rules.size();
-        int[] specificities = new int[len];
-        for (int i = 0; i < len; i++) {
-            StyleRule r = (StyleRule) rules.get(i);
-            SelectorList sl = r.getSelectorList();
-            int spec = 0;
-            int slen = sl.getLength();
-            for (int k = 0; k < slen; k++) {
-                ExtendedSelector s = (ExtendedSelector) sl.item(k);
-                if (s.match(elt, pseudo)) {
-                    int sp = s.getSpecificity();
-                    if (sp > spec) {
-                        spec = sp;
+        if (len < 2) {
+            return;
+        }
+        long[] keys = new long[len];
+        if (rules instanceof MatchingRuleList) {
+            MatchingRuleList mrl = (MatchingRuleList)rules;
+            for (int i = 0; i < len; i++) {
+                keys[i] = ((long)mrl.getSpecificity(i) << 32) | i;
+            }
+        } else {
+            for (int i = 0; i < len; i++) {
+                StyleRule r = (StyleRule) rules.get(i);
+                SelectorList sl = r.getSelectorList();
+                int spec = 0;
+                int slen = sl.getLength();
+                for (int k = 0; k < slen; k++) {
+                    ExtendedSelector s = (ExtendedSelector) sl.item(k);
+                    if (s.match(elt, pseudo)) {
+                        int sp = s.getSpecificity();
+                        if (sp > spec) {
+                            spec = sp;
+                        }
                     }
                 }
+                keys[i] = ((long)spec << 32) | i;
             }
-            specificities[i] = spec;
         }
-        for (int i = 1; i < len; i++) {
-            Object rule = rules.get(i);
-            int spec = specificities[i];
-            int j = i - 1;
-            while (j >= 0 && specificities[j] > spec) {
-                rules.set(j + 1, rules.get(j));
-                specificities[j + 1] = specificities[j];
-                j--;
+
+        // Ties are broken by the original index, so this is stable.
+        Arrays.sort(keys);
+        Object[] sorted = new Object[len];
+        int[] specs = new int[len];
+        for (int i = 0; i < len; i++) {
+            int j = (int)keys[i];
+            sorted[i] = rules.get(j);
+            specs[i] = (int)(keys[i] >>> 32);
+        }
+        for (int i = 0; i < len; i++) {
+            rules.set(i, sorted[i]);
+        }
+        if (rules instanceof MatchingRuleList) {
+            MatchingRuleList mrl = (MatchingRuleList)rules;
+            for (int i = 0; i < len; i++) {
+                mrl.setSpecificity(i, specs[i]);
             }
-            rules.set(j + 1, rule);
-            specificities[j + 1] = spec;
         }
     }
 
@@ -2311,6 +2685,12 @@ public abstract class CSSEngine {
         CSSStylableElement elt = (CSSStylableElement) e;
         StyleMap style = elt.getComputedStyleMap(null);
         if (style != null) {
+            if (style.isShared()) {
+                // Other elements may use this style, modify a copy.
+                // The descendants are then cascaded again.
+                style = new StyleMap(style);
+                elt.setComputedStyleMap(null, style);
+            }
             if (attrNS == styleNamespaceURI
                     || attrNS != null && attrNS.equals(styleNamespaceURI)) {
                 if (name.equals(styleLocalName)) {
@@ -72,6 +72,11 @@ public class StyleMap {
      */
     protected boolean fixedCascadedValues;
 
+    /**
+     * Whether this map may be used by several elements.
+     */
+    protected boolean shared;
+
     /**
      * Creates a new StyleMap.
      */
@@ -80,6 +85,16 @@ public class StyleMap {
         masks = new short[size];
     }
 
+    /**
+     * Creates a new StyleMap, not shared, with the values of the given
+     * map.
+     */
+    public StyleMap(StyleMap sm) {
+        values = (Value[])sm.values.clone();
+        masks = (short[])sm.masks.clone();
+        fixedCascadedValues = sm.fixedCascadedValues;
+    }
+
     /**
      * Whether this map has fixed cascaded value.
      */
@@ -94,6 +109,21 @@ public class StyleMap {
         fixedCascadedValues = b;
     }
 
+    /**
+     * Whether this map may be used by several elements, in which case
+     * it must be copied before its cascaded values are modified.
+     */
+    public boolean isShared() {
+        return shared;
+    }
+
+    /**
+     * Sets the shared property.
+     */
+    public void setShared(boolean b) {
+        shared = b;
+    }
+
     /**
      * Returns the value at the given index, null if unspecified.
      */
@@ -0,0 +1,337 @@
+/*
+
+   Licensed to the Apache Software Foundation (ASF) under one or more
+   contributor license agreements.  See the NOTICE file distributed with
+   this work for additional information regarding copyright ownership.
+   The ASF licenses this file to You under the Apache License, Version 2.0
+   (the "License"); you may not use this file except in compliance with
+   the License.  You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+
+ */
+package org.apache.batik.css.engine;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+
+import org.apache.batik.css.engine.sac.CSSAndCondition;
+import org.apache.batik.css.engine.sac.CSSClassCondition;
+import org.apache.batik.css.engine.sac.CSSElementSelector;
+import org.apache.batik.css.engine.sac.CSSIdCondition;
+import org.apache.batik.css.engine.sac.CSSPseudoClassCondition;
+import org.apache.batik.css.engine.sac.ExtendedSelector;
+import org.w3c.css.sac.CombinatorCondition;
+import org.w3c.css.sac.Condition;
+import org.w3c.css.sac.ConditionalSelector;
+import org.w3c.css.sac.DescendantSelector;
+import org.w3c.css.sac.Selector;
+import org.w3c.css.sac.SelectorList;
+import org.w3c.css.sac.SiblingSelector;
+import org.w3c.dom.Element;
+
+/**
+ * This class indexes the rules of a style sheet by the rightmost
+ * simple selector of their selectors, so only the selectors that can
+ * possibly match an element have to be tested against it.  Selectors
+ * are filed under the id, or else the class, or else the element name
+ * they require; the others, as well as the nested media and import
+ * rules, are always candidates.
+ *
+ * @version $Id$
+ */
+public class StyleRuleIndex {
+
+    /**
+     * A candidate of the index: a selector of a style rule, or a
+     * nested media or import rule.
+     */
+    public static class Entry {
+
+        /**
+         * The position of the entry in the style sheet.
+         */
+        public final int position;
+
+        /**
+         * The style, media or import rule.
+         */
+        public final Rule rule;
+
+        /**
+         * The selector of the style rule, null for other rules.
+         */
+        public final ExtendedSelector selector;
+
+        protected Entry(int position, Rule rule, ExtendedSelector selector) {
+            this.position = position;
+            this.rule = rule;
+            this.selector = selector;
+        }
+    }
+
+    /**
+     * The entries filed under an id.
+     */
+    protected HashMap ids = new HashMap();
+
+    /**
+     * The entries filed under a class.
+     */
+    protected HashMap classes = new HashMap();
+
+    /**
+     * The entries filed under an element name.
+     */
+    protected HashMap names = new HashMap();
+
+    /**
+     * The entries that are candidates for all the elements.
+     */
+    protected List others = new ArrayList();
+
+    /**
+     * The entries, in style sheet order.
+     */
+    protected Entry[] entries;
+
+    /**
+     * Whether a selector depends on the siblings of the elements.
+     */
+    protected boolean positionDependent;
+
+    /**
+     * Creates the index of the rules of the given style sheet.  The
+     * index does not follow later changes of the style sheet.
+     */
+    public StyleRuleIndex(StyleSheet ss) {
+        List l = new ArrayList();
+        int len = ss.getSize();
+        for (int i = 0; i < len; i++) {
+            Rule r = ss.getRule(i);
+            switch (r.getType()) {
+            case StyleRule.TYPE:
+                SelectorList sl = ((StyleRule)r).getSelectorList();
+                int slen = sl.getLength();
+                for (int j = 0; j < slen; j++) {
+                    Selector s = sl.item(j);
+                    Entry e = new Entry(l.size(), r, (ExtendedSelector)s);
+                    l.add(e);
+                    file(e, s);
+                    if (!positionDependent) {
+                        positionDependent = isPositionDependent(s);
+                    }
+                }
+                break;
+
+            case MediaRule.TYPE:
+            case ImportRule.TYPE:
+                Entry e = new Entry(l.size(), r, null);
+                l.add(e);
+                others.add(e);
+                if (!positionDependent) {
+                    positionDependent = ((StyleSheet)r).getStyleRuleIndex()
+                        .isPositionDependent();
+                }
+                break;
+            }
+        }
+        entries = new Entry[l.size()];
+        l.toArray(entries);
+    }
+
+    /**
+     * Whether a selector of the style sheet uses a sibling selector or
+     * a pseudo-class, so two elements with the same ancestors and
+     * attributes may not match the same rules.
+     */
+    public boolean isPositionDependent() {
+        return positionDependent;
+    }
+
+    /**
+     * Returns the candidates for the given element, in style sheet
+     * order.
+     */
+    public Entry[] getCandidates(Element elt) {
+        if (others.size() == entries.length) {
+            return entries;
+        }
+
+        List l = new ArrayList(others);
+        String name = (elt.getPrefix() == null)
+            ? elt.getNodeName()
+            : elt.getLocalName();
+        addAll(l, names.get(name));
+
+        if (elt instanceof CSSStylableElement) {
+            CSSStylableElement se = (CSSStylableElement)elt;
+            addAll(l, ids.get(se.getXMLId()));
+            String cls = se.getCSSClass();
+            if (cls != null && !classes.isEmpty()) {
+                int len = cls.length();
+                int i = 0;
+                while (i < len) {
+                    while (i < len && Character.isSpaceChar(cls.charAt(i))) {
+                        i++;
+                    }
+                    int start = i;
+                    while (i < len && !Character.isSpaceChar(cls.charAt(i))) {
+                        i++;
+                    }
+                    if (start < i) {
+                        addAll(l, classes.get(cls.substring(start, i)));
+                    }
+                }
+            }
+        }
+
+        int[] pos = new int[l.size()];
+        for (int i = 0; i < pos.length; i++) {
+            pos[i] = ((Entry)l.get(i)).position;
+        }
+        Arrays.sort(pos);
+        Entry[] result = new Entry[pos.length];
+        int n = 0;
+        for (int i = 0; i < pos.length; i++) {
+            // A class listed twice brings its entries twice.
+            if (n == 0 || result[n - 1].position != pos[i]) {
+                result[n++] = entries[pos[i]];
+            }
+        }
+        if (n < result.length) {
+            Entry[] t = new Entry[n];
+            System.arraycopy(result, 0, t, 0, n);
+            result = t;
+        }
+        return result;
+    }
+
+    /**
+     * Adds the entries of the given bucket to the list.
+     */
+    protected void addAll(List l, Object bucket) {
+        if (bucket != null) {
+            l.addAll((List)bucket);
+        }
+    }
+
+    /**
+     * Files the given entry under the key of the given selector.
+     */
+    protected void file(Entry e, Selector s) {
+        // Find the simple selector the element itself must match.
+        for (;;) {
+            if (s instanceof DescendantSelector) {
+                s = ((DescendantSelector)s).getSimpleSelector();
+            } else if (s instanceof SiblingSelector) {
+                s = ((SiblingSelector)s).getSiblingSelector();
+            } else {
+                break;
+            }
+        }
+
+        if (s instanceof ConditionalSelector) {
+            ConditionalSelector cs = (ConditionalSelector)s;
+            Condition c = cs.getCondition();
+            String id = findCondition(c, true);
+            if (id != null) {
+                file(ids, id, e);
+                return;
+            }
+            String cls = findCondition(c, false);
+            if (cls != null) {
+                file(classes, cls, e);
+                return;
+            }
+            s = cs.getSimpleSelector();
+        }
+
+        if (s != null && s.getClass() == CSSElementSelector.class) {
+            String name = ((CSSElementSelector)s).getLocalName();
+            if (name != null) {
+                file(names, name, e);
+                return;
+            }
+        }
+        others.add(e);
+    }
+
+    /**
+     * Whether the given selector uses a sibling selector or a
+     * pseudo-class.
+     */
+    protected boolean isPositionDependent(Selector s) {
+        if (s instanceof SiblingSelector) {
+            return true;
+        }
+        if (s instanceof DescendantSelector) {
+            DescendantSelector ds = (DescendantSelector)s;
+            return isPositionDependent(ds.getAncestorSelector())
+                || isPositionDependent(ds.getSimpleSelector());
+        }
+        if (s instanceof ConditionalSelector) {
+            ConditionalSelector cs = (ConditionalSelector)s;
+            return isPositionDependent(cs.getCondition())
+                || isPositionDependent(cs.getSimpleSelector());
+        }
+        return false;
+    }
+
+    /**
+     * Whether the given condition uses a pseudo-class.
+     */
+    protected boolean isPositionDependent(Condition c) {
+        if (c instanceof CSSPseudoClassCondition) {
+            return true;
+        }
+        if (c instanceof CombinatorCondition) {
+            CombinatorCondition cc = (CombinatorCondition)c;
+            return isPositionDependent(cc.getFirstCondition())
+                || isPositionDependent(cc.getSecondCondition());
+        }
+        return false;
+    }
+
+    /**
+     * Returns the value of an id or class condition the given condition
+     * requires, or null.
+     */
+    protected String findCondition(Condition c, boolean id) {
+        if (id && c.getClass() == CSSIdCondition.class) {
+            return ((CSSIdCondition)c).getValue();
+        }
+        if (!id && c.getClass() == CSSClassCondition.class) {
+            return ((CSSClassCondition)c).getValue();
+        }
+        if (c instanceof CSSAndCondition) {
+            CSSAndCondition ac = (CSSAndCondition)c;
+            String v = findCondition(ac.getFirstCondition(), id);
+            if (v == null) {
+                v = findCondition(ac.getSecondCondition(), id);
+            }
+            return v;
+        }
+        return null;
+    }
+
+    /**
+     * Adds an entry to the bucket of the given key.
+     */
+    protected void file(HashMap buckets, String key, Entry e) {
+        List l = (List)buckets.get(key);
+        if (l == null) {
+            l = new ArrayList(4);
+            buckets.put(key, l);
+        }
+        l.add(e);
+    }
+}
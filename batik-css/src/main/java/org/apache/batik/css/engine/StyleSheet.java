@@ -58,6 +58,31 @@ public class StyleSheet {
      */
     protected String title;
 
+    /**
+     * The index of the rules, built on demand.
+     */
+    protected volatile StyleRuleIndex index;
+
+    /**
+     * Creates a new, empty, StyleSheet.
+     */
+    public StyleSheet() {
+    }
+
+    /**
+     * Creates a new StyleSheet with the rules of the given sheet.  The
+     * rules themselves are shared, not copied.
+     */
+    public StyleSheet(StyleSheet ss) {
+        rules = (Rule[])ss.rules.clone();
+        size = ss.size;
+        parent = ss.parent;
+        alternate = ss.alternate;
+        media = ss.media;
+        title = ss.title;
+        index = ss.index;
+    }
+
     /**
      * Sets the media to use to compute the styles.
      */
@@ -128,12 +153,25 @@ public class StyleSheet {
         return rules[i];
     }
 
+    /**
+     * Returns the index of the rules of this style sheet.
+     */
+    public StyleRuleIndex getStyleRuleIndex() {
+        StyleRuleIndex idx = index;
+        if (idx == null) {
+            idx = new StyleRuleIndex(this);
+            index = idx;
+        }
+        return idx;
+    }
+
     /**
      * Clears the content.
      */
     public void clear() {
         size = 0;
         rules = new Rule[10];
+        index = null;
     }
 
     /**
@@ -146,6 +184,7 @@ public class StyleSheet {
             rules = t;
         }
         rules[size++] = r;
+        index = null;
     }
 
     /**
@@ -0,0 +1,131 @@
+/*
+
+   Licensed to the Apache Software Foundation (ASF) under one or more
+   contributor license agreements.  See the NOTICE file distributed with
+   this work for additional information regarding copyright ownership.
+   The ASF licenses this file to You under the Apache License, Version 2.0
+   (the "License"); you may not use this file except in compliance with
+   the License.  You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+
+ */
+package org.apache.batik.css.engine;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import org.apache.batik.util.ParsedURL;
+
+/**
+ * A cache of the style sheets parsed from a URL, which can be shared
+ * by several CSS engines, possibly running in different threads.
+ * The values of a style sheet depend on the value managers of the
+ * engine that parsed it, so sheets are only shared between engines
+ * of the same class.  Each engine gets its own copy of a sheet, which
+ * shares the rules of the cached one.
+ *
+ * The cache is bounded by a number of sheets and drops the least
+ * recently used ones first.
+ *
+ * @see CSSEngine#setStyleSheetCache
+ * @version $Id$
+ */
+public class StyleSheetCache {
+
+    /**
+     * The default maximum number of style sheets.
+     */
+    public static final int DEFAULT_MAX_SIZE = 64;
+
+    /**
+     * The style sheets, in access order.
+     */
+    protected Map sheets;
+
+    protected long hitCount;
+    protected long missCount;
+
+    /**
+     * Creates a cache holding at most {@link #DEFAULT_MAX_SIZE} sheets.
+     */
+    public StyleSheetCache() {
+        this(DEFAULT_MAX_SIZE);
+    }
+
+    /**
+     * Creates a cache holding at most <code>maxSize</code> sheets.
+     */
+    public StyleSheetCache(final int maxSize) {
+        sheets = new LinkedHashMap(16, 0.75f, true) {
+            protected boolean removeEldestEntry(Map.Entry e) {
+                return size() > maxSize;
+            }
+        };
+    }
+
+    /**
+     * Returns a copy of the sheet parsed from the given URL by an
+     * engine of the class of the given one, or null.
+     */
+    public synchronized StyleSheet getStyleSheet(ParsedURL uri,
+                                                 CSSEngine engine) {
+        StyleSheet ss = (StyleSheet)sheets.get(createKey(uri, engine));
+        if (ss == null) {
+            missCount++;
+            return null;
+        }
+        hitCount++;
+        return new StyleSheet(ss);
+    }
+
+    /**
+     * Adds a sheet the given engine has successfully parsed from the
+     * given URL.  The cache keeps a copy of the sheet.
+     */
+    public synchronized void putStyleSheet(ParsedURL uri, CSSEngine engine,
+                                           StyleSheet ss) {
+        sheets.put(createKey(uri, engine), new StyleSheet(ss));
+    }
+
+    /**
+     * Removes all the sheets from the cache.
+     */
+    public synchronized void clear() {
+        sheets.clear();
+    }
+
+    /**
+     * Returns the number of sheets in the cache.
+     */
+    public synchronized int getSize() {
+        return sheets.size();
+    }
+
+    /**
+     * Returns the number of lookups that found a sheet.
+     */
+    public synchronized long getHitCount() {
+        return hitCount;
+    }
+
+    /**
+     * Returns the number of lookups that did not find a sheet.
+     */
+    public synchronized long getMissCount() {
+        return missCount;
+    }
+
+    /**
+     * Returns the key of the given URL for the given engine.
+     */
+    protected Object createKey(ParsedURL uri, CSSEngine engine) {
+        return engine.getClass().getName() + ' ' + uri;
+    }
+}
@@ -137,6 +137,16 @@ public abstract class AbstractDocument
      */
     protected transient WeakHashMap elementsByTagNamesNS;
 
+    /**
+     * Whether the child lists and the element lists are indexed.
+     */
+    protected transient boolean indexed;
+
+    /**
+     * The index of the elements by name, or null if not built yet.
+     */
+    protected transient TagNameIndex tagNameIndex;
+
     /**
      * Input encoding of this document.
      */
@@ -259,6 +269,40 @@ public abstract class AbstractDocument
         eventsEnabled = b;
     }
 
+    /**
+     * Tests whether the child lists and the element lists of this
+     * document are indexed.
+     */
+    public boolean isIndexed() {
+        return indexed;
+    }
+
+    /**
+     * Sets whether the child lists and the element lists of this
+     * document are indexed.  In this mode, the
+     * <code>item(int)</code> method of the long child lists uses an
+     * array built on demand, and the lists returned by
+     * <code>getElementsByTagName</code> and
+     * <code>getElementsByTagNameNS</code> are filled from an index of
+     * the elements by name, updated when nodes are inserted or removed,
+     * instead of walking the subtree after each modification.
+     */
+    public void setIndexed(boolean b) {
+        indexed = b;
+        tagNameIndex = null;
+    }
+
+    /**
+     * Returns the index of the elements of this document by name, or
+     * null if this document is not indexed.
+     */
+    public TagNameIndex getTagNameIndex() {
+        if (indexed && tagNameIndex == null) {
+            tagNameIndex = new TagNameIndex(this);
+        }
+        return tagNameIndex;
+    }
+
     /**
      * <b>DOM</b>: Implements {@link org.w3c.dom.Node#getNodeName()}.
      * @return "#document".
@@ -767,6 +811,15 @@ public abstract class AbstractDocument
         traversalSupport.detachNodeIterator(it);
     }
 
+    /**
+     * Notifies this document that a node has been inserted.
+     */
+    public void nodeInserted(Node node) {
+        if (tagNameIndex != null && isConnected(node)) {
+            tagNameIndex.nodeInserted(node);
+        }
+    }
+
     /**
      * Notifies this document that a node will be removed.
      */
@@ -774,6 +827,21 @@ public abstract class AbstractDocument
         if (traversalSupport != null) {
             traversalSupport.nodeToBeRemoved(node);
         }
+        if (tagNameIndex != null && isConnected(node)) {
+            tagNameIndex.nodeToBeRemoved(node);
+        }
+    }
+
+    /**
+     * Tells whether the given node is in the tree of this document.
+     */
+    protected boolean isConnected(Node node) {
+        for (Node n = node; n != null; n = n.getParentNode()) {
+            if (n == this) {
+                return true;
+            }
+        }
+        return false;
     }
 
     /**
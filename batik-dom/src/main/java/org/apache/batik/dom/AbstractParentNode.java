@@ -101,6 +101,7 @@ public abstract class AbstractParentNode extends AbstractNode {
             n.setParentNode(this);
 
             nodeAdded(n);
+            getCurrentDocument().nodeInserted(n);
 
             // Mutation event
             fireDOMNodeInsertedEvent(n);
@@ -156,6 +157,7 @@ public abstract class AbstractParentNode extends AbstractNode {
         o.setParentNode(null);
 
         nodeAdded(n);
+        getCurrentDocument().nodeInserted(n);
 
         // Mutation event
         fireDOMNodeInsertedEvent(n);
@@ -219,6 +221,7 @@ public abstract class AbstractParentNode extends AbstractNode {
             n.setParentNode(this);
 
             nodeAdded(n);
+            getCurrentDocument().nodeInserted(n);
 
             // Mutation event
             fireDOMNodeInsertedEvent(n);
@@ -564,6 +567,14 @@ public abstract class AbstractParentNode extends AbstractNode {
          */
         protected void initialize() {
             size = 0;
+            AbstractDocument ad = getCurrentDocument();
+            if (!name.equals("*") && ad.isIndexed()
+                && ad.isConnected(AbstractParentNode.this)) {
+                table = ad.getTagNameIndex().getElementsByTagName
+                    (AbstractParentNode.this, name);
+                size = table.length;
+                return;
+            }
             for (Node n = AbstractParentNode.this.getFirstChild();
                  n != null;
                  n = n.getNextSibling()) {
@@ -626,7 +637,7 @@ public abstract class AbstractParentNode extends AbstractNode {
             if (size == -1) {
                 initialize();
             }
-            if (table == null || index < 0 || index > size) {
+            if (table == null || index < 0 || index >= size) {
                 return null;
             }
             return table[index];
@@ -669,6 +680,14 @@ public abstract class AbstractParentNode extends AbstractNode {
          */
         protected void initialize() {
             size = 0;
+            AbstractDocument ad = getCurrentDocument();
+            if (!localName.equals("*") && !"*".equals(namespaceURI)
+                && ad.isIndexed() && ad.isConnected(AbstractParentNode.this)) {
+                table = ad.getTagNameIndex().getElementsByTagNameNS
+                    (AbstractParentNode.this, namespaceURI, localName);
+                size = table.length;
+                return;
+            }
             for (Node n = AbstractParentNode.this.getFirstChild();
                  n != null;
                  n = n.getNextSibling()) {
@@ -732,6 +751,12 @@ public abstract class AbstractParentNode extends AbstractNode {
          */
         protected int elementChildren;
 
+        /**
+         * The children, built on demand when the document is indexed,
+         * or null.
+         */
+        protected transient ExtendedNode[] nodes;
+
         /**
          * Creates a new ChildNodes object.
          */
@@ -745,6 +770,21 @@ public abstract class AbstractParentNode extends AbstractNode {
             if (index < 0 || index >= children) {
                 return null;
             }
+            if (nodes != null) {
+                return nodes[index];
+            }
+            if (Math.min(index, children - 1 - index) > 16
+                && getCurrentDocument().isIndexed()) {
+                ExtendedNode[] t = new ExtendedNode[children + 8];
+                int i = 0;
+                for (ExtendedNode n = firstChild;
+                     n != null;
+                     n = (ExtendedNode)n.getNextSibling()) {
+                    t[i++] = n;
+                }
+                nodes = t;
+                return nodes[index];
+            }
             if (index < (children >> 1)) {
                 Node n = firstChild;
                 for (int i = 0; i < index; i++) {
@@ -773,6 +813,14 @@ public abstract class AbstractParentNode extends AbstractNode {
          * The node is assumed not to be a DocumentFragment instance.
          */
         public ExtendedNode append(ExtendedNode n) {
+            if (nodes != null) {
+                if (children == nodes.length) {
+                    ExtendedNode[] t = new ExtendedNode[children * 2 + 1];
+                    System.arraycopy(nodes, 0, t, 0, children);
+                    nodes = t;
+                }
+                nodes[children] = n;
+            }
             if (lastChild == null) {
                 firstChild = n;
             } else {
@@ -794,6 +842,7 @@ public abstract class AbstractParentNode extends AbstractNode {
             if (r == null) {
                 return append(n);
             }
+            nodes = null;
 
             if (r == firstChild) {
                 firstChild.setPreviousSibling(n);
@@ -843,6 +892,7 @@ public abstract class AbstractParentNode extends AbstractNode {
          * Replaces a node in the tree by an other.
          */
         public ExtendedNode replace(ExtendedNode n, ExtendedNode o) {
+            nodes = null;
             if (o == firstChild) {
                 ExtendedNode t = (ExtendedNode)firstChild.getNextSibling();
                 n.setNextSibling(t);
@@ -909,6 +959,13 @@ public abstract class AbstractParentNode extends AbstractNode {
          * Removes the given node from the tree.
          */
         public ExtendedNode remove(ExtendedNode n) {
+            if (nodes != null) {
+                if (n == lastChild) {
+                    nodes[children - 1] = null;
+                } else {
+                    nodes = null;
+                }
+            }
             if (n == firstChild) {
                 if (n == lastChild) {
                     firstChild = null;
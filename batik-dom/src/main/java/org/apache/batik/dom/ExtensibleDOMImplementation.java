@@ -26,6 +26,7 @@ import java.util.ListIterator;
 
 import org.apache.batik.css.engine.CSSContext;
 import org.apache.batik.css.engine.CSSEngine;
+import org.apache.batik.css.engine.StyleSheetCache;
 import org.apache.batik.css.engine.value.ShorthandManager;
 import org.apache.batik.css.engine.value.ValueManager;
 import org.apache.batik.css.parser.ExtendedParser;
@@ -121,6 +122,19 @@ public abstract class ExtensibleDOMImplementation
      */
     public CSSEngine createCSSEngine(AbstractStylableDocument doc,
                                      CSSContext ctx) {
+        return createCSSEngine(doc, ctx, null);
+    }
+
+    /**
+     * Creates new CSSEngine and attach it to the document.  The style
+     * sheets parsed from a URL, including the user agent style sheet of
+     * this implementation, are looked up in and added to the given
+     * cache.
+     * @param cache the style sheet cache, or null
+     */
+    public CSSEngine createCSSEngine(AbstractStylableDocument doc,
+                                     CSSContext ctx,
+                                     StyleSheetCache cache) {
         String pn = XMLResourceDescriptor.getCSSParserClassName();
         Parser p;
         try {
@@ -172,7 +186,7 @@ public abstract class ExtensibleDOMImplementation
             }
         }
 
-        CSSEngine result = createCSSEngine(doc, ctx, ep, vms, sms);
+        CSSEngine result = createCSSEngine(doc, ctx, ep, vms, sms, cache);
         doc.setCSSEngine(result);
         return result;
     }
@@ -183,6 +197,23 @@ public abstract class ExtensibleDOMImplementation
                                               ValueManager     []      vms,
                                               ShorthandManager []      sms);
 
+    /**
+     * Creates new CSSEngine using the given style sheet cache.  This
+     * implementation sets the cache of the engine created by
+     * {@link
+     * #createCSSEngine(AbstractStylableDocument,CSSContext,ExtendedParser,ValueManager[],ShorthandManager[])}.
+     */
+    public CSSEngine createCSSEngine(AbstractStylableDocument doc,
+                                     CSSContext               ctx,
+                                     ExtendedParser           ep,
+                                     ValueManager     []      vms,
+                                     ShorthandManager []      sms,
+                                     StyleSheetCache          cache) {
+        CSSEngine result = createCSSEngine(doc, ctx, ep, vms, sms);
+        result.setStyleSheetCache(cache);
+        return result;
+    }
+
     /**
      * Creates a ViewCSS.
      */
@@ -0,0 +1,331 @@
+/*
+
+   Licensed to the Apache Software Foundation (ASF) under one or more
+   contributor license agreements.  See the NOTICE file distributed with
+   this work for additional information regarding copyright ownership.
+   The ASF licenses this file to You under the Apache License, Version 2.0
+   (the "License"); you may not use this file except in compliance with
+   the License.  You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+
+ */
+package org.apache.batik.dom;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import org.apache.batik.util.DoublyIndexedTable;
+import org.w3c.dom.Node;
+
+/**
+ * An index of the elements of a document by tag name and by namespace
+ * URI and local name.  The elements of each name are kept in document
+ * order, so that the elements of a subtree are found without walking
+ * the whole subtree.  The index is updated when nodes are inserted in
+ * or removed from the document.
+ *
+ * @see AbstractDocument#setIndexed(boolean)
+ * @version $Id$
+ */
+public class TagNameIndex {
+
+    /**
+     * The element lists by tag name.
+     */
+    protected Map byName = new HashMap();
+
+    /**
+     * The element lists by namespace URI and local name.
+     */
+    protected DoublyIndexedTable byNS = new DoublyIndexedTable();
+
+    /**
+     * Creates the index of the elements of the given document.
+     */
+    public TagNameIndex(Node document) {
+        for (Node n = document.getFirstChild();
+             n != null;
+             n = n.getNextSibling()) {
+            append(n);
+        }
+    }
+
+    /**
+     * Appends the elements of the given subtree, in document order.
+     */
+    protected void append(Node node) {
+        if (node.getNodeType() == Node.ELEMENT_NODE) {
+            getList(node.getNodeName(), true).append(node);
+            getList(node.getNamespaceURI(), getLocalName(node),
+                    true).append(node);
+        }
+        for (Node n = node.getFirstChild(); n != null; n = n.getNextSibling()) {
+            append(n);
+        }
+    }
+
+    /**
+     * Adds the elements of a subtree inserted in the document.
+     */
+    public void nodeInserted(Node node) {
+        if (node.getNodeType() == Node.ELEMENT_NODE) {
+            getList(node.getNodeName(), true).insert(node);
+            getList(node.getNamespaceURI(), getLocalName(node),
+                    true).insert(node);
+        }
+        for (Node n = node.getFirstChild(); n != null; n = n.getNextSibling()) {
+            nodeInserted(n);
+        }
+    }
+
+    /**
+     * Removes the elements of a subtree about to be removed from the
+     * document.
+     */
+    public void nodeToBeRemoved(Node node) {
+        if (node.getNodeType() == Node.ELEMENT_NODE) {
+            NodeArray l = getList(node.getNodeName(), false);
+            if (l != null) {
+                l.remove(node);
+            }
+            l = getList(node.getNamespaceURI(), getLocalName(node), false);
+            if (l != null) {
+                l.remove(node);
+            }
+        }
+        for (Node n = node.getFirstChild(); n != null; n = n.getNextSibling()) {
+            nodeToBeRemoved(n);
+        }
+    }
+
+    /**
+     * Returns, in document order, the descendants of the given node
+     * with the given tag name.
+     */
+    public Node[] getElementsByTagName(Node root, String name) {
+        return getDescendants(getList(name, false), root);
+    }
+
+    /**
+     * Returns, in document order, the descendants of the given node
+     * with the given namespace URI and local name.
+     */
+    public Node[] getElementsByTagNameNS(Node root, String ns, String ln) {
+        return getDescendants(getList(ns, ln, false), root);
+    }
+
+    /**
+     * Returns the elements of the given list descending from the
+     * given node.
+     */
+    protected Node[] getDescendants(NodeArray l, Node root) {
+        if (l == null || l.size == 0) {
+            return new Node[0];
+        }
+        int start = 0;
+        int end = l.size;
+        if (root.getNodeType() != Node.DOCUMENT_NODE) {
+            // The descendants follow the root, contiguously.
+            start = l.search(root);
+            if (start < l.size && l.nodes[start] == root) {
+                start++;
+            }
+            end = start;
+            while (end < l.size && isAncestor(root, l.nodes[end])) {
+                end++;
+            }
+        }
+        Node[] result = new Node[end - start];
+        System.arraycopy(l.nodes, start, result, 0, end - start);
+        return result;
+    }
+
+    /**
+     * Returns the list of the given tag name.
+     */
+    protected NodeArray getList(String name, boolean create) {
+        NodeArray l = (NodeArray)byName.get(name);
+        if (l == null && create) {
+            l = new NodeArray();
+            byName.put(name, l);
+        }
+        return l;
+    }
+
+    /**
+     * Returns the list of the given namespace URI and local name.
+     */
+    protected NodeArray getList(String ns, String ln, boolean create) {
+        NodeArray l = (NodeArray)byNS.get(ns, ln);
+        if (l == null && create) {
+            l = new NodeArray();
+            byNS.put(ns, ln, l);
+        }
+        return l;
+    }
+
+    /**
+     * Returns the name of the given element used by
+     * getElementsByTagNameNS.
+     */
+    protected static String getLocalName(Node e) {
+        return (e.getNamespaceURI() == null)
+            ? e.getNodeName()
+            : e.getLocalName();
+    }
+
+    /**
+     * Tells whether <code>a</code> is a proper ancestor of
+     * <code>n</code>.
+     */
+    protected static boolean isAncestor(Node a, Node n) {
+        for (Node p = n.getParentNode(); p != null; p = p.getParentNode()) {
+            if (p == a) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Compares the positions in the document of two nodes.
+     * @return a negative value if <code>a</code> precedes <code>b</code>,
+     *         0 if they are the same node and a positive value otherwise
+     */
+    protected static int compare(Node a, Node b) {
+        if (a == b) {
+            return 0;
+        }
+        int da = getDepth(a);
+        int db = getDepth(b);
+        Node pa = a;
+        Node pb = b;
+        for (; da > db; da--) {
+            pa = pa.getParentNode();
+        }
+        if (pa == b) {
+            return 1;  // b is an ancestor of a
+        }
+        for (; db > da; db--) {
+            pb = pb.getParentNode();
+        }
+        if (pb == a) {
+            return -1; // a is an ancestor of b
+        }
+        while (pa.getParentNode() != pb.getParentNode()) {
+            pa = pa.getParentNode();
+            pb = pb.getParentNode();
+        }
+        // Walk the siblings from both nodes until one meets the other.
+        Node na = pa;
+        Node nb = pb;
+        for (;;) {
+            na = na.getNextSibling();
+            if (na == pb) {
+                return -1;
+            }
+            if (na == null) {
+                return 1;
+            }
+            nb = nb.getNextSibling();
+            if (nb == pa) {
+                return 1;
+            }
+            if (nb == null) {
+                return -1;
+            }
+        }
+    }
+
+    /**
+     * Returns the number of ancestors of the given node.
+     */
+    protected static int getDepth(Node n) {
+        int d = 0;
+        for (Node p = n.getParentNode(); p != null; p = p.getParentNode()) {
+            d++;
+        }
+        return d;
+    }
+
+    /**
+     * A list of nodes in document order.
+     */
+    protected static class NodeArray {
+
+        /**
+         * The nodes.
+         */
+        protected Node[] nodes = new Node[4];
+
+        /**
+         * The number of nodes.
+         */
+        protected int size;
+
+        /**
+         * Appends a node following all the others.
+         */
+        public void append(Node n) {
+            if (size == nodes.length) {
+                Node[] t = new Node[size * 2];
+                System.arraycopy(nodes, 0, t, 0, size);
+                nodes = t;
+            }
+            nodes[size++] = n;
+        }
+
+        /**
+         * Inserts a node at its position in document order.
+         */
+        public void insert(Node n) {
+            if (size == 0 || compare(nodes[size - 1], n) < 0) {
+                append(n);
+                return;
+            }
+            int i = search(n);
+            if (i < size && nodes[i] == n) {
+                return;
+            }
+            append(null);
+            System.arraycopy(nodes, i, nodes, i + 1, size - i - 1);
+            nodes[i] = n;
+        }
+
+        /**
+         * Removes a node, which must still be in the document.
+         */
+        public void remove(Node n) {
+            int i = search(n);
+            if (i < size && nodes[i] == n) {
+                System.arraycopy(nodes, i + 1, nodes, i, size - i - 1);
+                nodes[--size] = null;
+            }
+        }
+
+        /**
+         * Returns the index of the first node which does not precede
+         * the given one.
+         */
+        public int search(Node n) {
+            int lo = 0;
+            int hi = size;
+            while (lo < hi) {
+                int mid = (lo + hi) >>> 1;
+                if (compare(nodes[mid], n) < 0) {
+                    lo = mid + 1;
+                } else {
+                    hi = mid;
+                }
+            }
+            return lo;
+        }
+    }
+}
@@ -22,9 +22,11 @@ import java.io.IOException;
 import java.io.InputStream;
 import java.io.InterruptedIOException;
 import java.io.Reader;
+import java.util.HashMap;
 import java.util.Iterator;
 import java.util.LinkedList;
 import java.util.List;
+import java.util.Map;
 
 import javax.xml.parsers.ParserConfigurationException;
 import javax.xml.parsers.SAXParser;
@@ -412,6 +414,121 @@ public class SAXDocumentFactory
         }
     }
 
+    /**
+     * The maximum number of idle parsers kept for each parser class.
+     */
+    protected static int parserPoolSize = 4;
+
+    /**
+     * The idle parsers, by parser class name.  The parsers created by
+     * the JAXP factory are under the empty string.
+     */
+    protected static Map parserPool = new HashMap();
+
+    /**
+     * The handler set on the idle parsers, so that they do not keep
+     * a reference to the factory which used them last.
+     */
+    protected static final DefaultHandler IDLE_HANDLER = new DefaultHandler();
+
+    /**
+     * Returns the maximum number of idle parsers kept for each parser
+     * class.
+     */
+    public static synchronized int getParserPoolSize() {
+        return parserPoolSize;
+    }
+
+    /**
+     * Sets the maximum number of idle parsers kept for each parser
+     * class.  A value of 0 disables the reuse of the parsers.
+     */
+    public static synchronized void setParserPoolSize(int n) {
+        parserPoolSize = n;
+        if (n == 0) {
+            parserPool.clear();
+        } else {
+            Iterator it = parserPool.values().iterator();
+            while (it.hasNext()) {
+                LinkedList l = (LinkedList)it.next();
+                while (l.size() > n) {
+                    l.removeLast();
+                }
+            }
+        }
+    }
+
+    /**
+     * Returns an idle parser of the given class, or null.
+     */
+    protected static synchronized XMLReader getPooledParser(String cls) {
+        LinkedList l = (LinkedList)parserPool.get(cls);
+        if (l == null || l.isEmpty()) {
+            return null;
+        }
+        return (XMLReader)l.removeFirst();
+    }
+
+    /**
+     * Makes a parser of the given class available for the next parses.
+     */
+    protected static synchronized void releaseParser(String cls,
+                                                     XMLReader r) {
+        LinkedList l = (LinkedList)parserPool.get(cls);
+        if (l == null) {
+            l = new LinkedList();
+            parserPool.put(cls, l);
+        }
+        if (l.size() < parserPoolSize) {
+            l.addFirst(r);
+        }
+    }
+
+    /**
+     * Returns a parser, taken from the pool of idle parsers or created.
+     */
+    protected XMLReader createParser() throws SAXException, IOException {
+        XMLReader r = getPooledParser
+            ((parserClassName == null) ? "" : parserClassName);
+        if (r != null) {
+            return r;
+        }
+        if (parserClassName != null) {
+            return XMLReaderFactory.createXMLReader(parserClassName);
+        }
+        SAXParser saxParser;
+        try {
+            saxParser = saxFactory.newSAXParser();
+        } catch (ParserConfigurationException pce) {
+            throw new IOException("Could not create SAXParser: "
+                    + pce.getMessage());
+        }
+        return saxParser.getXMLReader();
+    }
+
+    /**
+     * Puts back in the pool a parser which has completed a parse.
+     * The parser is dropped if its handlers cannot be reset.
+     */
+    protected void releaseParser(XMLReader r) {
+        if (getParserPoolSize() == 0) {
+            return;
+        }
+        try {
+            r.setContentHandler(IDLE_HANDLER);
+            r.setDTDHandler(IDLE_HANDLER);
+            r.setEntityResolver(IDLE_HANDLER);
+            r.setErrorHandler(IDLE_HANDLER);
+            r.setProperty("http://xml.org/sax/properties/lexical-handler",
+                          null);
+        } catch (SAXException e) {
+            return;
+        } catch (RuntimeException e) {
+            return;
+        }
+        releaseParser((parserClassName == null) ? "" : parserClassName, r);
+    }
+
     /**
      * Creates a Document.
      * @param is  The document input source.
@@ -420,18 +537,7 @@ public class SAXDocumentFactory
     protected Document createDocument(InputSource is)
         throws IOException {
         try {
-            if (parserClassName != null) {
-                parser = XMLReaderFactory.createXMLReader(parserClassName);
-            } else {
-                SAXParser saxParser;
-                try {
-                    saxParser = saxFactory.newSAXParser();
-                } catch (ParserConfigurationException pce) {
-                    throw new IOException("Could not create SAXParser: "
-                            + pce.getMessage());
-                }
-                parser = saxParser.getXMLReader();
-            }
+            parser = createParser();
 
             parser.setContentHandler(this);
             parser.setDTDHandler(this);
@@ -458,6 +564,7 @@ public class SAXDocumentFactory
             }
             throw new SAXIOException(e);
         }
+        releaseParser(parser);
 
         currentNode  = null;
         Document ret = document;
@@ -47,6 +47,17 @@ import org.apache.batik.util.HaltingThread;
 /**
  * A partial implementation of the <code>GraphicsNode</code> interface.
  *
+ * <p>The attributes most nodes do not have are kept in a
+ * {@link RareAttributes} object.  This replaces the protected fields
+ * <code>listeners</code>, <code>composite</code>, <code>clip</code>,
+ * <code>hints</code>, <code>mask</code>, <code>filter</code>,
+ * <code>graphicsNodeRable</code>,
+ * <code>enableBackgroundGraphicsNodeRable</code>,
+ * <code>changeStartedEvent</code> and <code>changeCompletedEvent</code>
+ * of earlier versions.  Subclasses which used these fields must use the
+ * corresponding get and set methods, or the {@link #rareAttributes}
+ * field, instead.</p>
+ *
  * @author <a href="mailto:Thierry.Kormann@sophia.inria.fr">Thierry Kormann</a>
  * @author <a href="mailto:etissandier@ilog.fr">Emmanuel Tissandier</a>
  * @author <a href="mailto:Thomas.DeWeeese@Kodak.com">Thomas DeWeese</a>
@@ -54,11 +65,6 @@ import org.apache.batik.util.HaltingThread;
  */
 public abstract class AbstractGraphicsNode implements GraphicsNode {
 
-    /**
-     * The listeners list.
-     */
-    protected EventListenerList listeners;
-
     /**
      * The transform of this graphics node.
      */
@@ -70,27 +76,17 @@ public abstract class AbstractGraphicsNode implements GraphicsNode {
      */
     protected AffineTransform inverseTransform;
 
-    /**
-     * The compositing operation to be used when a graphics node is
-     * painted on top of another one.
-     */
-    protected Composite composite;
-
     /**
      * This flag bit indicates whether or not this graphics node is visible.
      */
     protected boolean isVisible = true;
 
     /**
-     * The clipping filter for this graphics node.
+     * Whether the composite of this node is AlphaComposite.SrcOver.
+     * Most nodes have this composite, which is then not kept in the
+     * rare attributes.
      */
-    protected ClipRable clip;
-
-    /**
-     * The rendering hints that control the quality to use when rendering
-     * this graphics node.
-     */
-    protected RenderingHints hints;
+    protected boolean srcOverComposite;
 
     /**
      * The parent of this graphics node.
@@ -102,31 +98,11 @@ public abstract class AbstractGraphicsNode implements GraphicsNode {
      */
     protected RootGraphicsNode root;
 
-    /**
-     * The mask of this graphics node.
-     */
-    protected Mask mask;
-
-    /**
-     * The filter of this graphics node.
-     */
-    protected Filter filter;
-
     /**
      * Indicates how this graphics node reacts to events.
      */
     protected int pointerEventType = VISIBLE_PAINTED;
 
-    /**
-     * The GraphicsNodeRable for this node.
-     */
-    protected WeakReference graphicsNodeRable;
-
-    /**
-     * The GraphicsNodeRable for this node with all filtering applied
-     */
-    protected WeakReference enableBackgroundGraphicsNodeRable;
-
     /**
      * A Weak Reference to this.
      */
@@ -137,15 +113,81 @@ public abstract class AbstractGraphicsNode implements GraphicsNode {
      */
     private Rectangle2D bounds;
 
+    /**
+     * The attributes most nodes do not have, or null if this node has
+     * none of them.
+     */
+    protected RareAttributes rareAttributes;
 
-    protected GraphicsNodeChangeEvent changeStartedEvent   = null;
-    protected GraphicsNodeChangeEvent changeCompletedEvent = null;
+    /**
+     * The attributes of a graphics node which are rarely set.  They
+     * are kept out of the node, in an object allocated the first time
+     * one of them is set, so that the nodes of large trees are small.
+     */
+    protected static class RareAttributes {
+
+        /**
+         * The listeners list.
+         */
+        protected EventListenerList listeners;
+
+        /**
+         * The compositing operation to be used when a graphics node is
+         * painted on top of another one.
+         */
+        protected Composite composite;
+
+        /**
+         * The clipping filter for this graphics node.
+         */
+        protected ClipRable clip;
+
+        /**
+         * The rendering hints that control the quality to use when
+         * rendering this graphics node.
+         */
+        protected RenderingHints hints;
+
+        /**
+         * The mask of this graphics node.
+         */
+        protected Mask mask;
+
+        /**
+         * The filter of this graphics node.
+         */
+        protected Filter filter;
+
+        /**
+         * The GraphicsNodeRable for this node.
+         */
+        protected WeakReference graphicsNodeRable;
+
+        /**
+         * The GraphicsNodeRable for this node with all filtering applied
+         */
+        protected WeakReference enableBackgroundGraphicsNodeRable;
+
+        protected GraphicsNodeChangeEvent changeStartedEvent;
+        protected GraphicsNodeChangeEvent changeCompletedEvent;
+    }
 
     /**
      * Constructs a new graphics node.
      */
     protected AbstractGraphicsNode() {}
 
+    /**
+     * Returns the rarely set attributes of this node, allocating them
+     * if needed.
+     */
+    protected RareAttributes getRareAttributes() {
+        if (rareAttributes == null) {
+            rareAttributes = new RareAttributes();
+        }
+        return rareAttributes;
+    }
+
     /**
      * Returns a canonical WeakReference to this GraphicsNode.
      * This is suitable for use as a key value in a hash map
@@ -243,7 +285,14 @@ public abstract class AbstractGraphicsNode implements GraphicsNode {
     public void setComposite(Composite newComposite) {
         fireGraphicsNodeChangeStarted();
         invalidateGeometryCache();
-        this.composite = newComposite;
+        srcOverComposite = (newComposite == AlphaComposite.SrcOver);
+        if (srcOverComposite || newComposite == null) {
+            if (rareAttributes != null) {
+                rareAttributes.composite = null;
+            }
+        } else {
+            getRareAttributes().composite = newComposite;
+        }
         fireGraphicsNodeChangeCompleted();
     }
 
@@ -251,7 +300,10 @@ public abstract class AbstractGraphicsNode implements GraphicsNode {
      * Returns the composite of this node or null if any.
      */
     public Composite getComposite() {
-        return composite;
+        if (srcOverComposite) {
+            return AlphaComposite.SrcOver;
+        }
+        return (rareAttributes == null) ? null : rareAttributes.composite;
     }
 
     /**
@@ -274,12 +326,12 @@ public abstract class AbstractGraphicsNode implements GraphicsNode {
     }
 
     public void setClip(ClipRable newClipper) {
-        if ((newClipper == null) && (this.clip == null))
+        if ((newClipper == null) && (getClip() == null))
             return; // No change still no clip.
 
         fireGraphicsNodeChangeStarted();
         invalidateGeometryCache();
-        this.clip = newClipper;
+        getRareAttributes().clip = newClipper;
         fireGraphicsNodeChangeCompleted();
     }
 
@@ -287,7 +339,7 @@ public abstract class AbstractGraphicsNode implements GraphicsNode {
      * Returns the clipping filter of this node or null if any.
      */
     public ClipRable getClip() {
-        return clip;
+        return (rareAttributes == null) ? null : rareAttributes.clip;
     }
 
     /**
@@ -300,10 +352,11 @@ public abstract class AbstractGraphicsNode implements GraphicsNode {
      */
     public void setRenderingHint(RenderingHints.Key key, Object value) {
         fireGraphicsNodeChangeStarted();
-        if (this.hints == null) {
-            this.hints = new RenderingHints(key, value);
+        RareAttributes ra = getRareAttributes();
+        if (ra.hints == null) {
+            ra.hints = new RenderingHints(key, value);
         } else {
-            hints.put(key, value);
+            ra.hints.put(key, value);
         }
         fireGraphicsNodeChangeCompleted();
     }
@@ -316,10 +369,11 @@ public abstract class AbstractGraphicsNode implements GraphicsNode {
      */
     public void setRenderingHints(Map hints) {
         fireGraphicsNodeChangeStarted();
-        if (this.hints == null) {
-            this.hints = new RenderingHints(hints);
+        RareAttributes ra = getRareAttributes();
+        if (ra.hints == null) {
+            ra.hints = new RenderingHints(hints);
         } else {
-            this.hints.putAll(hints);
+            ra.hints.putAll(hints);
         }
         fireGraphicsNodeChangeCompleted();
     }
@@ -331,7 +385,9 @@ public abstract class AbstractGraphicsNode implements GraphicsNode {
      */
     public void setRenderingHints(RenderingHints newHints) {
         fireGraphicsNodeChangeStarted();
-        hints = newHints;
+        if ((newHints != null) || (rareAttributes != null)) {
+            getRareAttributes().hints = newHints;
+        }
         fireGraphicsNodeChangeCompleted();
     }
 
@@ -339,7 +395,7 @@ public abstract class AbstractGraphicsNode implements GraphicsNode {
      * Returns the rendering hints of this node or null if any.
      */
     public RenderingHints getRenderingHints() {
-        return hints;
+        return (rareAttributes == null) ? null : rareAttributes.hints;
     }
 
     /**
@@ -348,12 +404,12 @@ public abstract class AbstractGraphicsNode implements GraphicsNode {
      * @param newMask the new mask of this node
      */
     public void setMask(Mask newMask) {
-        if ((newMask == null) && (mask == null))
+        if ((newMask == null) && (getMask() == null))
             return; // No change still no mask.
 
         fireGraphicsNodeChangeStarted();
         invalidateGeometryCache();
-        mask = newMask;
+        getRareAttributes().mask = newMask;
         fireGraphicsNodeChangeCompleted();
     }
 
@@ -361,7 +417,7 @@ public abstract class AbstractGraphicsNode implements GraphicsNode {
      * Returns the mask of this node or null if any.
      */
     public Mask getMask() {
-        return mask;
+        return (rareAttributes == null) ? null : rareAttributes.mask;
     }
 
     /**
@@ -370,12 +426,12 @@ public abstract class AbstractGraphicsNode implements GraphicsNode {
      * @param newFilter the new filter of this node
      */
     public void setFilter(Filter newFilter) {
-        if ((newFilter == null) && (filter == null))
+        if ((newFilter == null) && (getFilter() == null))
             return; // No change still no filter.
 
         fireGraphicsNodeChangeStarted();
         invalidateGeometryCache();
-        filter = newFilter;
+        getRareAttributes().filter = newFilter;
         fireGraphicsNodeChangeCompleted();
     }
 
@@ -383,7 +439,7 @@ public abstract class AbstractGraphicsNode implements GraphicsNode {
      * Returns the filter of this node or null if any.
      */
     public Filter getFilter() {
-        return filter;
+        return (rareAttributes == null) ? null : rareAttributes.filter;
     }
 
     /**
@@ -393,13 +449,14 @@ public abstract class AbstractGraphicsNode implements GraphicsNode {
      */
     public Filter getGraphicsNodeRable(boolean createIfNeeded) {
         GraphicsNodeRable ret = null;
-        if (graphicsNodeRable != null) {
-            ret = (GraphicsNodeRable)graphicsNodeRable.get();
+        RareAttributes ra = rareAttributes;
+        if (ra != null && ra.graphicsNodeRable != null) {
+            ret = (GraphicsNodeRable)ra.graphicsNodeRable.get();
             if (ret != null) return ret;
         }
         if (createIfNeeded) {
         ret = new GraphicsNodeRable8Bit(this);
-        graphicsNodeRable = new WeakReference(ret);
+        getRareAttributes().graphicsNodeRable = new WeakReference(ret);
         }
         return ret;
     }
@@ -412,14 +469,17 @@ public abstract class AbstractGraphicsNode implements GraphicsNode {
     public Filter getEnableBackgroundGraphicsNodeRable
         (boolean createIfNeeded) {
         GraphicsNodeRable ret = null;
-        if (enableBackgroundGraphicsNodeRable != null) {
-            ret = (GraphicsNodeRable)enableBackgroundGraphicsNodeRable.get();
+        RareAttributes ra = rareAttributes;
+        if (ra != null && ra.enableBackgroundGraphicsNodeRable != null) {
+            ret = (GraphicsNodeRable)
+                ra.enableBackgroundGraphicsNodeRable.get();
             if (ret != null) return ret;
         }
         if (createIfNeeded) {
             ret = new GraphicsNodeRable8Bit(this);
             ret.setUsePrimitivePaint(false);
-            enableBackgroundGraphicsNodeRable = new WeakReference(ret);
+            getRareAttributes().enableBackgroundGraphicsNodeRable =
+                new WeakReference(ret);
         }
         return ret;
     }
@@ -434,6 +494,18 @@ public abstract class AbstractGraphicsNode implements GraphicsNode {
      * @param g2d the Graphics2D to use
      */
     public void paint(Graphics2D g2d){
+        RareAttributes ra = rareAttributes;
+        Composite composite = getComposite();
+        ClipRable clip = null;
+        RenderingHints hints = null;
+        Mask mask = null;
+        Filter filter = null;
+        if (ra != null) {
+            clip = ra.clip;
+            hints = ra.hints;
+            mask = ra.mask;
+            filter = ra.filter;
+        }
         if ((composite != null) &&
             (composite instanceof AlphaComposite)) {
             AlphaComposite ac = (AlphaComposite)composite;
@@ -591,10 +663,12 @@ public abstract class AbstractGraphicsNode implements GraphicsNode {
      * otherwise.
      */
     protected boolean isOffscreenBufferNeeded() {
-        return ((filter != null) ||
-                (mask != null) ||
-                (composite != null &&
-                 !AlphaComposite.SrcOver.equals(composite)));
+        RareAttributes ra = rareAttributes;
+        return ra != null
+            && ((ra.filter != null) ||
+                (ra.mask != null) ||
+                (ra.composite != null &&
+                 !AlphaComposite.SrcOver.equals(ra.composite)));
     }
 
     /**
@@ -630,29 +704,44 @@ public abstract class AbstractGraphicsNode implements GraphicsNode {
         return false;
     }
 
+    /**
+     * Tells whether the tree of this node has change listeners.  The
+     * change events are not created otherwise.
+     */
+    protected boolean hasChangeListeners() {
+        RootGraphicsNode rootGN = getRoot();
+        if (rootGN == null) return false;
+        List l = rootGN.getTreeGraphicsNodeChangeListeners();
+        return (l != null) && !l.isEmpty();
+    }
+
     //
     // Event support methods
     //
     public void fireGraphicsNodeChangeStarted(GraphicsNode changeSrc) {
-        if (changeStartedEvent == null)
-            changeStartedEvent = new GraphicsNodeChangeEvent
+        if (!hasChangeListeners()) return;
+        RareAttributes ra = getRareAttributes();
+        if (ra.changeStartedEvent == null)
+            ra.changeStartedEvent = new GraphicsNodeChangeEvent
                 (this, GraphicsNodeChangeEvent.CHANGE_STARTED);
-        changeStartedEvent.setChangeSrc(changeSrc);
-        fireGraphicsNodeChangeStarted(changeStartedEvent);
-        changeStartedEvent.setChangeSrc(null);
+        ra.changeStartedEvent.setChangeSrc(changeSrc);
+        fireGraphicsNodeChangeStarted(ra.changeStartedEvent);
+        ra.changeStartedEvent.setChangeSrc(null);
     }
 
     //
     // Event support methods
     //
     public void fireGraphicsNodeChangeStarted() {
-        if (changeStartedEvent == null)
-            changeStartedEvent = new GraphicsNodeChangeEvent
+        if (!hasChangeListeners()) return;
+        RareAttributes ra = getRareAttributes();
+        if (ra.changeStartedEvent == null)
+            ra.changeStartedEvent = new GraphicsNodeChangeEvent
                 (this, GraphicsNodeChangeEvent.CHANGE_STARTED);
         else {
-            changeStartedEvent.setChangeSrc(null);
+            ra.changeStartedEvent.setChangeSrc(null);
         }
-        fireGraphicsNodeChangeStarted(changeStartedEvent);
+        fireGraphicsNodeChangeStarted(ra.changeStartedEvent);
     }
 
     public void fireGraphicsNodeChangeStarted
@@ -674,18 +763,17 @@ public abstract class AbstractGraphicsNode implements GraphicsNode {
     }
 
     public void fireGraphicsNodeChangeCompleted() {
-        if (changeCompletedEvent == null) {
-            changeCompletedEvent = new GraphicsNodeChangeEvent
-                (this, GraphicsNodeChangeEvent.CHANGE_COMPLETED);
-        }
-
         // If we had per node listeners we would fire them here...
 
-        RootGraphicsNode rootGN = getRoot();
-        if (rootGN == null) return;
+        if (!hasChangeListeners()) return;
+        List l = getRoot().getTreeGraphicsNodeChangeListeners();
 
-        List l = rootGN.getTreeGraphicsNodeChangeListeners();
-        if (l == null) return;
+        RareAttributes ra = getRareAttributes();
+        if (ra.changeCompletedEvent == null) {
+            ra.changeCompletedEvent = new GraphicsNodeChangeEvent
+                (this, GraphicsNodeChangeEvent.CHANGE_COMPLETED);
+        }
+        GraphicsNodeChangeEvent changeCompletedEvent = ra.changeCompletedEvent;
 
         Iterator i = l.iterator();
         GraphicsNodeChangeListener gncl;
@@ -761,6 +849,9 @@ public abstract class AbstractGraphicsNode implements GraphicsNode {
         // Get the primitive bounds
         // Rectangle2D bounds = null;
         if (bounds == null) {
+            Filter filter = getFilter();
+            ClipRable clip = getClip();
+            Mask mask = getMask();
             // The painted region, before cliping, masking and compositing is
             // either the area painted by the primitive paint or the area
             // painted by the filter.
@@ -810,6 +901,9 @@ public abstract class AbstractGraphicsNode implements GraphicsNode {
             t = new AffineTransform(txf);
             t.concatenate(transform);
         }
+        Filter filter = getFilter();
+        ClipRable clip = getClip();
+        Mask mask = getMask();
 
         // The painted region, before cliping, masking and compositing
         // is either the area painted by the primitive paint or the
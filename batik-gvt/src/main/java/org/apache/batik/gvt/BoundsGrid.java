@@ -0,0 +1,307 @@
+/*
+
+   Licensed to the Apache Software Foundation (ASF) under one or more
+   contributor license agreements.  See the NOTICE file distributed with
+   this work for additional information regarding copyright ownership.
+   The ASF licenses this file to You under the Apache License, Version 2.0
+   (the "License"); you may not use this file except in compliance with
+   the License.  You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+
+ */
+package org.apache.batik.gvt;
+
+import java.awt.geom.Rectangle2D;
+import java.util.Arrays;
+
+/**
+ * A uniform grid over a list of rectangles, used to find the
+ * rectangles that intersect a region without testing all of them.
+ * Each cell keeps the indices of the rectangles that overlap it.  The
+ * rectangles that overlap many cells and the null rectangles are kept
+ * apart and are always candidates.
+ *
+ * The grid is immutable once built, so it can be queried from several
+ * threads.
+ *
+ * @version $Id$
+ */
+public class BoundsGrid {
+
+    /**
+     * The maximum number of cells along an axis.
+     */
+    protected static final int MAX_CELLS = 256;
+
+    /**
+     * The maximum number of cells a rectangle is added to.
+     */
+    protected static final int MAX_SPAN = 16;
+
+    /**
+     * The indexed rectangles.
+     */
+    protected Rectangle2D[] bounds;
+
+    /**
+     * The union of the non null rectangles, or null.
+     */
+    protected Rectangle2D union;
+
+    /**
+     * The number of columns and rows.
+     */
+    protected int cols, rows;
+
+    /**
+     * The size of a cell.
+     */
+    protected double cellWidth, cellHeight;
+
+    /**
+     * The index in <code>cellItems</code> of the first rectangle of
+     * each cell, plus the total number of entries.
+     */
+    protected int[] cellStart;
+
+    /**
+     * The rectangle indices of all the cells, in ascending order in
+     * each cell.
+     */
+    protected int[] cellItems;
+
+    /**
+     * The indices of the rectangles not added to the cells, in
+     * ascending order.
+     */
+    protected int[] others;
+
+    /**
+     * Creates a grid over the given rectangles.
+     * @param bounds the rectangles, which may contain nulls.  The array
+     *        and its rectangles must not be modified afterwards.
+     */
+    public BoundsGrid(Rectangle2D[] bounds) {
+        this.bounds = bounds;
+        int n = bounds.length;
+        for (Rectangle2D b : bounds) {
+            if (b != null) {
+                if (union == null) {
+                    union = (Rectangle2D)b.clone();
+                } else {
+                    union.add(b);
+                }
+            }
+        }
+
+        int[] cell = new int[4];
+        int[] span = new int[n];
+        int nOthers = 0;
+        if (union != null) {
+            double w = union.getWidth();
+            double h = union.getHeight();
+            if (w > 0 && h > 0) {
+                cols = (int)Math.ceil(Math.sqrt(n * w / h));
+                rows = (int)Math.ceil(n / (double)cols);
+            } else {
+                cols = (w > 0) ? n : 1;
+                rows = (h > 0) ? n : 1;
+            }
+            cols = Math.max(1, Math.min(cols, MAX_CELLS));
+            rows = Math.max(1, Math.min(rows, MAX_CELLS));
+            cellWidth = w / cols;
+            cellHeight = h / rows;
+        }
+
+        // First pass: count the entries of each cell.
+        cellStart = new int[cols * rows + 1];
+        for (int i = 0; i < n; i++) {
+            if (bounds[i] == null || !getCells(bounds[i], cell)) {
+                nOthers++;
+                continue;
+            }
+            int s = (cell[2] - cell[0] + 1) * (cell[3] - cell[1] + 1);
+            if (s > MAX_SPAN) {
+                nOthers++;
+                continue;
+            }
+            span[i] = s;
+            for (int r = cell[1]; r <= cell[3]; r++) {
+                for (int c = cell[0]; c <= cell[2]; c++) {
+                    cellStart[r * cols + c + 1]++;
+                }
+            }
+        }
+        for (int c = 0; c < cols * rows; c++) {
+            cellStart[c + 1] += cellStart[c];
+        }
+
+        // Second pass: fill the cells, in ascending order.
+        cellItems = new int[cellStart[cols * rows]];
+        others = new int[nOthers];
+        int[] next = new int[cols * rows];
+        System.arraycopy(cellStart, 0, next, 0, next.length);
+        nOthers = 0;
+        for (int i = 0; i < n; i++) {
+            if (span[i] == 0) {
+                others[nOthers++] = i;
+                continue;
+            }
+            getCells(bounds[i], cell);
+            for (int r = cell[1]; r <= cell[3]; r++) {
+                for (int c = cell[0]; c <= cell[2]; c++) {
+                    cellItems[next[r * cols + c]++] = i;
+                }
+            }
+        }
+    }
+
+    /**
+     * Returns the union of the non null rectangles, or null.
+     */
+    public Rectangle2D getUnion() {
+        return union;
+    }
+
+    /**
+     * Tells whether the given region contains all the non null
+     * rectangles.
+     */
+    public boolean covers(Rectangle2D r) {
+        return union == null || r.contains(union);
+    }
+
+    /**
+     * Returns, in ascending order, the indices of the rectangles that
+     * may intersect or touch the given region.  The result contains
+     * all such rectangles and the null ones, and may contain a few
+     * others.
+     */
+    public int[] getIntersecting(Rectangle2D r) {
+        return getIntersecting(r.getMinX(), r.getMinY(),
+                               r.getMaxX(), r.getMaxY());
+    }
+
+    /**
+     * Returns, in ascending order, the indices of the rectangles that
+     * may contain the given point, and the null ones.
+     */
+    public int[] getContaining(double x, double y) {
+        return getIntersecting(x, y, x, y);
+    }
+
+    /**
+     * Returns the indices of the rectangles that may intersect the
+     * given region.
+     */
+    protected int[] getIntersecting(double x0, double y0,
+                                    double x1, double y1) {
+        int n = others.length;
+        int c0 = 0, c1 = -1, r0 = 0, r1 = -1;
+        if (union != null
+            && x0 <= union.getMaxX() && x1 >= union.getMinX()
+            && y0 <= union.getMaxY() && y1 >= union.getMinY()) {
+            c0 = getColumn(x0);
+            c1 = getColumn(x1);
+            r0 = getRow(y0);
+            r1 = getRow(y1);
+            for (int r = r0; r <= r1; r++) {
+                n += cellStart[r * cols + c1 + 1] - cellStart[r * cols + c0];
+            }
+        }
+
+        int[] result = new int[n];
+        n = 0;
+        for (int i : others) {
+            Rectangle2D b = bounds[i];
+            if (b == null || intersects(b, x0, y0, x1, y1)) {
+                result[n++] = i;
+            }
+        }
+        boolean sorted = n == 0 || c1 < c0;
+        for (int r = r0; r <= r1; r++) {
+            for (int c = c0; c <= c1; c++) {
+                int end = cellStart[r * cols + c + 1];
+                for (int j = cellStart[r * cols + c]; j < end; j++) {
+                    int i = cellItems[j];
+                    if (intersects(bounds[i], x0, y0, x1, y1)) {
+                        result[n++] = i;
+                    }
+                }
+                sorted &= (c0 == c1 && r0 == r1);
+            }
+        }
+        if (!sorted) {
+            Arrays.sort(result, 0, n);
+        }
+
+        // Remove the rectangles found in several cells.
+        int m = 0;
+        for (int j = 0; j < n; j++) {
+            if (m == 0 || result[m - 1] != result[j]) {
+                result[m++] = result[j];
+            }
+        }
+        if (m == result.length) {
+            return result;
+        }
+        int[] trimmed = new int[m];
+        System.arraycopy(result, 0, trimmed, 0, m);
+        return trimmed;
+    }
+
+    /**
+     * Stores the range of cells the given rectangle overlaps.
+     * @return false if the range is not computable
+     */
+    protected boolean getCells(Rectangle2D b, int[] cell) {
+        if (Double.isNaN(b.getMinX()) || Double.isNaN(b.getMinY())
+            || Double.isNaN(b.getMaxX()) || Double.isNaN(b.getMaxY())) {
+            return false;
+        }
+        cell[0] = getColumn(b.getMinX());
+        cell[1] = getRow(b.getMinY());
+        cell[2] = getColumn(b.getMaxX());
+        cell[3] = getRow(b.getMaxY());
+        return true;
+    }
+
+    /**
+     * Returns the column of the given abscissa, clamped to the grid.
+     */
+    protected int getColumn(double x) {
+        if (cellWidth <= 0) {
+            return 0;
+        }
+        int c = (int)Math.floor((x - union.getMinX()) / cellWidth);
+        return c < 0 ? 0 : (c >= cols ? cols - 1 : c);
+    }
+
+    /**
+     * Returns the row of the given ordinate, clamped to the grid.
+     */
+    protected int getRow(double y) {
+        if (cellHeight <= 0) {
+            return 0;
+        }
+        int r = (int)Math.floor((y - union.getMinY()) / cellHeight);
+        return r < 0 ? 0 : (r >= rows ? rows - 1 : r);
+    }
+
+    /**
+     * Tells whether the given rectangle intersects or touches a region.
+     */
+    protected static boolean intersects(Rectangle2D b,
+                                        double x0, double y0,
+                                        double x1, double y1) {
+        return b.getMinX() <= x1 && b.getMaxX() >= x0
+            && b.getMinY() <= y1 && b.getMaxY() >= y0;
+    }
+}
@@ -90,6 +90,24 @@ public class CompositeGraphicsNode extends AbstractGraphicsNode
      */
     private Shape outline;
 
+    /**
+     * Internal Cache: the grid over the transformed bounds of the
+     * children.
+     */
+    private volatile BoundsGrid boundsGrid;
+
+    /**
+     * Internal Cache: the grid over the transformed sensitive bounds of
+     * the children.
+     */
+    private volatile BoundsGrid sensitiveBoundsGrid;
+
+    /**
+     * The number of children from which a grid over their bounds is
+     * used to find the children to paint or to hit test.
+     */
+    public static final int GRID_THRESHOLD = 64;
+
     /**
      * Constructs a new empty <code>CompositeGraphicsNode</code>.
      */
@@ -153,12 +171,26 @@ public class CompositeGraphicsNode extends AbstractGraphicsNode
         // Thread.currentThread() is potentially expensive, so reuse my instance in hasBeenHalted()
         Thread currentThread = Thread.currentThread();
 
+        // Only paint the children that intersect the clip, if known.
+        int[] indices = null;
+        BoundsGrid grid = getBoundsGrid();
+        if (grid != null) {
+            Shape clip = g2d.getClip();
+            if (clip != null) {
+                Rectangle2D cb = clip.getBounds2D();
+                if (!grid.covers(cb)) {
+                    indices = grid.getIntersecting(cb);
+                }
+            }
+        }
+        int n = (indices == null) ? count : indices.length;
+
         // Paint children
-        for (int i=0; i < count; ++i) {
+        for (int i=0; i < n; ++i) {
             if (HaltingThread.hasBeenHalted( currentThread ))
                 return;
 
-            GraphicsNode node = children[i];
+            GraphicsNode node = children[(indices == null) ? i : indices[i]];
             if (node == null) {
                 continue;
             }
@@ -187,6 +219,57 @@ public class CompositeGraphicsNode extends AbstractGraphicsNode
         primitiveBounds = null;
         sensitiveBounds = null;
         outline = null;
+        boundsGrid = null;
+        sensitiveBoundsGrid = null;
+    }
+
+    /**
+     * Returns the grid over the transformed bounds of the children, or
+     * null if there are too few children.
+     */
+    protected BoundsGrid getBoundsGrid() {
+        BoundsGrid grid = boundsGrid;
+        if (grid == null && count >= GRID_THRESHOLD) {
+            grid = createBoundsGrid(false);
+            boundsGrid = grid;
+        }
+        return grid;
+    }
+
+    /**
+     * Returns the grid over the transformed sensitive bounds of the
+     * children, or null if there are too few children.
+     */
+    protected BoundsGrid getSensitiveBoundsGrid() {
+        BoundsGrid grid = sensitiveBoundsGrid;
+        if (grid == null && count >= GRID_THRESHOLD) {
+            grid = createBoundsGrid(true);
+            sensitiveBoundsGrid = grid;
+        }
+        return grid;
+    }
+
+    /**
+     * Creates a grid over the transformed bounds or sensitive bounds of
+     * the children.  Returns null if the thread has been halted.
+     */
+    protected BoundsGrid createBoundsGrid(boolean sensitive) {
+        // Thread.currentThread() is potentially expensive, so reuse my instance in hasBeenHalted()
+        Thread currentThread = Thread.currentThread();
+
+        int n = count;
+        Rectangle2D[] bounds = new Rectangle2D[n];
+        for (int i = 0; i < n; i++) {
+            Rectangle2D b = sensitive
+                ? children[i].getTransformedSensitiveBounds(IDENTITY)
+                : children[i].getTransformedBounds(IDENTITY);
+            if (b != null) {
+                bounds[i] = (Rectangle2D)b.clone();
+            }
+            if (((i & 0x0F) == 0) && HaltingThread.hasBeenHalted( currentThread ))
+                return null; // check every 16 children if we have been interrupted.
+        }
+        return new BoundsGrid(bounds);
     }
 
     /**
@@ -460,9 +543,16 @@ public class CompositeGraphicsNode extends AbstractGraphicsNode
     public boolean contains(Point2D p) {
         Rectangle2D bounds = getSensitiveBounds();
         if (count > 0 && bounds != null && bounds.contains(p)) {
+            int[] indices = null;
+            BoundsGrid grid = getSensitiveBoundsGrid();
+            if (grid != null) {
+                indices = grid.getContaining(p.getX(), p.getY());
+            }
+            int n = (indices == null) ? count : indices.length;
             Point2D pt = null;
             Point2D cp = null; // Propagated to children
-            for (int i=0; i < count; ++i) {
+            for (int j=0; j < n; ++j) {
+                int i = (indices == null) ? j : indices[j];
                 AffineTransform t = children[i].getInverseTransform();
                 if(t != null){
                     pt = t.transform(p, pt);
@@ -489,10 +579,17 @@ public class CompositeGraphicsNode extends AbstractGraphicsNode
     public GraphicsNode nodeHitAt(Point2D p) {
         Rectangle2D bounds = getSensitiveBounds();
         if (count > 0 && bounds != null && bounds.contains(p)) {
+            int[] indices = null;
+            BoundsGrid grid = getSensitiveBoundsGrid();
+            if (grid != null) {
+                indices = grid.getContaining(p.getX(), p.getY());
+            }
+            int n = (indices == null) ? count : indices.length;
             // Go backward because the children are in rendering order
             Point2D pt = null;
             Point2D cp = null; // Propagated to children
-            for (int i=count-1; i >= 0; --i) {
+            for (int j=n-1; j >= 0; --j) {
+                int i = (indices == null) ? j : indices[j];
                 AffineTransform t = children[i].getInverseTransform();
                 if(t != null){
                     pt = t.transform(p, pt);
@@ -0,0 +1,336 @@
+/*
+
+   Licensed to the Apache Software Foundation (ASF) under one or more
+   contributor license agreements.  See the NOTICE file distributed with
+   this work for additional information regarding copyright ownership.
+   The ASF licenses this file to You under the Apache License, Version 2.0
+   (the "License"); you may not use this file except in compliance with
+   the License.  You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+
+ */
+package org.apache.batik.gvt;
+
+import java.awt.Shape;
+import java.awt.geom.AffineTransform;
+import java.awt.geom.Path2D;
+import java.awt.geom.PathIterator;
+import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.apache.batik.ext.awt.geom.PackedPath;
+
+/**
+ * A report of the number of nodes of a GVT tree and of an estimation
+ * of the memory they use, by node class.
+ *
+ * The memory of a node is estimated from the fields of its class and
+ * of the objects it owns: its transforms, its rarely set attributes,
+ * its children array, its shape and its painters.  The objects shared
+ * between nodes, like paints, filters and fonts, are not counted.  The
+ * estimation assumes a JVM using compressed object pointers.
+ *
+ * @version $Id$
+ */
+public class GVTMemoryReport {
+
+    /**
+     * The size of an object header.
+     */
+    protected static final int HEADER_SIZE = 12;
+
+    /**
+     * The size of an array header.
+     */
+    protected static final int ARRAY_HEADER_SIZE = 16;
+
+    /**
+     * The size of an object reference.
+     */
+    protected static final int REFERENCE_SIZE = 4;
+
+    /**
+     * The estimated sizes of the instances, by class.
+     */
+    protected static Map instanceSizes = new HashMap();
+
+    /**
+     * The entries of the report, by node class.
+     */
+    protected Map entries = new HashMap();
+
+    /**
+     * The number of nodes.
+     */
+    protected int nodeCount;
+
+    /**
+     * The estimated size of the nodes.
+     */
+    protected long estimatedBytes;
+
+    /**
+     * Counts the nodes of the tree starting at the given node.  The
+     * children of the nodes are read without building the ones built
+     * on demand.
+     */
+    public GVTMemoryReport(GraphicsNode node) {
+        add(node);
+    }
+
+    /**
+     * Returns the number of nodes.
+     */
+    public int getNodeCount() {
+        return nodeCount;
+    }
+
+    /**
+     * Returns the estimated number of bytes used by the nodes.
+     */
+    public long getEstimatedBytes() {
+        return estimatedBytes;
+    }
+
+    /**
+     * Returns the classes of the nodes, by decreasing estimated size.
+     */
+    public List getNodeClasses() {
+        List l = new ArrayList(entries.keySet());
+        Collections.sort(l, new Comparator() {
+                public int compare(Object o1, Object o2) {
+                    long b1 = getEstimatedBytes((Class)o1);
+                    long b2 = getEstimatedBytes((Class)o2);
+                    if (b1 != b2) {
+                        return (b1 > b2) ? -1 : 1;
+                    }
+                    return ((Class)o1).getName().compareTo
+                        (((Class)o2).getName());
+                }
+            });
+        return l;
+    }
+
+    /**
+     * Returns the number of nodes of the given class.
+     */
+    public int getNodeCount(Class cls) {
+        Entry e = (Entry)entries.get(cls);
+        return (e == null) ? 0 : e.count;
+    }
+
+    /**
+     * Returns the estimated number of bytes used by the nodes of the
+     * given class.
+     */
+    public long getEstimatedBytes(Class cls) {
+        Entry e = (Entry)entries.get(cls);
+        return (e == null) ? 0 : e.bytes;
+    }
+
+    /**
+     * Returns the report as a table.
+     */
+    public String toString() {
+        StringBuffer sb = new StringBuffer();
+        for (Object o : getNodeClasses()) {
+            Class cls = (Class) o;
+            sb.append(cls.getName());
+            sb.append(' ');
+            sb.append(getNodeCount(cls));
+            sb.append(' ');
+            sb.append(getEstimatedBytes(cls));
+            sb.append('\n');
+        }
+        sb.append("total ");
+        sb.append(nodeCount);
+        sb.append(' ');
+        sb.append(estimatedBytes);
+        sb.append('\n');
+        return sb.toString();
+    }
+
+    /**
+     * Adds the given node and its descendants to this report.
+     */
+    protected void add(GraphicsNode node) {
+        long size = estimateNodeSize(node);
+        Entry e = (Entry)entries.get(node.getClass());
+        if (e == null) {
+            e = new Entry();
+            entries.put(node.getClass(), e);
+        }
+        e.count++;
+        e.bytes += size;
+        nodeCount++;
+        estimatedBytes += size;
+
+        if (node instanceof CompositeGraphicsNode) {
+            CompositeGraphicsNode cgn = (CompositeGraphicsNode)node;
+            GraphicsNode[] children = cgn.children;
+            int count = cgn.count;
+            for (int i = 0; children != null && i < count; i++) {
+                add(children[i]);
+            }
+        }
+    }
+
+    /**
+     * Returns the estimated number of bytes used by the given node and
+     * the objects it owns, its descendants excepted.
+     */
+    protected long estimateNodeSize(GraphicsNode node) {
+        long size = getInstanceSize(node.getClass());
+        AffineTransform t = node.getTransform();
+        if (t != null) {
+            size += getInstanceSize(AffineTransform.class);
+            if (node.getInverseTransform() != t) {
+                size += getInstanceSize(AffineTransform.class);
+            }
+        }
+        if (node instanceof AbstractGraphicsNode) {
+            AbstractGraphicsNode agn = (AbstractGraphicsNode)node;
+            if (agn.rareAttributes != null) {
+                size += getInstanceSize(agn.rareAttributes.getClass());
+            }
+        }
+        if (node instanceof CompositeGraphicsNode) {
+            GraphicsNode[] children = ((CompositeGraphicsNode)node).children;
+            if (children != null) {
+                size += getArraySize(children.length, REFERENCE_SIZE);
+            }
+        }
+        if (node instanceof ShapeNode) {
+            ShapeNode sn = (ShapeNode)node;
+            size += estimateShapeSize(sn.getShape());
+            size += estimatePainterSize(sn.getShapePainter());
+        }
+        return size;
+    }
+
+    /**
+     * Returns the estimated number of bytes used by the given painter.
+     */
+    protected long estimatePainterSize(ShapePainter p) {
+        if (p == null) {
+            return 0;
+        }
+        long size = getInstanceSize(p.getClass());
+        if (p instanceof StrokeShapePainter) {
+            size += estimateShapeSize(((StrokeShapePainter)p).strokedShape);
+        } else if (p instanceof CompositeShapePainter) {
+            CompositeShapePainter csp = (CompositeShapePainter)p;
+            if (csp.painters != null) {
+                size += getArraySize(csp.painters.length, REFERENCE_SIZE);
+                for (int i = 0; i < csp.count; i++) {
+                    size += estimatePainterSize(csp.painters[i]);
+                }
+            }
+        }
+        return size;
+    }
+
+    /**
+     * Returns the estimated number of bytes used by the given shape.
+     * The arrays of the paths are estimated from their segments.
+     */
+    protected long estimateShapeSize(Shape s) {
+        if (s == null) {
+            return 0;
+        }
+        long size = getInstanceSize(s.getClass());
+        if (s instanceof Path2D || s instanceof PackedPath) {
+            int segments = 0;
+            int coords = 0;
+            float[] c = new float[6];
+            for (PathIterator it = s.getPathIterator(null);
+                 !it.isDone();
+                 it.next()) {
+                segments++;
+                switch (it.currentSegment(c)) {
+                case PathIterator.SEG_MOVETO:
+                case PathIterator.SEG_LINETO:
+                    coords += 2;
+                    break;
+                case PathIterator.SEG_QUADTO:
+                    coords += 4;
+                    break;
+                case PathIterator.SEG_CUBICTO:
+                    coords += 6;
+                }
+            }
+            size += getArraySize(segments, 1);
+            size += getArraySize(coords, (s instanceof Path2D.Double) ? 8 : 4);
+        }
+        return size;
+    }
+
+    /**
+     * Returns the estimated size of an array.
+     */
+    protected static long getArraySize(int length, int elementSize) {
+        return align(ARRAY_HEADER_SIZE + (long)length * elementSize);
+    }
+
+    /**
+     * Returns the estimated size of the instances of the given class.
+     */
+    public static synchronized long getInstanceSize(Class cls) {
+        Long l = (Long)instanceSizes.get(cls);
+        if (l != null) {
+            return l.longValue();
+        }
+        long size = HEADER_SIZE;
+        for (Class c = cls; c != null; c = c.getSuperclass()) {
+            Field[] fields = c.getDeclaredFields();
+            for (int i = 0; i < fields.length; i++) {
+                if (Modifier.isStatic(fields[i].getModifiers())) {
+                    continue;
+                }
+                Class t = fields[i].getType();
+                if (t == long.class || t == double.class) {
+                    size += 8;
+                } else if (t == int.class || t == float.class) {
+                    size += 4;
+                } else if (t == short.class || t == char.class) {
+                    size += 2;
+                } else if (t == byte.class || t == boolean.class) {
+                    size += 1;
+                } else {
+                    size += REFERENCE_SIZE;
+                }
+            }
+        }
+        size = align(size);
+        instanceSizes.put(cls, size);
+        return size;
+    }
+
+    /**
+     * Rounds the given size to the object alignment.
+     */
+    protected static long align(long size) {
+        return (size + 7) & ~7L;
+    }
+
+    /**
+     * The count and the size of the nodes of a class.
+     */
+    protected static class Entry {
+        protected int count;
+        protected long bytes;
+    }
+}
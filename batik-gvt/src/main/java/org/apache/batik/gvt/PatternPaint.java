@@ -151,11 +151,11 @@ public class PatternPaint implements Paint {
     /**
      * Creates and returns a context used to generate the pattern.
      */
-    public PaintContext createContext(ColorModel      cm,
-                                      Rectangle       deviceBounds,
-                                      Rectangle2D     userBounds,
-                                      AffineTransform xform,
-                                      RenderingHints  hints) {
+    public synchronized PaintContext createContext(ColorModel      cm,
+                                                   Rectangle       deviceBounds,
+                                                   Rectangle2D     userBounds,
+                                                   AffineTransform xform,
+                                                   RenderingHints  hints) {
         // Concatenate the patternTransform to xform
         if (patternTransform != null) {
             xform = new AffineTransform(xform);
@@ -171,11 +171,14 @@ public class PatternPaint implements Paint {
             lastContext.getUsr2Dev().getMatrix(q);
             if ((p[0] == q[0]) && (p[1] == q[1]) &&
                 (p[2] == q[2]) && (p[3] == q[3])) {
+                // The working raster of a context must not be shared
+                // as the paint may be used by several rendering threads.
+                PatternPaintContext ppc = new PatternPaintContext(lastContext);
                 if ((p[4] == q[4]) && (p[5] == q[5]))
-                    return lastContext;
+                    return ppc;
                 else
                     return new PatternPaintContextWrapper
-                        (lastContext,
+                        (ppc,
                          (int)(q[4]-p[4]+0.5),
                          (int)(q[5]-p[5]+0.5));
             }
@@ -143,6 +143,17 @@ public class PatternPaintContext implements PaintContext {
         }
     }
 
+    /**
+     * Creates a context that shares the tiled pattern rendering of
+     * <code>ppc</code> but has its own working raster, so that the
+     * two contexts can be used from different threads.
+     */
+    protected PatternPaintContext(PatternPaintContext ppc) {
+        this.rasterCM = ppc.rasterCM;
+        this.tiled    = ppc.tiled;
+        this.usr2dev  = ppc.usr2dev;
+    }
+
     public void dispose(){
         raster = null;
     }
@@ -30,7 +30,8 @@ import java.awt.geom.Rectangle2D;
 import java.text.AttributedCharacterIterator;
 import java.text.CharacterIterator;
 import java.text.StringCharacterIterator;
-import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.Map;
 
 import org.apache.batik.gvt.text.ArabicTextHandler;
@@ -48,6 +49,11 @@ public class AWTGVTFont implements GVTFont {
     protected double size;
     protected double scale;
 
+    /**
+     * The geometry cache of the glyphs of awtFont.
+     */
+    protected AWTGlyphGeometryCache glyphCache;
+
     /**
      * Creates a new AWTGVTFont that wraps the given Font.
      *
@@ -293,8 +299,7 @@ public class AWTGVTFont implements GVTFont {
                                                      int glyphIndex,
                                                      Point2D glyphPos) {
 
-        AWTGlyphGeometryCache glyphCache =
-            (AWTGlyphGeometryCache)fontCache.get(font.awtFont);
+        AWTGlyphGeometryCache glyphCache = font.glyphCache;
 
         AWTGlyphGeometryCache.Value v = glyphCache.get(c);
         if (v == null) {
@@ -317,20 +322,63 @@ public class AWTGVTFont implements GVTFont {
     // static cache for AWTGVTFont
     //
 
-    static Map fontCache = new HashMap(11);
+    /**
+     * The maximum number of AWT fonts in the cache.
+     */
+    static volatile int fontCacheSize = 256;
+
+    /**
+     * The glyph geometry caches shared by the fonts wrapping the same
+     * AWT font, by AWT font, from the least to the most recently used.
+     * Accesses must be synchronized on the map.
+     */
+    static final Map fontCache =
+        new LinkedHashMap(16, 0.75f, true) {
+            protected boolean removeEldestEntry(Map.Entry e) {
+                return size() > Math.max(fontCacheSize, 1);
+            }
+        };
 
-    static void initializeFontCache(Font awtFont) {
-        if (!fontCache.containsKey(awtFont)) {
-            fontCache.put(awtFont, new AWTGlyphGeometryCache());
-        }
+    /**
+     * Returns the maximum number of AWT fonts whose glyph geometry is
+     * kept in the shared cache.
+     */
+    public static int getFontCacheSize() {
+        return fontCacheSize;
     }
 
-    static void putAWTGVTFont(AWTGVTFont font) {
-        fontCache.put(font.awtFont, font);
+    /**
+     * Sets the maximum number of AWT fonts whose glyph geometry is kept
+     * in the shared cache.  The least recently used fonts are dropped
+     * first; the fonts already created keep their glyph geometry when
+     * the cache drops it.
+     */
+    public static void setFontCacheSize(int size) {
+        synchronized (fontCache) {
+            fontCacheSize = size;
+            int max = Math.max(size, 1);
+            Iterator it = fontCache.keySet().iterator();
+            while (fontCache.size() > max) {
+                it.next();
+                it.remove();
+            }
+        }
     }
 
-    static AWTGVTFont getAWTGVTFont(Font awtFont) {
-        return (AWTGVTFont)fontCache.get(awtFont);
+    /**
+     * Sets the glyph geometry cache of this font, shared with the other
+     * fonts wrapping the same AWT font.
+     */
+    void initializeFontCache(Font awtFont) {
+        AWTGlyphGeometryCache c;
+        synchronized (fontCache) {
+            c = (AWTGlyphGeometryCache)fontCache.get(awtFont);
+            if (c == null) {
+                c = new AWTGlyphGeometryCache();
+                fontCache.put(awtFont, c);
+            }
+        }
+        glyphCache = c;
     }
 
 }
@@ -27,6 +27,12 @@ import java.lang.ref.SoftReference;
  * This class represents a doubly indexed hash table, which holds
  * soft references to the contained glyph geometry informations.
  *
+ * The table can be read by several threads without locking: the
+ * entries are never modified once they are in the table, the writers
+ * replace them and the table itself, under a lock.  A reader running
+ * during a write may not see the new value, in which case it computes
+ * the geometry again.
+ *
  * @author <a href="mailto:stephane@hillion.org">Stephane Hillion</a>
  * @author <a href="mailto:tkormann@ilog.fr">Thierry Kormann</a>
  * @version $Id$
@@ -41,12 +47,12 @@ public class AWTGlyphGeometryCache {
     /**
      * The underlying array
      */
-    protected Entry[] table;
+    protected volatile Entry[] table;
 
     /**
      * The number of entries
      */
-    protected int count;
+    protected volatile int count;
 
     /**
      * The reference queue.
@@ -81,6 +87,7 @@ public class AWTGlyphGeometryCache {
      */
     public Value get(char c) {
         int hash  = hashCode(c) & 0x7FFFFFFF;
+        Entry[] table = this.table;
         int index = hash % table.length;
 
         for (Entry e = table[index]; e != null; e = e.next) {
@@ -95,73 +102,98 @@ public class AWTGlyphGeometryCache {
      * Sets a new value for the given variable
      * @return the old value or null
      */
-    public Value put(char c, Value value) {
+    public synchronized Value put(char c, Value value) {
         removeClearedEntries();
 
         int hash  = hashCode(c) & 0x7FFFFFFF;
+        Entry[] table = this.table;
         int index = hash % table.length;
 
-        Entry e = table[index];
-        if (e != null) {
+        for (Entry e = table[index]; e != null; e = e.next) {
             if ((e.hash == hash) && e.match(c)) {
                 Object old = e.get();
-                table[index] = new Entry(hash, c, value, e.next);
+                table[index] = new Entry(hash, c, value,
+                                         unlink(table[index], e));
+                this.table = table;
                 return (Value)old;
             }
-            Entry o = e;
-            e = e.next;
-            while (e != null) {
-                if ((e.hash == hash) && e.match(c)) {
-                    Object old = e.get();
-                    e = new Entry(hash, c, value, e.next);
-                    o.next = e;
-                    return (Value)old;
-                }
-
-                o = e;
-                e = e.next;
-            }
         }
 
         // The key is not in the hash table
         int len = table.length;
-        if (count++ >= (len - (len >> 2))) {
+        if (count >= (len - (len >> 2))) {
             // more than 75% loaded: grow
             rehash();
+            table = this.table;
             index = hash % table.length;
         }
+        count++;
 
         table[index] = new Entry(hash, c, value, table[index]);
+        // Publish the new entry to the readers.
+        this.table = table;
         return null;
     }
 
     /**
      * Clears the table.
      */
-    public void clear() {
+    public synchronized void clear() {
         table = new Entry[INITIAL_CAPACITY];
         count = 0;
         referenceQueue = new ReferenceQueue();
     }
 
     /**
-     * Rehash the table
+     * Rehash the table.  The entries are copied, so that the readers of
+     * the old table are not affected.
      */
     protected void rehash () {
         Entry[] oldTable = table;
-
-        table = new Entry[oldTable.length * 2 + 1];
+        Entry[] newTable = new Entry[oldTable.length * 2 + 1];
+        int n = 0;
 
         for (int i = oldTable.length-1; i >= 0; i--) {
-            for (Entry old = oldTable[i]; old != null;) {
-                Entry e = old;
-                old = old.next;
+            for (Entry e = oldTable[i]; e != null; e = e.next) {
+                Value v = (Value)e.get();
+                if (v == null) {
+                    continue;
+                }
+                int index = e.hash % newTable.length;
+                newTable[index] = new Entry(e.hash, e.c, v, newTable[index]);
+                n++;
+            }
+        }
+        count = n;
+        table = newTable;
+    }
 
-                int index = e.hash % table.length;
-                e.next = table[index];
-                table[index] = e;
+    /**
+     * Returns a copy of the given chain of entries without the given
+     * entry.  The entries after it are shared, the cleared entries
+     * before it are dropped.
+     */
+    protected Entry unlink(Entry first, Entry e) {
+        int n = 0;
+        for (Entry p = first; p != e; p = p.next) {
+            n++;
+        }
+        Entry[] before = new Entry[n];
+        n = 0;
+        for (Entry p = first; p != e; p = p.next) {
+            before[n++] = p;
+        }
+        Entry result = e.next;
+        while (n > 0) {
+            Entry p = before[--n];
+            Value v = (Value)p.get();
+            if (v == null) {
+                count--;
+            } else {
+                result = new Entry(p.hash, p.c, v, result);
             }
         }
+        return result;
     }
 
     /**
@@ -176,22 +208,16 @@ public class AWTGlyphGeometryCache {
      */
     protected void removeClearedEntries() {
         Entry e;
+        Entry[] table = this.table;
         while ((e = (Entry)referenceQueue.poll()) != null) {
             int index = e.hash % table.length;
-            Entry t = table[index];
-            if (t == e) {
-                table[index] = e.next;
-            } else {
-                loop: for (;t!=null;) {
-                    Entry c = t.next;
-                    if (c == e) {
-                        t.next = e.next;
-                        break loop;
-                    }
-                    t = c;
+            for (Entry t = table[index]; t != null; t = t.next) {
+                if (t == e) {
+                    table[index] = unlink(table[index], e);
+                    count--;
+                    break;
                 }
             }
-            count--;
         }
     }
 
@@ -243,17 +269,17 @@ public class AWTGlyphGeometryCache {
         /**
          * The hash code
          */
-        public int hash;
+        public final int hash;
 
         /**
          * The character
          */
-        public char c;
+        public final char c;
 
         /**
          * The next entry
          */
-        public Entry next;
+        public final Entry next;
 
         /**
          * Creates a new entry
@@ -19,12 +19,17 @@
 package org.apache.batik.gvt.renderer;
 
 import java.awt.AlphaComposite;
+import java.awt.Color;
+import java.awt.Composite;
 import java.awt.Graphics2D;
+import java.awt.Paint;
 import java.awt.Point;
 import java.awt.Rectangle;
 import java.awt.RenderingHints;
 import java.awt.Shape;
 import java.awt.geom.AffineTransform;
+import java.awt.geom.Area;
+import java.awt.geom.Rectangle2D;
 import java.awt.image.BufferedImage;
 import java.awt.image.ColorModel;
 import java.awt.image.Raster;
@@ -33,18 +38,31 @@ import java.awt.image.SampleModel;
 import java.awt.image.WritableRaster;
 import java.awt.image.renderable.RenderContext;
 import java.lang.ref.SoftReference;
+import java.util.ArrayList;
 import java.util.Collection;
+import java.util.List;
 
+import org.apache.batik.ext.awt.MultipleGradientPaint;
 import org.apache.batik.ext.awt.geom.RectListManager;
 import org.apache.batik.ext.awt.image.GraphicsUtil;
 import org.apache.batik.ext.awt.image.PadMode;
+import org.apache.batik.ext.awt.image.renderable.ClipRable;
 import org.apache.batik.ext.awt.image.renderable.Filter;
 import org.apache.batik.ext.awt.image.rendered.CachableRed;
 import org.apache.batik.ext.awt.image.rendered.PadRed;
 import org.apache.batik.ext.awt.image.rendered.TileCacheRed;
 import org.apache.batik.ext.awt.image.rendered.TranslateRed;
+import org.apache.batik.gvt.CanvasGraphicsNode;
+import org.apache.batik.gvt.CompositeGraphicsNode;
+import org.apache.batik.gvt.CompositeShapePainter;
+import org.apache.batik.gvt.FillShapePainter;
 import org.apache.batik.gvt.GraphicsNode;
+import org.apache.batik.gvt.RootGraphicsNode;
+import org.apache.batik.gvt.ShapeNode;
+import org.apache.batik.gvt.ShapePainter;
+import org.apache.batik.gvt.StrokeShapePainter;
 import org.apache.batik.util.HaltingThread;
+import org.apache.batik.util.TaskPool;
 
 /**
  * Simple implementation of the Renderer that simply does static
@@ -89,6 +107,13 @@ public class StaticRenderer implements ImageRenderer {
     protected RenderingHints renderingHints;
     protected AffineTransform usr2dev;
 
+    /**
+     * Number of threads used to generate the tiles of the offscreen
+     * image. Values less than or equal to one render on the thread
+     * calling repaint.
+     */
+    protected int renderThreads = 1;
+
     protected static RenderingHints defaultRenderingHints;
     static {
         defaultRenderingHints = new RenderingHints(null);
@@ -219,6 +244,30 @@ public class StaticRenderer implements ImageRenderer {
         return usr2dev;
     }
 
+    /**
+     * Sets the number of threads used to generate the tiles of the
+     * offscreen image. Rows of tiles are then rendered concurrently
+     * on the shared <code>TaskPool</code>, which is only safe for trees
+     * that are not modified while repaint is running (e.g., static
+     * documents).  Trees which cannot be painted concurrently (see
+     * {@link #prepareConcurrentPaint}) are still rendered on the thread
+     * calling repaint.  As when only parts of the image are repainted,
+     * antialiased edges crossing the boundaries of the rows may differ
+     * slightly from those of a rendering done in one piece.  Values less
+     * than or equal to one disable concurrent rendering.
+     */
+    public void setRenderThreads(int renderThreads){
+        this.renderThreads = renderThreads;
+    }
+
+    /**
+     * Returns the number of threads used to generate the tiles of the
+     * offscreen image.
+     */
+    public int getRenderThreads(){
+        return renderThreads;
+    }
+
     /**
      * Returns true if the Renderer is currently doubleBuffering is
      * rendering requests.  If it is then getOffscreen will only
@@ -389,11 +438,16 @@ public class StaticRenderer implements ImageRenderer {
             cr = new PadRed(cr, dstR, PadMode.ZERO_PAD, null);
 
         // Ensure only one thread works on baseRaster at a time...
+        boolean complete = true;
         synchronized (syncRaster) {
-            cr.copyData(copyRaster);
+            if (renderThreads > 1 && prepareConcurrentPaint(rootGN, usr2dev)) {
+                complete = copyDataConcurrently(cr, copyRaster);
+            } else {
+                cr.copyData(copyRaster);
+            }
         }
 
-        if (!HaltingThread.hasBeenHalted()) {
+        if (complete && !HaltingThread.hasBeenHalted()) {
             // Swap the buffers if the rendering completed cleanly.
             BufferedImage tmpBI = workingOffScreen;
 
@@ -409,6 +463,158 @@ public class StaticRenderer implements ImageRenderer {
         }
     }
 
+    /**
+     * Copies the data of <code>cr</code> into <code>wr</code> using
+     * <code>renderThreads</code> threads.  The raster is split into
+     * bands aligned with the rows of tiles of <code>cr</code>, so each
+     * tile of <code>cr</code> is generated by a single thread.
+     * @return false if the calling thread was interrupted or halted
+     *         before all the bands were painted
+     */
+    protected boolean copyDataConcurrently(final CachableRed cr,
+                                           WritableRaster wr) {
+        int th   = cr.getSampleModel().getHeight();
+        int minY = wr.getMinY();
+        int maxY = minY + wr.getHeight();
+        int y    = cr.getTileGridYOffset()
+            + th * (int)Math.floor((minY - cr.getTileGridYOffset())
+                                   / (double)th);
+
+        List bands = new ArrayList();
+        for (; y < maxY; y += th) {
+            int y0 = Math.max(y, minY);
+            int y1 = Math.min(y + th, maxY);
+            final WritableRaster band = wr.createWritableChild
+                (wr.getMinX(), y0, wr.getWidth(), y1 - y0,
+                 wr.getMinX(), y0, null);
+            bands.add(new Runnable() {
+                    public void run() {
+                        cr.copyData(band);
+                    }
+                });
+        }
+        return TaskPool.runAll(bands, renderThreads);
+    }
+
+    /**
+     * Returns true if the given tree can be painted by several threads
+     * at once, and computes the bounds of its nodes on the way.
+     *
+     * <p>Only groups and shapes painted with colors or gradients, and
+     * clipped without antialiasing along pixel boundaries, qualify.
+     * Once their bounds are known, painting them only reads state, and
+     * the work handed to the render threads sees the bounds computed
+     * here.  Filters, masks, antialiased clips, markers, patterns, text
+     * and images build caches or share iterators while they are
+     * painted, so trees using them are painted by the thread calling
+     * repaint.  A hard clip ending inside a pixel is rounded outward by
+     * Java2D when a band boundary cuts it, so such trees are painted by
+     * that thread too, keeping the result independent of the bands.</p>
+     *
+     * @param gn the node to check
+     * @param at the transform from the user space of gn to device space
+     */
+    protected boolean prepareConcurrentPaint(GraphicsNode gn,
+                                             AffineTransform at) {
+        Class c = gn.getClass();
+        if (c != ShapeNode.class &&
+            c != CompositeGraphicsNode.class &&
+            c != CanvasGraphicsNode.class &&
+            c != RootGraphicsNode.class) {
+            return false;
+        }
+        if (gn.getFilter() != null || gn.getMask() != null) {
+            return false;
+        }
+        AffineTransform t = at;
+        if (gn.getTransform() != null) {
+            t = new AffineTransform(at);
+            t.concatenate(gn.getTransform());
+        }
+        ClipRable clip = gn.getClip();
+        if (clip != null && (clip.getUseAntialiasedClip() ||
+                             !isPixelAligned(clip.getClipPath(), t))) {
+            return false;
+        }
+        gn.getBounds();
+        Composite comp = gn.getComposite();
+        if (comp != null && !AlphaComposite.SrcOver.equals(comp)) {
+            // Painted through an offscreen rendering of the node.
+            gn.getGraphicsNodeRable(true);
+        }
+
+        if (gn instanceof ShapeNode) {
+            return isConcurrentPaintSafe(((ShapeNode)gn).getShapePainter());
+        }
+        if (gn instanceof CanvasGraphicsNode &&
+            !isConcurrentPaintSafe
+            (((CanvasGraphicsNode)gn).getBackgroundPaint())) {
+            return false;
+        }
+        CompositeGraphicsNode cgn = (CompositeGraphicsNode)gn;
+        for (int i = 0; i < cgn.size(); i++) {
+            GraphicsNode child = (GraphicsNode)cgn.get(i);
+            if (child != null && !prepareConcurrentPaint(child, t)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Returns true if the given shape, once transformed, is a rectangle
+     * whose edges lie on pixel boundaries.
+     */
+    protected boolean isPixelAligned(Shape s, AffineTransform at) {
+        if (at.getShearX() != 0 || at.getShearY() != 0 ||
+            !new Area(s).isRectangular()) {
+            return false;
+        }
+        Rectangle2D r = at.createTransformedShape(s).getBounds2D();
+        return r.getMinX() == Math.floor(r.getMinX())
+            && r.getMinY() == Math.floor(r.getMinY())
+            && r.getMaxX() == Math.floor(r.getMaxX())
+            && r.getMaxY() == Math.floor(r.getMaxY());
+    }
+
+    /**
+     * Returns true if the given shape painter can be used by several
+     * threads at once.
+     */
+    protected boolean isConcurrentPaintSafe(ShapePainter sp) {
+        if (sp == null) {
+            return true;
+        }
+        Class c = sp.getClass();
+        if (c == FillShapePainter.class) {
+            return isConcurrentPaintSafe(((FillShapePainter)sp).getPaint());
+        }
+        if (c == StrokeShapePainter.class) {
+            return isConcurrentPaintSafe
+                (((StrokeShapePainter)sp).getPaint());
+        }
+        if (c == CompositeShapePainter.class) {
+            CompositeShapePainter csp = (CompositeShapePainter)sp;
+            for (int i = 0; i < csp.getShapePainterCount(); i++) {
+                if (!isConcurrentPaintSafe(csp.getShapePainter(i))) {
+                    return false;
+                }
+            }
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * Returns true if the given paint can be used by several threads at
+     * once.
+     */
+    protected boolean isConcurrentPaintSafe(Paint p) {
+        return p == null
+            || p instanceof Color
+            || p instanceof MultipleGradientPaint;
+    }
+
     /**
      * Flush any cached image data.
      */
@@ -81,4 +81,11 @@ public abstract class AbstractSVGConverter implements SVGConverter, ErrorConstan
     public final String doubleString(double value) {
         return generatorContext.doubleString(value);
     }
+
+    /**
+     * Utility method for subclasses.
+     */
+    public final void appendDouble(StringBuffer sb, double value) {
+        generatorContext.appendDouble(sb, value);
+    }
 }
@@ -44,6 +44,9 @@ import org.w3c.dom.Element;
  *   be configured and defaults to 2.
  * + Children nodes are added to the current group as long as
  *   the associated GraphicContext's transform stack is valid.
+ * + Children nodes are added to the current group as long as it
+ *   has less children than the maximum group size of the
+ *   DOMTreeManager, if it has one.
  *
  * When children nodes can no longer be added, the group is considered
  * complete and the associated DOMTreeManager is notified of the
@@ -82,6 +85,11 @@ public class DOMGroupManager implements SVGSyntax, ErrorConstants {
      */
     protected Element currentGroup;
 
+    /**
+     * Number of children of the current group
+     */
+    protected int groupSize;
+
     /**
      * Constructor
      * @param gc graphic context whose state will be reflected in the
@@ -134,6 +142,7 @@ public class DOMGroupManager implements SVGSyntax, ErrorConstants {
         //
         if (!currentGroup.hasChildNodes()) {
             currentGroup.appendChild(element);
+            groupSize = 1;
 
             groupGC = domTreeManager.gcConverter.toSVG(gc);
             SVGGraphicContext deltaGC;
@@ -157,6 +166,16 @@ public class DOMGroupManager implements SVGSyntax, ErrorConstants {
                          domTreeManager.getGeneratorContext());
             setTransform(currentGroup, deltaGC.getTransformStack());
             domTreeManager.appendGroup(currentGroup, this);
+        } else if (domTreeManager.maxGroupSize > 0 &&
+                   groupSize >= domTreeManager.maxGroupSize) {
+            //
+            // The current group is full. Create a new current
+            // group with the same attributes
+            //
+            currentGroup =
+                domTreeManager.getDOMFactory().
+                createElementNS(SVG_NAMESPACE_URI, SVG_G_TAG);
+            addElement(element, method);
         } else {
             if(gc.isTransformStackValid()) {
                 //
@@ -174,6 +193,7 @@ public class DOMGroupManager implements SVGSyntax, ErrorConstants {
                 trimContextForElement(deltaGC, element);
                 if (countOverrides(deltaGC) <= domTreeManager.maxGCOverrides) {
                     currentGroup.appendChild(element);
+                    groupSize++;
                     // as there already are children we put all
                     // attributes (group + element) on the element itself.
                     if ((method & DRAW) == 0) {
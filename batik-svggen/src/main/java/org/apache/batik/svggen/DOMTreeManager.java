@@ -68,6 +68,12 @@ public class DOMTreeManager implements SVGSyntax, ErrorConstants {
      */
     int maxGCOverrides;
 
+    /**
+     * Maximum number of children of a group, or zero when the
+     * groups can have any number of children.
+     */
+    int maxGroupSize;
+
     /**
      * Set of group managers that build groups for
      * this manager.
@@ -69,6 +69,8 @@ public interface ErrorConstants {
         "domTreeManager should not be null";
     String ERR_MAXGCOVERRIDES_OUTOFRANGE =
         "maxGcOverrides should be greater than zero";
+    String ERR_MAXGROUPSIZE_OUTOFRANGE =
+        "maxGroupSize should be greater than zero";
     String ERR_TOP_LEVEL_GROUP_NULL =
         "topLevelGroup should not be null";
     String ERR_TOP_LEVEL_GROUP_NOT_G =
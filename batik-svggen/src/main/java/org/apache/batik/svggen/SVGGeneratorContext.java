@@ -432,10 +432,72 @@ public class SVGGeneratorContext implements ErrorConstants {
         }
         // under 10e-3 we have to put decimals
         else {
-            return decimalFormat.format(value);
+            StringBuffer sb = new StringBuffer(24);
+            appendDouble(sb, value);
+            return sb.toString();
         }
     }
 
+    /**
+     * Appends the input double value to the given buffer, formatted as
+     * by {@link #doubleString}.
+     */
+    public final void appendDouble(StringBuffer sb, double value) {
+        double absvalue = Math.abs(value);
+        if (absvalue >= 10e7 || (int)value == value) {
+            sb.append((int)value);
+            return;
+        }
+
+        // The decimal format rounds the shortest decimal representation
+        // of the value, half even.  Rounding the scaled value gives the
+        // same digits when the scaled value is exact enough and not
+        // close to a tie, the other values are left to the decimal
+        // format.
+        double scaled = absvalue * POWERS_OF_TEN[precision];
+        double rounded = Math.rint(scaled);
+        if (!(scaled < MAX_SCALED_VALUE)
+            || Math.abs(scaled - rounded) > 0.499) {
+            sb.append(decimalFormat.format(value));
+            return;
+        }
+
+        long digits = (long)rounded;
+        long unit = (long)POWERS_OF_TEN[precision];
+        if (value < 0) {
+            sb.append('-');
+        }
+        sb.append(digits / unit);
+        long fraction = digits % unit;
+        if (fraction != 0) {
+            int n = precision;
+            while (fraction % 10 == 0) {
+                fraction /= 10;
+                n--;
+            }
+            sb.append('.');
+            for (long p = (long)POWERS_OF_TEN[n - 1]; p > fraction; p /= 10) {
+                sb.append('0');
+            }
+            sb.append(fraction);
+        }
+    }
+
+    /**
+     * The scale factors of the precisions.
+     */
+    private static final double[] POWERS_OF_TEN = {
+        1e0, 1e1, 1e2, 1e3, 1e4, 1e5, 1e6, 1e7, 1e8, 1e9, 1e10, 1e11, 1e12
+    };
+
+    /**
+     * The largest scaled value rounded by {@link #appendDouble}.  Below
+     * it, the rounding error of the scaling and the distance between a
+     * value and its shortest decimal representation are both under
+     * 2e-4 once scaled.
+     */
+    private static final double MAX_SCALED_VALUE = 1e12;
+
     protected static DecimalFormatSymbols dsf
         = new DecimalFormatSymbols(Locale.US);
 
@@ -0,0 +1,310 @@
+/*
+
+   Licensed to the Apache Software Foundation (ASF) under one or more
+   contributor license agreements.  See the NOTICE file distributed with
+   this work for additional information regarding copyright ownership.
+   The ASF licenses this file to You under the Apache License, Version 2.0
+   (the "License"); you may not use this file except in compliance with
+   the License.  You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+
+ */
+package org.apache.batik.svggen;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.util.List;
+
+import org.apache.batik.ext.awt.g2d.GraphicContext;
+import org.w3c.dom.Comment;
+import org.w3c.dom.Element;
+import org.w3c.dom.Node;
+
+/**
+ * A <code>DOMTreeManager</code> that writes the groups to a
+ * <code>Writer</code> as soon as they are complete, instead of keeping
+ * them under the top level group.  Only the groups still being built
+ * are kept in memory.  Since the elements drawn with the same graphic
+ * context all go to the same group, the groups are bounded: once a
+ * group has <code>getMaxGroupSize()</code> children, the next element
+ * starts a new group with the same attributes, and the full group is
+ * written.
+ *
+ * The root element is written with the first group.  The definitions
+ * created by the converters since the previous groups were written are
+ * written in a new defs element, ahead of the groups that reference
+ * them, and are then removed from the definition sets of the
+ * converters:
+ * <br>
+ * [svg]
+ *   |
+ *   +-- [defs] Definitions used by groups 1 to n
+ *   +-- [g]    Group 1
+ *   +-- ...
+ *   +-- [g]    Group n
+ *   +-- [defs] Definitions used by groups n+1 to m
+ *   +-- [g]    Group n+1
+ *   +-- ...
+ *
+ * The 'enable-background' attribute of the root element is only set
+ * when the AlphaComposite rules requiring the background were used
+ * before the root element is written.
+ *
+ * @version $Id$
+ */
+public class StreamingDOMTreeManager extends DOMTreeManager {
+
+    /**
+     * The default maximum number of children of a group.
+     */
+    public static final int DEFAULT_MAX_GROUP_SIZE = 256;
+
+    /**
+     * The output.
+     */
+    protected XmlWriter.IndentWriter out;
+
+    /**
+     * Whether the style attributes are converted to CSS properties.
+     */
+    protected boolean useCss;
+
+    /**
+     * Whether the non ASCII characters are escaped.
+     */
+    protected boolean escaped;
+
+    /**
+     * The root element, once written.
+     */
+    protected Element svgRoot;
+
+    /**
+     * Whether the document has been ended.
+     */
+    protected boolean ended;
+
+    /**
+     * @param gc default graphic context state
+     * @param generatorContext the SVG generator context
+     * @param maxGCOverrides defines how many overrides are allowed
+     *                       in children nodes of the current group.
+     * @param writer the output
+     * @param useCss defines whether the output SVG should use CSS style
+     *        properties as opposed to plain attributes.
+     * @param escaped defines if the characters will be escaped
+     */
+    public StreamingDOMTreeManager(GraphicContext gc,
+                                   SVGGeneratorContext generatorContext,
+                                   int maxGCOverrides,
+                                   Writer writer,
+                                   boolean useCss,
+                                   boolean escaped) {
+        super(gc, generatorContext, maxGCOverrides);
+        this.out = new XmlWriter.IndentWriter(writer);
+        this.useCss = useCss;
+        this.escaped = escaped;
+        this.maxGroupSize = DEFAULT_MAX_GROUP_SIZE;
+    }
+
+    /**
+     * Returns the maximum number of children of a group, which bounds
+     * the number of elements kept in memory by each graphics.
+     */
+    public int getMaxGroupSize() {
+        return maxGroupSize;
+    }
+
+    /**
+     * Sets the maximum number of children of a group.  Larger groups
+     * repeat their attributes less often in the output, but are kept
+     * longer in memory.
+     */
+    public void setMaxGroupSize(int maxGroupSize) {
+        if (maxGroupSize <= 0)
+            throw new SVGGraphics2DRuntimeException
+                (ERR_MAXGROUPSIZE_OUTOFRANGE);
+        this.maxGroupSize = maxGroupSize;
+    }
+
+    /**
+     * Appends the group and writes the groups completed before it.
+     */
+    public void appendGroup(Element group, DOMGroupManager groupManager) {
+        super.appendGroup(group, groupManager);
+        try {
+            writeGroups(group);
+        } catch (SVGGraphics2DIOException e) {
+            // Drawing methods cannot throw an IOException
+            generatorContext.errorHandler.
+                handleError(new SVGGraphics2DRuntimeException(e));
+        }
+    }
+
+    /**
+     * Writes all the groups, closes the root element and flushes the
+     * output.  Nothing can be drawn afterwards, and the later calls do
+     * nothing.
+     */
+    public void endDocument() throws SVGGraphics2DIOException {
+        if (ended) {
+            return;
+        }
+        ended = true;
+        writeGroups(null);
+        try {
+            XmlWriter.writeEndTag(svgRoot, out, 0);
+            out.printIndent();
+            out.flush();
+        } catch (IOException e) {
+            throw new SVGGraphics2DIOException(e);
+        }
+        svgRoot = null;
+    }
+
+    /**
+     * Writes the children of the top level group that precede the
+     * given one, or all of them when <code>last</code> is null, after
+     * the definitions they may reference.
+     */
+    protected void writeGroups(Element last) throws SVGGraphics2DIOException {
+        if (svgRoot == null) {
+            writeRoot();
+        }
+        Element defs = getNewDefinitions();
+        if (defs != null) {
+            topLevelGroup.insertBefore(defs, topLevelGroup.getFirstChild());
+        }
+        Node child = topLevelGroup.getFirstChild();
+        while (child != last) {
+            if (useCss) {
+                SVGCSSStyler.style(child);
+            }
+            XmlWriter.writeXml(child, out, escaped);
+            topLevelGroup.removeChild(child);
+            child = topLevelGroup.getFirstChild();
+        }
+    }
+
+    /**
+     * Returns a defs element with the definitions created since the
+     * last call, or null if there are none.  The definitions are taken
+     * out of the definition sets of the converters, so each one is
+     * only seen once.
+     */
+    protected Element getNewDefinitions() {
+        List[] defSets = getConverterDefinitionSets();
+        Element defs = null;
+        for (int i = 0; i < defSets.length; i++) {
+            defs = moveDefinitions(defSets[i], defs);
+        }
+        if (otherDefs != null) {
+            defs = moveDefinitions(otherDefs, defs);
+            otherDefs = null;
+        }
+        return defs;
+    }
+
+    /**
+     * Returns the definition sets of the converters, in the order of
+     * <code>DOMTreeManager.getDefinitionSet</code>.  Unlike the sets
+     * returned by the composite converters, these are the sets the
+     * converters add to.
+     */
+    protected List[] getConverterDefinitionSets() {
+        SVGPaint paint = gcConverter.getPaintConverter();
+        SVGComposite composite = gcConverter.getCompositeConverter();
+        return new List[] {
+            paint.getGradientPaintConverter().getDefinitionSet(),
+            paint.getTexturePaintConverter().getDefinitionSet(),
+            paint.getCustomPaintConverter().getDefinitionSet(),
+            paint.getColorConverter().getDefinitionSet(),
+            gcConverter.getStrokeConverter().getDefinitionSet(),
+            composite.getAlphaCompositeConverter().getDefinitionSet(),
+            composite.getCustomCompositeConverter().getDefinitionSet(),
+            gcConverter.getClipConverter().getDefinitionSet(),
+            gcConverter.getHintsConverter().getDefinitionSet(),
+            gcConverter.getFontConverter().getDefinitionSet(),
+            filterConverter.getLookupOpConverter().getDefinitionSet(),
+            filterConverter.getRescaleOpConverter().getDefinitionSet(),
+            filterConverter.getConvolveOpConverter().getDefinitionSet(),
+            filterConverter.getCustomBufferedImageOpConverter().
+                getDefinitionSet()
+        };
+    }
+
+    /**
+     * Moves the definitions of the given set to the given defs element,
+     * which is created if null and the set is not empty.
+     * @return the defs element, or null
+     */
+    protected Element moveDefinitions(List defSet, Element defs) {
+        if (defSet.isEmpty()) {
+            return defs;
+        }
+        if (defs == null) {
+            defs = generatorContext.domFactory.
+                createElementNS(SVG_NAMESPACE_URI, SVG_DEFS_TAG);
+            defs.setAttributeNS(null, SVG_ID_ATTRIBUTE,
+                                generatorContext.idGenerator.
+                                generateID(ID_PREFIX_DEFS));
+        }
+        for (Object aDefSet : defSet) {
+            defs.appendChild((Element) aDefSet);
+        }
+        defSet.clear();
+        return defs;
+    }
+
+    /**
+     * Writes the document header and the start tag of the root
+     * element.
+     */
+    protected void writeRoot() throws SVGGraphics2DIOException {
+        Element svg = generatorContext.domFactory.
+            createElementNS(SVG_NAMESPACE_URI, SVG_SVG_TAG);
+        svg.setAttributeNS(XMLNS_NAMESPACE_URI,
+                           XMLNS_PREFIX,
+                           SVG_NAMESPACE_URI);
+        svg.setAttributeNS(XMLNS_NAMESPACE_URI,
+                           XMLNS_PREFIX + ":" + XLINK_PREFIX,
+                           XLINK_NAMESPACE_URI);
+        initializeRoot(svg);
+        if (useCss) {
+            SVGCSSStyler.style(svg);
+        }
+        try {
+            XmlWriter.writeDocumentHeader(out);
+            XmlWriter.writeStartTag(svg, out, escaped);
+            if (generatorContext.generatorComment != null) {
+                Comment generatorComment = generatorContext.domFactory.
+                    createComment(generatorContext.generatorComment);
+                XmlWriter.writeXml(generatorComment, out, escaped);
+            }
+        } catch (IOException e) {
+            throw new SVGGraphics2DIOException(e);
+        }
+        svgRoot = svg;
+    }
+
+    /**
+     * Sets the attributes of the root element before it is written.
+     */
+    protected void initializeRoot(Element svg) {
+        // Enable background if required by AlphaComposite convertion
+        if (gcConverter.getCompositeConverter().
+            getAlphaCompositeConverter().requiresBackgroundAccess())
+            svg.setAttributeNS
+                (null, SVG_ENABLE_BACKGROUND_ATTRIBUTE, SVG_NEW_VALUE);
+
+        // Set default rendering context attributes in node
+        applyDefaultRenderingStyle(svg);
+    }
+}
@@ -0,0 +1,141 @@
+/*
+
+   Licensed to the Apache Software Foundation (ASF) under one or more
+   contributor license agreements.  See the NOTICE file distributed with
+   this work for additional information regarding copyright ownership.
+   The ASF licenses this file to You under the Apache License, Version 2.0
+   (the "License"); you may not use this file except in compliance with
+   the License.  You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+
+ */
+package org.apache.batik.svggen;
+
+import java.awt.Graphics;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.Charset;
+
+import org.w3c.dom.Element;
+
+/**
+ * An <code>SVGGraphics2D</code> that writes the SVG content while it
+ * is drawn, instead of building the whole DOM tree first.  The
+ * graphic context is converted as by <code>SVGGraphics2D</code>, but
+ * each group is written as soon as it is complete, so the memory used
+ * does not depend on the number of elements drawn.  Refer to the
+ * <code>StreamingDOMTreeManager</code> documentation for the structure
+ * of the output.
+ *
+ * The canvas size must be set before drawing and
+ * {@link #endDocument} must be called once the drawing is done; the
+ * <code>stream</code> and <code>getRoot</code> methods only see the
+ * groups not written yet.
+ *
+ * @version $Id$
+ * @see org.apache.batik.svggen.StreamingDOMTreeManager
+ */
+public class StreamingSVGGraphics2D extends SVGGraphics2D {
+
+    /**
+     * Creates a new StreamingSVGGraphics2D object.
+     * @param generatorCtx the <code>SVGGeneratorContext</code> instance
+     * that will provide all useful information to the generator.
+     * @param textAsShapes if true, all text is turned into SVG shapes in the
+     *        convertion. No SVG text is output.
+     * @param writer the output
+     * @param useCss defines whether the output SVG should use CSS style
+     *        properties as opposed to plain attributes.
+     * @param escaped defines if the characters will be escaped
+     *
+     * @exception SVGGraphics2DRuntimeException if generatorContext is null.
+     */
+    public StreamingSVGGraphics2D(SVGGeneratorContext generatorCtx,
+                                  boolean textAsShapes,
+                                  Writer writer,
+                                  boolean useCss,
+                                  boolean escaped) {
+        super(generatorCtx, textAsShapes);
+
+        DOMTreeManager treeManager =
+            new StreamingDOMTreeManager(gc, generatorCtx,
+                                        DEFAULT_MAX_GC_OVERRIDES,
+                                        writer, useCss, escaped) {
+                protected void initializeRoot(Element svg) {
+                    super.initializeRoot(svg);
+                    if (svgCanvasSize != null){
+                        svg.setAttributeNS(null, SVG_WIDTH_ATTRIBUTE,  String.valueOf( svgCanvasSize.width ) );
+                        svg.setAttributeNS(null, SVG_HEIGHT_ATTRIBUTE, String.valueOf( svgCanvasSize.height) );
+                    }
+                }
+            };
+        DOMGroupManager groupManager = new DOMGroupManager(gc, treeManager);
+        treeManager.addGroupManager(groupManager);
+        setDOMTreeManager(treeManager);
+        setDOMGroupManager(groupManager);
+        generatorCtx.genericImageHandler.setDOMTreeManager(treeManager);
+    }
+
+    /**
+     * Creates a new StreamingSVGGraphics2D object that writes to a
+     * <code>Writer</code>, with plain style attributes.
+     */
+    public StreamingSVGGraphics2D(SVGGeneratorContext generatorCtx,
+                                  boolean textAsShapes,
+                                  Writer writer) {
+        this(generatorCtx, textAsShapes, writer, false, false);
+    }
+
+    /**
+     * Creates a new StreamingSVGGraphics2D object that writes to an
+     * <code>OutputStream</code> with the
+     * {@link SVGGraphics2D#DEFAULT_XML_ENCODING default encoding}.
+     * The stream is not closed by {@link #endDocument}.
+     */
+    public StreamingSVGGraphics2D(SVGGeneratorContext generatorCtx,
+                                  boolean textAsShapes,
+                                  OutputStream os) {
+        this(generatorCtx, textAsShapes,
+             new OutputStreamWriter(os,
+                                    Charset.forName(DEFAULT_XML_ENCODING)));
+    }
+
+    /**
+     * This constructor is used in create()
+     *
+     * @see #create
+     */
+    public StreamingSVGGraphics2D(StreamingSVGGraphics2D g) {
+        super(g);
+    }
+
+    /**
+     * Creates a new <code>Graphics</code> object that is
+     * a copy of this <code>Graphics</code> object and writes to the
+     * same output.
+     */
+    public Graphics create(){
+        return new StreamingSVGGraphics2D(this);
+    }
+
+    /**
+     * Writes the groups not written yet, closes the root element and
+     * flushes the output.  Nothing can be drawn afterwards, by this
+     * object or by the ones it created.
+     */
+    public void endDocument() throws SVGGraphics2DIOException {
+        try {
+            ((StreamingDOMTreeManager)domTreeManager).endDocument();
+        } catch (SVGGraphics2DIOException e) {
+            generatorCtx.errorHandler.handleError(e);
+        }
+    }
+}
@@ -31,7 +31,7 @@ import org.apache.batik.transcoder.Transcoder;
  * @author <a href="mailto:vhardy@apache.org">Vincent Hardy</a>
  * @version $Id$
  */
-public class DefaultSVGConverterController implements SVGConverterController {
+public class DefaultSVGConverterController implements TimedSVGConverterController {
     /**
      * Invoked when the rasterizer has computed the
      * exact description of what it should do. The controller
@@ -82,4 +82,12 @@ public class DefaultSVGConverterController implements SVGConverterController {
     public void onSourceTranscodingSuccess(SVGConverterSource source,
                                            File dest){
     }
+
+    /**
+     * Invoked when the rasterizer is done transcoding the input source.
+     */
+    public void onSourceTranscodingTime(SVGConverterSource source,
+                                        File dest,
+                                        long time){
+    }
 }
@@ -44,7 +44,7 @@ import org.apache.batik.util.ApplicationSecurityEnforcer;
  * @author <a href="mailto:vhardy@apache.org">Vincent Hardy</a>
  * @version $Id$
  */
-public class Main implements SVGConverterController {
+public class Main implements TimedSVGConverterController {
     /**
      * URL for Squiggle's security policy file
      */
@@ -516,6 +516,15 @@ public class Main implements SVGConverterController {
     public static String CL_OPTION_SECURITY_OFF_DESCRIPTION
         = Messages.get("Main.cl.option.security.off.description", "No description");
 
+    /**
+     * Option to specify the number of sources converted concurrently
+     */
+    public static String CL_OPTION_THREADS
+        = Messages.get("Main.cl.option.threads", "-threads");
+
+    public static String CL_OPTION_THREADS_DESCRIPTION
+        = Messages.get("Main.cl.option.threads.description", "No description");
+
     /**
      * Static map containing all the option handlers able to analyze the
      * various options.
@@ -836,6 +845,23 @@ public class Main implements SVGConverterController {
                           }
                       });
 
+        optionMap.put(CL_OPTION_THREADS,
+                      new SingleValueOptionHandler() {
+                          public void handleOption(String optionValue,
+                                                   SVGConverter c){
+                              int threads = Integer.parseInt(optionValue);
+                              if (threads < 1){
+                                  throw new IllegalArgumentException();
+                              }
+
+                              c.setThreads(threads);
+                          }
+
+                          public String getOptionDescription(){
+                              return CL_OPTION_THREADS_DESCRIPTION;
+                          }
+                      });
+
         optionMap.put(CL_OPTION_ALLOW_EXTERNAL_RESOURCES,
                 new NoValueOptionHandler(){
                     public void handleOption(SVGConverter c){
@@ -854,6 +880,17 @@ public class Main implements SVGConverterController {
      */
     protected List args;
 
+    /**
+     * Controls whether several sources are converted concurrently, in
+     * which case each source gets its own line of output.
+     */
+    protected boolean concurrent;
+
+    /**
+     * Time spent converting the current source, in milliseconds.
+     */
+    protected long transcodingTime = -1;
+
     public Main(String[] args){
         this.args = new ArrayList();
         for (String arg : args) {
@@ -952,6 +989,8 @@ public class Main implements SVGConverterController {
             return;
         }
 
+        concurrent = c.getThreads() > 1 && expandedSources.length > 1;
+
         try {
             c.execute();
         } catch(SVGConverterException e){
@@ -1025,6 +1064,9 @@ public class Main implements SVGConverterController {
     public static final String MESSAGE_CONVERSION_SUCCESS
         = "Main.message.conversion.success";
 
+    public static final String MESSAGE_CONVERSION_TIME
+        = "Main.message.conversion.time";
+
     public boolean proceedWithComputedTask(Transcoder transcoder,
                                            Map hints,
                                            List sources,
@@ -1036,25 +1078,51 @@ public class Main implements SVGConverterController {
 
     public boolean proceedWithSourceTranscoding(SVGConverterSource source,
                                                 File dest){
-        System.out.print(Messages.formatMessage(MESSAGE_ABOUT_TO_TRANSCODE_SOURCE,
-                                                new Object[]{source.toString(),
-                                                             dest.toString()}));
+        String msg = Messages.formatMessage(MESSAGE_ABOUT_TO_TRANSCODE_SOURCE,
+                                            new Object[]{source.toString(),
+                                                         dest.toString()});
+        if (concurrent){
+            // Results are reported after other sources have started.
+            System.out.println(msg);
+        } else {
+            System.out.print(msg);
+        }
         return true;
     }
 
     public boolean proceedOnSourceTranscodingFailure(SVGConverterSource source,
                                                      File dest,
                                                      String errorCode){
-        System.out.println(Messages.formatMessage(MESSAGE_CONVERSION_FAILED,
-                                                  new Object[]{errorCode}));
+        System.out.println(getResultPrefix(dest)
+                           + Messages.formatMessage(MESSAGE_CONVERSION_FAILED,
+                                                    new Object[]{errorCode}));
+        transcodingTime = -1;
 
         return true;
     }
 
     public void onSourceTranscodingSuccess(SVGConverterSource source,
                                            File dest){
-        System.out.println(Messages.formatMessage(MESSAGE_CONVERSION_SUCCESS,
-                                                  null));
+        String msg = getResultPrefix(dest)
+            + Messages.formatMessage(MESSAGE_CONVERSION_SUCCESS, null);
+        if (transcodingTime >= 0){
+            msg += ' ' + Messages.formatMessage(MESSAGE_CONVERSION_TIME,
+                                                new Object[]{"" + transcodingTime});
+        }
+        System.out.println(msg);
+        transcodingTime = -1;
+    }
+
+    public void onSourceTranscodingTime(SVGConverterSource source,
+                                        File dest,
+                                        long time){
+        transcodingTime = time;
     }
-}
 
+    /**
+     * Returns the text to print before the result of a conversion.
+     */
+    protected String getResultPrefix(File dest){
+        return concurrent ? dest.toString() + ' ' : "";
+    }
+}
@@ -29,9 +29,16 @@ import java.io.InputStream;
 import java.io.OutputStream;
 import java.net.URL;
 import java.util.HashMap;
+import java.util.LinkedList;
 import java.util.Map;
 import java.util.List;
 import java.util.ArrayList;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 import org.apache.batik.transcoder.Transcoder;
 import org.apache.batik.transcoder.TranscoderInput;
@@ -90,6 +97,10 @@ import org.apache.batik.util.ParsedURL;
  *     SVG documents.</li>
  * <li>pixelUnitToMillimeter: defines the size of a pixel in millimeters
  *     to use when processing the SVG documents.</li>
+ * <li>threads: controls the number of sources which are transcoded
+ *     concurrently. Each worker uses its own <code>Transcoder</code>
+ *     instance, and the controller is always notified from the thread
+ *     calling <code>execute</code>, in source order.</li>
  * </ul>
  *
  * @version $Id$
@@ -204,6 +215,9 @@ public class SVGConverter {
     /** Default height */
     protected static final float DEFAULT_HEIGHT = -1;
 
+    /** Default number of transcoding threads */
+    protected static final int DEFAULT_THREADS = 1;
+
     /** Result type */
     protected DestinationType destinationType = DEFAULT_RESULT_TYPE;
 
@@ -258,6 +272,9 @@ public class SVGConverter {
     /** Controls whether scripts should be run securely or not */
     protected boolean securityOff = false;
 
+    /** Number of sources transcoded concurrently */
+    protected int threads = DEFAULT_THREADS;
+
     /** Sources files or URLs */
     protected List sources = null;
 
@@ -651,6 +668,21 @@ public class SVGConverter {
         return securityOff;
     }
 
+    /**
+     * Sets the number of sources which may be transcoded concurrently.
+     * Values less than or equal to one select the sequential mode.
+     */
+    public void setThreads(int threads){
+        this.threads = threads;
+    }
+
+    /**
+     * Returns the number of sources which may be transcoded concurrently.
+     */
+    public int getThreads(){
+        return threads;
+    }
+
     /**
      * Returns true if f is a File. <code>f</code> is found to be a file if
      * it exists and is a file. If it does not exist, it is declared
@@ -708,6 +740,11 @@ public class SVGConverter {
             return;
         }
 
+        if (threads > 1 && sources.size() > 1) {
+            transcodeConcurrently(sources, dstFiles, hints);
+            return;
+        }
+
         // Convert files one by one
         for(int i = 0 ; i < sources.size() ; i++) {
             // Get the file from the vector.
@@ -720,6 +757,103 @@ public class SVGConverter {
         }
     }
 
+    /**
+     * Converts the sources using a pool of <code>threads</code> workers.
+     * Sources are prepared and their results reported to the controller
+     * on the calling thread, in source order, so the sequence of controller
+     * notifications only depends on the sources and the number of threads.
+     * At most one transcoding per worker is outstanding at any time, and
+     * each outstanding transcoding uses its own <code>Transcoder</code>.
+     */
+    protected void transcodeConcurrently(List sources,
+                                         List dstFiles,
+                                         Map hints)
+        throws SVGConverterException {
+        int n = Math.min(threads, sources.size());
+        BlockingQueue transcoders = new ArrayBlockingQueue(n);
+        for (int i = 0; i < n; i++) {
+            Transcoder t = destinationType.getTranscoder();
+            t.setTranscodingHints(hints);
+            transcoders.add(t);
+        }
+
+        ExecutorService executor = Executors.newFixedThreadPool(n);
+        LinkedList pending = new LinkedList();
+        try {
+            for (int i = 0; i < sources.size(); i++) {
+                SVGConverterSource currentFile
+                    = (SVGConverterSource)sources.get(i);
+                File outputFile = (File)dstFiles.get(i);
+
+                createOutputDir(outputFile);
+                TranscodingTask task = prepareTranscoding(currentFile,
+                                                          outputFile);
+                if (task == null) {
+                    continue;
+                }
+
+                if (pending.size() == n) {
+                    completeTranscoding(waitFor((TranscodingTask)pending.removeFirst()));
+                }
+                task.transcoders = transcoders;
+                task.future = executor.submit(task);
+                pending.add(task);
+            }
+
+            while (!pending.isEmpty()) {
+                completeTranscoding(waitFor((TranscodingTask)pending.removeFirst()));
+            }
+        } finally {
+            // Only reached with pending tasks if the conversion was
+            // aborted. Tasks which never ran must release their output.
+            for (Object aPending : pending) {
+                TranscodingTask task = (TranscodingTask) aPending;
+                if (task.future.cancel(false)) {
+                    task.close();
+                }
+            }
+            executor.shutdownNow();
+        }
+    }
+
+    /**
+     * Waits for the given transcoding task to be done.
+     * @throws SVGConverterException if the task failed with an exception
+     *         which it could not report itself
+     */
+    protected TranscodingTask waitFor(TranscodingTask task)
+        throws SVGConverterException {
+        boolean interrupted = false;
+        try {
+            for (;;) {
+                try {
+                    task.future.get();
+                    return task;
+                } catch (InterruptedException ie) {
+                    interrupted = true;
+                } catch (ExecutionException ee) {
+                    // TranscodingTask.run catches every Exception, so
+                    // only unchecked throwables can end up here.
+                    Throwable t = ee.getCause();
+                    if (t instanceof RuntimeException) {
+                        throw (RuntimeException)t;
+                    }
+                    if (t instanceof Error) {
+                        throw (Error)t;
+                    }
+                    throw new SVGConverterException
+                        (ERROR_WHILE_RASTERIZING_FILE,
+                         new Object[] {task.outputFile.getName(),
+                                       String.valueOf(t)});
+                }
+            }
+        } finally {
+            if (interrupted) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
     /**
      * Populates a vector with destination files names
      * computed from the names of the files in the sources vector
@@ -946,13 +1080,30 @@ public class SVGConverter {
                              File outputFile,
                              Transcoder transcoder)
         throws SVGConverterException {
+        TranscodingTask task = prepareTranscoding(inputFile, outputFile);
+        if (task == null) {
+            return;
+        }
+
+        task.transcode(transcoder);
+        completeTranscoding(task);
+    }
+
+    /**
+     * Checks the input and output of a conversion and opens the
+     * output file. Returns null if the source should not be
+     * transcoded, either because the controller decided so or
+     * because of an error the controller decided to proceed on.
+     */
+    protected TranscodingTask prepareTranscoding(SVGConverterSource inputFile,
+                                                 File outputFile)
+        throws SVGConverterException {
         TranscoderInput input = null;
-        TranscoderOutput output = null;
         OutputStream outputStream = null;
 
         if (!controller.proceedWithSourceTranscoding(inputFile,
                                                      outputFile)){
-            return;
+            return null;
         }
 
         try {
@@ -989,53 +1140,52 @@ public class SVGConverter {
                 throw new SVGConverterException(ERROR_CANNOT_OPEN_OUTPUT_FILE,
                                                  new Object[] {outputFile.getName()});
             }
-
-            output = new TranscoderOutput(outputStream);
         } catch(SVGConverterException e){
             boolean proceed = controller.proceedOnSourceTranscodingFailure
                 (inputFile, outputFile, e.getErrorCode());
             if (proceed){
                 e.printStackTrace();
-                return;
+                return null;
             } else {
                 throw e;
             }
         }
 
-        // Transcode now
-        boolean success = false;
-        try {
-            transcoder.transcode(input, output);
-            success = true;
-        } catch(Exception te) {
-            te.printStackTrace();
-            try {
-                outputStream.flush();
-                outputStream.close();
-            } catch(IOException ioe) {}
+        return new TranscodingTask(inputFile, outputFile,
+                                   input, outputStream);
+    }
+
+    /**
+     * Reports the outcome of a transcoding task to the controller.
+     * If the transcoding failed and the controller decides to stop,
+     * an exception is thrown.
+     */
+    protected void completeTranscoding(TranscodingTask task)
+        throws SVGConverterException {
+        if (controller instanceof TimedSVGConverterController) {
+            ((TimedSVGConverterController)controller).onSourceTranscodingTime
+                (task.inputFile, task.outputFile, task.time);
+        }
+
+        if (task.error != null) {
+            task.error.printStackTrace();
 
             // Report error to the controller. If controller decides
             // to stop, throw an exception
             boolean proceed = controller.proceedOnSourceTranscodingFailure
-                (inputFile, outputFile, ERROR_WHILE_RASTERIZING_FILE);
+                (task.inputFile, task.outputFile, ERROR_WHILE_RASTERIZING_FILE);
 
             if (!proceed){
                 throw new SVGConverterException(ERROR_WHILE_RASTERIZING_FILE,
-                                                 new Object[] {outputFile.getName(),
-                                                               te.getMessage()});
+                                                 new Object[] {task.outputFile.getName(),
+                                                               task.error.getMessage()});
             }
-        }
-
-        // Close streams and clean up.
-        try {
-            outputStream.flush();
-            outputStream.close();
-        } catch(IOException ioe) {
             return;
         }
 
-        if (success){
-            controller.onSourceTranscodingSuccess(inputFile, outputFile);
+        if (task.closed){
+            controller.onSourceTranscodingSuccess(task.inputFile,
+                                                  task.outputFile);
         }
     }
 
@@ -1140,6 +1290,84 @@ public class SVGConverter {
     //   Inner classes
     // -----------------------------------------------------------------------
 
+    /**
+     * The conversion of a single source, once its input and output
+     * have been checked. Instances may be run on a worker thread, in
+     * which case the <code>Transcoder</code> is taken from, and given
+     * back to, the <code>transcoders</code> queue.
+     */
+    protected static class TranscodingTask implements Runnable {
+        protected SVGConverterSource inputFile;
+        protected File outputFile;
+        protected TranscoderInput input;
+        protected OutputStream outputStream;
+
+        /** Queue of idle transcoders, when run on a worker thread */
+        protected BlockingQueue transcoders;
+
+        /** Pending result, when run on a worker thread */
+        protected Future future;
+
+        /** Exception thrown while transcoding, if any */
+        protected Exception error;
+
+        /** Whether the output stream was successfully closed */
+        protected boolean closed;
+
+        /** Time spent transcoding, in milliseconds */
+        protected long time;
+
+        public TranscodingTask(SVGConverterSource inputFile,
+                               File outputFile,
+                               TranscoderInput input,
+                               OutputStream outputStream){
+            this.inputFile = inputFile;
+            this.outputFile = outputFile;
+            this.input = input;
+            this.outputStream = outputStream;
+        }
+
+        public void run() {
+            Transcoder transcoder;
+            try {
+                transcoder = (Transcoder)transcoders.take();
+            } catch (InterruptedException ie) {
+                error = ie;
+                close();
+                return;
+            }
+            try {
+                transcode(transcoder);
+            } finally {
+                transcoders.add(transcoder);
+            }
+        }
+
+        /**
+         * Transcodes the input to the output stream and closes it.
+         */
+        public void transcode(Transcoder transcoder) {
+            long t0 = System.currentTimeMillis();
+            try {
+                transcoder.transcode(input,
+                                     new TranscoderOutput(outputStream));
+            } catch(Exception te) {
+                error = te;
+            }
+            time = System.currentTimeMillis() - t0;
+            close();
+        }
+
+        protected void close() {
+            try {
+                outputStream.flush();
+                outputStream.close();
+                closed = true;
+            } catch(IOException ioe) {
+            }
+        }
+    }
+
     /**
      * Convenience class to filter svg files
      */
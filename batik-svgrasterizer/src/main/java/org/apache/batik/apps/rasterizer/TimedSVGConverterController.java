@@ -0,0 +1,47 @@
+/*
+
+   Licensed to the Apache Software Foundation (ASF) under one or more
+   contributor license agreements.  See the NOTICE file distributed with
+   this work for additional information regarding copyright ownership.
+   The ASF licenses this file to You under the Apache License, Version 2.0
+   (the "License"); you may not use this file except in compliance with
+   the License.  You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+
+ */
+package org.apache.batik.apps.rasterizer;
+
+import java.io.File;
+
+/**
+ * Extension of the <code>SVGConverterController</code> interface for
+ * controllers which want to know how long the conversion of each
+ * source took.
+ *
+ * <p>Like all the other controller notifications, this method is invoked
+ * from the thread which called <code>SVGConverter.execute</code>, in source
+ * order, even when several sources are transcoded concurrently (see
+ * {@link SVGConverter#setThreads}). Controllers therefore do not need to
+ * be thread safe.</p>
+ *
+ * @version $Id$
+ */
+public interface TimedSVGConverterController extends SVGConverterController {
+    /**
+     * Invoked when the rasterizer is done transcoding the input source,
+     * before either <code>onSourceTranscodingSuccess</code> or
+     * <code>proceedOnSourceTranscodingFailure</code> is invoked.
+     *
+     * @param time the time spent transcoding the source, in milliseconds.
+     */
+    void onSourceTranscodingTime(SVGConverterSource source,
+                                 File dest,
+                                 long time);
+}
@@ -449,6 +449,19 @@ public class MainTest extends DefaultTestSuite {
         addTest(t);
         t.setId("MainConfigTest.indexed");
 
+        t = new MainConfigTest("-threads 4"){
+                public TestReport validate(SVGConverter c){
+                    if(c.getThreads() == 4){
+                        return reportSuccess();
+                    } else {
+                        return reportError("-threads", "4",
+                                           "" + c.getThreads());
+                    }
+                }
+            };
+        addTest(t);
+        t.setId("MainConfigTest.threads");
+
         t = new MainConfigErrorTest("-d", "hello.svg -d");
         addTest(t);
         t.setId("MainConfigErrorTest.output");
@@ -549,6 +562,10 @@ public class MainTest extends DefaultTestSuite {
         addTest(t);
         t.setId("MainIllegalArgTest.q");
 
+        t = new MainIllegalArgTest("threads", "-threads 0");
+        addTest(t);
+        t.setId("MainIllegalArgTest.threads");
+
     }
 
 }
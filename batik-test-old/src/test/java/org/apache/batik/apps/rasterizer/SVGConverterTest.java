@@ -396,6 +396,27 @@ public class SVGConverterTest extends DefaultTestSuite {
         addTest(t);
         t.setId("ConfigErrorTest(SVGConverter.ERROR_WHILE_RASTERIZING_FILE");
 
+        //
+        // Check that the controller is notified in source order when
+        // the sources are converted concurrently.
+        //
+        t = new NotificationOrderTest
+            (new String[]{"samples/anne.svg",
+                          "test-resources/org/apache/batik/apps/rasterizer/invalidSVG.svg",
+                          "samples/tests/spec/styling/smiley.svg",
+                          "samples/batikFX.svg"},
+             2,
+             new String[]{"start anne.svg",
+                          "start invalidSVG.svg",
+                          "start smiley.svg",
+                          "success anne.svg",
+                          "start batikFX.svg",
+                          "failure invalidSVG.svg",
+                          "success smiley.svg",
+                          "success batikFX.svg"});
+        addTest(t);
+        t.setId("NotificationOrderTest.threads");
+
         //
         // Test that files are created as expected and are producing the
         // expected result.
@@ -415,6 +436,21 @@ public class SVGConverterTest extends DefaultTestSuite {
         addTest(t);
         t.setId("OutputTest.reference");
 
+        // Several files converted concurrently
+        t = new ConverterOutputTest("samples/anne.svg",
+                                    "test-reports/anne.png",
+                                    "test-references/samples/anne.png"){
+                protected void configure(SVGConverter c){
+                    c.setSources(new String[]{"samples/anne.svg",
+                                              "samples/tests/spec/styling/smiley.svg",
+                                              "samples/batikFX.svg"});
+                    c.setDst(new File("test-reports"));
+                    c.setThreads(2);
+                }
+            };
+        addTest(t);
+        t.setId("OutputTest.threads");
+
     }
 }
 
@@ -763,6 +799,82 @@ class OperationTest extends AbstractTest{
     }
 }
 
+/**
+ * Checks the sequence of notifications the controller gets for a
+ * conversion.
+ */
+class NotificationOrderTest extends AbstractTest
+    implements SVGConverterController {
+
+    public static final String ERROR_UNEXPECTED_NOTIFICATIONS
+        = "NotificationOrderTest.error.unexpected.notifications";
+
+    public static final String ENTRY_KEY_EXPECTED_NOTIFICATIONS
+        = "NotificationOrderTest.entry.key.expected.notifications";
+
+    public static final String ENTRY_KEY_GOT_NOTIFICATIONS
+        = "NotificationOrderTest.entry.key.got.notifications";
+
+    String[] sources;
+    int threads;
+    List expected;
+    List notifications = new ArrayList();
+
+    public NotificationOrderTest(String[] sources,
+                                 int threads,
+                                 String[] expected){
+        this.sources = sources;
+        this.threads = threads;
+        this.expected = Arrays.asList(expected);
+    }
+
+    public TestReport runImpl() throws Exception {
+        SVGConverter c = new SVGConverter(this);
+        c.setSources(sources);
+        c.setDst(new File("test-reports"));
+        c.setDestinationType(DestinationType.PNG);
+        c.setThreads(threads);
+        c.execute();
+
+        if (notifications.equals(expected)) {
+            return reportSuccess();
+        }
+
+        TestReport report = reportError(ERROR_UNEXPECTED_NOTIFICATIONS);
+        report.addDescriptionEntry(ENTRY_KEY_EXPECTED_NOTIFICATIONS,
+                                   expected.toString());
+        report.addDescriptionEntry(ENTRY_KEY_GOT_NOTIFICATIONS,
+                                   notifications.toString());
+        return report;
+    }
+
+    public boolean proceedWithComputedTask(Transcoder transcoder,
+                                           Map hints,
+                                           List sources,
+                                           List dest){
+        return true;
+    }
+
+    public boolean proceedWithSourceTranscoding(SVGConverterSource source,
+                                                File dest) {
+        notifications.add("start " + source.getName());
+        dest.deleteOnExit();
+        return true;
+    }
+
+    public boolean proceedOnSourceTranscodingFailure(SVGConverterSource source,
+                                                     File dest,
+                                                     String errorCode){
+        notifications.add("failure " + source.getName());
+        return true;
+    }
+
+    public void onSourceTranscodingSuccess(SVGConverterSource source,
+                                           File dest){
+        notifications.add("success " + source.getName());
+    }
+}
+
 /**
  * Provides a simple string constructor which allows the user to
  * create a given test to check that a specific transcoder class is
@@ -1080,6 +1192,8 @@ class ConverterOutputTest extends AbstractTest {
 
         c.setDestinationType(DestinationType.PNG);
 
+        configure(c);
+
         c.execute();
 
         ImageCompareTest t = new ImageCompareTest(pngDest,
@@ -1088,4 +1202,8 @@ class ConverterOutputTest extends AbstractTest {
         (new File(pngDest)).delete();
         return r;
     }
+
+    protected void configure(SVGConverter c){
+        // May be overridden by subclasses.
+    }
 }
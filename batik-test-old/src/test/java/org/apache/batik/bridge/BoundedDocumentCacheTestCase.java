@@ -0,0 +1,116 @@
+/*
+
+   Licensed to the Apache Software Foundation (ASF) under one or more
+   contributor license agreements.  See the NOTICE file distributed with
+   this work for additional information regarding copyright ownership.
+   The ASF licenses this file to You under the Apache License, Version 2.0
+   (the "License"); you may not use this file except in compliance with
+   the License.  You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+
+ */
+package org.apache.batik.bridge;
+
+import java.io.File;
+import java.io.StringReader;
+
+import org.apache.batik.anim.dom.SAXSVGDocumentFactory;
+import org.apache.batik.anim.dom.SVGOMDocument;
+import org.apache.batik.util.ParsedURL;
+import org.apache.batik.util.XMLResourceDescriptor;
+import org.junit.Assert;
+import org.junit.Test;
+import org.w3c.dom.Document;
+
+public class BoundedDocumentCacheTestCase {
+    private static String uri(String file) {
+        return new File("samples/" + file).toURI().toString();
+    }
+
+    @Test
+    public void testSharedBetweenLoaders() throws Exception {
+        BoundedDocumentCache cache = new BoundedDocumentCache();
+        String uri = uri("batikLogo.svg");
+        DocumentLoader l1 = new DocumentLoader(new UserAgentAdapter(), cache);
+        DocumentLoader l2 = new DocumentLoader(new UserAgentAdapter(), cache);
+
+        Document d1 = l1.loadDocument(uri);
+        Assert.assertEquals(1, cache.getLoadCount());
+        Assert.assertEquals(0, cache.getHitCount());
+
+        Document d2 = l2.loadDocument(uri);
+        Assert.assertEquals(1, cache.getLoadCount());
+        Assert.assertEquals(1, cache.getHitCount());
+        Assert.assertNotSame(d1, d2);
+        Assert.assertEquals(((SVGOMDocument)d1).getURL(),
+                            ((SVGOMDocument)d2).getURL());
+        Assert.assertEquals(d1.getElementsByTagName("*").getLength(),
+                            d2.getElementsByTagName("*").getLength());
+        Assert.assertNotNull(d2.getElementById("Batik_Squiggle"));
+
+        // A loader keeps returning the document it got first.
+        Assert.assertSame(d2, l2.loadDocument(uri + "#Batik_Squiggle"));
+        Assert.assertEquals(1, cache.getHitCount());
+        Assert.assertEquals(1, cache.getDocumentCount());
+    }
+
+    @Test
+    public void testLimits() throws Exception {
+        BoundedDocumentCache cache = new BoundedDocumentCache(1, 100000, 0);
+        DocumentLoader l = new DocumentLoader(new UserAgentAdapter(), cache);
+        l.loadDocument(uri("batikLogo.svg"));
+        l.loadDocument(uri("anne.svg"));
+        Assert.assertEquals(1, cache.getDocumentCount());
+        Assert.assertEquals(1, cache.getEvictionCount());
+        Assert.assertNull(cache.getDocument(uri("batikLogo.svg")));
+        Assert.assertNotNull(cache.getDocument(uri("anne.svg")));
+
+        cache = new BoundedDocumentCache(10, 10, 0);
+        l = new DocumentLoader(new UserAgentAdapter(), cache);
+        Assert.assertNotNull(l.loadDocument(uri("batikLogo.svg")));
+        Assert.assertEquals(0, cache.getDocumentCount());
+        Assert.assertEquals(0, cache.getNodeCount());
+    }
+
+    @Test
+    public void testSecurityCheckedBeforeCache() throws Exception {
+        BoundedDocumentCache cache = new BoundedDocumentCache();
+        new DocumentLoader(new UserAgentAdapter(), cache)
+            .loadDocument(uri("batikLogo.svg"));
+
+        String svg =
+            "<svg xmlns='http://www.w3.org/2000/svg'"
+            + " xmlns:xlink='http://www.w3.org/1999/xlink'>"
+            + "<image width='10' height='10' xlink:href='batikLogo.svg'/>"
+            + "</svg>";
+        Document doc = new SAXSVGDocumentFactory
+            (XMLResourceDescriptor.getXMLParserClassName())
+            .createDocument(uri("imageRef.svg"), new StringReader(svg));
+
+        UserAgent ua = new UserAgentAdapter() {
+                public void checkLoadExternalResource(ParsedURL resourceURL,
+                                                      ParsedURL docURL) {
+                    throw new SecurityException(resourceURL.toString());
+                }
+            };
+        BridgeContext ctx =
+            new BridgeContext(ua, new DocumentLoader(ua, cache));
+        try {
+            new GVTBuilder().build(ctx, doc);
+            Assert.fail("the cached document was used");
+        } catch (BridgeException ex) {
+            Assert.assertEquals(ErrorConstants.ERR_URI_UNSECURE,
+                                ex.getCode());
+        } finally {
+            ctx.dispose();
+        }
+        Assert.assertEquals(0, cache.getHitCount());
+    }
+}
@@ -0,0 +1,162 @@
+/*
+
+   Licensed to the Apache Software Foundation (ASF) under one or more
+   contributor license agreements.  See the NOTICE file distributed with
+   this work for additional information regarding copyright ownership.
+   The ASF licenses this file to You under the Apache License, Version 2.0
+   (the "License"); you may not use this file except in compliance with
+   the License.  You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+
+ */
+package org.apache.batik.bridge;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.StringTokenizer;
+
+import org.apache.batik.gvt.font.GVTFontFamily;
+import org.junit.Assert;
+import org.junit.Test;
+
+public class LazyFontEnumerationTestCase {
+
+    /**
+     * Loads a new DefaultFontFamilyResolver class, with its own static
+     * state.
+     */
+    private static Class loadResolverClass() throws Exception {
+        List urls = new ArrayList();
+        StringTokenizer st = new StringTokenizer
+            (System.getProperty("java.class.path"), File.pathSeparator);
+        while (st.hasMoreTokens()) {
+            urls.add(new File(st.nextToken()).toURI().toURL());
+        }
+        ClassLoader cl = new URLClassLoader
+            ((URL[])urls.toArray(new URL[urls.size()]),
+             ClassLoader.getSystemClassLoader().getParent());
+        return cl.loadClass(DefaultFontFamilyResolver.class.getName());
+    }
+
+    private static Object resolve(Class c, String name) throws Exception {
+        Object resolver = c.getField("SINGLETON").get(null);
+        Method m = c.getMethod("resolve", new Class[] { String.class });
+        return m.invoke(resolver, new Object[] { name });
+    }
+
+    private static String getFamilyName(Object family) throws Exception {
+        Method m = family.getClass().getMethod("getFamilyName", new Class[0]);
+        return (String)m.invoke(family, new Object[0]);
+    }
+
+    private static boolean isEnumerated(Class c) throws Exception {
+        Field f = c.getDeclaredField("fontsEnumerated");
+        f.setAccessible(true);
+        return f.getBoolean(null);
+    }
+
+    @Test
+    public void testEnumeratedOnMissOnly() throws Exception {
+        Class c = loadResolverClass();
+        Assert.assertFalse(isEnumerated(c));
+        Assert.assertEquals("Serif", getFamilyName(resolve(c, "Serif")));
+        Assert.assertEquals("SansSerif",
+                            getFamilyName(resolve(c, "sans-serif")));
+        Assert.assertEquals("Monospaced",
+                            getFamilyName(resolve(c, "monospace")));
+        Assert.assertFalse(isEnumerated(c));
+
+        Assert.assertNull(resolve(c, "no-such-font-family"));
+        Assert.assertTrue(isEnumerated(c));
+    }
+
+    @Test
+    public void testSameAsEnumeration() throws Exception {
+        DefaultFontFamilyResolver.enumerateFonts();
+        for (Object o : DefaultFontFamilyResolver.fonts.keySet()) {
+            String name = (String)o;
+            String exact = DefaultFontFamilyResolver.lookupFont(name);
+            if (exact != null) {
+                Assert.assertEquals(name, exact.toLowerCase());
+            }
+            GVTFontFamily ff =
+                DefaultFontFamilyResolver.SINGLETON.resolve(name);
+            Assert.assertNotNull(ff);
+        }
+    }
+
+    @Test
+    public void testFontIndex() throws Exception {
+        File dir = File.createTempFile("batik-fonts", "");
+        dir.delete();
+        dir.mkdir();
+        File index = new File(dir, "fonts.idx");
+        try {
+            System.setProperty(DefaultFontFamilyResolver.FONT_INDEX_PROPERTY,
+                               index.getPath());
+
+            // The first miss writes the index.
+            Class c = loadResolverClass();
+            Assert.assertNull(resolve(c, "no-such-font-family"));
+            Assert.assertTrue(index.isFile());
+            Assert.assertEquals(1, dir.list().length);
+            BufferedReader r = new BufferedReader(new InputStreamReader
+                (new FileInputStream(index), "UTF-8"));
+            String header = r.readLine();
+            List lines = new ArrayList();
+            String line;
+            while ((line = r.readLine()) != null) {
+                lines.add(line);
+            }
+            r.close();
+            Assert.assertTrue(header.startsWith
+                              (DefaultFontFamilyResolver.FONT_INDEX_HEADER));
+            Assert.assertFalse(lines.isEmpty());
+
+            // The next runs read it.
+            Writer w = new OutputStreamWriter
+                (new FileOutputStream(index, true), "UTF-8");
+            w.write("indexed font\tSerif\n");
+            w.close();
+            c = loadResolverClass();
+            Assert.assertEquals("Serif",
+                                getFamilyName(resolve(c, "Indexed Font")));
+            Assert.assertTrue(isEnumerated(c));
+
+            // An index of another runtime is replaced.
+            w = new OutputStreamWriter(new FileOutputStream(index), "UTF-8");
+            w.write(DefaultFontFamilyResolver.FONT_INDEX_HEADER + "other\n");
+            w.write("indexed font\tSerif\n");
+            w.close();
+            c = loadResolverClass();
+            Assert.assertNull(resolve(c, "Indexed Font"));
+            r = new BufferedReader(new InputStreamReader
+                (new FileInputStream(index), "UTF-8"));
+            Assert.assertEquals(header, r.readLine());
+            r.close();
+        } finally {
+            System.clearProperty
+                (DefaultFontFamilyResolver.FONT_INDEX_PROPERTY);
+            index.delete();
+            dir.delete();
+        }
+    }
+}
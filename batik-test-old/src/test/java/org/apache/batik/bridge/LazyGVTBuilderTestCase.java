@@ -0,0 +1,261 @@
+/*
+
+   Licensed to the Apache Software Foundation (ASF) under one or more
+   contributor license agreements.  See the NOTICE file distributed with
+   this work for additional information regarding copyright ownership.
+   The ASF licenses this file to You under the Apache License, Version 2.0
+   (the "License"); you may not use this file except in compliance with
+   the License.  You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+
+ */
+package org.apache.batik.bridge;
+
+import java.awt.Graphics2D;
+import java.awt.Rectangle;
+import java.awt.geom.Point2D;
+import java.awt.image.BufferedImage;
+import java.io.StringReader;
+
+import org.apache.batik.anim.dom.SAXSVGDocumentFactory;
+import org.apache.batik.ext.awt.image.GraphicsUtil;
+import org.apache.batik.gvt.CompositeGraphicsNode;
+import org.apache.batik.gvt.GraphicsNode;
+import org.apache.batik.util.XMLResourceDescriptor;
+import org.junit.Assert;
+import org.junit.Test;
+import org.w3c.dom.Document;
+import org.w3c.dom.Element;
+
+public class LazyGVTBuilderTestCase {
+    private static String createDocument() {
+        StringBuffer sb = new StringBuffer();
+        sb.append("<svg xmlns='http://www.w3.org/2000/svg'"
+                  + " xmlns:xlink='http://www.w3.org/1999/xlink'"
+                  + " width='400' height='400'>"
+                  + "<defs><g id='cell'><circle r='6' fill='navy'/>"
+                  + "<rect x='-3' y='-3' width='6' height='6'"
+                  + " fill='orange'/></g></defs>");
+        for (int i = 0; i < 20; i++) {
+            sb.append("<g id='row" + i + "' transform='translate(0,"
+                      + (i * 20) + ")'>");
+            for (int j = 0; j < 20; j++) {
+                sb.append("<g id='c" + i + "_" + j + "' transform='translate("
+                          + (j * 20 + 10) + ",10)'>");
+                if ((i + j) % 3 == 0) {
+                    sb.append("<use xlink:href='#cell'/>");
+                } else {
+                    sb.append("<rect id='r" + i + "_" + j + "' x='-8' y='-8'"
+                              + " width='" + (4 + (i + j) % 12) + "'"
+                              + " height='12' fill='rgb(" + (i * 12) + ","
+                              + (j * 12) + ",90)' opacity='0.8'/>");
+                }
+                sb.append("</g>");
+            }
+            sb.append("</g>");
+        }
+        sb.append("<svg x='300' y='300' width='50' height='50'>"
+                  + "<circle id='nested' cx='40' cy='40' r='30' fill='green'/>"
+                  + "</svg></svg>");
+        return sb.toString();
+    }
+
+    private static String createShapesDocument() {
+        StringBuffer sb = new StringBuffer();
+        sb.append("<svg xmlns='http://www.w3.org/2000/svg'"
+                  + " width='400' height='400'>");
+        for (int i = 0; i < 20; i++) {
+            sb.append("<g id='row" + i + "' transform='translate(0,"
+                      + (i * 20) + ")'>");
+            for (int j = 0; j < 20; j++) {
+                String id = "s" + i + "_" + j;
+                String fill = " fill='rgb(" + (i * 12) + "," + (j * 12)
+                    + ",90)'";
+                switch ((i + j) % 5) {
+                case 0:
+                    sb.append("<rect id='" + id + "' x='" + (j * 20 + 2)
+                              + "' y='3' width='14' height='12'" + fill
+                              + " stroke='black' stroke-width='2'/>");
+                    break;
+                case 1:
+                    sb.append("<circle id='" + id + "' cx='" + (j * 20 + 10)
+                              + "' cy='10' r='7'" + fill + "/>");
+                    break;
+                case 2:
+                    sb.append("<line id='" + id + "' x1='" + (j * 20 + 2)
+                              + "' y1='2' x2='" + (j * 20 + 18)
+                              + "' y2='18' stroke='red' stroke-width='3'"
+                              + " stroke-linecap='square'/>");
+                    break;
+                case 3:
+                    sb.append("<path id='" + id + "' d='M" + (j * 20 + 3)
+                              + " 17 L" + (j * 20 + 10) + " 3 L"
+                              + (j * 20 + 17) + " 17 Z'" + fill
+                              + " stroke='navy' stroke-width='2'/>");
+                    break;
+                default:
+                    sb.append("<g transform='translate(" + (j * 20) + ",0)'>"
+                              + "<polygon id='" + id + "' points='2,10 10,2"
+                              + " 18,10 10,18'" + fill + "/></g>");
+                }
+            }
+            sb.append("</g>");
+        }
+        sb.append("</svg>");
+        return sb.toString();
+    }
+
+    private static Document parse(String svg) throws Exception {
+        SAXSVGDocumentFactory df = new SAXSVGDocumentFactory
+            (XMLResourceDescriptor.getXMLParserClassName());
+        return df.createDocument("http://example.org/lazy.svg",
+                                 new StringReader(svg));
+    }
+
+    private static BufferedImage paint(GraphicsNode node, Rectangle clip) {
+        BufferedImage image =
+            new BufferedImage(400, 400, BufferedImage.TYPE_INT_ARGB);
+        Graphics2D g = GraphicsUtil.createGraphics(image);
+        if (clip != null) {
+            g.clip(clip);
+        }
+        node.paint(g);
+        g.dispose();
+        return image;
+    }
+
+    private static void assertSamePixels(BufferedImage expected,
+                                         BufferedImage actual,
+                                         Rectangle r) {
+        for (int y = r.y; y < r.y + r.height; y++) {
+            for (int x = r.x; x < r.x + r.width; x++) {
+                Assert.assertEquals(expected.getRGB(x, y), actual.getRGB(x, y));
+            }
+        }
+    }
+
+    @Test
+    public void testBuiltOnDemand() throws Exception {
+        String svg = createDocument();
+        BridgeContext eagerCtx = new BridgeContext(new UserAgentAdapter());
+        eagerCtx.setInteractive(true);
+        GraphicsNode eager = new GVTBuilder().build(eagerCtx, parse(svg));
+
+        Document doc = parse(svg);
+        BridgeContext ctx = new BridgeContext(new UserAgentAdapter());
+        ctx.setInteractive(true);
+        GVTBuilder builder = new GVTBuilder();
+        builder.setLazy(true);
+        GraphicsNode lazy = builder.build(ctx, doc);
+        Assert.assertNull(ctx.getGraphicsNode(doc.getElementById("row3")));
+        Assert.assertNull(ctx.getGraphicsNode(doc.getElementById("r3_4")));
+
+        // Querying the bounds of a row only builds that row.
+        Element row3 = doc.getElementById("row3");
+        CompositeGraphicsNode top = (CompositeGraphicsNode)
+            ((CompositeGraphicsNode)lazy).get(0);
+        LazyGraphicsNode proxy = null;
+        for (int i = 0; i < top.size(); i++) {
+            LazyGraphicsNode n = (LazyGraphicsNode)top.get(i);
+            if (n.getElement() == row3) {
+                proxy = n;
+            }
+        }
+        Assert.assertNotNull(proxy);
+        Assert.assertFalse(proxy.isMaterialized());
+        Assert.assertEquals
+            (eagerCtx.getGraphicsNode(eagerCtx.getDocument().
+                                      getElementById("row3")).
+             getTransformedBounds(GraphicsNode.IDENTITY),
+             proxy.getBounds());
+        Assert.assertTrue(proxy.isMaterialized());
+        Assert.assertNotNull(ctx.getGraphicsNode(row3));
+        // The bounds of the cells made of a rectangle are estimated.
+        Assert.assertNull(ctx.getGraphicsNode(doc.getElementById("r3_4")));
+        Assert.assertNull(ctx.getGraphicsNode(doc.getElementById("row4")));
+
+        Rectangle clip = new Rectangle(130, 90, 70, 50);
+        assertSamePixels(paint(eager, clip), paint(lazy, clip), clip);
+
+        // Hit testing finds the nodes of the same elements.
+        for (int i = 0; i < 400; i++) {
+            Point2D p = new Point2D.Double((i * 37) % 400 + 0.5,
+                                           (i * 53) % 400 + 0.5);
+            GraphicsNode expected = eager.nodeHitAt(p);
+            GraphicsNode actual = lazy.nodeHitAt(p);
+            if (expected == null) {
+                Assert.assertNull(actual);
+            } else {
+                Element e = eagerCtx.getElement(expected);
+                Assert.assertNotNull(actual);
+                Assert.assertEquals(e.getAttributeNS(null, "id"),
+                                    ctx.getElement(actual).
+                                    getAttributeNS(null, "id"));
+            }
+        }
+
+        Rectangle all = new Rectangle(0, 0, 400, 400);
+        assertSamePixels(paint(eager, null), paint(lazy, null), all);
+        Assert.assertNotNull(ctx.getGraphicsNode(doc.getElementById("r3_4")));
+        Assert.assertNotNull(ctx.getGraphicsNode(doc.getElementById("nested")));
+    }
+
+    @Test
+    public void testOffClipRowsNotBuilt() throws Exception {
+        String svg = createShapesDocument();
+        BridgeContext eagerCtx = new BridgeContext(new UserAgentAdapter());
+        eagerCtx.setInteractive(true);
+        GraphicsNode eager = new GVTBuilder().build(eagerCtx, parse(svg));
+
+        Document doc = parse(svg);
+        BridgeContext ctx = new BridgeContext(new UserAgentAdapter());
+        ctx.setInteractive(true);
+        GVTBuilder builder = new GVTBuilder();
+        builder.setLazy(true);
+        GraphicsNode lazy = builder.build(ctx, doc);
+
+        // Painting a small clip only builds the rows it intersects.
+        Rectangle clip = new Rectangle(130, 45, 70, 30);
+        assertSamePixels(paint(eager, clip), paint(lazy, clip), clip);
+        for (int i = 0; i < 20; i++) {
+            Element row = doc.getElementById("row" + i);
+            if (i >= 2 && i <= 3) {
+                Assert.assertNotNull(ctx.getGraphicsNode(row));
+            } else {
+                Assert.assertNull("row" + i, ctx.getGraphicsNode(row));
+            }
+        }
+
+        // Once built, the rows have their exact bounds.
+        Rectangle all = new Rectangle(0, 0, 400, 400);
+        assertSamePixels(paint(eager, null), paint(lazy, null), all);
+        for (int i = 0; i < 20; i++) {
+            Element row = doc.getElementById("row" + i);
+            Assert.assertEquals
+                (eagerCtx.getGraphicsNode(eagerCtx.getDocument().
+                                          getElementById("row" + i)).
+                 getTransformedBounds(GraphicsNode.IDENTITY),
+                 ctx.getGraphicsNode(row).getParent().getBounds());
+        }
+        Assert.assertEquals(eager.getBounds(), lazy.getBounds());
+    }
+
+    @Test
+    public void testDynamicDocumentsBuiltEntirely() throws Exception {
+        Document doc = parse(createDocument());
+        BridgeContext ctx = new BridgeContext(new UserAgentAdapter());
+        ctx.setDynamic(true);
+        GVTBuilder builder = new GVTBuilder();
+        builder.setLazy(true);
+        builder.build(ctx, doc);
+        Assert.assertNotNull(ctx.getGraphicsNode(doc.getElementById("r3_4")));
+        ctx.dispose();
+    }
+}
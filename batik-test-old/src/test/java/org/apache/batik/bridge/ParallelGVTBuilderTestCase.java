@@ -0,0 +1,202 @@
+/*
+
+   Licensed to the Apache Software Foundation (ASF) under one or more
+   contributor license agreements.  See the NOTICE file distributed with
+   this work for additional information regarding copyright ownership.
+   The ASF licenses this file to You under the Apache License, Version 2.0
+   (the "License"); you may not use this file except in compliance with
+   the License.  You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+
+ */
+package org.apache.batik.bridge;
+
+import java.awt.Graphics2D;
+import java.awt.geom.Rectangle2D;
+import java.awt.image.BufferedImage;
+import java.io.StringReader;
+import java.util.concurrent.ForkJoinPool;
+
+import org.apache.batik.anim.dom.SAXSVGDocumentFactory;
+import org.apache.batik.ext.awt.image.GraphicsUtil;
+import org.apache.batik.gvt.CompositeGraphicsNode;
+import org.apache.batik.gvt.GraphicsNode;
+import org.apache.batik.gvt.ShapeNode;
+import org.apache.batik.util.XMLResourceDescriptor;
+import org.junit.Assert;
+import org.junit.Test;
+import org.w3c.dom.Document;
+import org.w3c.dom.Element;
+
+public class ParallelGVTBuilderTestCase {
+    private static String createDocument(String extra) {
+        StringBuffer sb = new StringBuffer();
+        sb.append("<svg xmlns='http://www.w3.org/2000/svg'"
+                  + " xmlns:xlink='http://www.w3.org/1999/xlink'"
+                  + " width='300' height='300'>"
+                  + "<style type='text/css'>.b { stroke: black }</style>"
+                  + "<defs><linearGradient id='grad'>"
+                  + "<stop offset='0' stop-color='red'/>"
+                  + "<stop offset='1' stop-color='blue'/>"
+                  + "</linearGradient></defs>");
+        for (int i = 0; i < 30; i++) {
+            sb.append("<g id='g" + i + "' transform='translate("
+                      + (i % 6 * 50) + "," + (i / 6 * 50) + ")'"
+                      + " fill='rgb(" + (i * 8) + ",100,50)'>");
+            for (int j = 0; j < 10; j++) {
+                sb.append("<g opacity='0.7'><rect id='r" + i + "_" + j
+                          + "' class='b' x='" + (j * 4) + "' y='" + (j * 3)
+                          + "' width='12' height='9'/>"
+                          + "<circle cx='" + (j * 4) + "' cy='40' r='3'"
+                          + " fill='navy'/></g>");
+            }
+            if (i % 5 == 1) {
+                sb.append("<rect width='20' height='20'"
+                          + " fill='url(#grad)'/>");
+            } else if (i % 5 == 2) {
+                sb.append("<text x='5' y='30' font-size='10'>T" + i
+                          + "</text>");
+            } else if (i % 5 == 3) {
+                sb.append("<use xlink:href='#r0_0' x='20'/>");
+            }
+            sb.append("</g>");
+        }
+        sb.append(extra);
+        sb.append("<use xlink:href='#g4' x='10' y='5'/></svg>");
+        return sb.toString();
+    }
+
+    private static Document parse(String svg) throws Exception {
+        SAXSVGDocumentFactory df = new SAXSVGDocumentFactory
+            (XMLResourceDescriptor.getXMLParserClassName());
+        return df.createDocument("http://example.org/parallel.svg",
+                                 new StringReader(svg));
+    }
+
+    private static BufferedImage paint(GraphicsNode node) {
+        BufferedImage image =
+            new BufferedImage(300, 300, BufferedImage.TYPE_INT_ARGB);
+        Graphics2D g = GraphicsUtil.createGraphics(image);
+        node.paint(g);
+        g.dispose();
+        return image;
+    }
+
+    @Test
+    public void testSameTree() throws Exception {
+        String svg = createDocument("");
+        BridgeContext seqCtx = new BridgeContext(new UserAgentAdapter());
+        seqCtx.setInteractive(true);
+        GraphicsNode seq = new GVTBuilder().build(seqCtx, parse(svg));
+
+        Document doc = parse(svg);
+        BridgeContext ctx = new BridgeContext(new UserAgentAdapter());
+        ctx.setInteractive(true);
+        GVTBuilder builder = new GVTBuilder();
+        ForkJoinPool pool = new ForkJoinPool(4);
+        builder.setForkJoinPool(pool);
+        GraphicsNode par = builder.build(ctx, doc);
+        pool.shutdown();
+
+        Assert.assertTrue(builder.isIndependent(ctx, doc.getElementById("g0")));
+        Assert.assertFalse(builder.isIndependent(ctx, doc.getElementById("g1")));
+        Assert.assertFalse(builder.isIndependent(ctx, doc.getElementById("g2")));
+        Assert.assertFalse(builder.isIndependent(ctx, doc.getElementById("g3")));
+
+        // The top-level nodes are in the document order.
+        CompositeGraphicsNode seqTop =
+            (CompositeGraphicsNode)((CompositeGraphicsNode)seq).get(0);
+        CompositeGraphicsNode parTop =
+            (CompositeGraphicsNode)((CompositeGraphicsNode)par).get(0);
+        Assert.assertEquals(seqTop.size(), parTop.size());
+        for (int i = 0; i < seqTop.size(); i++) {
+            Element se = seqCtx.getElement((GraphicsNode)seqTop.get(i));
+            Element pe = ctx.getElement((GraphicsNode)parTop.get(i));
+            Assert.assertEquals(se.getAttributeNS(null, "id"),
+                                pe.getAttributeNS(null, "id"));
+        }
+        Assert.assertNotNull(ctx.getGraphicsNode(doc.getElementById("r7_3")));
+
+        BufferedImage expected = paint(seq);
+        BufferedImage actual = paint(par);
+        for (int y = 0; y < 300; y++) {
+            for (int x = 0; x < 300; x++) {
+                Assert.assertEquals(expected.getRGB(x, y), actual.getRGB(x, y));
+            }
+        }
+    }
+
+    private static String buildError(Document doc, ForkJoinPool pool) {
+        GVTBuilder builder = new GVTBuilder();
+        builder.setForkJoinPool(pool);
+        try {
+            builder.build(new BridgeContext(new UserAgentAdapter()), doc);
+        } catch (BridgeException ex) {
+            return ex.getCode() + " "
+                + ex.getElement().getAttributeNS(null, "id");
+        }
+        return null;
+    }
+
+    @Test
+    public void testErrorInSubtree() throws Exception {
+        String svg = createDocument
+            ("<g><rect id='bad' width='-1' height='2'/></g>");
+        String expected = buildError(parse(svg), null);
+        Assert.assertNotNull(expected);
+        ForkJoinPool pool = new ForkJoinPool(2);
+        Assert.assertEquals(expected, buildError(parse(svg), pool));
+        pool.shutdown();
+    }
+
+    @Test
+    public void testEmLengths() throws Exception {
+        StringBuffer sb = new StringBuffer();
+        sb.append("<svg xmlns='http://www.w3.org/2000/svg'"
+                  + " width='300' height='300'>");
+        for (int i = 0; i < 40; i++) {
+            sb.append("<g font-size='" + (i + 4) + "'>");
+            for (int j = 0; j < 20; j++) {
+                sb.append("<rect id='r" + i + "_" + j + "' x='1em'"
+                          + " y='0.5em' width='2em' height='3em'/>");
+            }
+            sb.append("<g font-size='150%'><rect id='n" + i + "'"
+                      + " width='2em' height='1em'/></g></g>");
+        }
+        sb.append("</svg>");
+        String svg = sb.toString();
+
+        ForkJoinPool pool = new ForkJoinPool(4);
+        for (int k = 0; k < 5; k++) {
+            Document doc = parse(svg);
+            BridgeContext ctx = new BridgeContext(new UserAgentAdapter());
+            ctx.setInteractive(true);
+            GVTBuilder builder = new GVTBuilder();
+            builder.setForkJoinPool(pool);
+            builder.build(ctx, doc);
+            for (int i = 0; i < 40; i++) {
+                double fs = i + 4;
+                for (int j = 0; j < 20; j++) {
+                    ShapeNode sn = (ShapeNode)ctx.getGraphicsNode
+                        (doc.getElementById("r" + i + "_" + j));
+                    Assert.assertEquals
+                        (new Rectangle2D.Double(fs, fs / 2, fs * 2, fs * 3),
+                         sn.getShape().getBounds2D());
+                }
+                ShapeNode sn = (ShapeNode)ctx.getGraphicsNode
+                    (doc.getElementById("n" + i));
+                Assert.assertEquals
+                    (new Rectangle2D.Double(0, 0, fs * 3, fs * 1.5),
+                     sn.getShape().getBounds2D());
+            }
+        }
+        pool.shutdown();
+    }
+}
@@ -0,0 +1,120 @@
+/*
+
+   Licensed to the Apache Software Foundation (ASF) under one or more
+   contributor license agreements.  See the NOTICE file distributed with
+   this work for additional information regarding copyright ownership.
+   The ASF licenses this file to You under the Apache License, Version 2.0
+   (the "License"); you may not use this file except in compliance with
+   the License.  You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+
+ */
+package org.apache.batik.bridge;
+
+import java.io.File;
+import java.net.URL;
+
+import org.apache.batik.script.ImportInfo;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Test;
+
+public class RhinoScriptCacheTestCase {
+    private static final String COUNTER =
+        "var n = (typeof n == 'undefined') ? 1 : n + 1; n";
+
+    private static RhinoInterpreter create(String file) throws Exception {
+        URL url = new File("samples/" + file).toURI().toURL();
+        return new RhinoInterpreter(url, new ImportInfo());
+    }
+
+    private static int evaluate(RhinoInterpreter interp, String script) {
+        return ((Number)interp.evaluate(script)).intValue();
+    }
+
+    @After
+    public void restore() {
+        RhinoInterpreter.setScriptCacheSize
+            (RhinoInterpreter.DEFAULT_SCRIPT_CACHE_SIZE);
+        RhinoInterpreter.clearScriptCache();
+    }
+
+    @Test
+    public void testSharedBetweenInterpreters() throws Exception {
+        RhinoInterpreter.clearScriptCache();
+        RhinoInterpreter i1 = create("anne.svg");
+        RhinoInterpreter i2 = create("anne.svg");
+        long compiled = RhinoInterpreter.getScriptCompileCount();
+        long hits = RhinoInterpreter.getScriptCacheHitCount();
+
+        Assert.assertEquals(1, evaluate(i1, COUNTER));
+        Assert.assertEquals(2, evaluate(i1, COUNTER));
+        Assert.assertEquals(1, evaluate(i2, COUNTER));
+        Assert.assertEquals(compiled + 1,
+                            RhinoInterpreter.getScriptCompileCount());
+        Assert.assertEquals(hits + 2,
+                            RhinoInterpreter.getScriptCacheHitCount());
+        Assert.assertTrue(RhinoInterpreter.getScriptCompileTime() > 0);
+
+        // Another document has another security context.
+        RhinoInterpreter i3 = create("batikLogo.svg");
+        Assert.assertEquals(1, evaluate(i3, COUNTER));
+        Assert.assertEquals(compiled + 2,
+                            RhinoInterpreter.getScriptCompileCount());
+    }
+
+    @Test
+    public void testThreads() throws Exception {
+        RhinoInterpreter.clearScriptCache();
+        final Throwable[] error = new Throwable[1];
+        Thread[] threads = new Thread[4];
+        for (int t = 0; t < threads.length; t++) {
+            threads[t] = new Thread() {
+                    public void run() {
+                        try {
+                            RhinoInterpreter interp = create("anne.svg");
+                            for (int k = 1; k <= 50; k++) {
+                                Assert.assertEquals(k, evaluate(interp,
+                                                                COUNTER));
+                                Assert.assertEquals
+                                    (k % 7, evaluate(interp, k + " % 7"));
+                            }
+                        } catch (Throwable e) {
+                            error[0] = e;
+                        }
+                    }
+                };
+            threads[t].start();
+        }
+        for (int t = 0; t < threads.length; t++) {
+            threads[t].join();
+        }
+        Assert.assertNull(error[0]);
+    }
+
+    @Test
+    public void testSize() throws Exception {
+        RhinoInterpreter interp = create("anne.svg");
+        RhinoInterpreter.setScriptCacheSize(1);
+        evaluate(interp, "1");
+        evaluate(interp, "2");
+        long compiled = RhinoInterpreter.getScriptCompileCount();
+        evaluate(interp, "2");
+        evaluate(interp, "1");
+        Assert.assertEquals(compiled + 1,
+                            RhinoInterpreter.getScriptCompileCount());
+
+        RhinoInterpreter.setScriptCacheSize(0);
+        evaluate(interp, "1");
+        evaluate(interp, "1");
+        Assert.assertEquals(compiled + 3,
+                            RhinoInterpreter.getScriptCompileCount());
+    }
+}
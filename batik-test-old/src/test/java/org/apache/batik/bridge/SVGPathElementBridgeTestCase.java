@@ -0,0 +1,80 @@
+/*
+
+   Licensed to the Apache Software Foundation (ASF) under one or more
+   contributor license agreements.  See the NOTICE file distributed with
+   this work for additional information regarding copyright ownership.
+   The ASF licenses this file to You under the Apache License, Version 2.0
+   (the "License"); you may not use this file except in compliance with
+   the License.  You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+
+ */
+package org.apache.batik.bridge;
+
+import java.awt.geom.Rectangle2D;
+import java.io.File;
+import java.io.StringReader;
+
+import org.apache.batik.anim.dom.SAXSVGDocumentFactory;
+import org.apache.batik.anim.dom.SVGOMPathElement;
+import org.apache.batik.gvt.ShapeNode;
+import org.apache.batik.util.XMLResourceDescriptor;
+import org.junit.Assert;
+import org.junit.Test;
+import org.w3c.dom.Document;
+
+public class SVGPathElementBridgeTestCase {
+    private static final String MALFORMED = "M0 0 L10 0 L10 10 Z X 20 20";
+
+    private static void checkPartialPath(boolean segListUsed)
+        throws Exception {
+        String svg =
+            "<svg xmlns='http://www.w3.org/2000/svg'>"
+            + "<path id='p' d='M0 0 L1 1'/>"
+            + "</svg>";
+        String uri = new File("samples/path.svg").toURI().toString();
+        Document doc = new SAXSVGDocumentFactory
+            (XMLResourceDescriptor.getXMLParserClassName())
+            .createDocument(uri, new StringReader(svg));
+        BridgeContext ctx = new BridgeContext(new UserAgentAdapter());
+        try {
+            new GVTBuilder().build(ctx, doc);
+            SVGOMPathElement p = (SVGOMPathElement)doc.getElementById("p");
+            p.setAttributeNS(null, "d", MALFORMED);
+            if (segListUsed) {
+                Assert.assertEquals(0, p.getPathSegList().getNumberOfItems());
+            }
+
+            ShapeNode node = new ShapeNode();
+            try {
+                new SVGPathElementBridge().buildShape(ctx, p, node);
+                Assert.fail("the path is malformed");
+            } catch (BridgeException ex) {
+                Assert.assertEquals(ErrorConstants.ERR_ATTRIBUTE_VALUE_MALFORMED,
+                                    ex.getCode());
+            }
+            Assert.assertNotNull(node.getShape());
+            Assert.assertEquals(new Rectangle2D.Double(0, 0, 10, 10),
+                                node.getShape().getBounds2D());
+        } finally {
+            ctx.dispose();
+        }
+    }
+
+    @Test
+    public void testMalformedPathRenderedUpToError() throws Exception {
+        checkPartialPath(false);
+    }
+
+    @Test
+    public void testMalformedSegListRenderedUpToError() throws Exception {
+        checkPartialPath(true);
+    }
+}
@@ -0,0 +1,151 @@
+/*
+
+   Licensed to the Apache Software Foundation (ASF) under one or more
+   contributor license agreements.  See the NOTICE file distributed with
+   this work for additional information regarding copyright ownership.
+   The ASF licenses this file to You under the Apache License, Version 2.0
+   (the "License"); you may not use this file except in compliance with
+   the License.  You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+
+ */
+package org.apache.batik.css.engine;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.apache.batik.anim.dom.SVGDOMImplementation;
+import org.apache.batik.anim.dom.SVGOMDocument;
+import org.apache.batik.bridge.BridgeContext;
+import org.apache.batik.bridge.UserAgentAdapter;
+import org.apache.batik.css.engine.sac.ExtendedSelector;
+import org.apache.batik.test.PerformanceTest;
+import org.w3c.css.sac.SelectorList;
+import org.w3c.dom.Element;
+
+/**
+ * Compares the indexed rule matching of the <code>CSSEngine</code>
+ * with a linear scan of all the rules, on a large style sheet made of
+ * class, id and element name rules.  The reference operation is the
+ * linear scan, so the score is the ratio of the indexed matching time
+ * to the linear matching time.
+ *
+ * @version $Id$
+ */
+public class StyleRuleIndexPerformanceTest extends PerformanceTest {
+
+    /**
+     * The number of classes in the style sheet.
+     */
+    protected static final int CLASSES = 1000;
+
+    /**
+     * The number of elements that are styled.
+     */
+    protected static final int ELEMENTS = 200;
+
+    protected CSSEngine engine;
+    protected StyleSheet styleSheet;
+    protected List elements;
+
+    /**
+     * Matches the elements using the rule index.
+     */
+    public void runOp() {
+        setUp();
+        for (Object element : elements) {
+            matchIndexed((Element) element);
+        }
+    }
+
+    /**
+     * Matches the elements by testing every selector of the style
+     * sheet, then matches them again to sort the rules.
+     */
+    protected void runRef() {
+        setUp();
+        for (Object element : elements) {
+            matchLinear((Element) element);
+        }
+    }
+
+    protected List matchIndexed(Element elt) {
+        ArrayList rules = new CSSEngine.MatchingRuleList();
+        engine.addMatchingRules(rules, styleSheet, elt, null);
+        engine.sortRules(rules, elt, null);
+        return rules;
+    }
+
+    protected List matchLinear(Element elt) {
+        ArrayList rules = new ArrayList();
+        int len = styleSheet.getSize();
+        for (int i = 0; i < len; i++) {
+            StyleRule r = (StyleRule)styleSheet.getRule(i);
+            SelectorList sl = r.getSelectorList();
+            for (int j = 0; j < sl.getLength(); j++) {
+                if (((ExtendedSelector)sl.item(j)).match(elt, null)) {
+                    rules.add(r);
+                    break;
+                }
+            }
+        }
+        engine.sortRules(rules, elt, null);
+        return rules;
+    }
+
+    /**
+     * Builds the style sheet and the elements on first use, and checks
+     * that both ways of matching find the same rules in the same order.
+     */
+    protected void setUp() {
+        if (engine != null) {
+            return;
+        }
+        SVGDOMImplementation impl =
+            (SVGDOMImplementation)SVGDOMImplementation.getDOMImplementation();
+        String svgNS = SVGDOMImplementation.SVG_NAMESPACE_URI;
+        SVGOMDocument doc =
+            (SVGOMDocument)impl.createDocument(svgNS, "svg", null);
+        BridgeContext ctx = new BridgeContext(new UserAgentAdapter());
+        engine = impl.createCSSEngine(doc, ctx);
+
+        StringBuffer sb = new StringBuffer();
+        for (int i = 0; i < CLASSES; i++) {
+            sb.append(".c").append(i).append(" { fill: red }\n");
+            sb.append("rect.c").append(i).append(" { stroke: blue }\n");
+            sb.append("g .c").append(i).append(" { opacity: 0.5 }\n");
+            sb.append("#r").append(i).append(" { stroke-width: 2 }\n");
+        }
+        sb.append("rect { fill-opacity: 0.5 }\n");
+        sb.append("* { stroke-opacity: 0.5 }\n");
+        styleSheet = engine.parseStyleSheet(sb.toString(), null, "all");
+
+        Element root = doc.getDocumentElement();
+        Element g = doc.createElementNS(svgNS, "g");
+        root.appendChild(g);
+        elements = new ArrayList();
+        for (int i = 0; i < ELEMENTS; i++) {
+            Element r = doc.createElementNS(svgNS, "rect");
+            int c = (i * 37) % CLASSES;
+            r.setAttributeNS(null, "id", "r" + i);
+            r.setAttributeNS(null, "class", "c" + c + " c" + (c + 1));
+            g.appendChild(r);
+            elements.add(r);
+        }
+
+        for (Object element : elements) {
+            Element elt = (Element) element;
+            if (!matchIndexed(elt).equals(matchLinear(elt))) {
+                throw new IllegalStateException
+                    ("Indexed rules differ for " + elt.getAttributeNS(null, "id"));
+            }
+        }
+    }
+}
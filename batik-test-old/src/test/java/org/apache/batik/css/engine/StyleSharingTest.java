@@ -0,0 +1,197 @@
+/*
+
+   Licensed to the Apache Software Foundation (ASF) under one or more
+   contributor license agreements.  See the NOTICE file distributed with
+   this work for additional information regarding copyright ownership.
+   The ASF licenses this file to You under the Apache License, Version 2.0
+   (the "License"); you may not use this file except in compliance with
+   the License.  You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+
+ */
+package org.apache.batik.css.engine;
+
+import java.io.StringReader;
+
+import org.apache.batik.anim.dom.SAXSVGDocumentFactory;
+import org.apache.batik.anim.dom.SVGDOMImplementation;
+import org.apache.batik.anim.dom.SVGOMDocument;
+import org.apache.batik.bridge.BridgeContext;
+import org.apache.batik.bridge.UserAgentAdapter;
+import org.apache.batik.test.AbstractTest;
+import org.apache.batik.test.DefaultTestReport;
+import org.apache.batik.test.TestReport;
+import org.apache.batik.util.XMLResourceDescriptor;
+import org.w3c.dom.Node;
+
+/**
+ * Checks that the elements sharing their cascaded style get the same
+ * computed values as without sharing, also after some of them are
+ * modified.
+ *
+ * @version $Id$
+ */
+public class StyleSharingTest extends AbstractTest {
+
+    public static final String ERROR_DIFFERENT_VALUE =
+        "StyleSharingTest.error.different.value";
+
+    public static final String ERROR_NOT_SHARED =
+        "StyleSharingTest.error.not.shared";
+
+    public static final String ENTRY_KEY_ELEMENT =
+        "StyleSharingTest.entry.key.element";
+
+    public static final String ENTRY_KEY_PROPERTY =
+        "StyleSharingTest.entry.key.property";
+
+    protected static final String DOCUMENT =
+        "<svg xmlns='http://www.w3.org/2000/svg' font-size='10'>"
+        + "<style type='text/css'>"
+        + ".a { fill: red; stroke-width: 2em }"
+        + "g.b .a { fill: blue }"
+        + "rect[title=t] { opacity: 0.5 }"
+        + "</style>"
+        + "<g class='b' stroke='green'>"
+        + "<rect class='a' width='1' height='1'/>"
+        + "<rect class='a' width='1' height='1'/>"
+        + "<rect class='a' width='1' height='1' title='t'/>"
+        + "</g>"
+        + "<g class='b' stroke='green'>"
+        + "<rect class='a' width='1' height='1'/>"
+        + "<rect class='a' width='1' height='1'/>"
+        + "</g>"
+        + "<g font-size='20'>"
+        + "<rect class='a' width='1' height='1'/>"
+        + "<rect class='a' width='1' height='1'/>"
+        + "</g>"
+        + "</svg>";
+
+    public TestReport runImpl() throws Exception {
+        SVGOMDocument shared = createDocument();
+        SVGOMDocument reference = createDocument();
+        reference.getCSSEngine().setStyleSharingEnabled(false);
+
+        // Cousins with equal parents and siblings share a style.
+        TestReport report = compare(shared, reference);
+        if (report != null) {
+            return report;
+        }
+        report = checkShared(shared, 0, 3);
+        if (report != null) {
+            return report;
+        }
+
+        // Modify some of the elements and check the others keep
+        // their own values.
+        modify(shared);
+        modify(reference);
+        report = compare(shared, reference);
+        if (report != null) {
+            return report;
+        }
+        return reportSuccess();
+    }
+
+    protected void modify(SVGOMDocument doc) {
+        getElement(doc, "rect", 0).setAttributeNS(null, "style",
+                                                  "fill: green");
+        getElement(doc, "rect", 1).setAttributeNS(null, "fill-opacity", "0.5");
+        getElement(doc, "g", 1).setAttributeNS(null, "font-size", "30");
+        getElement(doc, "rect", 6).setAttributeNS(null, "title", "t");
+    }
+
+    protected CSSStylableElement getElement(SVGOMDocument doc, String name,
+                                            int i) {
+        return (CSSStylableElement)doc.getElementsByTagNameNS
+            (SVGDOMImplementation.SVG_NAMESPACE_URI, name).item(i);
+    }
+
+    protected SVGOMDocument createDocument() throws Exception {
+        String parser = XMLResourceDescriptor.getXMLParserClassName();
+        SAXSVGDocumentFactory f = new SAXSVGDocumentFactory(parser);
+        SVGOMDocument doc = (SVGOMDocument)f.createDocument
+            ("http://example.org/test.svg", new StringReader(DOCUMENT));
+        BridgeContext ctx = new DocumentBridgeContext(doc);
+        SVGDOMImplementation impl =
+            (SVGDOMImplementation)doc.getImplementation();
+        CSSEngine eng = impl.createCSSEngine(doc, ctx);
+        doc.setCSSEngine(eng);
+        return doc;
+    }
+
+    /**
+     * Compares the computed values of all the elements of the two
+     * documents, in document order.
+     */
+    protected TestReport compare(SVGOMDocument doc, SVGOMDocument ref) {
+        return compare(doc.getCSSEngine(), doc.getDocumentElement(),
+                       ref.getCSSEngine(), ref.getDocumentElement());
+    }
+
+    protected TestReport compare(CSSEngine eng, Node n,
+                                 CSSEngine refEng, Node ref) {
+        if (n instanceof CSSStylableElement) {
+            CSSStylableElement elt = (CSSStylableElement)n;
+            CSSStylableElement refElt = (CSSStylableElement)ref;
+            int len = eng.getNumberOfProperties();
+            for (int i = 0; i < len; i++) {
+                String v = eng.getComputedStyle(elt, null, i).getCssText();
+                String rv =
+                    refEng.getComputedStyle(refElt, null, i).getCssText();
+                if (!v.equals(rv)) {
+                    DefaultTestReport report = new DefaultTestReport(this);
+                    report.setErrorCode(ERROR_DIFFERENT_VALUE);
+                    report.addDescriptionEntry
+                        (ENTRY_KEY_ELEMENT, elt.getNodeName());
+                    report.addDescriptionEntry
+                        (ENTRY_KEY_PROPERTY,
+                         eng.getPropertyName(i) + ": " + v + " / " + rv);
+                    report.setPassed(false);
+                    return report;
+                }
+            }
+        }
+        for (Node c = n.getFirstChild(), rc = ref.getFirstChild();
+             c != null;
+             c = c.getNextSibling(), rc = rc.getNextSibling()) {
+            TestReport report = compare(eng, c, refEng, rc);
+            if (report != null) {
+                return report;
+            }
+        }
+        return null;
+    }
+
+    protected TestReport checkShared(SVGOMDocument doc, int i1, int i2) {
+        CSSStylableElement e1 = getElement(doc, "rect", i1);
+        CSSStylableElement e2 = getElement(doc, "rect", i2);
+        if (e1.getComputedStyleMap(null) != e2.getComputedStyleMap(null)) {
+            DefaultTestReport report = new DefaultTestReport(this);
+            report.setErrorCode(ERROR_NOT_SHARED);
+            report.addDescriptionEntry(ENTRY_KEY_ELEMENT,
+                                       "rect " + i1 + ", rect " + i2);
+            report.setPassed(false);
+            return report;
+        }
+        return null;
+    }
+
+    /**
+     * A dynamic bridge context for a document that is not built.
+     */
+    protected static class DocumentBridgeContext extends BridgeContext {
+        public DocumentBridgeContext(SVGOMDocument doc) {
+            super(new UserAgentAdapter());
+            setDocument(doc);
+            setDynamic(true);
+        }
+    }
+}
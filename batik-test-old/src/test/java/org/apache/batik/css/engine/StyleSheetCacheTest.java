@@ -0,0 +1,100 @@
+/*
+
+   Licensed to the Apache Software Foundation (ASF) under one or more
+   contributor license agreements.  See the NOTICE file distributed with
+   this work for additional information regarding copyright ownership.
+   The ASF licenses this file to You under the Apache License, Version 2.0
+   (the "License"); you may not use this file except in compliance with
+   the License.  You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+
+ */
+package org.apache.batik.css.engine;
+
+import java.io.File;
+import java.io.StringReader;
+
+import org.apache.batik.anim.dom.SAXSVGDocumentFactory;
+import org.apache.batik.anim.dom.SVGDOMImplementation;
+import org.apache.batik.anim.dom.SVGOMDocument;
+import org.apache.batik.bridge.BridgeContext;
+import org.apache.batik.bridge.UserAgent;
+import org.apache.batik.bridge.UserAgentAdapter;
+import org.apache.batik.test.AbstractTest;
+import org.apache.batik.util.ParsedURL;
+import org.apache.batik.util.XMLResourceDescriptor;
+
+/**
+ * Checks that a <code>StyleSheetCache</code> holds the user agent style
+ * sheet only when it is given to the engine, and that the sheets
+ * imported by a cached sheet are checked against the security policy
+ * of each engine using it.
+ *
+ * @version $Id$
+ */
+public class StyleSheetCacheTest extends AbstractTest {
+
+    protected static final String RESOURCES =
+        "test-resources/org/apache/batik/css/engine/resources/";
+
+    public boolean runImplBasic() throws Exception {
+        StyleSheetCache cache = new StyleSheetCache();
+        UserAgent all = new UserAgentAdapter() {
+                public void checkLoadExternalResource(ParsedURL resourceURL,
+                                                      ParsedURL docURL) {
+                }
+            };
+
+        // The user agent style sheet.
+        CSSEngine eng = createEngine(all, cache);
+        assertEquals(1, cache.getSize());
+
+        ParsedURL sheet = new ParsedURL
+            (new File(RESOURCES + "importing.css").toURI().toURL());
+        StyleSheet ss = eng.parseStyleSheet(sheet, "all");
+        assertEquals(2, cache.getSize());
+        assertEquals(ImportRule.TYPE, ss.getRule(0).getType());
+
+        // The importing sheet may be loaded, the imported one may not.
+        UserAgent noImport = new UserAgentAdapter() {
+                public void checkLoadExternalResource(ParsedURL resourceURL,
+                                                      ParsedURL docURL) {
+                    if (resourceURL.getPath().endsWith("imported.css")) {
+                        throw new SecurityException(resourceURL.toString());
+                    }
+                }
+            };
+        eng = createEngine(noImport, cache);
+        long hits = cache.getHitCount();
+        try {
+            eng.parseStyleSheet(sheet, "all");
+            return false;
+        } catch (SecurityException e) {
+        }
+        assertEquals(1, (int)(cache.getHitCount() - hits));
+        return true;
+    }
+
+    /**
+     * Creates an engine for an empty document of the resource directory.
+     */
+    protected CSSEngine createEngine(UserAgent ua, StyleSheetCache cache)
+        throws Exception {
+        String parser = XMLResourceDescriptor.getXMLParserClassName();
+        SAXSVGDocumentFactory f = new SAXSVGDocumentFactory(parser);
+        String uri = new File(RESOURCES + "test.svg").toURI().toString();
+        SVGOMDocument doc = (SVGOMDocument)f.createDocument
+            (uri, new StringReader
+             ("<svg xmlns='http://www.w3.org/2000/svg'/>"));
+        SVGDOMImplementation impl =
+            (SVGDOMImplementation)doc.getImplementation();
+        return impl.createCSSEngine(doc, new BridgeContext(ua), cache);
+    }
+}
@@ -0,0 +1,197 @@
+/*
+
+   Licensed to the Apache Software Foundation (ASF) under one or more
+   contributor license agreements.  See the NOTICE file distributed with
+   this work for additional information regarding copyright ownership.
+   The ASF licenses this file to You under the Apache License, Version 2.0
+   (the "License"); you may not use this file except in compliance with
+   the License.  You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+
+ */
+package org.apache.batik.dom;
+
+import java.util.Random;
+
+import org.apache.batik.test.AbstractTest;
+
+import org.w3c.dom.Document;
+import org.w3c.dom.Element;
+import org.w3c.dom.Node;
+import org.w3c.dom.NodeList;
+
+/**
+ * Checks that the child lists and the element lists of an indexed
+ * document are the same as the ones of a document which is not indexed,
+ * while the documents are modified.
+ *
+ * @version $Id$
+ */
+public class IndexedDocumentTest extends AbstractTest {
+
+    private static final String[] NAMES = { "a", "b", "x:a", "c" };
+
+    private static final String NS = "http://example.org/ns";
+
+    private int count;
+
+    public boolean runImplBasic() throws Exception {
+        AbstractDocument plain = createDocument();
+        AbstractDocument indexed = createDocument();
+        indexed.setIndexed(true);
+
+        Random random = new Random(3);
+        count = 0;
+        fill(plain, new Random(5));
+        count = 0;
+        fill(indexed, new Random(5));
+        compare(plain, indexed, random);
+
+        for (int k = 0; k < 400; k++) {
+            long seed = random.nextLong();
+            int c = count;
+            modify(plain, new Random(seed));
+            count = c;
+            modify(indexed, new Random(seed));
+            compare(plain, indexed, random);
+        }
+        return true;
+    }
+
+    /**
+     * Creates a document whose root element has many children.
+     */
+    protected AbstractDocument createDocument() {
+        Document doc = GenericDOMImplementation.getDOMImplementation().
+            createDocument(null, "root", null);
+        return (AbstractDocument)doc;
+    }
+
+    /**
+     * Creates a new element.
+     */
+    protected Element createElement(Document doc, Random random) {
+        String name = NAMES[random.nextInt(NAMES.length)];
+        Element e = name.startsWith("x:")
+            ? doc.createElementNS(NS, name)
+            : doc.createElementNS(random.nextBoolean() ? null : NS, name);
+        e.setAttributeNS(null, "n", String.valueOf(count++));
+        return e;
+    }
+
+    /**
+     * Fills the given document.
+     */
+    protected void fill(Document doc, Random random) {
+        Element root = doc.getDocumentElement();
+        for (int i = 0; i < 200; i++) {
+            Element e = createElement(doc, random);
+            root.appendChild(e);
+            for (int j = random.nextInt(4); j > 0; j--) {
+                e.appendChild(createElement(doc, random));
+                e.appendChild(doc.createTextNode("t"));
+            }
+        }
+    }
+
+    /**
+     * Applies a random modification to the given document.
+     */
+    protected void modify(Document doc, Random random) {
+        NodeList all = doc.getElementsByTagName("*");
+        Element e = (Element)all.item(random.nextInt(all.getLength()));
+        Element o = (Element)all.item(1 + random.nextInt(all.getLength() - 1));
+        switch (random.nextInt(6)) {
+        case 0:
+            e.appendChild(createElement(doc, random));
+            break;
+        case 1:
+            e.insertBefore(createElement(doc, random), e.getFirstChild());
+            break;
+        case 2:
+            o.getParentNode().removeChild(o);
+            break;
+        case 3:
+            if (!isAncestor(o, e)) {
+                e.insertBefore(o, e.getLastChild());
+            }
+            break;
+        case 4:
+            Element n = createElement(doc, random);
+            n.appendChild(createElement(doc, random));
+            o.getParentNode().replaceChild(n, o);
+            break;
+        default:
+            if (!isAncestor(o, e)) {
+                e.appendChild(o);
+            }
+        }
+    }
+
+    /**
+     * Tells whether a is n or one of its ancestors.
+     */
+    protected boolean isAncestor(Node a, Node n) {
+        for (; n != null; n = n.getParentNode()) {
+            if (n == a) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Compares the lists of the given documents.
+     */
+    protected void compare(Document plain, Document indexed, Random random)
+            throws Exception {
+        NodeList pl = plain.getElementsByTagName("*");
+        NodeList il = indexed.getElementsByTagName("*");
+        assertEquals(pl.getLength(), il.getLength());
+        for (int k = 0; k < 4; k++) {
+            int i = (k == 0) ? 0 : random.nextInt(pl.getLength());
+            Element pe = (Element)pl.item(i);
+            Element ie = (Element)il.item(i);
+            String name = NAMES[random.nextInt(NAMES.length)];
+            compare(pe.getElementsByTagName(name),
+                    ie.getElementsByTagName(name));
+            String ns = random.nextBoolean() ? null : NS;
+            compare(pe.getElementsByTagNameNS(ns, "a"),
+                    ie.getElementsByTagNameNS(ns, "a"));
+            compare(pe.getChildNodes(), ie.getChildNodes());
+        }
+        compare(plain.getElementsByTagNameNS(NS, "a"),
+                indexed.getElementsByTagNameNS(NS, "a"));
+        compare(plain.getDocumentElement().getChildNodes(),
+                indexed.getDocumentElement().getChildNodes());
+    }
+
+    /**
+     * Compares two lists.
+     */
+    protected void compare(NodeList expected, NodeList actual)
+            throws Exception {
+        assertEquals(expected.getLength(), actual.getLength());
+        for (int i = 0; i < expected.getLength(); i++) {
+            assertEquals(getName(expected.item(i)), getName(actual.item(i)));
+        }
+        assertNull(actual.item(actual.getLength()));
+    }
+
+    /**
+     * Returns a string identifying the given node.
+     */
+    protected String getName(Node n) {
+        if (n.getNodeType() != Node.ELEMENT_NODE) {
+            return n.getNodeName();
+        }
+        return n.getNodeName() + ((Element)n).getAttributeNS(null, "n");
+    }
+}
@@ -0,0 +1,138 @@
+/*
+
+   Licensed to the Apache Software Foundation (ASF) under one or more
+   contributor license agreements.  See the NOTICE file distributed with
+   this work for additional information regarding copyright ownership.
+   The ASF licenses this file to You under the Apache License, Version 2.0
+   (the "License"); you may not use this file except in compliance with
+   the License.  You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+
+ */
+package org.apache.batik.dom;
+
+import java.io.IOException;
+import java.io.StringReader;
+
+import org.apache.batik.dom.util.SAXDocumentFactory;
+import org.apache.batik.test.AbstractTest;
+import org.apache.batik.util.XMLResourceDescriptor;
+
+import org.w3c.dom.Document;
+import org.w3c.dom.Element;
+import org.xml.sax.SAXException;
+import org.xml.sax.XMLReader;
+
+/**
+ * Checks that the parsers of the document factories are reused, and
+ * that documents parsed with reused parsers are the same as with new
+ * ones, even when several threads parse at the same time.
+ *
+ * @version $Id$
+ */
+public class ParserPoolTest extends AbstractTest {
+
+    /**
+     * A factory remembering the last parser it used.
+     */
+    protected static class Factory extends SAXDocumentFactory {
+        protected XMLReader last;
+        public Factory() {
+            super(GenericDOMImplementation.getDOMImplementation(),
+                  XMLResourceDescriptor.getXMLParserClassName());
+        }
+        protected XMLReader createParser() throws SAXException, IOException {
+            last = super.createParser();
+            return last;
+        }
+    }
+
+    public boolean runImplBasic() throws Exception {
+        int size = SAXDocumentFactory.getParserPoolSize();
+        try {
+            SAXDocumentFactory.setParserPoolSize(4);
+            Factory f = new Factory();
+            check(parse(f, 1), 1);
+            XMLReader r = f.last;
+            check(parse(new Factory(), 2), 2);
+            check(parse(f, 3), 3);
+            assertTrue(f.last == r);
+
+            // A parser which failed is not reused.
+            try {
+                f.createDocument("http://example.org/",
+                                 new StringReader("<a><b></a>"));
+                assertTrue(false);
+            } catch (IOException e) {
+            }
+            XMLReader failed = f.last;
+            check(parse(f, 4), 4);
+            assertTrue(f.last != failed);
+
+            final Throwable[] error = new Throwable[1];
+            Thread[] threads = new Thread[4];
+            for (int i = 0; i < threads.length; i++) {
+                final int t = i;
+                threads[i] = new Thread() {
+                    public void run() {
+                        try {
+                            Factory tf = new Factory();
+                            for (int k = 0; k < 50; k++) {
+                                check(parse(tf, t * 100 + k), t * 100 + k);
+                            }
+                        } catch (Throwable e) {
+                            error[0] = e;
+                        }
+                    }
+                };
+                threads[i].start();
+            }
+            for (int i = 0; i < threads.length; i++) {
+                threads[i].join();
+            }
+            assertNull(error[0]);
+
+            SAXDocumentFactory.setParserPoolSize(0);
+            check(parse(f, 5), 5);
+            r = f.last;
+            check(parse(f, 6), 6);
+            assertTrue(f.last != r);
+        } finally {
+            SAXDocumentFactory.setParserPoolSize(size);
+        }
+        return true;
+    }
+
+    /**
+     * Parses a document numbered n.
+     */
+    protected Document parse(SAXDocumentFactory f, int n)
+            throws IOException {
+        StringBuffer sb = new StringBuffer();
+        sb.append("<?xml version='1.0'?><!DOCTYPE root [");
+        sb.append("<!ENTITY e 'v").append(n).append("'>]>");
+        sb.append("<root xmlns:x='http://example.org/ns' n='").append(n);
+        sb.append("'><x:c>&e;</x:c><!-- c --></root>");
+        return f.createDocument("http://example.org/" + n,
+                                new StringReader(sb.toString()));
+    }
+
+    /**
+     * Checks the document numbered n.
+     */
+    protected void check(Document doc, int n) throws Exception {
+        Element root = doc.getDocumentElement();
+        assertEquals(String.valueOf(n), root.getAttributeNS(null, "n"));
+        Element c = (Element)root.getFirstChild();
+        assertEquals("http://example.org/ns", c.getNamespaceURI());
+        assertEquals("v" + n, c.getTextContent());
+        assertEquals("#comment", c.getNextSibling().getNodeName());
+    }
+}
@@ -0,0 +1,151 @@
+/*
+
+   Licensed to the Apache Software Foundation (ASF) under one or more
+   contributor license agreements.  See the NOTICE file distributed with
+   this work for additional information regarding copyright ownership.
+   The ASF licenses this file to You under the Apache License, Version 2.0
+   (the "License"); you may not use this file except in compliance with
+   the License.  You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+
+ */
+package org.apache.batik.ext.awt;
+
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.Paint;
+import java.awt.geom.AffineTransform;
+import java.awt.geom.Point2D;
+import java.awt.image.BufferedImage;
+
+import org.apache.batik.test.AbstractTest;
+
+/**
+ * Checks that the gradients painted with cached lookup tables, and
+ * from several threads, are the same as the ones painted with tables
+ * computed for them.
+ *
+ * @version $Id$
+ */
+public class GradientLookupCacheTest extends AbstractTest {
+
+    public boolean runImplBasic() throws Exception {
+        Paint[] paints = new Paint[8];
+        for (int i = 0; i < paints.length; i++) {
+            paints[i] = createPaint(i);
+        }
+
+        // The reference images, each painted with computed tables.
+        BufferedImage[] expected = new BufferedImage[paints.length];
+        for (int i = 0; i < paints.length; i++) {
+            clearCache();
+            expected[i] = paint(paints[i]);
+        }
+
+        clearCache();
+        for (int i = 0; i < paints.length; i++) {
+            paint(paints[i]);
+        }
+        long misses = MultipleGradientPaintContext.lookupMissCount;
+        for (int i = 0; i < paints.length; i++) {
+            checkSame(expected[i], paint(createPaint(i)));
+        }
+        assertTrue(MultipleGradientPaintContext.lookupMissCount == misses);
+
+        final Paint[] p = paints;
+        final BufferedImage[][] results = new BufferedImage[4][p.length];
+        Thread[] threads = new Thread[results.length];
+        for (int t = 0; t < threads.length; t++) {
+            final int n = t;
+            threads[t] = new Thread() {
+                    public void run() {
+                        for (int k = 0; k < 5; k++) {
+                            for (int i = 0; i < p.length; i++) {
+                                int j = (i + n) % p.length;
+                                results[n][j] = paint(p[j]);
+                            }
+                        }
+                    }
+                };
+            threads[t].start();
+        }
+        for (int t = 0; t < threads.length; t++) {
+            threads[t].join();
+        }
+        for (int t = 0; t < threads.length; t++) {
+            for (int i = 0; i < p.length; i++) {
+                checkSame(expected[i], results[t][i]);
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Removes all the lookup tables from the cache.
+     */
+    protected void clearCache() {
+        synchronized (MultipleGradientPaintContext.lookupCache) {
+            MultipleGradientPaintContext.lookupCache.clear();
+        }
+    }
+
+    /**
+     * Creates the gradient numbered i.
+     */
+    protected Paint createPaint(int i) {
+        MultipleGradientPaint.CycleMethodEnum cycle =
+            (i % 3 == 0) ? MultipleGradientPaint.NO_CYCLE
+            : (i % 3 == 1) ? MultipleGradientPaint.REFLECT
+            : MultipleGradientPaint.REPEAT;
+        MultipleGradientPaint.ColorSpaceEnum cs = (i % 2 == 0)
+            ? MultipleGradientPaint.SRGB : MultipleGradientPaint.LINEAR_RGB;
+        float[] fractions = (i < 4)
+            ? new float[] { 0f, 0.5f, 1f }
+            : new float[] { 0.1f, 0.101f, 0.6f, 0.6f, 0.9f };
+        Color[] colors = new Color[fractions.length];
+        for (int j = 0; j < colors.length; j++) {
+            colors[j] = new Color((j * 70 + i * 20) % 256, 255 - j * 40,
+                                  (i * 30) % 256, 128 + j * 25);
+        }
+        if (i % 4 == 3) {
+            return new RadialGradientPaint
+                (new Point2D.Float(50, 40), 30, new Point2D.Float(45, 35),
+                 fractions, colors, cycle, cs, new AffineTransform());
+        }
+        return new LinearGradientPaint
+            (new Point2D.Float(10, 10), new Point2D.Float(40, 30),
+             fractions, colors, cycle, cs);
+    }
+
+    /**
+     * Paints the given gradient.
+     */
+    protected static BufferedImage paint(Paint p) {
+        BufferedImage image =
+            new BufferedImage(100, 80, BufferedImage.TYPE_INT_ARGB_PRE);
+        Graphics2D g = image.createGraphics();
+        g.setPaint(p);
+        g.fillRect(0, 0, 100, 80);
+        g.dispose();
+        return image;
+    }
+
+    /**
+     * Checks that two images are the same.
+     */
+    protected void checkSame(BufferedImage expected, BufferedImage actual)
+            throws Exception {
+        for (int y = 0; y < expected.getHeight(); y++) {
+            for (int x = 0; x < expected.getWidth(); x++) {
+                assertEquals(expected.getRGB(x, y), actual.getRGB(x, y));
+            }
+        }
+    }
+}
@@ -0,0 +1,140 @@
+/*
+
+   Licensed to the Apache Software Foundation (ASF) under one or more
+   contributor license agreements.  See the NOTICE file distributed with
+   this work for additional information regarding copyright ownership.
+   The ASF licenses this file to You under the Apache License, Version 2.0
+   (the "License"); you may not use this file except in compliance with
+   the License.  You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+
+ */
+package org.apache.batik.ext.awt.geom;
+
+import java.awt.Shape;
+import java.awt.geom.AffineTransform;
+import java.awt.geom.PathIterator;
+import java.io.StringReader;
+
+import org.apache.batik.parser.AWTPathProducer;
+import org.apache.batik.parser.PackedPathProducer;
+import org.apache.batik.test.AbstractTest;
+
+/**
+ * Checks that a <code>PackedPath</code> has the same segments, bounds
+ * and hit-testing as the <code>ExtendedGeneralPath</code> built from
+ * the same path data.
+ *
+ * @version $Id$
+ */
+public class PackedPathTest extends AbstractTest {
+
+    /**
+     * The path data tested.
+     */
+    protected static final String[] PATHS = {
+        "M 10 10 L 100 10 L 100 100 Z",
+        "m 10 10 h 50 v 30 h -50 z m 5 5 l 10 0 l 0 10 z",
+        "M 0 0 C 10 20 30 40 50 0 S 80 -40 100 0 Q 120 40 140 0 T 180 0",
+        "M 10 80 A 45 45 0 0 0 125 125 L 125 80 Z",
+        "M 100 100 a 50 25 30 1 1 60 20 a 0 10 0 0 0 20 20 l 5 5",
+        "M 10 10 A 5 5 0 0 0 10 10 L 20 20",
+        "M 10 10 M 20 20 L 30 10 Z Z M 50 50 Z L 60 70",
+        "M 5 5 Z A 20 30 10 0 1 40 40 z a 10 10 0 1 0 -20 0",
+        "M 1.5 2.25 l 3e2 -4.5e-1 0.001 100"
+    };
+
+    /**
+     * The points tested with <code>contains</code>.
+     */
+    protected static final double[][] POINTS = {
+        { 50, 50 }, { 12, 12 }, { 60, 5 }, { 110, 90 }, { 130, 110 },
+        { 25, 25 }, { 0, 0 }, { 140, 120 }, { 55, 60 }
+    };
+
+    public boolean runImplBasic() throws Exception {
+        AffineTransform at = new AffineTransform(1.5, 0.5, -0.25, 2, 7, -3);
+        for (String d : PATHS) {
+            Shape egp = AWTPathProducer.createShape
+                (new StringReader(d), PathIterator.WIND_EVEN_ODD);
+            Shape pp = PackedPathProducer.createShape
+                (new StringReader(d), PathIterator.WIND_EVEN_ODD);
+            assertEquals(describe(egp.getPathIterator(null)),
+                         describe(pp.getPathIterator(null)));
+            assertEquals(describe(egp.getPathIterator(at)),
+                         describe(pp.getPathIterator(at)));
+            assertEquals(describe(egp.getPathIterator(at, 0.5)),
+                         describe(pp.getPathIterator(at, 0.5)));
+            assertEquals(describe(((ExtendedShape)egp)
+                                  .getExtendedPathIterator()),
+                         describe(((ExtendedShape)pp)
+                                  .getExtendedPathIterator()));
+            assertEquals(egp.getBounds2D(), pp.getBounds2D());
+            assertEquals(egp.getBounds(), pp.getBounds());
+            for (double[] p : POINTS) {
+                assertEquals(egp.contains(p[0], p[1]),
+                             pp.contains(p[0], p[1]));
+                assertEquals(egp.intersects(p[0], p[1], 10, 10),
+                             pp.intersects(p[0], p[1], 10, 10));
+                assertEquals(egp.contains(p[0], p[1], 10, 10),
+                             pp.contains(p[0], p[1], 10, 10));
+            }
+            Shape clone = (Shape)((PackedPath)pp).clone();
+            assertEquals(describe(pp.getPathIterator(null)),
+                         describe(clone.getPathIterator(null)));
+        }
+        return true;
+    }
+
+    /**
+     * Returns the segments of the given iterator as a string.
+     */
+    protected String describe(PathIterator pi) {
+        StringBuffer sb = new StringBuffer();
+        float[] coords = new float[6];
+        double[] dcoords = new double[6];
+        sb.append(pi.getWindingRule());
+        while (!pi.isDone()) {
+            int type = pi.currentSegment(coords);
+            pi.currentSegment(dcoords);
+            sb.append(' ').append(type);
+            int n = type == PathIterator.SEG_CLOSE ? 0
+                : type == PathIterator.SEG_QUADTO ? 4
+                : type == PathIterator.SEG_CUBICTO ? 6 : 2;
+            for (int i = 0; i < n; i++) {
+                sb.append(' ').append(coords[i]);
+                sb.append('/').append(dcoords[i]);
+            }
+            pi.next();
+        }
+        return sb.toString();
+    }
+
+    /**
+     * Returns the segments of the given iterator as a string.
+     */
+    protected String describe(ExtendedPathIterator epi) {
+        StringBuffer sb = new StringBuffer();
+        float[] coords = new float[7];
+        while (!epi.isDone()) {
+            int type = epi.currentSegment(coords);
+            sb.append(' ').append(type);
+            int n = type == PathIterator.SEG_CLOSE ? 0
+                : type == PathIterator.SEG_QUADTO ? 4
+                : type == PathIterator.SEG_CUBICTO ? 6
+                : type == ExtendedPathIterator.SEG_ARCTO ? 7 : 2;
+            for (int i = 0; i < n; i++) {
+                sb.append(' ').append(coords[i]);
+            }
+            epi.next();
+        }
+        return sb.toString();
+    }
+}
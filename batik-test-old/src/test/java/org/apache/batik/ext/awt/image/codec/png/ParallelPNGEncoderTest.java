@@ -0,0 +1,60 @@
+/*
+
+   Licensed to the Apache Software Foundation (ASF) under one or more
+   contributor license agreements.  See the NOTICE file distributed with
+   this work for additional information regarding copyright ownership.
+   The ASF licenses this file to You under the Apache License, Version 2.0
+   (the "License"); you may not use this file except in compliance with
+   the License.  You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+
+ */
+package org.apache.batik.ext.awt.image.codec.png;
+
+import java.awt.image.BufferedImage;
+
+/**
+ * This test validates the PNGEncoder operation when the IDAT data
+ * is compressed by several threads.  The image is large enough to
+ * be split in more bands than are compressed at a time.
+ *
+ * @version $Id$
+ */
+public class ParallelPNGEncoderTest extends PNGEncoderTest {
+    /**
+     * Template method for building the image to encode
+     */
+    public BufferedImage buildImage(){
+        int w = 600;
+        int h = 800;
+        BufferedImage image
+            = new BufferedImage(w, h, BufferedImage.TYPE_INT_ARGB);
+        for(int y=0; y<h; y++){
+            for(int x=0; x<w; x++){
+                int a = 255;
+                int r = (x * 255) / w;
+                int g = (y * 255) / h;
+                int b = (x ^ y) & 0xff;
+                image.setRGB(x, y, (a << 24) | (r << 16) | (g << 8) | b);
+            }
+        }
+        return image;
+    }
+
+    /**
+     * Template method for building the encoding parameters
+     */
+    public PNGEncodeParam buildEncodeParam(BufferedImage image){
+        PNGEncodeParam params = PNGEncodeParam.getDefaultEncodeParam(image);
+        params.setCompressionLevel(6);
+        params.setCompressionThreads(4);
+        return params;
+    }
+}
@@ -0,0 +1,103 @@
+/*
+
+   Licensed to the Apache Software Foundation (ASF) under one or more
+   contributor license agreements.  See the NOTICE file distributed with
+   this work for additional information regarding copyright ownership.
+   The ASF licenses this file to You under the Apache License, Version 2.0
+   (the "License"); you may not use this file except in compliance with
+   the License.  You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+
+ */
+package org.apache.batik.ext.awt.image.rendered;
+
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.RenderingHints;
+import java.awt.image.BufferedImage;
+import java.awt.image.Raster;
+import java.util.Random;
+
+import org.apache.batik.ext.awt.RenderingHintsKeyExt;
+import org.apache.batik.ext.awt.image.GraphicsUtil;
+import org.apache.batik.test.AbstractTest;
+
+/**
+ * Checks that the planar blur engine produces the same pixels as the
+ * default <code>GaussianBlurRed8Bit</code> engine, for blurs computed
+ * with box filters in one or both directions, with one or several
+ * threads.
+ *
+ * @version $Id$
+ */
+public class PlanarBoxBlurTest extends AbstractTest {
+
+    /**
+     * The standard deviations tested, in x and y.  The small ones are
+     * computed with a convolution.
+     */
+    protected static final double[][] STD_DEVIATIONS = {
+        { 3, 3 }, { 7.5, 2.5 }, { 1.5, 9 }, { 9, 1.5 }, { 4, 0 }, { 20, 20 }
+    };
+
+    public boolean runImplBasic() throws Exception {
+        CachableRed src = GraphicsUtil.wrap(buildImage());
+        RenderingHints hints = new RenderingHints(null);
+        for (double[] sd : STD_DEVIATIONS) {
+            Raster ref = new GaussianBlurRed8Bit
+                (src, sd[0], sd[1], hints).getData();
+            for (int threads = 1; threads <= 3; threads += 2) {
+                RenderingHints planar = new RenderingHints(null);
+                planar.put(RenderingHintsKeyExt.KEY_BLUR_ENGINE,
+                           RenderingHintsKeyExt.VALUE_BLUR_ENGINE_PLANAR);
+                planar.put(RenderingHintsKeyExt.KEY_BLUR_THREADS, threads);
+                Raster r = new GaussianBlurRed8Bit
+                    (src, sd[0], sd[1], planar).getData();
+                assertEquals(ref.getBounds(), r.getBounds());
+                assertEquals(0, countDifferences(ref, r));
+            }
+        }
+        return true;
+    }
+
+    protected BufferedImage buildImage() {
+        BufferedImage bi = new BufferedImage
+            (300, 200, BufferedImage.TYPE_INT_ARGB_PRE);
+        Graphics2D g = bi.createGraphics();
+        Random rnd = new Random(1);
+        for (int i = 0; i < 50; i++) {
+            g.setColor(new Color(rnd.nextInt(), true));
+            g.fillOval(rnd.nextInt(300), rnd.nextInt(200),
+                       rnd.nextInt(100), rnd.nextInt(70));
+        }
+        g.dispose();
+        return bi;
+    }
+
+    /**
+     * Returns the number of samples that differ between two rasters
+     * with the same bounds.
+     */
+    protected int countDifferences(Raster a, Raster b) {
+        int n = 0;
+        int x0 = a.getMinX();
+        int y0 = a.getMinY();
+        for (int y = y0; y < y0 + a.getHeight(); y++) {
+            for (int x = x0; x < x0 + a.getWidth(); x++) {
+                for (int band = 0; band < a.getNumBands(); band++) {
+                    if (a.getSample(x, y, band) != b.getSample(x, y, band)) {
+                        n++;
+                    }
+                }
+            }
+        }
+        return n;
+    }
+}
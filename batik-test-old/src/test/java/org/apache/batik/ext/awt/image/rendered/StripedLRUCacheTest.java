@@ -0,0 +1,78 @@
+/*
+
+   Licensed to the Apache Software Foundation (ASF) under one or more
+   contributor license agreements.  See the NOTICE file distributed with
+   this work for additional information regarding copyright ownership.
+   The ASF licenses this file to You under the Apache License, Version 2.0
+   (the "License"); you may not use this file except in compliance with
+   the License.  You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+
+ */
+package org.apache.batik.ext.awt.image.rendered;
+
+import java.awt.Point;
+import java.awt.image.DataBuffer;
+import java.awt.image.Raster;
+
+import org.apache.batik.test.AbstractTest;
+
+/**
+ * Checks that the <code>StripedLRUCache</code> keeps the most recently
+ * used tiles within its memory size and counts its evictions.
+ *
+ * @version $Id$
+ */
+public class StripedLRUCacheTest extends AbstractTest {
+
+    /**
+     * Size in bytes of the 32x32 ARGB tiles used by this test.
+     */
+    protected static final int TILE_SIZE = 32 * 32 * 4;
+
+    public boolean runImplBasic() throws Exception {
+        StripedLRUCache cache = new StripedLRUCache(2 * TILE_SIZE, 1);
+        TileLRUMember a = createMember();
+        TileLRUMember b = createMember();
+        TileLRUMember c = createMember();
+
+        assertEquals(TILE_SIZE, (int)a.getRasterSize());
+
+        long evictions = TileCache.getEvictionCount();
+        cache.add(a);
+        cache.add(b);
+        cache.add(a);   // a is now the most recently used.
+        cache.add(c);
+
+        assertEquals(2, cache.getUsed());
+        assertEquals(2 * TILE_SIZE, (int)cache.getMemoryUsed());
+        assertEquals(1, (int)(TileCache.getEvictionCount() - evictions));
+        assertEquals(0, (int)b.getRasterSize());
+        assertEquals(TILE_SIZE, (int)a.getRasterSize());
+
+        cache.setMemorySize(TILE_SIZE);
+        assertEquals(1, cache.getUsed());
+        assertEquals(0, (int)a.getRasterSize());
+
+        cache.remove(c);
+        assertEquals(0, cache.getUsed());
+        assertEquals(0, (int)cache.getMemoryUsed());
+        assertEquals(0, (int)c.getRasterSize());
+        return true;
+    }
+
+    protected TileLRUMember createMember() {
+        return new TileLRUMember(Raster.createPackedRaster
+                                 (DataBuffer.TYPE_INT, 32, 32,
+                                  new int[] { 0xFF0000, 0xFF00, 0xFF,
+                                              0xFF000000 },
+                                  new Point(0, 0)));
+    }
+}
@@ -0,0 +1,68 @@
+/*
+
+   Licensed to the Apache Software Foundation (ASF) under one or more
+   contributor license agreements.  See the NOTICE file distributed with
+   this work for additional information regarding copyright ownership.
+   The ASF licenses this file to You under the Apache License, Version 2.0
+   (the "License"); you may not use this file except in compliance with
+   the License.  You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+
+ */
+package org.apache.batik.ext.awt.image.rendered;
+
+import java.awt.Point;
+import java.awt.image.DataBuffer;
+import java.awt.image.Raster;
+
+import org.apache.batik.test.AbstractTest;
+
+/**
+ * Checks that the <code>TileCache</code> counts a hit or a miss for each
+ * call to <code>getTile</code>, and nothing for the lookups made with
+ * <code>getTileNoCompute</code>.
+ *
+ * @version $Id$
+ */
+public class TileCacheCountTest extends AbstractTest {
+
+    public boolean runImplBasic() throws Exception {
+        TileGenerator gen = new TileGenerator() {
+                public Raster genTile(int x, int y) {
+                    return Raster.createPackedRaster
+                        (DataBuffer.TYPE_INT, 32, 32,
+                         new int[] { 0xFF0000, 0xFF00, 0xFF, 0xFF000000 },
+                         new Point(x * 32, y * 32));
+                }
+            };
+        checkCounts(TileCache.getTileGrid(0, 0, 2, 1, gen));
+        checkCounts(TileCache.getTileMap(gen));
+        return true;
+    }
+
+    protected void checkCounts(TileStore store) throws Exception {
+        long hits = TileCache.getHitCount();
+        long misses = TileCache.getMissCount();
+
+        assertNull(store.getTileNoCompute(0, 0));
+        store.getTile(0, 0);
+        assertEquals(0, (int)(TileCache.getHitCount() - hits));
+        assertEquals(1, (int)(TileCache.getMissCount() - misses));
+
+        assertTrue(store.getTileNoCompute(0, 0) != null);
+        assertNull(store.getTileNoCompute(1, 0));
+        assertEquals(0, (int)(TileCache.getHitCount() - hits));
+        assertEquals(1, (int)(TileCache.getMissCount() - misses));
+
+        store.getTile(0, 0);
+        assertEquals(1, (int)(TileCache.getHitCount() - hits));
+        assertEquals(1, (int)(TileCache.getMissCount() - misses));
+    }
+}
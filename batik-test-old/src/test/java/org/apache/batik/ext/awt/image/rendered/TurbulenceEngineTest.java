@@ -0,0 +1,142 @@
+/*
+
+   Licensed to the Apache Software Foundation (ASF) under one or more
+   contributor license agreements.  See the NOTICE file distributed with
+   this work for additional information regarding copyright ownership.
+   The ASF licenses this file to You under the Apache License, Version 2.0
+   (the "License"); you may not use this file except in compliance with
+   the License.  You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+
+ */
+package org.apache.batik.ext.awt.image.rendered;
+
+import java.awt.Point;
+import java.awt.Rectangle;
+import java.awt.RenderingHints;
+import java.awt.color.ColorSpace;
+import java.awt.geom.AffineTransform;
+import java.awt.geom.Rectangle2D;
+import java.awt.image.Raster;
+import java.awt.image.SampleModel;
+import java.awt.image.WritableRaster;
+
+import org.apache.batik.ext.awt.RenderingHintsKeyExt;
+import org.apache.batik.test.AbstractTest;
+
+/**
+ * Checks that the row engines of <code>TurbulencePatternRed</code>
+ * produce the same pixels as the default engine, to within one code
+ * value per channel, for fractal noise and turbulence, with and without
+ * stitching, with and without alpha, with one or several threads.  A
+ * raster generated by an interrupted thread must be complete.
+ *
+ * @version $Id$
+ */
+public class TurbulenceEngineTest extends AbstractTest {
+
+    /**
+     * The transforms from device to user space tested.
+     */
+    protected static final AffineTransform[] TRANSFORMS = {
+        new AffineTransform(),
+        AffineTransform.getScaleInstance(0.5, 0.75),
+        new AffineTransform(0.8, 0.3, -0.2, 1.1, 7, -3)
+    };
+
+    protected static final Object ROWS =
+        RenderingHintsKeyExt.VALUE_TURBULENCE_ENGINE_ROWS;
+
+    protected static final Object ROWS_FLOAT =
+        RenderingHintsKeyExt.VALUE_TURBULENCE_ENGINE_ROWS_FLOAT;
+
+    public boolean runImplBasic() throws Exception {
+        ColorSpace cs = ColorSpace.getInstance(ColorSpace.CS_sRGB);
+        Rectangle devRect = new Rectangle(-20, 10, 150, 90);
+        Rectangle2D tile = new Rectangle2D.Double(-10, 5, 70, 45);
+        for (int n = 0; n < 12; n++) {
+            boolean fractal = (n & 1) != 0;
+            boolean stitch = (n & 2) != 0;
+            boolean alpha = (n & 4) != 0;
+            AffineTransform txf = TRANSFORMS[n % TRANSFORMS.length];
+            int octaves = 1 + n % 5;
+
+            Raster ref = generate(new TurbulencePatternRed
+                (0.05, 0.08, octaves, n, fractal, stitch ? tile : null,
+                 txf, devRect, cs, alpha), devRect);
+
+            for (int threads = 1; threads <= 3; threads += 2) {
+                for (int f = 0; f < 2; f++) {
+                    RenderingHints rh = new RenderingHints(null);
+                    rh.put(RenderingHintsKeyExt.KEY_TURBULENCE_ENGINE,
+                           (f == 0) ? ROWS : ROWS_FLOAT);
+                    rh.put(RenderingHintsKeyExt.KEY_TURBULENCE_THREADS,
+                           threads);
+                    Raster r = generate(new TurbulencePatternRed
+                        (0.05, 0.08, octaves, n, fractal,
+                         stitch ? tile : null, txf, devRect, cs, alpha, rh),
+                         devRect);
+                    int d = maxDifference(ref, r);
+                    assertTrue(d <= TurbulenceEngine.FLOAT_ERROR_BOUND);
+                    if (f == 0 && threads == 1) {
+                        // A single band in double is exactly the same.
+                        assertEquals(0, d);
+                    }
+                    if (threads > 1) {
+                        Thread.currentThread().interrupt();
+                        Raster ir;
+                        try {
+                            ir = generate(new TurbulencePatternRed
+                                (0.05, 0.08, octaves, n, fractal,
+                                 stitch ? tile : null, txf, devRect, cs,
+                                 alpha, rh), devRect);
+                        } finally {
+                            assertTrue(Thread.interrupted());
+                        }
+                        assertEquals(0, maxDifference(r, ir));
+                    }
+                }
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Generates the given pattern into a raster with the given bounds.
+     */
+    protected Raster generate(TurbulencePatternRed red, Rectangle r) {
+        SampleModel sm =
+            red.getSampleModel().createCompatibleSampleModel(r.width,
+                                                             r.height);
+        WritableRaster wr =
+            Raster.createWritableRaster(sm, new Point(r.x, r.y));
+        return red.copyData(wr);
+    }
+
+    /**
+     * Returns the largest difference between the samples of two rasters
+     * with the same bounds.
+     */
+    protected int maxDifference(Raster a, Raster b) {
+        int max = 0;
+        int x0 = a.getMinX();
+        int y0 = a.getMinY();
+        for (int y = y0; y < y0 + a.getHeight(); y++) {
+            for (int x = x0; x < x0 + a.getWidth(); x++) {
+                for (int band = 0; band < a.getNumBands(); band++) {
+                    int d = Math.abs(a.getSample(x, y, band)
+                                     - b.getSample(x, y, band));
+                    max = Math.max(max, d);
+                }
+            }
+        }
+        return max;
+    }
+}
@@ -0,0 +1,171 @@
+/*
+
+   Licensed to the Apache Software Foundation (ASF) under one or more
+   contributor license agreements.  See the NOTICE file distributed with
+   this work for additional information regarding copyright ownership.
+   The ASF licenses this file to You under the Apache License, Version 2.0
+   (the "License"); you may not use this file except in compliance with
+   the License.  You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+
+ */
+package org.apache.batik.gvt;
+
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.Rectangle;
+import java.awt.geom.AffineTransform;
+import java.awt.geom.Ellipse2D;
+import java.awt.geom.Point2D;
+import java.awt.geom.Rectangle2D;
+import java.awt.image.BufferedImage;
+import java.util.Random;
+
+import org.apache.batik.test.AbstractTest;
+
+/**
+ * Checks that the <code>BoundsGrid</code> finds all the rectangles
+ * intersecting a region, and that a <code>CompositeGraphicsNode</code>
+ * with many children paints and hit tests as without the grid.
+ *
+ * @version $Id$
+ */
+public class BoundsGridTest extends AbstractTest {
+
+    public boolean runImplBasic() throws Exception {
+        Random random = new Random(7);
+        for (int k = 0; k < 20; k++) {
+            int n = 1 + random.nextInt(500);
+            Rectangle2D[] bounds = new Rectangle2D[n];
+            for (int i = 0; i < n; i++) {
+                if (random.nextInt(50) == 0) {
+                    continue;
+                }
+                double w = (random.nextInt(10) == 0)
+                    ? random.nextDouble() * 1000 : random.nextDouble() * 20;
+                bounds[i] = new Rectangle2D.Double
+                    (random.nextDouble() * 1000 - 100,
+                     (k == 3) ? 5 : random.nextDouble() * 500,
+                     (k == 4) ? 0 : w,
+                     (k == 3) ? 0 : random.nextDouble() * 20);
+            }
+            BoundsGrid grid = new BoundsGrid(bounds);
+            for (int q = 0; q < 100; q++) {
+                Rectangle2D r = new Rectangle2D.Double
+                    (random.nextDouble() * 1200 - 200,
+                     random.nextDouble() * 700 - 100,
+                     random.nextDouble() * 100,
+                     random.nextDouble() * 100);
+                check(bounds, grid.getIntersecting(r), r);
+                Rectangle2D p = new Rectangle2D.Double(r.getX(), r.getY(), 0, 0);
+                check(bounds, grid.getContaining(r.getX(), r.getY()), p);
+            }
+        }
+        checkCompositeGraphicsNode();
+        return true;
+    }
+
+    /**
+     * Checks that the indices are ascending and contain all the
+     * rectangles that intersect the region and the null ones.
+     */
+    protected void check(Rectangle2D[] bounds, int[] indices, Rectangle2D r)
+            throws Exception {
+        boolean[] found = new boolean[bounds.length];
+        for (int j = 0; j < indices.length; j++) {
+            assertTrue(j == 0 || indices[j - 1] < indices[j]);
+            found[indices[j]] = true;
+        }
+        for (int i = 0; i < bounds.length; i++) {
+            Rectangle2D b = bounds[i];
+            if (b == null
+                || (b.getMinX() <= r.getMaxX() && b.getMaxX() >= r.getMinX()
+                    && b.getMinY() <= r.getMaxY() && b.getMaxY() >= r.getMinY())) {
+                assertTrue(found[i]);
+            }
+        }
+    }
+
+    /**
+     * Checks the painting and the hit testing of a composite with
+     * overlapping, transformed children.
+     */
+    protected void checkCompositeGraphicsNode() throws Exception {
+        Random random = new Random(11);
+        CompositeGraphicsNode cgn = new CompositeGraphicsNode();
+        for (int i = 0; i < 400; i++) {
+            ShapeNode node = new ShapeNode();
+            Ellipse2D e = new Ellipse2D.Double
+                (random.nextDouble() * 380, random.nextDouble() * 380,
+                 5 + random.nextDouble() * 20, 5 + random.nextDouble() * 20);
+            node.setShape(e);
+            FillShapePainter painter = new FillShapePainter(e);
+            painter.setPaint(new Color(random.nextInt(0xffffff)));
+            node.setShapePainter(painter);
+            if (i % 7 == 0) {
+                node.setTransform(AffineTransform.getRotateInstance
+                                  (0.3, 200, 200));
+            }
+            cgn.add(node);
+        }
+        assertTrue(cgn.getBoundsGrid() != null);
+
+        BufferedImage full = paint(cgn, null);
+        Rectangle clip = new Rectangle(120, 150, 60, 40);
+        BufferedImage clipped = paint(cgn, clip);
+        for (int y = clip.y; y < clip.y + clip.height; y++) {
+            for (int x = clip.x; x < clip.x + clip.width; x++) {
+                assertEquals(full.getRGB(x, y), clipped.getRGB(x, y));
+            }
+        }
+
+        for (int i = 0; i < 2000; i++) {
+            Point2D p = new Point2D.Double(random.nextDouble() * 420 - 10,
+                                           random.nextDouble() * 420 - 10);
+            GraphicsNode expected = null;
+            boolean contained = false;
+            for (int j = cgn.size() - 1; j >= 0; j--) {
+                GraphicsNode child = (GraphicsNode)cgn.get(j);
+                Point2D cp = child.getInverseTransform() == null
+                    ? p : child.getInverseTransform().transform(p, null);
+                if (expected == null) {
+                    expected = child.nodeHitAt(cp);
+                }
+                contained |= child.contains(cp);
+            }
+            assertEquals(expected, cgn.nodeHitAt(p));
+            assertEquals(contained, cgn.contains(p));
+        }
+
+        // The grid follows the changes of the children.
+        GraphicsNode last = (GraphicsNode)cgn.get(cgn.size() - 1);
+        last.setTransform(AffineTransform.getTranslateInstance(1000, 0));
+        Rectangle2D b = last.getTransformedSensitiveBounds(GraphicsNode.IDENTITY);
+        Point2D center = new Point2D.Double(b.getCenterX(), b.getCenterY());
+        assertEquals(last, cgn.nodeHitAt(center));
+        cgn.remove(cgn.size() - 1);
+        assertEquals(null, cgn.nodeHitAt(center));
+    }
+
+    /**
+     * Paints the node in an image, with the given clip.
+     */
+    protected BufferedImage paint(GraphicsNode node, Rectangle clip) {
+        BufferedImage image =
+            new BufferedImage(400, 400, BufferedImage.TYPE_INT_ARGB);
+        Graphics2D g = image.createGraphics();
+        if (clip != null) {
+            g.clip(clip);
+        }
+        node.paint(g);
+        g.dispose();
+        return image;
+    }
+}
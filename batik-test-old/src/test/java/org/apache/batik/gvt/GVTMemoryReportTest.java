@@ -0,0 +1,118 @@
+/*
+
+   Licensed to the Apache Software Foundation (ASF) under one or more
+   contributor license agreements.  See the NOTICE file distributed with
+   this work for additional information regarding copyright ownership.
+   The ASF licenses this file to You under the Apache License, Version 2.0
+   (the "License"); you may not use this file except in compliance with
+   the License.  You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+
+ */
+package org.apache.batik.gvt;
+
+import java.awt.geom.AffineTransform;
+import java.io.StringReader;
+
+import org.apache.batik.anim.dom.SAXSVGDocumentFactory;
+import org.apache.batik.bridge.BridgeContext;
+import org.apache.batik.bridge.GVTBuilder;
+import org.apache.batik.bridge.UserAgentAdapter;
+import org.apache.batik.gvt.event.GraphicsNodeChangeAdapter;
+import org.apache.batik.gvt.event.GraphicsNodeChangeEvent;
+import org.apache.batik.test.AbstractTest;
+import org.apache.batik.util.XMLResourceDescriptor;
+
+import org.w3c.dom.Document;
+
+/**
+ * Checks the counts of the <code>GVTMemoryReport</code> of a tree, and
+ * that the rarely set attributes of the nodes are only allocated for
+ * the nodes which have them.
+ *
+ * @version $Id$
+ */
+public class GVTMemoryReportTest extends AbstractTest {
+
+    public boolean runImplBasic() throws Exception {
+        StringBuffer sb = new StringBuffer();
+        sb.append("<svg xmlns='http://www.w3.org/2000/svg'"
+                  + " width='400' height='400'><g>");
+        for (int i = 0; i < 200; i++) {
+            sb.append("<rect x='" + (i % 20 * 20) + "' y='" + (i / 20 * 20)
+                      + "' width='15' height='15' fill='blue'");
+            if (i % 20 == 0) {
+                sb.append(" opacity='0.5'");
+            }
+            sb.append("/>");
+        }
+        sb.append("</g></svg>");
+        SAXSVGDocumentFactory df = new SAXSVGDocumentFactory
+            (XMLResourceDescriptor.getXMLParserClassName());
+        Document doc = df.createDocument("http://example.org/report.svg",
+                                         new StringReader(sb.toString()));
+        BridgeContext ctx = new BridgeContext(new UserAgentAdapter());
+        GraphicsNode root = new GVTBuilder().build(ctx, doc);
+
+        GVTMemoryReport report = new GVTMemoryReport(root);
+        assertEquals(200, report.getNodeCount(ShapeNode.class));
+        int nodes = 0;
+        long bytes = 0;
+        for (Object o : report.getNodeClasses()) {
+            Class cls = (Class)o;
+            nodes += report.getNodeCount(cls);
+            bytes += report.getEstimatedBytes(cls);
+        }
+        assertEquals(report.getNodeCount(), nodes);
+        assertTrue(report.getEstimatedBytes() == bytes);
+        assertTrue(report.getEstimatedBytes(ShapeNode.class)
+                   >= 200 * GVTMemoryReport.getInstanceSize(ShapeNode.class));
+        assertTrue(report.toString().indexOf("total " + nodes + " ") != -1);
+
+        // Only the translucent rectangles have rare attributes.
+        CompositeGraphicsNode svg = (CompositeGraphicsNode)
+            ((CompositeGraphicsNode)root).get(0);
+        CompositeGraphicsNode g = (CompositeGraphicsNode)svg.get(0);
+        assertEquals(200, g.size());
+        int withRare = 0;
+        for (int i = 0; i < g.size(); i++) {
+            AbstractGraphicsNode n = (AbstractGraphicsNode)g.get(i);
+            if (n.rareAttributes != null) {
+                withRare++;
+                assertTrue(n.getComposite() != null);
+            }
+        }
+        assertEquals(10, withRare);
+
+        // The change events are still sent to the tree listeners.
+        final int[] events = new int[2];
+        ((AbstractGraphicsNode)root).getRoot().addTreeGraphicsNodeChangeListener
+            (new GraphicsNodeChangeAdapter() {
+                    public void changeStarted(GraphicsNodeChangeEvent e) {
+                        events[0]++;
+                    }
+                    public void changeCompleted(GraphicsNodeChangeEvent e) {
+                        events[1]++;
+                    }
+                });
+        AbstractGraphicsNode n = (AbstractGraphicsNode)g.get(1);
+        long before = new GVTMemoryReport(n).getEstimatedBytes();
+        n.setTransform(AffineTransform.getTranslateInstance(1, 2));
+        assertEquals(1, events[0]);
+        assertEquals(1, events[1]);
+        assertTrue(new GVTMemoryReport(n).getEstimatedBytes() > before);
+        n.setComposite(null);
+        n.setComposite(null);
+        assertEquals(3, events[0]);
+        assertEquals(3, events[1]);
+        assertNull(n.getComposite());
+        return true;
+    }
+}
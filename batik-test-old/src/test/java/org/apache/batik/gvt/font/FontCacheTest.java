@@ -0,0 +1,137 @@
+/*
+
+   Licensed to the Apache Software Foundation (ASF) under one or more
+   contributor license agreements.  See the NOTICE file distributed with
+   this work for additional information regarding copyright ownership.
+   The ASF licenses this file to You under the Apache License, Version 2.0
+   (the "License"); you may not use this file except in compliance with
+   the License.  You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+
+ */
+package org.apache.batik.gvt.font;
+
+import java.awt.Font;
+import java.awt.Rectangle;
+import java.util.Random;
+
+import org.apache.batik.bridge.DefaultFontFamilyResolver;
+import org.apache.batik.test.AbstractTest;
+
+/**
+ * Checks that the glyph geometry caches and the font caches can be
+ * shared by several threads, and that the font cache is bounded.
+ *
+ * @version $Id$
+ */
+public class FontCacheTest extends AbstractTest {
+
+    public boolean runImplBasic() throws Exception {
+        // Replaced and grown entries are all found.
+        AWTGlyphGeometryCache cache = new AWTGlyphGeometryCache();
+        for (int i = 0; i < 1000; i++) {
+            cache.put((char)i, createValue(i, 0));
+        }
+        for (int i = 0; i < 1000; i += 2) {
+            cache.put((char)i, createValue(i, 1));
+        }
+        assertEquals(1000, cache.size());
+        for (int i = 0; i < 1000; i++) {
+            checkValue(cache.get((char)i), i);
+        }
+
+        // Readers only see the values put for their character.
+        final AWTGlyphGeometryCache shared = new AWTGlyphGeometryCache();
+        final Throwable[] error = new Throwable[1];
+        Thread[] threads = new Thread[4];
+        for (int t = 0; t < threads.length; t++) {
+            final int seed = t;
+            threads[t] = new Thread() {
+                    public void run() {
+                        try {
+                            Random r = new Random(seed);
+                            for (int k = 0; k < 20000; k++) {
+                                int c = r.nextInt(2000);
+                                AWTGlyphGeometryCache.Value v =
+                                    shared.get((char)c);
+                                if (v == null) {
+                                    shared.put((char)c, createValue(c, seed));
+                                } else {
+                                    checkValue(v, c);
+                                }
+                            }
+                        } catch (Throwable e) {
+                            error[0] = e;
+                        }
+                    }
+                };
+            threads[t].start();
+        }
+        for (int t = 0; t < threads.length; t++) {
+            threads[t].join();
+        }
+        assertNull(error[0]);
+
+        // The fonts wrapping the same AWT font share their glyph cache.
+        Font f = new Font("SansSerif", Font.PLAIN, 12);
+        AWTGVTFont f1 = new AWTGVTFont(f);
+        AWTGVTFont f2 = new AWTGVTFont(f, 2);
+        assertTrue(f1.glyphCache == f2.glyphCache);
+
+        int size = AWTGVTFont.getFontCacheSize();
+        try {
+            AWTGVTFont.setFontCacheSize(2);
+            assertTrue(AWTGVTFont.fontCache.size() <= 2);
+            AWTGVTFont last = null;
+            for (int i = 0; i < 5; i++) {
+                last = new AWTGVTFont("Serif", i % 4, 10 + i);
+                assertTrue(AWTGVTFont.fontCache.size() <= 2);
+            }
+            assertTrue(AWTGVTFont.fontCache.get(last.awtFont)
+                       == last.glyphCache);
+
+            // The least recently used font is dropped first.
+            AWTGVTFont a = new AWTGVTFont("SansSerif", Font.PLAIN, 10);
+            AWTGVTFont b = new AWTGVTFont("SansSerif", Font.BOLD, 10);
+            assertTrue(new AWTGVTFont(a.awtFont).glyphCache == a.glyphCache);
+            new AWTGVTFont("Monospaced", Font.PLAIN, 10);
+            assertTrue(AWTGVTFont.fontCache.get(a.awtFont) == a.glyphCache);
+            assertNull(AWTGVTFont.fontCache.get(b.awtFont));
+        } finally {
+            AWTGVTFont.setFontCacheSize(size);
+        }
+
+        // The resolved families are shared, unknown ones stay unknown.
+        DefaultFontFamilyResolver resolver =
+            DefaultFontFamilyResolver.SINGLETON;
+        assertTrue(resolver.resolve("Serif") == resolver.resolve("serif"));
+        assertNull(resolver.resolve("no-such-font-" + size));
+        assertNull(resolver.resolve("No-Such-Font-" + size));
+        return true;
+    }
+
+    /**
+     * Creates a glyph geometry for the given character.
+     */
+    protected static AWTGlyphGeometryCache.Value createValue(int c, int n) {
+        return new AWTGlyphGeometryCache.Value
+            (new Rectangle(c, n, 1, 1), new Rectangle(c, n, 1, 1));
+    }
+
+    /**
+     * Checks that the given glyph geometry is the one of the given
+     * character.
+     */
+    protected static void checkValue(AWTGlyphGeometryCache.Value v, int c) {
+        if (v == null || (int)v.getOutlineBounds2D().getX() != c) {
+            throw new IllegalStateException("Wrong geometry for " + c);
+        }
+    }
+}
@@ -0,0 +1,91 @@
+/*
+
+   Licensed to the Apache Software Foundation (ASF) under one or more
+   contributor license agreements.  See the NOTICE file distributed with
+   this work for additional information regarding copyright ownership.
+   The ASF licenses this file to You under the Apache License, Version 2.0
+   (the "License"); you may not use this file except in compliance with
+   the License.  You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+
+ */
+package org.apache.batik.svggen;
+
+import java.text.DecimalFormat;
+import java.text.DecimalFormatSymbols;
+import java.util.Locale;
+import java.util.Random;
+
+import org.apache.batik.dom.GenericDOMImplementation;
+import org.apache.batik.test.AbstractTest;
+
+import org.w3c.dom.Document;
+
+/**
+ * Checks that <code>SVGGeneratorContext.doubleString</code> and
+ * <code>appendDouble</code> format values as a
+ * <code>DecimalFormat</code> with the precision of the context.
+ *
+ * @version $Id$
+ */
+public class DoubleStringFormat extends AbstractTest {
+
+    /**
+     * Values close to the rounding ties or to the limits.
+     */
+    protected static final double[] VALUES = {
+        0.5, -0.5, 0.125, -0.125, 0.135, 2.5, -3.5, 0.00005, -0.00005,
+        0.00004999, -1e-20, 0.99996, -0.99995, 1.00005, 12345678.9,
+        99999999.99, -99999999.5, 0.1 + 0.2, 1 / 3.0, -2 / 3.0,
+        Math.PI, 1e-7, Double.MIN_VALUE, Double.NaN
+    };
+
+    public boolean runImplBasic() throws Exception {
+        Document doc = GenericDOMImplementation.getDOMImplementation().
+            createDocument(null, "svg", null);
+        SVGGeneratorContext gc = SVGGeneratorContext.createDefault(doc);
+        DecimalFormatSymbols dfs = new DecimalFormatSymbols(Locale.US);
+        Random random = new Random(42);
+        StringBuffer sb = new StringBuffer();
+        String pattern = "#.";
+        for (int precision = 0; precision <= 12; precision++) {
+            DecimalFormat df = new DecimalFormat
+                (precision == 0 ? "#" : pattern, dfs);
+            pattern += "#";
+            gc.setPrecision(precision);
+            for (double v : VALUES) {
+                check(gc, df, sb, v);
+            }
+            for (int i = 0; i < 5000; i++) {
+                double scale = Math.pow(10, random.nextInt(14) - 6);
+                double v = (random.nextDouble() - 0.5) * scale;
+                check(gc, df, sb, v);
+                check(gc, df, sb, (float)v);
+                check(gc, df, sb, Math.round(v * 1000) / 1000.0 + 0.0005);
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Checks the formatting of one value.
+     */
+    protected void check(SVGGeneratorContext gc, DecimalFormat df,
+                         StringBuffer sb, double v) throws Exception {
+        String expected = (Math.abs(v) >= 10e7 || (int)v == v)
+            ? Integer.toString((int)v)
+            : df.format(v);
+        assertEquals(expected, gc.doubleString(v));
+        sb.setLength(0);
+        sb.append(' ');
+        gc.appendDouble(sb, v);
+        assertEquals(" " + expected, sb.toString());
+    }
+}
@@ -0,0 +1,279 @@
+/*
+
+   Licensed to the Apache Software Foundation (ASF) under one or more
+   contributor license agreements.  See the NOTICE file distributed with
+   this work for additional information regarding copyright ownership.
+   The ASF licenses this file to You under the Apache License, Version 2.0
+   (the "License"); you may not use this file except in compliance with
+   the License.  You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+
+ */
+package org.apache.batik.svggen;
+
+import java.awt.Color;
+import java.awt.Dimension;
+import java.awt.Font;
+import java.awt.Graphics2D;
+import java.awt.geom.AffineTransform;
+import java.io.StringReader;
+import java.io.StringWriter;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import org.w3c.dom.Attr;
+import org.w3c.dom.DOMImplementation;
+import org.w3c.dom.Document;
+import org.w3c.dom.Element;
+import org.w3c.dom.NamedNodeMap;
+import org.w3c.dom.Node;
+
+import org.apache.batik.anim.dom.SAXSVGDocumentFactory;
+import org.apache.batik.dom.GenericDOMImplementation;
+import org.apache.batik.svggen.SVGGeneratorContext.GraphicContextDefaults;
+import org.apache.batik.test.AbstractTest;
+import org.apache.batik.util.SVGConstants;
+import org.apache.batik.util.XMLResourceDescriptor;
+
+/**
+ * Checks that the <code>StreamingSVGGraphics2D</code> writes the same
+ * elements as the <code>SVGGraphics2D</code>, with the definitions
+ * written before they are referenced, and that it only keeps the
+ * groups being built.
+ *
+ * @version $Id$
+ */
+public class StreamingSVGGraphics2DTest extends AbstractTest
+    implements SVGConstants {
+
+    /**
+     * The painters compared.
+     */
+    protected static final Painter[] PAINTERS = {
+        new BasicShapes(), new Clip(), new Color1(), new Gradient(),
+        new GraphicObjects(), new Paints(), new Texture()
+    };
+
+    public boolean runImplBasic() throws Exception {
+        for (Painter painter : PAINTERS) {
+            SVGGraphics2D g = new SVGGraphics2D(createContext(), false);
+            g.setSVGCanvasSize(GetRootTest.CANVAS_SIZE);
+            painter.paint(g);
+            StringWriter dom = new StringWriter();
+            g.stream(dom);
+
+            StringWriter streamed = new StringWriter();
+            StreamingSVGGraphics2D sg = new StreamingSVGGraphics2D
+                (createContext(), false, streamed);
+            sg.setSVGCanvasSize(GetRootTest.CANVAS_SIZE);
+            painter.paint(sg);
+            sg.endDocument();
+
+            Element domRoot = parse(dom.toString());
+            Element streamedRoot = parse(streamed.toString());
+            assertEquals(describe(domRoot), describe(streamedRoot));
+
+            List domGraphics = new ArrayList();
+            List domDefs = new ArrayList();
+            for (Node n = domRoot.getFirstChild(); n != null;
+                 n = n.getNextSibling()) {
+                if (n.getNodeType() == Node.ELEMENT_NODE) {
+                    collect((Element)n, domGraphics, domDefs,
+                            SVG_DEFS_TAG.equals(n.getLocalName()));
+                }
+            }
+            List streamedGraphics = new ArrayList();
+            List streamedDefs = new ArrayList();
+            collect(streamedRoot, streamedGraphics, streamedDefs, false);
+            Collections.sort(domDefs);
+            Collections.sort(streamedDefs);
+            assertEquals(domGraphics, streamedGraphics);
+            assertEquals(domDefs, streamedDefs);
+
+            checkReferences(streamedRoot, new HashSet());
+        }
+        checkGroupsWritten();
+        checkGroupsBounded();
+        return true;
+    }
+
+    /**
+     * Checks that the elements drawn with the same graphic context are
+     * written while they are drawn, and that the groups kept in memory
+     * have at most the maximum group size of children.
+     */
+    protected void checkGroupsBounded() throws Exception {
+        StringWriter streamed = new StringWriter();
+        StreamingSVGGraphics2D g = new StreamingSVGGraphics2D
+            (createContext(), false, streamed);
+        g.setSVGCanvasSize(new Dimension(100, 100));
+        StreamingDOMTreeManager tm =
+            (StreamingDOMTreeManager)g.getDOMTreeManager();
+        assertEquals(StreamingDOMTreeManager.DEFAULT_MAX_GROUP_SIZE,
+                     tm.getMaxGroupSize());
+        tm.setMaxGroupSize(100);
+        g.setPaint(Color.blue);
+        for (int i = 0; i < 20000; i++) {
+            g.fillRect(i % 100, i / 100, 1, 1);
+            DOMGroupManager gm = g.getDOMGroupManager();
+            assertTrue(gm.currentGroup.getChildNodes().getLength() <= 100);
+            assertTrue(tm.topLevelGroup.getChildNodes().getLength() <= 1);
+        }
+        int written = streamed.toString().split("<rect", -1).length - 1;
+        assertEquals(19900, written);
+        g.endDocument();
+
+        Element root = parse(streamed.toString());
+        assertEquals(20000, root.getElementsByTagNameNS
+                     (SVG_NAMESPACE_URI, SVG_RECT_TAG).getLength());
+        assertEquals(200, root.getElementsByTagNameNS
+                     (SVG_NAMESPACE_URI, SVG_G_TAG).getLength());
+    }
+
+    /**
+     * Checks that at most the group being built and the definitions
+     * not written yet are kept while many groups are drawn by two
+     * graphics sharing the same output, and that ending the document
+     * twice writes nothing more.
+     */
+    protected void checkGroupsWritten() throws Exception {
+        StringWriter streamed = new StringWriter();
+        StreamingSVGGraphics2D g = new StreamingSVGGraphics2D
+            (createContext(), false, streamed);
+        g.setSVGCanvasSize(new Dimension(100, 100));
+        Graphics2D child = (Graphics2D)g.create();
+        for (int i = 0; i < 1000; i++) {
+            Graphics2D gi = (i % 2 == 0) ? g : child;
+            gi.setTransform(AffineTransform.getTranslateInstance(i, 0));
+            gi.setClip(0, 0, 5 + i % 5, 5);
+            gi.fillRect(0, 0, 10, 10);
+            DOMTreeManager tm = g.getDOMTreeManager();
+            assertTrue(tm.topLevelGroup.getChildNodes().getLength() <= 1);
+            assertTrue(tm.gcConverter.getDefinitionSet().size() <= 1);
+        }
+        child.dispose();
+        g.endDocument();
+        int length = streamed.getBuffer().length();
+        g.endDocument();
+        assertEquals(length, streamed.getBuffer().length());
+
+        Element root = parse(streamed.toString());
+        assertEquals(1000, root.getElementsByTagNameNS
+                     (SVG_NAMESPACE_URI, SVG_RECT_TAG).getLength());
+        assertEquals(5, root.getElementsByTagNameNS
+                     (SVG_NAMESPACE_URI, SVG_CLIP_PATH_TAG).getLength());
+        assertEquals("100", root.getAttributeNS(null, SVG_WIDTH_ATTRIBUTE));
+    }
+
+    /**
+     * Creates the generator context used by both generators.
+     */
+    protected SVGGeneratorContext createContext() {
+        DOMImplementation impl =
+            GenericDOMImplementation.getDOMImplementation();
+        Document domFactory =
+            impl.createDocument(SVG_NAMESPACE_URI, SVG_SVG_TAG, null);
+        SVGGeneratorContext ctx = SVGGeneratorContext.createDefault(domFactory);
+        GraphicContextDefaults defaults = new GraphicContextDefaults();
+        defaults.font = new Font("Arial", Font.PLAIN, 12);
+        ctx.setGraphicContextDefaults(defaults);
+        return ctx;
+    }
+
+    /**
+     * Parses the given SVG content and returns its root element.
+     */
+    protected Element parse(String svg) throws Exception {
+        SAXSVGDocumentFactory df = new SAXSVGDocumentFactory
+            (XMLResourceDescriptor.getXMLParserClassName());
+        Document doc = df.createDocument("http://example.org/test.svg",
+                                         new StringReader(svg));
+        return doc.getDocumentElement();
+    }
+
+    /**
+     * Collects the descriptions of the descendants of the given element,
+     * apart from the defs elements, separating the definitions from the
+     * graphics.
+     */
+    protected void collect(Element e, List graphics, List defs,
+                           boolean inDefs) {
+        for (Node n = e.getFirstChild(); n != null; n = n.getNextSibling()) {
+            if (n.getNodeType() != Node.ELEMENT_NODE) {
+                continue;
+            }
+            Element c = (Element)n;
+            if (SVG_DEFS_TAG.equals(c.getLocalName())) {
+                collect(c, graphics, defs, true);
+                continue;
+            }
+            if (inDefs) {
+                defs.add(describe(c));
+            } else {
+                graphics.add(describe(c));
+            }
+            collect(c, graphics, defs, inDefs);
+        }
+    }
+
+    /**
+     * Returns the name, the attributes and the text of an element.
+     */
+    protected String describe(Element e) {
+        List attrs = new ArrayList();
+        NamedNodeMap map = e.getAttributes();
+        for (int i = 0; i < map.getLength(); i++) {
+            Attr a = (Attr)map.item(i);
+            attrs.add(a.getName() + "=" + a.getValue());
+        }
+        Collections.sort(attrs);
+        StringBuffer sb = new StringBuffer(e.getLocalName());
+        sb.append(attrs);
+        for (Node n = e.getFirstChild(); n != null; n = n.getNextSibling()) {
+            if (n.getNodeType() == Node.TEXT_NODE) {
+                sb.append(n.getNodeValue());
+            }
+        }
+        return sb.toString();
+    }
+
+    /**
+     * Checks that the elements referenced by the given element and its
+     * descendants are defined before.
+     */
+    protected void checkReferences(Element e, Set ids) throws Exception {
+        String id = e.getAttributeNS(null, SVG_ID_ATTRIBUTE);
+        if (id.length() > 0) {
+            ids.add(id);
+        }
+        NamedNodeMap map = e.getAttributes();
+        for (int i = 0; i < map.getLength(); i++) {
+            String value = map.item(i).getNodeValue();
+            int start = value.indexOf("url(#");
+            if (start >= 0) {
+                String ref = value.substring(start + 5,
+                                             value.indexOf(')', start));
+                assertTrue(ids.contains(ref));
+            } else if (value.startsWith("#")
+                       && XLINK_NAMESPACE_URI.equals
+                           (map.item(i).getNamespaceURI())) {
+                assertTrue(ids.contains(value.substring(1)));
+            }
+        }
+        for (Node n = e.getFirstChild(); n != null; n = n.getNextSibling()) {
+            if (n.getNodeType() == Node.ELEMENT_NODE) {
+                checkReferences((Element)n, ids);
+            }
+        }
+    }
+}
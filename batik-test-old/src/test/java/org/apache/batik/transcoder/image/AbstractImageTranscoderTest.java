@@ -49,6 +49,7 @@ import org.apache.batik.ext.awt.image.renderable.Filter;
 import org.apache.batik.transcoder.TranscoderException;
 import org.apache.batik.transcoder.TranscoderInput;
 import org.apache.batik.transcoder.TranscoderOutput;
+import org.apache.batik.transcoder.TranscoderSession;
 
 import org.apache.batik.test.AbstractTest;
 import org.apache.batik.test.DefaultTestReport;
@@ -124,12 +125,13 @@ public abstract class AbstractImageTranscoderTest extends AbstractTest {
 
         try {
             DiffImageTranscoder transcoder =
-                new DiffImageTranscoder(getReferenceImageData());
+                createDiffImageTranscoder(getReferenceImageData());
 
             Map hints = createTranscodingHints();
             if (hints != null) {
                 transcoder.setTranscodingHints(hints);
             }
+            transcoder.setTranscoderSession(getTranscoderSession());
 
             TranscoderInput input = createTranscoderInput();
             transcoder.transcode(input, null);
@@ -143,6 +145,13 @@ public abstract class AbstractImageTranscoderTest extends AbstractTest {
         return report;
     }
 
+    /**
+     * Creates the transcoder comparing its image with the given one.
+     */
+    protected DiffImageTranscoder createDiffImageTranscoder(byte [] refImgData) {
+        return new DiffImageTranscoder(refImgData);
+    }
+
     /**
      * Creates the <code>TranscoderInput</code>.
      */
@@ -155,6 +164,13 @@ public abstract class AbstractImageTranscoderTest extends AbstractTest {
         return null;
     }
 
+    /**
+     * Returns the session of the transcoder, or null.
+     */
+    protected TranscoderSession getTranscoderSession() {
+        return null;
+    }
+
     /**
      * Returns the reference image for this test.
      */
@@ -0,0 +1,154 @@
+/*
+
+   Licensed to the Apache Software Foundation (ASF) under one or more
+   contributor license agreements.  See the NOTICE file distributed with
+   this work for additional information regarding copyright ownership.
+   The ASF licenses this file to You under the Apache License, Version 2.0
+   (the "License"); you may not use this file except in compliance with
+   the License.  You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+
+ */
+package org.apache.batik.transcoder.image;
+
+import java.awt.image.WritableRaster;
+import java.io.ByteArrayOutputStream;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.apache.batik.ext.awt.image.rendered.CachableRed;
+import org.apache.batik.gvt.renderer.ImageRenderer;
+import org.apache.batik.gvt.renderer.StaticRenderer;
+import org.apache.batik.test.TestReport;
+import org.apache.batik.transcoder.TranscoderInput;
+import org.apache.batik.transcoder.TranscoderOutput;
+
+/**
+ * Test the ImageTranscoder with the KEY_RENDER_THREADS transcoding hint.
+ * The reference image is the same document rendered by the same rows of
+ * tiles, one after the other on a single thread: antialiased edges depend
+ * on how the image is split, so a rendering done in one piece could
+ * differ slightly.  The test fails if the tiles were not rendered
+ * concurrently, since the images would then trivially be the same.
+ *
+ * @version $Id$
+ */
+public class RenderThreadsTest extends AbstractImageTranscoderTest {
+
+    /** The URI of the input image. */
+    protected String inputURI;
+
+    /** The number of render threads. */
+    protected Integer threads;
+
+    /**
+     * Error when the renderer did not take the concurrent path.
+     */
+    public static final String ERROR_NOT_CONCURRENT =
+        "RenderThreadsTest.error.not.concurrent";
+
+    /**
+     * The number of repaints done concurrently by the tested transcoder.
+     */
+    protected int concurrentRepaints;
+
+    /**
+     * Constructs a new <code>RenderThreadsTest</code>.
+     *
+     * @param inputURI the URI of the input image
+     * @param threads the number of render threads
+     */
+    public RenderThreadsTest(String inputURI, Integer threads) {
+        this.inputURI = inputURI;
+        this.threads = threads;
+    }
+
+    /**
+     * Runs this test, and checks that the tiles were rendered
+     * concurrently.
+     */
+    public TestReport runImpl() throws Exception {
+        concurrentRepaints = 0;
+        TestReport r = super.runImpl();
+        if (r.hasPassed() && concurrentRepaints == 0) {
+            report.setErrorCode(ERROR_NOT_CONCURRENT);
+            report.setPassed(false);
+        }
+        return r;
+    }
+
+    /**
+     * Creates a transcoder whose renderer counts its concurrent repaints.
+     */
+    protected DiffImageTranscoder createDiffImageTranscoder(byte [] refImgData) {
+        return new DiffImageTranscoder(refImgData) {
+                protected ImageRenderer createRenderer() {
+                    return new StaticRenderer() {
+                            protected boolean copyDataConcurrently
+                                (CachableRed cr, WritableRaster wr) {
+                                concurrentRepaints++;
+                                return super.copyDataConcurrently(cr, wr);
+                            }
+                        };
+                }
+            };
+    }
+
+    /**
+     * Creates the <code>TranscoderInput</code>.
+     */
+    protected TranscoderInput createTranscoderInput() {
+        return new TranscoderInput(resolveURL(inputURI).toString());
+    }
+
+    /**
+     * Creates a Map that contains additional transcoding hints.
+     */
+    protected Map createTranscodingHints() {
+        Map hints = new HashMap(3);
+        hints.put(ImageTranscoder.KEY_RENDER_THREADS, threads);
+        return hints;
+    }
+
+    /**
+     * Returns the rendering of the input image on a single thread.
+     */
+    protected byte [] getReferenceImageData() {
+        try {
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            PNGTranscoder t = new PNGTranscoder() {
+                    protected ImageRenderer createRenderer() {
+                        return new SerialRenderer();
+                    }
+                };
+            t.setTranscodingHints(createTranscodingHints());
+            t.transcode(createTranscoderInput(), new TranscoderOutput(out));
+            return out.toByteArray();
+        } catch (Exception ex) {
+            return null;
+        }
+    }
+
+    /**
+     * A renderer painting the rows of tiles on the calling thread.
+     */
+    protected static class SerialRenderer extends StaticRenderer {
+        protected boolean copyDataConcurrently(CachableRed cr,
+                                               WritableRaster wr) {
+            int n = renderThreads;
+            renderThreads = 1;
+            try {
+                return super.copyDataConcurrently(cr, wr);
+            } finally {
+                renderThreads = n;
+            }
+        }
+    }
+}
@@ -0,0 +1,90 @@
+/*
+
+   Licensed to the Apache Software Foundation (ASF) under one or more
+   contributor license agreements.  See the NOTICE file distributed with
+   this work for additional information regarding copyright ownership.
+   The ASF licenses this file to You under the Apache License, Version 2.0
+   (the "License"); you may not use this file except in compliance with
+   the License.  You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+
+ */
+package org.apache.batik.transcoder.image;
+
+import java.io.ByteArrayOutputStream;
+
+import org.apache.batik.transcoder.TranscoderInput;
+import org.apache.batik.transcoder.TranscoderOutput;
+import org.apache.batik.transcoder.TranscoderSession;
+
+/**
+ * Test the ImageTranscoder with a TranscoderSession that already holds
+ * the resources of the document.  The reference image is the same
+ * document transcoded without a session.
+ *
+ * @version $Id$
+ */
+public class TranscoderSessionTest extends AbstractImageTranscoderTest {
+
+    /** The URI of the input image. */
+    protected String inputURI;
+
+    /** The session, warmed by a first transcode. */
+    protected TranscoderSession session;
+
+    /**
+     * Constructs a new <code>TranscoderSessionTest</code>.
+     *
+     * @param inputURI the URI of the input image
+     */
+    public TranscoderSessionTest(String inputURI) {
+        this.inputURI = inputURI;
+    }
+
+    /**
+     * Creates the <code>TranscoderInput</code>.
+     */
+    protected TranscoderInput createTranscoderInput() {
+        return new TranscoderInput(resolveURL(inputURI).toString());
+    }
+
+    /**
+     * Returns a session that has already transcoded the input image.
+     */
+    protected TranscoderSession getTranscoderSession() {
+        if (session == null) {
+            session = new TranscoderSession();
+            transcode(session);
+        }
+        return session;
+    }
+
+    /**
+     * Returns the input image transcoded without a session.
+     */
+    protected byte [] getReferenceImageData() {
+        return transcode(null);
+    }
+
+    /**
+     * Transcodes the input image in the given session.
+     */
+    protected byte [] transcode(TranscoderSession s) {
+        try {
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            PNGTranscoder t = new PNGTranscoder();
+            t.setTranscoderSession(s);
+            t.transcode(createTranscoderInput(), new TranscoderOutput(out));
+            return out.toByteArray();
+        } catch (Exception ex) {
+            return null;
+        }
+    }
+}
@@ -0,0 +1,127 @@
+/*
+
+   Licensed to the Apache Software Foundation (ASF) under one or more
+   contributor license agreements.  See the NOTICE file distributed with
+   this work for additional information regarding copyright ownership.
+   The ASF licenses this file to You under the Apache License, Version 2.0
+   (the "License"); you may not use this file except in compliance with
+   the License.  You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+
+ */
+package org.apache.batik.util;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.apache.batik.test.AbstractTest;
+
+/**
+ * Checks that <code>TaskPool.runAll</code> runs all the tasks, stops
+ * starting them when the calling thread is interrupted or halted,
+ * never returns while a task is running, and rethrows the exceptions
+ * of the tasks, and that <code>TaskPool.run</code> returns the number
+ * of tasks run.
+ *
+ * @version $Id$
+ */
+public class TaskPoolTest extends AbstractTest {
+
+    public boolean runImplBasic() throws Exception {
+        // All the tasks run.
+        final int[] counts = new int[50];
+        List tasks = new ArrayList();
+        for (int i = 0; i < counts.length; i++) {
+            final int n = i;
+            tasks.add(new Runnable() {
+                    public void run() {
+                        counts[n]++;
+                    }
+                });
+        }
+        assertTrue(TaskPool.runAll(tasks, 4));
+        for (int i = 0; i < counts.length; i++) {
+            assertEquals(1, counts[i]);
+        }
+
+        // An interrupted caller stops starting tasks, and waits for
+        // the running ones, which are the first ones.
+        final Thread caller = Thread.currentThread();
+        final int[] running = new int[1];
+        final int[] started = new int[1];
+        tasks = new ArrayList();
+        for (int i = 0; i < 50; i++) {
+            tasks.add(new Runnable() {
+                    public void run() {
+                        synchronized (running) {
+                            running[0]++;
+                            started[0]++;
+                        }
+                        caller.interrupt();
+                        // Do not sleep: it would clear the interrupted
+                        // status of the caller, which runs tasks too.
+                        long end = System.currentTimeMillis() + 20;
+                        while (System.currentTimeMillis() < end) {
+                            Thread.yield();
+                        }
+                        synchronized (running) {
+                            running[0]--;
+                        }
+                    }
+                });
+        }
+        int run = TaskPool.run(tasks, 3);
+        boolean interrupted = Thread.interrupted();
+        assertTrue(interrupted);
+        synchronized (running) {
+            assertEquals(0, running[0]);
+            assertEquals(started[0], run);
+            assertTrue(run < 50);
+        }
+
+        // A halted caller stops starting tasks too.
+        final HaltingThread ht = new HaltingThread() {
+                public void run() {
+                    List l = new ArrayList();
+                    for (int i = 0; i < 10; i++) {
+                        l.add(new Runnable() {
+                                public void run() {
+                                    halt();
+                                }
+                            });
+                    }
+                    counts[0] = TaskPool.runAll(l, 1) ? 1 : 0;
+                }
+            };
+        ht.start();
+        ht.join();
+        assertEquals(0, counts[0]);
+
+        // The exceptions of the tasks are rethrown.
+        tasks = new ArrayList();
+        for (int i = 0; i < 10; i++) {
+            final int n = i;
+            tasks.add(new Runnable() {
+                    public void run() {
+                        if (n == 5) {
+                            throw new IllegalStateException("task " + n);
+                        }
+                    }
+                });
+        }
+        try {
+            TaskPool.runAll(tasks, 2);
+            return false;
+        } catch (IllegalStateException e) {
+            assertEquals("task 5", e.getMessage());
+        }
+        return true;
+    }
+}
@@ -34,6 +34,7 @@ import org.apache.batik.bridge.BridgeContext;
 import org.apache.batik.bridge.BridgeException;
 import org.apache.batik.bridge.DefaultScriptSecurity;
 import org.apache.batik.bridge.ExternalResourceSecurity;
+import org.apache.batik.bridge.FontFamilyResolver;
 import org.apache.batik.bridge.GVTBuilder;
 import org.apache.batik.bridge.NoLoadScriptSecurity;
 import org.apache.batik.bridge.RelaxedExternalResourceSecurity;
@@ -115,6 +116,11 @@ public abstract class SVGAbstractTranscoder extends XMLAbstractTranscoder {
     /** The user agent dedicated to an SVG Transcoder. */
     protected UserAgent userAgent;
 
+    /**
+     * The session whose resources the transcodes share, or null.
+     */
+    protected TranscoderSession session;
+
     protected SVGAbstractTranscoder() {
         userAgent = createUserAgent();
 
@@ -139,6 +145,22 @@ public abstract class SVGAbstractTranscoder extends XMLAbstractTranscoder {
         return new SVGAbstractTranscoderUserAgent();
     }
 
+    /**
+     * Sets the session whose resources the next transcodes share with
+     * the other transcoders of the session.
+     * @param session the session, or null to share nothing
+     */
+    public void setTranscoderSession(TranscoderSession session) {
+        this.session = session;
+    }
+
+    /**
+     * Returns the session of this transcoder, or null.
+     */
+    public TranscoderSession getTranscoderSession() {
+        return session;
+    }
+
     /**
      * Creates a <code>DocumentFactory</code> that is used to create an SVG DOM
      * tree. The specified DOM Implementation is ignored and the Batik
@@ -194,6 +216,8 @@ public abstract class SVGAbstractTranscoder extends XMLAbstractTranscoder {
         SVGOMDocument svgDoc = (SVGOMDocument)document;
         SVGSVGElement root = svgDoc.getRootElement();
         ctx = createBridgeContext(svgDoc);
+        if (session != null)
+            session.initializeBridgeContext(ctx);
 
         // build the GVT tree
         builder = new GVTBuilder();
@@ -895,6 +919,17 @@ public abstract class SVGAbstractTranscoder extends XMLAbstractTranscoder {
             addStdFeatures();
         }
 
+        /**
+         * Returns the font family resolver of the transcoder session,
+         * if any.
+         */
+        public FontFamilyResolver getFontFamilyResolver() {
+            TranscoderSession s = SVGAbstractTranscoder.this.session;
+            if (s != null && s.getFontFamilyResolver() != null)
+                return s.getFontFamilyResolver();
+            return super.getFontFamilyResolver();
+        }
+
         /**
          * Return the rendering transform.
          */
@@ -0,0 +1,131 @@
+/*
+
+   Licensed to the Apache Software Foundation (ASF) under one or more
+   contributor license agreements.  See the NOTICE file distributed with
+   this work for additional information regarding copyright ownership.
+   The ASF licenses this file to You under the Apache License, Version 2.0
+   (the "License"); you may not use this file except in compliance with
+   the License.  You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+
+ */
+package org.apache.batik.transcoder;
+
+import org.apache.batik.bridge.BoundedDocumentCache;
+import org.apache.batik.bridge.BridgeContext;
+import org.apache.batik.bridge.CachingFontFamilyResolver;
+import org.apache.batik.bridge.DocumentCache;
+import org.apache.batik.bridge.FontFamilyResolver;
+import org.apache.batik.css.engine.StyleSheetCache;
+
+/**
+ * The resources several transcodes can share: the external documents
+ * referenced by the transcoded documents, the style sheets parsed from
+ * a URL, among which the user style sheet, and the web fonts.  The
+ * shared resources are never modified by a transcode, each transcode
+ * gets its own copy of the documents and style sheets, so the state
+ * of each document stays isolated.
+ *
+ * A session is attached to a transcoder with
+ * {@link SVGAbstractTranscoder#setTranscoderSession}.  Transcoders
+ * cannot be used concurrently but a session can be shared by the
+ * transcoders of several threads.
+ *
+ * Decoded raster images are already shared by all the transcodes of
+ * the process, through the <code>ImageTagRegistry</code>.
+ *
+ * @version $Id$
+ */
+public class TranscoderSession {
+
+    /**
+     * The cache of the external documents.
+     */
+    protected DocumentCache documentCache;
+
+    /**
+     * The cache of the style sheets.
+     */
+    protected StyleSheetCache styleSheetCache;
+
+    /**
+     * The resolver that keeps the web fonts.
+     */
+    protected FontFamilyResolver fontFamilyResolver;
+
+    /**
+     * Creates a new session with caches of the default sizes.
+     */
+    public TranscoderSession() {
+        this(new BoundedDocumentCache(),
+             new StyleSheetCache(),
+             new CachingFontFamilyResolver());
+    }
+
+    /**
+     * Creates a new session.
+     * @param documentCache the cache of the external documents, or null
+     * @param styleSheetCache the cache of the style sheets, or null
+     * @param fontFamilyResolver the font family resolver, or null to
+     *        use the one of the user agent
+     */
+    public TranscoderSession(DocumentCache documentCache,
+                             StyleSheetCache styleSheetCache,
+                             FontFamilyResolver fontFamilyResolver) {
+        this.documentCache = documentCache;
+        this.styleSheetCache = styleSheetCache;
+        this.fontFamilyResolver = fontFamilyResolver;
+    }
+
+    /**
+     * Returns the cache of the external documents, or null.
+     */
+    public DocumentCache getDocumentCache() {
+        return documentCache;
+    }
+
+    /**
+     * Returns the cache of the style sheets, or null.
+     */
+    public StyleSheetCache getStyleSheetCache() {
+        return styleSheetCache;
+    }
+
+    /**
+     * Returns the font family resolver of the session, or null.
+     */
+    public FontFamilyResolver getFontFamilyResolver() {
+        return fontFamilyResolver;
+    }
+
+    /**
+     * Makes the given bridge context use the resources of this session.
+     * Called before the context builds its document.
+     */
+    public void initializeBridgeContext(BridgeContext ctx) {
+        ctx.getDocumentLoader().setDocumentCache(documentCache);
+        ctx.setStyleSheetCache(styleSheetCache);
+    }
+
+    /**
+     * Drops all the resources kept by this session.
+     */
+    public void clear() {
+        if (documentCache != null) {
+            documentCache.clear();
+        }
+        if (styleSheetCache != null) {
+            styleSheetCache.clear();
+        }
+        if (fontFamilyResolver instanceof CachingFontFamilyResolver) {
+            ((CachingFontFamilyResolver)fontFamilyResolver).clear();
+        }
+    }
+}
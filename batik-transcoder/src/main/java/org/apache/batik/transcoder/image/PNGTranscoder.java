@@ -225,4 +225,100 @@ public class PNGTranscoder extends ImageTranscoder {
      */
     public static final TranscodingHints.Key KEY_INDEXED
         = new IntegerKey();
+
+    /**
+     * The deflate compression level key.
+     *
+     * <table summary="" border="0" cellspacing="0" cellpadding="1">
+     *   <tr>
+     *     <th valign="top" align="right">Key:</th>
+     *     <td valign="top">KEY_COMPRESSION_LEVEL</td>
+     *   </tr>
+     *   <tr>
+     *     <th valign="top" align="right">Value:</th>
+     *     <td valign="top">Integer</td>
+     *   </tr>
+     *   <tr>
+     *     <th valign="top" align="right">Default:</th>
+     *     <td valign="top">9</td>
+     *   </tr>
+     *   <tr>
+     *     <th valign="top" align="right">Required:</th>
+     *     <td valign="top">No</td>
+     *   </tr>
+     *   <tr>
+     *     <th valign="top" align="right">Description:</th>
+     *     <td valign="top">The deflate compression level of the image data, from 0
+     *       (no compression, fastest) to 9 (smallest file, slowest).
+     *       Only used by the internal PNG codec.</td>
+     *   </tr>
+     * </table>
+     */
+    public static final TranscodingHints.Key KEY_COMPRESSION_LEVEL
+        = new IntegerKey();
+
+    /**
+     * The deflate compression strategy key.
+     *
+     * <table summary="" border="0" cellspacing="0" cellpadding="1">
+     *   <tr>
+     *     <th valign="top" align="right">Key:</th>
+     *     <td valign="top">KEY_COMPRESSION_STRATEGY</td>
+     *   </tr>
+     *   <tr>
+     *     <th valign="top" align="right">Value:</th>
+     *     <td valign="top">Integer</td>
+     *   </tr>
+     *   <tr>
+     *     <th valign="top" align="right">Default:</th>
+     *     <td valign="top">java.util.zip.Deflater.DEFAULT_STRATEGY</td>
+     *   </tr>
+     *   <tr>
+     *     <th valign="top" align="right">Required:</th>
+     *     <td valign="top">No</td>
+     *   </tr>
+     *   <tr>
+     *     <th valign="top" align="right">Description:</th>
+     *     <td valign="top">The deflate strategy of the image data: one of
+     *       <code>Deflater.DEFAULT_STRATEGY</code>,
+     *       <code>Deflater.FILTERED</code> or
+     *       <code>Deflater.HUFFMAN_ONLY</code>.  Only used by the
+     *       internal PNG codec.</td>
+     *   </tr>
+     * </table>
+     */
+    public static final TranscodingHints.Key KEY_COMPRESSION_STRATEGY
+        = new IntegerKey();
+
+    /**
+     * The compression threads key.
+     *
+     * <table summary="" border="0" cellspacing="0" cellpadding="1">
+     *   <tr>
+     *     <th valign="top" align="right">Key:</th>
+     *     <td valign="top">KEY_COMPRESSION_THREADS</td>
+     *   </tr>
+     *   <tr>
+     *     <th valign="top" align="right">Value:</th>
+     *     <td valign="top">Integer</td>
+     *   </tr>
+     *   <tr>
+     *     <th valign="top" align="right">Default:</th>
+     *     <td valign="top">1</td>
+     *   </tr>
+     *   <tr>
+     *     <th valign="top" align="right">Required:</th>
+     *     <td valign="top">No</td>
+     *   </tr>
+     *   <tr>
+     *     <th valign="top" align="right">Description:</th>
+     *     <td valign="top">The number of threads compressing the image data.  With
+     *       more than one thread, bands of rows of a non interlaced
+     *       image are compressed concurrently, for a slightly larger
+     *       file.  Only used by the internal PNG codec.</td>
+     *   </tr>
+     * </table>
+     */
+    public static final TranscodingHints.Key KEY_COMPRESSION_THREADS
+        = new IntegerKey();
 }
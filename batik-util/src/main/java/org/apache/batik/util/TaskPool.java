@@ -0,0 +1,238 @@
+/*
+
+   Licensed to the Apache Software Foundation (ASF) under one or more
+   contributor license agreements.  See the NOTICE file distributed with
+   this work for additional information regarding copyright ownership.
+   The ASF licenses this file to You under the Apache License, Version 2.0
+   (the "License"); you may not use this file except in compliance with
+   the License.  You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+
+ */
+package org.apache.batik.util;
+
+import java.util.List;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A pool of worker threads shared by the code which splits a piece of
+ * work, such as the rows of a raster, into tasks run concurrently.
+ *
+ * <p>The pool has at most <code>MAX_THREADS</code> threads, which stop
+ * when they are idle.  The thread calling {@link #runAll} runs tasks too,
+ * so tasks may themselves call runAll without waiting for a free
+ * worker.</p>
+ *
+ * @version $Id$
+ */
+public class TaskPool {
+
+    /**
+     * The maximum number of threads of the pool.
+     */
+    public static final int MAX_THREADS =
+        Math.max(2, Runtime.getRuntime().availableProcessors());
+
+    /**
+     * The time an idle worker waits for a task, in seconds.
+     */
+    protected static final long KEEP_ALIVE = 30;
+
+    /**
+     * The executor running the workers, created when first needed.
+     */
+    protected static ThreadPoolExecutor executor;
+
+    /**
+     * Returns the executor running the workers.
+     */
+    protected static synchronized ThreadPoolExecutor getExecutor() {
+        if (executor == null) {
+            executor = new ThreadPoolExecutor
+                (MAX_THREADS, MAX_THREADS, KEEP_ALIVE, TimeUnit.SECONDS,
+                 new LinkedBlockingQueue(),
+                 new ThreadFactory() {
+                     int count;
+                     public synchronized Thread newThread(Runnable r) {
+                         Thread t = new Thread(r, "TaskPool-" + (++count));
+                         t.setDaemon(true);
+                         return t;
+                     }
+                 });
+            executor.allowCoreThreadTimeOut(true);
+        }
+        return executor;
+    }
+
+    /**
+     * Runs the given tasks, at most <code>threads</code> at a time
+     * including the calling thread, and waits for them.
+     *
+     * <p>Tasks are started in list order.  No more tasks are started
+     * once the calling thread has been interrupted or halted (see
+     * {@link HaltingThread}), or a task has thrown an exception.  The
+     * tasks already running are always waited for, so none of them is
+     * still running when this method returns; the interrupted status of
+     * the calling thread is kept.</p>
+     *
+     * @param tasks the <code>Runnable</code>s to run
+     * @param threads the maximum number of tasks run at a time
+     * @return true if all the tasks have been run, false if the calling
+     *         thread was interrupted or halted before
+     */
+    public static boolean runAll(List tasks, int threads) {
+        return run(tasks, threads) == tasks.size();
+    }
+
+    /**
+     * Runs the given tasks like {@link #runAll}, and returns the number
+     * of tasks run.  Since the tasks are started in list order, and the
+     * started ones are always waited for, these are the first tasks of
+     * the list: a caller which needs all of them can run the others
+     * itself.
+     *
+     * @param tasks the <code>Runnable</code>s to run
+     * @param threads the maximum number of tasks run at a time
+     * @return the number of tasks run
+     */
+    public static int run(List tasks, int threads) {
+        Batch batch = new Batch(tasks, Thread.currentThread());
+        int n = Math.min(threads, tasks.size());
+        if (n > 1) {
+            ThreadPoolExecutor ex = getExecutor();
+            for (int i = 1; i < n; i++) {
+                ex.execute(batch);
+            }
+        }
+        batch.run();
+        return batch.await();
+    }
+
+    /**
+     * The tasks of one call to runAll, taken in turn by the calling
+     * thread and by the workers.
+     */
+    protected static class Batch implements Runnable {
+
+        /**
+         * The tasks.
+         */
+        protected List tasks;
+
+        /**
+         * The thread which called runAll.
+         */
+        protected Thread caller;
+
+        /**
+         * The index of the next task to start.
+         */
+        protected int next;
+
+        /**
+         * The number of tasks running.
+         */
+        protected int running;
+
+        /**
+         * The number of tasks run to completion.
+         */
+        protected int done;
+
+        /**
+         * Whether no more tasks must be started.
+         */
+        protected boolean stopped;
+
+        /**
+         * The first exception thrown by a task.
+         */
+        protected Throwable error;
+
+        public Batch(List tasks, Thread caller) {
+            this.tasks = tasks;
+            this.caller = caller;
+        }
+
+        /**
+         * Runs tasks until there are none left to start.
+         */
+        public void run() {
+            Runnable task;
+            while ((task = take()) != null) {
+                Throwable t = null;
+                try {
+                    task.run();
+                } catch (Throwable e) {
+                    t = e;
+                }
+                finished(t);
+            }
+        }
+
+        /**
+         * Returns the next task to start, or null.
+         */
+        protected synchronized Runnable take() {
+            if (!stopped && (caller.isInterrupted() ||
+                             HaltingThread.hasBeenHalted(caller))) {
+                stopped = true;
+            }
+            if (stopped || error != null || next == tasks.size()) {
+                return null;
+            }
+            running++;
+            return (Runnable)tasks.get(next++);
+        }
+
+        /**
+         * Records the end of a task.
+         */
+        protected synchronized void finished(Throwable t) {
+            running--;
+            if (t == null) {
+                done++;
+            } else if (error == null) {
+                error = t;
+            }
+            notifyAll();
+        }
+
+        /**
+         * Waits for the running tasks and rethrows the first exception
+         * thrown by a task.
+         * @return the number of tasks run
+         */
+        protected synchronized int await() {
+            boolean interrupted = false;
+            while (running > 0) {
+                try {
+                    wait();
+                } catch (InterruptedException ie) {
+                    interrupted = true;
+                    stopped = true;
+                }
+            }
+            if (interrupted) {
+                caller.interrupt();
+            }
+            if (error instanceof RuntimeException) {
+                throw (RuntimeException)error;
+            }
+            if (error instanceof Error) {
+                throw (Error)error;
+            }
+            return done;
+        }
+    }
+}